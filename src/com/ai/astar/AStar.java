@@ -1,163 +1,279 @@
 package com.ai.astar;
 
+import java.nio.ByteBuffer;
 import java.util.*;
 
 /**
  * A Star Algorithm
  *
+ * The search keeps its per-cell state in a reusable {@link SearchState}, so one
+ * instance can answer any number of queries with {@link #findPath(Node, Node)}
+ * without reallocating anything proportional to the map.
+ *
  * @author Marcelo Surriabre
  * @version 2.1, 2017-02-23
  */
-public class AStar {
+public class AStar implements BoundedPathFinder {
     private static int DEFAULT_HV_COST = 10; // Horizontal - Vertical Cost
     private static int DEFAULT_DIAGONAL_COST = 14;
     private int hvCost;
     private int diagonalCost;
-    private Node[][] searchArea;
-    private PriorityQueue<Node> openList;
-    private Set<Node> closedSet;
+    private int rows;
+    private int cols;
+    private GridMap map;
+    private Heuristic heuristic;
+    private SearchState searchState;
+    private SearchListener listener;
+    private ComponentIndex componentIndex;
+    private ByteBuffer terrain;
+    // why the last bounded search stopped early (null if it ran out), and its expanded cell closest to the goal
+    private SearchResult.Status stopReason;
+    private int closest;
+    // goal of the last search, for the deprecated snapshots of its state
+    private int lastGoal = -1;
     private Node initialNode;
     private Node finalNode;
 
-    public AStar(int rows, int cols, Node initialNode, Node finalNode, int hvCost, int diagonalCost) {
+    public AStar(GridMap map, int hvCost, int diagonalCost) {
+        this(map, hvCost, diagonalCost, new HeapSearchState(map.size()));
+    }
+
+    /**
+     * Searches with the given state, for instance an {@link OffHeapSearchState}
+     * on maps too large for per-cell arrays on the heap.
+     *
+     * @param searchState state for at least map.size() ids
+     */
+    public AStar(GridMap map, SearchState searchState) {
+        this(map, DEFAULT_HV_COST, DEFAULT_DIAGONAL_COST, searchState);
+    }
+
+    private AStar(GridMap map, int hvCost, int diagonalCost, SearchState searchState) {
+        if (searchState.size() < map.size()) {
+            throw new IllegalArgumentException("Search state of " + searchState.size() + " ids for a map of "
+                    + map.size() + " cells");
+        }
         this.hvCost = hvCost;
         this.diagonalCost = diagonalCost;
+        this.map = map;
+        this.rows = map.getRows();
+        this.cols = map.getCols();
+        this.heuristic = new OctileHeuristic(map, hvCost, diagonalCost);
+        this.searchState = searchState;
+    }
+
+    public AStar(GridMap map) {
+        this(map, DEFAULT_HV_COST, DEFAULT_DIAGONAL_COST);
+    }
+
+    public AStar(int rows, int cols, int hvCost, int diagonalCost) {
+        this(new GridMap(rows, cols), hvCost, diagonalCost);
+    }
+
+    public AStar(int rows, int cols) {
+        this(rows, cols, DEFAULT_HV_COST, DEFAULT_DIAGONAL_COST);
+    }
+
+    public AStar(int rows, int cols, Node initialNode, Node finalNode, int hvCost, int diagonalCost) {
+        this(rows, cols, hvCost, diagonalCost);
         setInitialNode(initialNode);
         setFinalNode(finalNode);
-        this.searchArea = new Node[rows][cols];
-        this.openList = new PriorityQueue<Node>(new Comparator<Node>() {
-            @Override
-            public int compare(Node node0, Node node1) {
-                return Integer.compare(node0.getF(), node1.getF());
-            }
-        });
-        setNodes();
-        this.closedSet = new HashSet<>();
     }
 
     public AStar(int rows, int cols, Node initialNode, Node finalNode) {
         this(rows, cols, initialNode, finalNode, DEFAULT_HV_COST, DEFAULT_DIAGONAL_COST);
     }
 
-    private void setNodes() {
-        for (int i = 0; i < searchArea.length; i++) {
-            for (int j = 0; j < searchArea[0].length; j++) {
-                Node node = new Node(i, j);
-                node.calculateHeuristic(getFinalNode());
-                this.searchArea[i][j] = node;
-            }
+    public void setBlocks(int[][] blocksArray) {
+        map.setBlocks(blocksArray);
+    }
+
+    /**
+     * Finds a path between the initial and final nodes given to the constructor.
+     */
+    public List<Node> findPath() {
+        return findPath(initialNode, finalNode);
+    }
+
+    /**
+     * Finds a path between two cells. The instance can be reused for any number of queries.
+     *
+     * @return the path from initialNode to finalNode, or an empty list if there is none
+     */
+    public List<Node> findPath(Node initialNode, Node finalNode) {
+        long startTime = listener != null ? System.nanoTime() : 0;
+        int goal = search(initialNode, finalNode);
+        if (listener != null) {
+            searchEnded(initialNode, finalNode, goal, startTime);
         }
+        return goal == -1 ? new ArrayList<Node>() : getPath(goal);
     }
 
-    public void setBlocks(int[][] blocksArray) {
-        for (int i = 0; i < blocksArray.length; i++) {
-            int row = blocksArray[i][0];
-            int col = blocksArray[i][1];
-            setBlock(row, col);
+    /**
+     * Same search as {@link #findPath(Node, Node)}, stopped as soon as one of
+     * the limits is reached. A stopped search returns the path to the
+     * expanded cell with the lowest heuristic estimate to the goal.
+     */
+    @Override
+    public SearchResult findPath(Node initialNode, Node finalNode, SearchLimits limits) {
+        long startTime = listener != null ? System.nanoTime() : 0;
+        int goal = search(initialNode, finalNode, limits);
+        if (listener != null) {
+            searchEnded(initialNode, finalNode, goal, startTime);
         }
+        int expanded = searchState.getExpanded();
+        double bound = SearchResult.boundOf(heuristic);
+        if (goal != -1) {
+            return new SearchResult(SearchResult.Status.FOUND, getPath(goal), expanded, bound);
+        }
+        if (stopReason == null) {
+            return SearchResult.noPath(expanded);
+        }
+        return new SearchResult(stopReason, getPath(closest), expanded, bound);
     }
 
-    public List<Node> findPath() {
-        openList.add(initialNode);
-        while (!isEmpty(openList)) {
-            Node currentNode = openList.poll();
-            closedSet.add(currentNode);
-            if (isFinalNode(currentNode)) {
-                return getPath(currentNode);
+    /**
+     * Same search as {@link #findPath(Node, Node)}, but the result is built
+     * straight from the search arrays as a {@link CompactPath}, without a Node
+     * per cell.
+     */
+    public Optional<CompactPath> findCompactPath(Node initialNode, Node finalNode) {
+        long startTime = listener != null ? System.nanoTime() : 0;
+        int goal = search(initialNode, finalNode);
+        if (listener != null) {
+            searchEnded(initialNode, finalNode, goal, startTime);
+        }
+        if (goal == -1) {
+            return Optional.empty();
+        }
+        return Optional.of(CompactPath.fromParents(searchState, goal, 0, map, hvCost, diagonalCost, 0));
+    }
+
+    private int search(Node initialNode, Node finalNode) {
+        return search(initialNode, finalNode, null);
+    }
+
+    /**
+     * @param limits bounds of the search, or null for none
+     * @return the goal cell id once it is expanded, or -1 if it cannot be reached
+     *         or a limit stopped the search first (then stopReason is set)
+     */
+    private int search(Node initialNode, Node finalNode, SearchLimits limits) {
+        SearchState state = searchState;
+        state.begin();
+        terrain = map.getCostLayer();
+        int start = map.cellId(initialNode);
+        int goal = map.cellId(finalNode);
+        lastGoal = goal;
+        stopReason = null;
+        if (componentIndex != null && !componentIndex.isReachable(start, goal)) {
+            return -1;
+        }
+        state.open(start, 0, heuristic(start, goal), -1);
+        closest = start;
+        int closestH = heuristic(start, goal);
+        while (state.hasOpen()) {
+            if (limits != null && (stopReason = limits.check(state.getExpanded())) != null) {
+                return -1;
+            }
+            int current = state.closeNext();
+            if (listener != null) {
+                listener.onExpand(current / cols, current % cols);
+            }
+            if (current == goal) {
+                return current;
             } else {
-                addAdjacentNodes(currentNode);
+                addAdjacentNodes(current, goal);
+            }
+            if (limits != null) {
+                int h = heuristic(current, goal);
+                if (h < closestH) {
+                    closest = current;
+                    closestH = h;
+                }
             }
         }
-        return new ArrayList<Node>();
+        return -1;
     }
 
-    private List<Node> getPath(Node currentNode) {
+    private void searchEnded(Node initialNode, Node finalNode, int goal, long startTime) {
+        int cost = goal == -1 ? -1 : searchState.getG(goal);
+        listener.onSearchEnd(SearchStats.of(initialNode, finalNode, cost, searchState, System.nanoTime() - startTime));
+    }
+
+    private List<Node> getPath(int currentId) {
+        SearchState state = searchState;
         List<Node> path = new ArrayList<Node>();
-        path.add(currentNode);
-        Node parent;
-        while ((parent = currentNode.getParent()) != null) {
-            path.add(0, parent);
-            currentNode = parent;
+        Node child = null;
+        for (int id = currentId; id != -1; id = state.getParent(id)) {
+            Node node = new Node(id / cols, id % cols);
+            node.setG(state.getG(id));
+            if (child != null) {
+                child.setParent(node);
+            }
+            path.add(node);
+            child = node;
         }
+        Collections.reverse(path);
         return path;
     }
 
-    private void addAdjacentNodes(Node currentNode) {
-        addAdjacentUpperRow(currentNode);
-        addAdjacentMiddleRow(currentNode);
-        addAdjacentLowerRow(currentNode);
+    private void addAdjacentNodes(int currentId, int goal) {
+        int row = currentId / cols;
+        int col = currentId % cols;
+        addAdjacentUpperRow(currentId, row, col, goal);
+        addAdjacentMiddleRow(currentId, row, col, goal);
+        addAdjacentLowerRow(currentId, row, col, goal);
     }
 
-    private void addAdjacentLowerRow(Node currentNode) {
-        int row = currentNode.getRow();
-        int col = currentNode.getCol();
-        int lowerRow = row + 1;
-        if (lowerRow < getSearchArea().length) {
+    private void addAdjacentLowerRow(int currentId, int row, int col, int goal) {
+        if (row + 1 < rows) {
+            int lowerId = currentId + cols;
             if (col - 1 >= 0) {
-                checkNode(currentNode, col - 1, lowerRow, getDiagonalCost()); // Comment this line if diagonal movements are not allowed
+                checkNode(currentId, lowerId - 1, getDiagonalCost(), goal); // Comment this line if diagonal movements are not allowed
             }
-            if (col + 1 < getSearchArea()[0].length) {
-                checkNode(currentNode, col + 1, lowerRow, getDiagonalCost()); // Comment this line if diagonal movements are not allowed
+            if (col + 1 < cols) {
+                checkNode(currentId, lowerId + 1, getDiagonalCost(), goal); // Comment this line if diagonal movements are not allowed
             }
-            checkNode(currentNode, col, lowerRow, getHvCost());
+            checkNode(currentId, lowerId, getHvCost(), goal);
         }
     }
 
-    private void addAdjacentMiddleRow(Node currentNode) {
-        int row = currentNode.getRow();
-        int col = currentNode.getCol();
-        int middleRow = row;
+    private void addAdjacentMiddleRow(int currentId, int row, int col, int goal) {
         if (col - 1 >= 0) {
-            checkNode(currentNode, col - 1, middleRow, getHvCost());
+            checkNode(currentId, currentId - 1, getHvCost(), goal);
         }
-        if (col + 1 < getSearchArea()[0].length) {
-            checkNode(currentNode, col + 1, middleRow, getHvCost());
+        if (col + 1 < cols) {
+            checkNode(currentId, currentId + 1, getHvCost(), goal);
         }
     }
 
-    private void addAdjacentUpperRow(Node currentNode) {
-        int row = currentNode.getRow();
-        int col = currentNode.getCol();
-        int upperRow = row - 1;
-        if (upperRow >= 0) {
+    private void addAdjacentUpperRow(int currentId, int row, int col, int goal) {
+        if (row - 1 >= 0) {
+            int upperId = currentId - cols;
             if (col - 1 >= 0) {
-                checkNode(currentNode, col - 1, upperRow, getDiagonalCost()); // Comment this if diagonal movements are not allowed
+                checkNode(currentId, upperId - 1, getDiagonalCost(), goal); // Comment this if diagonal movements are not allowed
             }
-            if (col + 1 < getSearchArea()[0].length) {
-                checkNode(currentNode, col + 1, upperRow, getDiagonalCost()); // Comment this if diagonal movements are not allowed
+            if (col + 1 < cols) {
+                checkNode(currentId, upperId + 1, getDiagonalCost(), goal); // Comment this if diagonal movements are not allowed
             }
-            checkNode(currentNode, col, upperRow, getHvCost());
+            checkNode(currentId, upperId, getHvCost(), goal);
         }
     }
 
-    private void checkNode(Node currentNode, int col, int row, int cost) {
-        Node adjacentNode = getSearchArea()[row][col];
-        if (!adjacentNode.isBlock() && !getClosedSet().contains(adjacentNode)) {
-            if (!getOpenList().contains(adjacentNode)) {
-                adjacentNode.setNodeData(currentNode, cost);
-                getOpenList().add(adjacentNode);
-            } else {
-                boolean changed = adjacentNode.checkBetterPath(currentNode, cost);
-                if (changed) {
-                    // Remove and Add the changed node, so that the PriorityQueue can sort again its
-                    // contents with the modified "finalCost" value of the modified node
-                    getOpenList().remove(adjacentNode);
-                    getOpenList().add(adjacentNode);
-                }
+    private void checkNode(int currentId, int adjacentId, int cost, int goal) {
+        SearchState state = searchState;
+        if (!map.isBlocked(adjacentId) && !state.isClosed(adjacentId)) {
+            int gCost = state.getG(currentId) + (terrain == null ? cost : cost * (terrain.get(adjacentId) & 0xFF));
+            // Unseen cells report Integer.MAX_VALUE, so this covers both a new and a better path
+            if (gCost < state.getG(adjacentId)) {
+                state.open(adjacentId, gCost, gCost + heuristic(adjacentId, goal), currentId);
             }
         }
     }
 
-    private boolean isFinalNode(Node currentNode) {
-        return currentNode.equals(finalNode);
-    }
-
-    private boolean isEmpty(PriorityQueue<Node> openList) {
-        return openList.size() == 0;
-    }
-
-    private void setBlock(int row, int col) {
-        this.searchArea[row][col].setBlock(true);
+    private int heuristic(int id, int goal) {
+        return heuristic.estimate(id, Heuristic.NO_DIRECTION, goal);
     }
 
     public Node getInitialNode() {
@@ -176,36 +292,170 @@ public class AStar {
         this.finalNode = finalNode;
     }
 
+    public GridMap getMap() {
+        return map;
+    }
+
+    /**
+     * @return number of nodes expanded by the last call to findPath
+     */
+    public int getExpandedCount() {
+        return searchState.getExpanded();
+    }
+
+    @Override
+    public Heuristic getHeuristic() {
+        return heuristic;
+    }
+
+    /**
+     * Replaces the default octile heuristic, e.g. with a {@link WeightedHeuristic}.
+     */
+    @Override
+    public void setHeuristic(Heuristic heuristic) {
+        this.heuristic = heuristic;
+    }
+
+    public SearchListener getListener() {
+        return listener;
+    }
+
+    /**
+     * @param listener receives per-query stats, or null (the default) to turn instrumentation off
+     */
+    public void setListener(SearchListener listener) {
+        this.listener = listener;
+    }
+
+    public ComponentIndex getComponentIndex() {
+        return componentIndex;
+    }
+
+    /**
+     * @param componentIndex 8-connected index of this engine's map, used to
+     *        answer unreachable goals without searching, or null (the default)
+     */
+    public void setComponentIndex(ComponentIndex componentIndex) {
+        if (componentIndex != null && (componentIndex.getMap() != map || !componentIndex.isDiagonal())) {
+            throw new IllegalArgumentException("Index must be 8-connected and built over this engine's map");
+        }
+        this.componentIndex = componentIndex;
+    }
+
+    public SearchState getSearchState() {
+        return searchState;
+    }
+
+    /**
+     * @return a snapshot of the map as a grid of nodes, with the costs and
+     *         parents the last search gave the cells it reached
+     * @deprecated the search keeps its state in {@link #getSearchState()};
+     *             changes to the returned nodes do not reach the search
+     */
+    @Deprecated
     public Node[][] getSearchArea() {
+        Node[][] searchArea = new Node[rows][cols];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                Node node = new Node(row, col);
+                node.setBlock(map.isBlocked(row, col));
+                searchArea[row][col] = node;
+            }
+        }
+        if (lastGoal == -1) {
+            return searchArea;
+        }
+        for (int id = 0; id < rows * cols; id++) {
+            if (searchState.isSeen(id)) {
+                Node node = searchArea[id / cols][id % cols];
+                int parent = searchState.getParent(id);
+                node.setG(searchState.getG(id));
+                node.setH(heuristic(id, lastGoal));
+                node.setF(node.getG() + node.getH());
+                node.setParent(parent == -1 ? null : searchArea[parent / cols][parent % cols]);
+            }
+        }
         return searchArea;
     }
 
+    /**
+     * Copies the blocked cells of the grid onto the map.
+     *
+     * @deprecated use {@link GridMap#setBlock(int, int, boolean)} on {@link #getMap()}
+     */
+    @Deprecated
     public void setSearchArea(Node[][] searchArea) {
-        this.searchArea = searchArea;
+        if (searchArea.length != rows || searchArea[0].length != cols) {
+            throw new IllegalArgumentException("Search area of " + searchArea.length + "x" + searchArea[0].length
+                    + " for a map of " + rows + "x" + cols);
+        }
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                map.setBlock(row, col, searchArea[row][col].isBlock());
+            }
+        }
     }
 
+    /**
+     * @return a snapshot of the cells left open by the last search, ordered by f cost
+     * @deprecated the open list lives in {@link #getSearchState()}
+     */
+    @Deprecated
     public PriorityQueue<Node> getOpenList() {
+        PriorityQueue<Node> openList = new PriorityQueue<Node>(Comparator.comparingInt(Node::getF));
+        Node[][] searchArea = getSearchArea();
+        if (lastGoal != -1) {
+            for (int id = 0; id < rows * cols; id++) {
+                if (searchState.isOpen(id)) {
+                    openList.add(searchArea[id / cols][id % cols]);
+                }
+            }
+        }
         return openList;
     }
 
-    public void setOpenList(PriorityQueue<Node> openList) {
-        this.openList = openList;
-    }
-
+    /**
+     * @return a snapshot of the cells closed by the last search
+     * @deprecated the closed set lives in {@link #getSearchState()}
+     */
+    @Deprecated
     public Set<Node> getClosedSet() {
+        Set<Node> closedSet = new HashSet<Node>();
+        Node[][] searchArea = getSearchArea();
+        if (lastGoal != -1) {
+            for (int id = 0; id < rows * cols; id++) {
+                if (searchState.isClosed(id)) {
+                    closedSet.add(searchArea[id / cols][id % cols]);
+                }
+            }
+        }
         return closedSet;
     }
 
-    public void setClosedSet(Set<Node> closedSet) {
-        this.closedSet = closedSet;
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
     }
 
     public int getHvCost() {
         return hvCost;
     }
 
+    /**
+     * Changes the cost of a horizontal or vertical move and replaces the
+     * heuristic with an {@link OctileHeuristic} for the new costs, so it stays
+     * admissible (a lower cost) and tight (a higher one). A custom heuristic
+     * was built for the old costs and must be set again afterwards.
+     */
     public void setHvCost(int hvCost) {
+        if (hvCost <= 0) {
+            throw new IllegalArgumentException("hvCost must be positive: " + hvCost);
+        }
         this.hvCost = hvCost;
+        this.heuristic = new OctileHeuristic(map, hvCost, diagonalCost);
     }
 
     private int getDiagonalCost() {
@@ -216,4 +466,3 @@ public class AStar {
         this.diagonalCost = diagonalCost;
     }
 }
-
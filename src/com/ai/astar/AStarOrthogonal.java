@@ -1,110 +1,234 @@
 package com.ai.astar;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
-import java.util.PriorityQueue;
-import java.util.Set;
 
 /**
  * A Star Algorithm in Orthogonal Directions
  * A modified version of the A Star Algorithm by Marcelo Surriabre that
- * only allows horizontal and vertical movement using one cost and a 
+ * only allows horizontal and vertical movement using one cost and a
  * penalty cost for changing directions.
- * 
+ *
  * A Star selects the path that minimizes
  * f(n)=g(n)+h(n)
  * where
  * n = next node on the path
  * g(n) = cost from the start point to the node
  * h(n) = heuristic cost from node to the end point
- * 
+ *
+ * The search runs over (cell, incoming direction) states rather than cells:
+ * reaching a cell horizontally and reaching it vertically lead to different
+ * future turn penalties, so both are kept, two states per cell. State ids are
+ * cellId * 2 + direction and all state data is kept in a reusable
+ * {@link SearchState}, so repeated calls to findPath only touch the states
+ * they expand. The returned paths minimize moves plus turn penalties.
  *
  * @author Marcelo Surriabre
  * @version 2.1, 2017-02-23
  * @author Mark Gottschling on Sept 26, 2020
- * 
+ *
  */
 
-public class AStarOrthogonal {
+public class AStarOrthogonal implements PathFinder, BoundedPathFinder {
 	/*
-	 *  cost of movement
+	 *  cost of movement, also used by IncrementalPathFinder
 	 */
-    private static int ORTHOGONAL_COST = 10;
-    
+    static final int ORTHOGONAL_COST = 10;
+
     /*
      * penalty cost of changing direction
      */
-    private static int DIRECTION_CHANGE_PENALTY = 10;
+    static final int DIRECTION_CHANGE_PENALTY = 10;
 
     /*
-     * matrix of nodes used to search for path
+     * direction part of a state id
      */
-    private Node[][] searchArea;
-    
-    private PriorityQueue<Node> openList;
-    private Set<Node> closedSet;
+    private static final int HORIZONTAL = Heuristic.HORIZONTAL;
+    private static final int VERTICAL = Heuristic.VERTICAL;
+
+    /*
+     * reusable per-state search data (g, parent, open/closed)
+     */
+    private SearchState searchState;
+
+    private Heuristic heuristic;
+
+    /*
+     * optional instrumentation, null when disabled
+     */
+    private SearchListener listener;
+
+    /*
+     * optional connectivity index to reject unreachable goals without searching
+     */
+    private ComponentIndex componentIndex;
+
+    /*
+     * terrain cost layer of the map for the current search, null if uniform
+     */
+    private ByteBuffer terrain;
+
+    /*
+     * why the last bounded search stopped early (null if it ran out), and its
+     * expanded state closest to the goal
+     */
+    private SearchResult.Status stopReason;
+    private int closest;
 
     /*
      * the map that is to be traversed
      */
-    private boolean[][] map;
-    
+    private GridMap map;
+    private int rows;
+    private int cols;
+
     /**
-     * 
+     *
      * @param map
      */
-    public AStarOrthogonal(boolean[][] map) {
+    public AStarOrthogonal(GridMap map) {
+        this(map, new HeapSearchState(2 * map.size()));
+    }
+
+    /**
+     * Searches with the given state, for instance an {@link OffHeapSearchState}
+     * on maps too large for per-state arrays on the heap.
+     *
+     * @param searchState state for at least 2 * map.size() ids (one per cell and axis)
+     */
+    public AStarOrthogonal(GridMap map, SearchState searchState) {
+        if (searchState.size() < 2L * map.size()) {
+            throw new IllegalArgumentException("Search state of " + searchState.size() + " ids for a map of "
+                    + map.size() + " cells");
+        }
         setMap(map);
-    	setSearchArea(new Node[map.length][map[0].length]);
-        setOpenList(new PriorityQueue<Node>(new Comparator<Node>() {
-            @Override
-            public int compare(Node node0, Node node1) {
-                return Integer.compare(node0.getF(), node1.getF());
-            }
-        }));
-        setClosedSet(new HashSet<>());
+        this.rows = map.getRows();
+        this.cols = map.getCols();
+        setSearchState(searchState);
+        setHeuristic(new OrthogonalHeuristic(map, ORTHOGONAL_COST, DIRECTION_CHANGE_PENALTY));
     }
-    
+
     /**
-     * 
+     *
+     * @param map true = blocked, false = open
+     */
+    public AStarOrthogonal(boolean[][] map) {
+        this(GridMap.fromMatrix(map));
+    }
+
+    /**
+     *
      * @return
      */
+    @Override
     public Optional<List<Node>> findPath(Node initialNode, Node finalNode) {
-    	// initialize
-    	getOpenList().clear();
-    	getClosedSet().clear();
-    	initNodes(finalNode);
-    	setBlocks(getMap());
-        
-    	// add initial node to the open list
-        openList.add(initialNode);
-        while (!isEmpty(openList)) {
-            Node currentNode = openList.poll();
-            closedSet.add(currentNode);
-            if (isFinalNode(currentNode, finalNode)) {
-                return Optional.of(getPath(currentNode));
-            } else {
-                addAdjacentNodes(currentNode);
-            }
+        long startTime = listener != null ? System.nanoTime() : 0;
+        int goalState = search(initialNode, finalNode);
+        if (listener != null) {
+            searchEnded(initialNode, finalNode, goalState, startTime);
+        }
+        return goalState == -1 ? Optional.empty() : Optional.of(getPath(goalState));
+    }
+
+    /**
+     * Same search as {@link #findPath(Node, Node)}, stopped as soon as one of
+     * the limits is reached. A stopped search returns the path to the
+     * expanded cell with the lowest heuristic estimate to the goal.
+     */
+    @Override
+    public SearchResult findPath(Node initialNode, Node finalNode, SearchLimits limits) {
+        long startTime = listener != null ? System.nanoTime() : 0;
+        int goalState = search(initialNode, finalNode, limits);
+        if (listener != null) {
+            searchEnded(initialNode, finalNode, goalState, startTime);
+        }
+        int expanded = getSearchState().getExpanded();
+        double bound = SearchResult.boundOf(heuristic);
+        if (goalState != -1) {
+            return new SearchResult(SearchResult.Status.FOUND, getPath(goalState), expanded, bound);
+        }
+        if (stopReason == null) {
+            return SearchResult.noPath(expanded);
+        }
+        return new SearchResult(stopReason, getPath(closest), expanded, bound);
+    }
+
+    /**
+     * Same search as {@link #findPath(Node, Node)}, but the result is built
+     * straight from the search arrays as a {@link CompactPath}; its
+     * {@link CompactPath#getWaypoints()} are the turns of the path.
+     */
+    public Optional<CompactPath> findCompactPath(Node initialNode, Node finalNode) {
+        long startTime = listener != null ? System.nanoTime() : 0;
+        int goalState = search(initialNode, finalNode);
+        if (listener != null) {
+            searchEnded(initialNode, finalNode, goalState, startTime);
+        }
+        if (goalState == -1) {
+            return Optional.empty();
         }
-        return Optional.empty();
+        return Optional.of(CompactPath.fromParents(getSearchState(), goalState, 1, getMap(), ORTHOGONAL_COST,
+                2 * ORTHOGONAL_COST, DIRECTION_CHANGE_PENALTY));
     }
-    
+
+    private int search(Node initialNode, Node finalNode) {
+        return search(initialNode, finalNode, null);
+    }
+
     /**
-     * 
-     * @param finalNode
+     *
+     * @param limits bounds of the search, or null for none
+     * @return the state in which the goal was expanded, or -1 if it cannot be reached
+     *         or a limit stopped the search first (then stopReason is set)
      */
-    private void initNodes(Node finalNode) {
-        for (int i = 0; i < searchArea.length; i++) {
-            for (int j = 0; j < searchArea[0].length; j++) {
-                Node node = new Node(i, j);
-                node.calculateHeuristic(finalNode);
-                this.searchArea[i][j] = node;
+    private int search(Node initialNode, Node finalNode, SearchLimits limits) {
+    	// initialize
+    	SearchState state = getSearchState();
+    	state.begin();
+    	terrain = getMap().getCostLayer();
+    	int start = map.cellId(initialNode);
+    	int goal = map.cellId(finalNode);
+        stopReason = null;
+        if (componentIndex != null && !componentIndex.isReachable(start, goal)) {
+            return -1;
+        }
+
+    	// the initial node has no direction yet: opening it in both directions
+    	// lets the first move go either way without a penalty
+        state.open(stateId(start, HORIZONTAL), 0, heuristic(start, HORIZONTAL, goal), -1);
+        state.open(stateId(start, VERTICAL), 0, heuristic(start, VERTICAL, goal), -1);
+        closest = stateId(start, HORIZONTAL);
+        int closestH = heuristic(start, HORIZONTAL, goal);
+        while (state.hasOpen()) {
+            if (limits != null && (stopReason = limits.check(state.getExpanded())) != null) {
+                return -1;
+            }
+            int current = state.closeNext();
+            if (listener != null) {
+                listener.onExpand(cellOf(current) / cols, cellOf(current) % cols);
+            }
+            if (cellOf(current) == goal) {
+                return current;
+            } else {
+                addAdjacentNodes(current, goal);
+            }
+            if (limits != null) {
+                int h = heuristic(cellOf(current), current & 1, goal);
+                if (h < closestH) {
+                    closest = current;
+                    closestH = h;
+                }
             }
         }
+        return -1;
+    }
+
+    private void searchEnded(Node initialNode, Node finalNode, int goalState, long startTime) {
+        int cost = goalState == -1 ? -1 : getSearchState().getG(goalState);
+        listener.onSearchEnd(SearchStats.of(initialNode, finalNode, cost, getSearchState(), System.nanoTime() - startTime));
     }
 
     /**
@@ -112,11 +236,7 @@ public class AStarOrthogonal {
      * @param blocksArray
      */
     public void setBlocks(int[][] blocksArray) {
-        for (int i = 0; i < blocksArray.length; i++) {
-            int row = blocksArray[i][0];
-            int col = blocksArray[i][1];
-            setBlock(row, col);
-        }
+        getMap().setBlocks(blocksArray);
     }
 
     /**
@@ -126,151 +246,194 @@ public class AStarOrthogonal {
      * @param blocksMatrix
      */
     public void setBlocks(boolean[][] blocksMatrix) {
-        for (int row = 0; row < blocksMatrix.length; row++) {
-            for (int col = 0; col < blocksMatrix[0].length; col++) {
-                if (blocksMatrix[row][col]) {
-                    setBlock(row, col);
-                }
-            }
-        }
+        getMap().setBlocks(blocksMatrix);
     }
 
     /**
-     * 
-     * @param currentNode
+     *
+     * @param currentState
      * @return
      */
-    private List<Node> getPath(Node currentNode) {
+    private List<Node> getPath(int currentState) {
+        SearchState state = getSearchState();
         List<Node> path = new ArrayList<Node>();
-        path.add(currentNode);
-        Node parent;
-        while ((parent = currentNode.getParent()) != null) {
-            path.add(0, parent);
-            currentNode = parent;
+        Node child = null;
+        for (int id = currentState; id != -1; id = state.getParent(id)) {
+            int cell = cellOf(id);
+            Node node = new Node(cell / cols, cell % cols);
+            node.setG(state.getG(id));
+            if (state.getParent(id) != -1) {
+                node.setDirection((id & 1) == HORIZONTAL ? Orthogonal.HORIZONTAL : Orthogonal.VERTICAL);
+            }
+            if (child != null) {
+                child.setParent(node);
+            }
+            path.add(node);
+            child = node;
         }
+        Collections.reverse(path);
         return path;
     }
 
     /**
-     * 
-     * @param currentNode
+     *
+     * @param currentState
      */
-    private void addAdjacentNodes(Node currentNode) {
-        addAdjacentUpperRow(currentNode);
-        addAdjacentMiddleRow(currentNode);
-        addAdjacentLowerRow(currentNode);
+    private void addAdjacentNodes(int currentState, int goal) {
+        int currentId = cellOf(currentState);
+        int row = currentId / cols;
+        int col = currentId % cols;
+        addAdjacentUpperRow(currentState, currentId, row, goal);
+        addAdjacentMiddleRow(currentState, currentId, col, goal);
+        addAdjacentLowerRow(currentState, currentId, row, goal);
     }
 
-    private void addAdjacentLowerRow(Node currentNode) {
-        int row = currentNode.getRow();
-        int col = currentNode.getCol();
-        int lowerRow = row + 1;
-        if (lowerRow < getSearchArea().length) {
-            Node adjacentNode = getSearchArea()[lowerRow][col];
-            adjacentNode.setDirection(Orthogonal.VERTICAL);
-            checkNode(currentNode, adjacentNode);
+    private void addAdjacentLowerRow(int currentState, int currentId, int row, int goal) {
+        if (row + 1 < rows) {
+            checkNode(currentState, currentId + cols, VERTICAL, goal);
         }
     }
 
-    private void addAdjacentMiddleRow(Node currentNode) {
-        int row = currentNode.getRow();
-        int col = currentNode.getCol();
-        int middleRow = row;
+    private void addAdjacentMiddleRow(int currentState, int currentId, int col, int goal) {
         if (col - 1 >= 0) {
-            Node adjacentNode = getSearchArea()[middleRow][col - 1];
-            adjacentNode.setDirection(Orthogonal.HORIZONTAL);
-            checkNode(currentNode, adjacentNode);
+            checkNode(currentState, currentId - 1, HORIZONTAL, goal);
         }
-        if (col + 1 < getSearchArea()[0].length) {
-            Node adjacentNode = getSearchArea()[middleRow][col + 1];
-            adjacentNode.setDirection(Orthogonal.HORIZONTAL);
-            checkNode(currentNode, adjacentNode);
+        if (col + 1 < cols) {
+            checkNode(currentState, currentId + 1, HORIZONTAL, goal);
         }
     }
 
     /**
-     * 
-     * @param currentNode
+     *
+     * @param currentState
      */
-    private void addAdjacentUpperRow(Node currentNode) {
-        int row = currentNode.getRow();
-        int col = currentNode.getCol();
-        int upperRow = row - 1;
-        if (upperRow >= 0) {
-            Node adjacentNode = getSearchArea()[upperRow][col];
-            adjacentNode.setDirection(Orthogonal.VERTICAL);
-            checkNode(currentNode, adjacentNode);
+    private void addAdjacentUpperRow(int currentState, int currentId, int row, int goal) {
+        if (row - 1 >= 0) {
+            checkNode(currentState, currentId - cols, VERTICAL, goal);
         }
     }
 
-    private void checkNode(Node currentNode, Node adjacentNode) {
-        if (!adjacentNode.isBlock() && !getClosedSet().contains(adjacentNode)) {
-            int cost = ORTHOGONAL_COST;
-        	if (!getOpenList().contains(adjacentNode)) {
-                if (currentNode.getDirection() != Orthogonal.NONE
-                    && adjacentNode.getDirection() != currentNode.getDirection()) {
-                    cost += DIRECTION_CHANGE_PENALTY;
-                }
-                adjacentNode.setNodeData(currentNode, cost);
-                getOpenList().add(adjacentNode);
-            } else {
-                if (currentNode.getDirection() != Orthogonal.NONE
-                        && adjacentNode.getDirection() != currentNode.getDirection()) {
-                	cost += DIRECTION_CHANGE_PENALTY;
-                }
-                boolean changed = adjacentNode.checkBetterPath(currentNode, cost);
-                if (changed) {
-                    // Remove and Add the changed node, so that the PriorityQueue can sort again its
-                    // contents with the modified "finalCost" value of the modified node
-                    getOpenList().remove(adjacentNode);
-                    getOpenList().add(adjacentNode);
-                }
+    private void checkNode(int currentState, int adjacentId, int adjacentDirection, int goal) {
+        SearchState state = getSearchState();
+        int adjacentState = stateId(adjacentId, adjacentDirection);
+        if (!map.isBlocked(adjacentId) && !state.isClosed(adjacentState)) {
+            int cost = terrain == null ? ORTHOGONAL_COST : ORTHOGONAL_COST * (terrain.get(adjacentId) & 0xFF);
+            if ((currentState & 1) != adjacentDirection) {
+                cost += DIRECTION_CHANGE_PENALTY;
+            }
+            int gCost = state.getG(currentState) + cost;
+            // Unseen states report Integer.MAX_VALUE, so this covers both a new and a better path
+            if (gCost < state.getG(adjacentState)) {
+                state.open(adjacentState, gCost, gCost + heuristic(adjacentId, adjacentDirection, goal), currentState);
             }
         }
     }
-    
-    private boolean isFinalNode(Node currentNode, Node finalNode) {
-        return currentNode.equals(finalNode);
+
+    private int heuristic(int id, int direction, int goal) {
+        return heuristic.estimate(id, direction, goal);
+    }
+
+    @Override
+    public int getExpandedCount() {
+        return getSearchState().getExpanded();
     }
 
-    private boolean isEmpty(PriorityQueue<Node> openList) {
-        return openList.size() == 0;
+    private static int stateId(int cellId, int direction) {
+        return (cellId << 1) | direction;
     }
 
-    private void setBlock(int row, int col) {
-        this.searchArea[row][col].setBlock(true);
+    private static int cellOf(int stateId) {
+        return stateId >>> 1;
     }
 
-    private Node[][] getSearchArea() {
-        return searchArea;
+    private SearchState getSearchState() {
+        return searchState;
     }
 
-    private void setSearchArea(Node[][] searchArea) {
-        this.searchArea = searchArea;
+    private void setSearchState(SearchState searchState) {
+        this.searchState = searchState;
     }
 
-    private PriorityQueue<Node> getOpenList() {
-        return openList;
+    @Override
+    public Heuristic getHeuristic() {
+        return heuristic;
     }
 
-    private void setOpenList(PriorityQueue<Node> openList) {
-        this.openList = openList;
+    /**
+     * Replaces the default Manhattan plus turn bound heuristic.
+     */
+    @Override
+    public void setHeuristic(Heuristic heuristic) {
+        this.heuristic = heuristic;
     }
 
-    private Set<Node> getClosedSet() {
-        return closedSet;
+    public SearchListener getListener() {
+        return listener;
     }
 
-    private void setClosedSet(Set<Node> closedSet) {
-        this.closedSet = closedSet;
+    /**
+     * @param listener receives per-query stats, or null (the default) to turn instrumentation off
+     */
+    public void setListener(SearchListener listener) {
+        this.listener = listener;
+    }
+
+    public ComponentIndex getComponentIndex() {
+        return componentIndex;
+    }
+
+    /**
+     * @param componentIndex 4-connected index of this engine's map, used to
+     *        answer unreachable goals without searching, or null (the default)
+     */
+    public void setComponentIndex(ComponentIndex componentIndex) {
+        if (componentIndex != null && (componentIndex.getMap() != getMap() || componentIndex.isDiagonal())) {
+            throw new IllegalArgumentException("Index must be 4-connected and built over this engine's map");
+        }
+        this.componentIndex = componentIndex;
     }
 
-	public boolean[][] getMap() {
+	public GridMap getMap() {
 		return map;
 	}
 
-	public void setMap(boolean[][] map) {
+	private void setMap(GridMap map) {
 		this.map = map;
 	}
-}
 
+    /**
+     * Replaces the map with one built from the matrix. The heuristic goes back
+     * to the default for the new map and a component index is dropped, since
+     * both were built over the old one.
+     *
+     * @param map true = blocked, false = open
+     * @deprecated build a new engine over a {@link GridMap} instead
+     */
+    @Deprecated
+    public void setMap(boolean[][] map) {
+        GridMap gridMap = GridMap.fromMatrix(map);
+        setMap(gridMap);
+        this.rows = gridMap.getRows();
+        this.cols = gridMap.getCols();
+        if (getSearchState().size() < 2L * gridMap.size()) {
+            setSearchState(new HeapSearchState(2 * gridMap.size()));
+        }
+        setHeuristic(new OrthogonalHeuristic(gridMap, ORTHOGONAL_COST, DIRECTION_CHANGE_PENALTY));
+        this.componentIndex = null;
+    }
+
+    /**
+     * @return a copy of the map where true = blocked, false = open
+     * @deprecated {@link #getMap()} returns the {@link GridMap} itself
+     */
+    @Deprecated
+    public boolean[][] getBlocksMatrix() {
+        boolean[][] blocksMatrix = new boolean[rows][cols];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                blocksMatrix[row][col] = map.isBlocked(row, col);
+            }
+        }
+        return blocksMatrix;
+    }
+}
@@ -30,6 +30,15 @@ public class AStarTest {
         for (Node node : pathO2) {
             System.out.println(node);
         }
+
+        System.out.println("=== A Star ===========");
+        System.out.println("=== (2,1) -> (2, 5)  ===========");
+        AStar aStar = new AStar(rows, cols);
+        aStar.setBlocks(blocksArray);
+        List<Node> path = aStar.findPath(initialNode, finalNode);
+        for (Node node : path) {
+            System.out.println(node);
+        }
         // search Area
         //      0   1   2   3   4   5   6
         // 0    -   -   -   -   -   -   -
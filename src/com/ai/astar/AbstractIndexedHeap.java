@@ -0,0 +1,206 @@
+package com.ai.astar;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of ids with int keys: the sift code shared by the open lists.
+ *
+ * Subclasses decide where the heap position of every id is kept, in an int
+ * array for {@link IndexedHeap} or in direct buffers for
+ * {@link OffHeapSearchState}. The entries themselves (id, key and tie of the
+ * ids in the heap) are plain arrays that grow with the heap.
+ *
+ * Ties on the key are broken in favour of the entry with the larger tie value
+ * (the engines pass g), which keeps expansions pointed at the goal.
+ */
+abstract class AbstractIndexedHeap {
+    static final int ABSENT = -1;
+
+    private int[] heap;
+    private int[] keys;
+    private int[] ties;
+    private int size;
+
+    /**
+     * @param length number of entries the heap holds before it grows
+     */
+    AbstractIndexedHeap(int length) {
+        this.heap = new int[Math.max(length, 1)];
+        this.keys = new int[heap.length];
+        this.ties = new int[heap.length];
+    }
+
+    /**
+     * @return position of the id in the heap; only meaningful for ids in it
+     */
+    abstract int position(int id);
+
+    abstract void setPosition(int id, int pos);
+
+    public void add(int id, int key, int tie) {
+        if (size == heap.length) {
+            grow(2 * size);
+        }
+        int pos = size++;
+        heap[pos] = id;
+        keys[pos] = key;
+        ties[pos] = tie;
+        setPosition(id, pos);
+        siftUp(pos);
+    }
+
+    /**
+     * Lowers the key of an id already in the heap.
+     */
+    public void decreaseKey(int id, int key, int tie) {
+        int pos = position(id);
+        keys[pos] = key;
+        ties[pos] = tie;
+        siftUp(pos);
+    }
+
+    /**
+     * Moves an id already in the heap to its new key in either direction.
+     */
+    public void update(int id, int key, int tie) {
+        int pos = position(id);
+        keys[pos] = key;
+        ties[pos] = tie;
+        siftUp(pos);
+        siftDown(position(id));
+    }
+
+    /**
+     * Removes an id that is in the heap.
+     */
+    public void remove(int id) {
+        int pos = position(id);
+        int last = --size;
+        setPosition(id, ABSENT);
+        if (pos != last) {
+            move(last, pos);
+            siftUp(pos);
+            siftDown(position(heap[pos]));
+        }
+    }
+
+    /**
+     * Removes and returns the id with the lowest key.
+     */
+    public int poll() {
+        int id = heap[0];
+        setPosition(id, ABSENT);
+        int last = --size;
+        if (last > 0) {
+            move(last, 0);
+            siftDown(0);
+        }
+        return id;
+    }
+
+    public int peek() {
+        return heap[0];
+    }
+
+    public int peekKey() {
+        return keys[0];
+    }
+
+    public int peekTie() {
+        return ties[0];
+    }
+
+    public int keyOf(int id) {
+        return keys[position(id)];
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Empties the heap in O(size), leaving the positions of other ids untouched.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            setPosition(heap[i], ABSENT);
+        }
+        size = 0;
+    }
+
+    /**
+     * @return number of entries the heap arrays hold before they grow
+     */
+    int length() {
+        return heap.length;
+    }
+
+    void grow(int length) {
+        heap = Arrays.copyOf(heap, length);
+        keys = Arrays.copyOf(keys, length);
+        ties = Arrays.copyOf(ties, length);
+    }
+
+    private boolean less(int a, int b) {
+        int ka = keys[a];
+        int kb = keys[b];
+        return ka < kb || (ka == kb && ties[a] > ties[b]);
+    }
+
+    private void move(int from, int to) {
+        heap[to] = heap[from];
+        keys[to] = keys[from];
+        ties[to] = ties[from];
+        setPosition(heap[to], to);
+    }
+
+    private void siftUp(int pos) {
+        int id = heap[pos];
+        int key = keys[pos];
+        int tie = ties[pos];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            int pk = keys[parent];
+            if (pk < key || (pk == key && ties[parent] >= tie)) {
+                break;
+            }
+            move(parent, pos);
+            pos = parent;
+        }
+        heap[pos] = id;
+        keys[pos] = key;
+        ties[pos] = tie;
+        setPosition(id, pos);
+    }
+
+    private void siftDown(int pos) {
+        int half = size >>> 1;
+        while (pos < half) {
+            int child = 2 * pos + 1;
+            int right = child + 1;
+            if (right < size && less(right, child)) {
+                child = right;
+            }
+            if (!less(child, pos)) {
+                break;
+            }
+            swap(pos, child);
+            pos = child;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int id = heap[a];
+        int key = keys[a];
+        int tie = ties[a];
+        move(b, a);
+        heap[b] = id;
+        keys[b] = key;
+        ties[b] = tie;
+        setPosition(id, b);
+    }
+}
@@ -0,0 +1,97 @@
+package com.ai.astar;
+
+import java.util.function.Consumer;
+
+/**
+ * Anytime weighted A*: runs a {@link BoundedPathFinder} with a decreasing
+ * schedule of heuristic weights ({@link WeightedHeuristic}, epsilon 2, 1,
+ * 0.5, ... 0 by default). The first, greedy search finds a path quickly;
+ * every later one is better informed and can only lower the cost, down to the
+ * optimum when the schedule ends with 0. Each cheaper path is reported as
+ * soon as it is found, and whatever limit stops the schedule, the best path
+ * so far is returned with its proven bound.
+ *
+ * The searches restart from scratch, which on grids costs little next to the
+ * last, unweighted search, and keeps the engines unchanged. The expansion
+ * budget of the limits covers the whole schedule. Not thread safe; the
+ * engine's heuristic is swapped during the call and restored after it.
+ */
+public class AnytimePathFinder {
+    private static final double[] DEFAULT_SCHEDULE = {2.0, 1.0, 0.5, 0.25, 0.1, 0.0};
+
+    private final BoundedPathFinder engine;
+    private final double[] schedule;
+
+    /**
+     * @param schedule epsilons of the successive searches, decreasing
+     */
+    public AnytimePathFinder(BoundedPathFinder engine, double... schedule) {
+        if (schedule.length == 0) {
+            throw new IllegalArgumentException("Empty schedule");
+        }
+        for (int i = 1; i < schedule.length; i++) {
+            if (schedule[i] > schedule[i - 1]) {
+                throw new IllegalArgumentException("Schedule must be decreasing");
+            }
+        }
+        this.engine = engine;
+        this.schedule = schedule.clone();
+    }
+
+    public AnytimePathFinder(BoundedPathFinder engine) {
+        this(engine, DEFAULT_SCHEDULE);
+    }
+
+    public SearchResult findPath(Node initialNode, Node finalNode, SearchLimits limits) {
+        return findPath(initialNode, finalNode, limits, null);
+    }
+
+    /**
+     * @param onImprovement called with every path cheaper than the previous one, or null
+     * @return the best complete path found, with the bound of the tightest
+     *         search that completed; a partial result if not even the first
+     *         search completed
+     */
+    public SearchResult findPath(Node initialNode, Node finalNode, SearchLimits limits,
+            Consumer<SearchResult> onImprovement) {
+        Heuristic heuristic = engine.getHeuristic();
+        SearchResult best = null;
+        int expanded = 0;
+        try {
+            for (double epsilon : schedule) {
+                SearchLimits iterationLimits = limits;
+                if (limits.getMaxExpansions() > 0) {
+                    int remaining = limits.getMaxExpansions() - expanded;
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    iterationLimits = limits.withMaxExpansions(remaining);
+                }
+                engine.setHeuristic(epsilon > 0 ? new WeightedHeuristic(heuristic, epsilon) : heuristic);
+                SearchResult result = engine.findPath(initialNode, finalNode, iterationLimits);
+                expanded += result.getExpanded();
+                if (result.getStatus() == SearchResult.Status.NO_PATH) {
+                    return result.withExpanded(expanded);
+                }
+                if (!result.isComplete()) {
+                    if (best == null) {
+                        best = result;
+                    }
+                    break;
+                }
+                if (best == null || result.getCost() < best.getCost()) {
+                    best = result;
+                    if (onImprovement != null) {
+                        onImprovement.accept(result.withExpanded(expanded));
+                    }
+                } else {
+                    // the cheaper path found earlier is within this search's bound too
+                    best = best.withBound(Math.min(best.getBound(), result.getBound()));
+                }
+            }
+        } finally {
+            engine.setHeuristic(heuristic);
+        }
+        return best.withExpanded(expanded);
+    }
+}
@@ -0,0 +1,95 @@
+package com.ai.astar;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Results of a batch search, in the same order as the submitted queries,
+ * together with per-batch statistics.
+ */
+public class BatchResult {
+
+    public enum Status {
+        SOLVED,
+        NO_PATH,
+        TIMED_OUT;
+    }
+
+    private final List<Optional<List<Node>>> paths;
+    private final Status[] statuses;
+    private final int solved;
+    private final int failed;
+    private final int timedOut;
+    private final long nodesExpanded;
+    private final long elapsedNanos;
+
+    BatchResult(List<Optional<List<Node>>> paths, Status[] statuses, long nodesExpanded, long elapsedNanos) {
+        this.paths = paths;
+        this.statuses = statuses;
+        int solved = 0;
+        int failed = 0;
+        int timedOut = 0;
+        for (Status status : statuses) {
+            if (status == Status.SOLVED) {
+                solved++;
+            } else if (status == Status.NO_PATH) {
+                failed++;
+            } else {
+                timedOut++;
+            }
+        }
+        this.solved = solved;
+        this.failed = failed;
+        this.timedOut = timedOut;
+        this.nodesExpanded = nodesExpanded;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return one entry per query, in input order; empty if unsolved or timed out
+     */
+    public List<Optional<List<Node>>> getPaths() {
+        return paths;
+    }
+
+    public Optional<List<Node>> getPath(int index) {
+        return paths.get(index);
+    }
+
+    public Status getStatus(int index) {
+        return statuses[index];
+    }
+
+    public int getSolved() {
+        return solved;
+    }
+
+    /**
+     * @return queries that finished without finding a path
+     */
+    public int getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return queries not finished before the batch deadline: not started yet,
+     *         or stopped by it while running
+     */
+    public int getTimedOut() {
+        return timedOut;
+    }
+
+    public long getNodesExpanded() {
+        return nodesExpanded;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult [solved=" + solved + ", failed=" + failed + ", timedOut=" + timedOut
+                + ", nodesExpanded=" + nodesExpanded + ", elapsedMs=" + elapsedNanos / 1000000 + "]";
+    }
+}
@@ -0,0 +1,85 @@
+package com.ai.astar;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fork/join task that runs a range of query groups of a batch. Each group holds
+ * queries sharing a goal and is solved one query after the other on a single
+ * leased engine, so a heuristic that caches data for the last goal, such as
+ * {@link LandmarkHeuristic}, computes it once per group rather than per query.
+ *
+ * With a deadline, engines that implement {@link BoundedPathFinder} get it as
+ * a {@link SearchLimits} deadline, so a query still running when it passes
+ * stops within {@value SearchLimits#POLL_INTERVAL} expansions. Other engines
+ * run a started query to completion.
+ */
+class BatchSearchTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final PathService service;
+    private final List<PathQuery> queries;
+    private final int[][] groups;
+    private final int from;
+    private final int to;
+    private final long deadline;
+    private final List<Optional<List<Node>>> paths;
+    private final BatchResult.Status[] statuses;
+    private final AtomicLong expanded;
+
+    BatchSearchTask(PathService service, List<PathQuery> queries, int[][] groups, int from, int to,
+            long deadline, List<Optional<List<Node>>> paths, BatchResult.Status[] statuses, AtomicLong expanded) {
+        this.service = service;
+        this.queries = queries;
+        this.groups = groups;
+        this.from = from;
+        this.to = to;
+        this.deadline = deadline;
+        this.paths = paths;
+        this.statuses = statuses;
+        this.expanded = expanded;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from > 1) {
+            int middle = (from + to) >>> 1;
+            invokeAll(new BatchSearchTask(service, queries, groups, from, middle, deadline, paths, statuses, expanded),
+                    new BatchSearchTask(service, queries, groups, middle, to, deadline, paths, statuses, expanded));
+            return;
+        }
+        PathFinder finder = service.lease();
+        try {
+            long groupExpanded = 0;
+            for (int index : groups[from]) {
+                if (deadline != 0 && System.nanoTime() - deadline >= 0) {
+                    statuses[index] = BatchResult.Status.TIMED_OUT;
+                    continue;
+                }
+                PathQuery query = queries.get(index);
+                if (deadline != 0 && finder instanceof BoundedPathFinder) {
+                    SearchResult result = ((BoundedPathFinder) finder).findPath(query.getInitialNode(),
+                            query.getFinalNode(), SearchLimits.NONE.withDeadline(deadline));
+                    groupExpanded += result.getExpanded();
+                    if (result.isComplete()) {
+                        paths.set(index, Optional.of(result.getPath()));
+                        statuses[index] = BatchResult.Status.SOLVED;
+                    } else {
+                        statuses[index] = result.getStatus() == SearchResult.Status.NO_PATH
+                                ? BatchResult.Status.NO_PATH : BatchResult.Status.TIMED_OUT;
+                    }
+                    continue;
+                }
+                Optional<List<Node>> path = finder.findPath(query.getInitialNode(), query.getFinalNode());
+                groupExpanded += finder.getExpandedCount();
+                paths.set(index, path);
+                statuses[index] = path.isPresent() ? BatchResult.Status.SOLVED : BatchResult.Status.NO_PATH;
+            }
+            expanded.addAndGet(groupExpanded);
+        } finally {
+            service.release(finder);
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.ai.astar;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bidirectional A* with the {@link AStar} move model and costs.
+ *
+ * A forward frontier grows from the start and a backward frontier from the
+ * goal. Every time a cell is reached on one side with a better g, the cost
+ * through that cell to the other side (if the other side has seen it) is a
+ * candidate for the best path cost mu. The search stops as soon as the
+ * smallest f on either open list is at least mu: with a consistent heuristic
+ * that side's open list holds a cell of every cheaper path, so none exists and
+ * the path through the best meeting cell is optimal. The two parent chains are
+ * stitched together at that cell.
+ *
+ * By default the search alternates between the frontiers on the calling
+ * thread, always expanding the smaller open list. With
+ * {@link #setConcurrent(boolean)} the backward frontier runs on a second
+ * thread; the heuristic must then be thread safe (the default octile
+ * heuristic is).
+ *
+ * Needs a map without terrain costs: a query on a map with a cost layer throws
+ * IllegalStateException instead of returning a path priced with unit costs.
+ */
+public class BidirectionalAStar implements PathFinder {
+    private static int DEFAULT_HV_COST = 10;
+    private static int DEFAULT_DIAGONAL_COST = 14;
+    private static final int UNSEEN = Integer.MAX_VALUE;
+    private static final long NO_MEETING = Long.MAX_VALUE;
+    private static final VarHandle STAMPS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final GridMap map;
+    private final int rows;
+    private final int cols;
+    private final int hvCost;
+    private final int diagonalCost;
+    private final Frontier forward;
+    private final Frontier backward;
+    // best path cost found so far in the high half, meeting cell in the low half
+    private final AtomicLong best = new AtomicLong(NO_MEETING);
+    private volatile boolean done;
+    private int generation;
+    private Heuristic heuristic;
+    private boolean concurrent;
+    private Executor executor = ForkJoinPool.commonPool();
+
+    public BidirectionalAStar(GridMap map, int hvCost, int diagonalCost) {
+        this.map = map;
+        this.rows = map.getRows();
+        this.cols = map.getCols();
+        this.hvCost = hvCost;
+        this.diagonalCost = diagonalCost;
+        this.heuristic = new OctileHeuristic(map, hvCost, diagonalCost);
+        this.forward = new Frontier(map.size());
+        this.backward = new Frontier(map.size());
+        this.forward.other = backward;
+        this.backward.other = forward;
+    }
+
+    public BidirectionalAStar(GridMap map) {
+        this(map, DEFAULT_HV_COST, DEFAULT_DIAGONAL_COST);
+    }
+
+    @Override
+    public Optional<List<Node>> findPath(Node initialNode, Node finalNode) {
+        if (map.getCostLayer() != null) {
+            throw new IllegalStateException("Bidirectional A* needs uniform costs; the map has a terrain layer");
+        }
+        int start = map.cellId(initialNode);
+        int goal = map.cellId(finalNode);
+        begin(start, goal);
+        if (start == goal) {
+            List<Node> path = new ArrayList<Node>();
+            path.add(new Node(initialNode.getRow(), initialNode.getCol()));
+            return Optional.of(path);
+        }
+        if (map.isBlocked(goal)) {
+            return Optional.empty();
+        }
+        if (concurrent) {
+            CompletableFuture<Void> backwardTask = CompletableFuture.runAsync(backward::runAlone, executor);
+            forward.runAlone();
+            backwardTask.join();
+        } else {
+            search();
+        }
+        long meeting = best.get();
+        if (meeting == NO_MEETING) {
+            return Optional.empty();
+        }
+        return Optional.of(getPath((int) meeting));
+    }
+
+    private void begin(int start, int goal) {
+        generation += 2;
+        if (generation >= Integer.MAX_VALUE - 2) {
+            forward.resetStamps();
+            backward.resetStamps();
+            generation = 2;
+        }
+        best.set(NO_MEETING);
+        done = false;
+        forward.begin(start, goal, false);
+        backward.begin(goal, start, true);
+    }
+
+    private void search() {
+        while (!forward.openList.isEmpty() && !backward.openList.isEmpty()) {
+            if (Math.max(forward.openList.peekKey(), backward.openList.peekKey()) >= bestCost()) {
+                return;
+            }
+            if (forward.openList.size() <= backward.openList.size()) {
+                forward.expandNext();
+            } else {
+                backward.expandNext();
+            }
+        }
+    }
+
+    private int bestCost() {
+        return (int) (best.get() >>> 32);
+    }
+
+    private void offer(int cost, int meetingCell) {
+        long candidate = ((long) cost << 32) | meetingCell;
+        long current;
+        while (candidate < (current = best.get())) {
+            if (best.compareAndSet(current, candidate)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Joins the forward chain from the start to the meeting cell with the
+     * backward chain from the meeting cell to the goal.
+     */
+    private List<Node> getPath(int meetingCell) {
+        List<Node> path = new ArrayList<Node>();
+        for (int id = meetingCell; id != -1; id = forward.parent[id]) {
+            Node node = new Node(id / cols, id % cols);
+            node.setG(forward.g[id]);
+            path.add(node);
+        }
+        Collections.reverse(path);
+        int meetingG = forward.g[meetingCell];
+        int meetingRest = backward.g[meetingCell];
+        for (int id = backward.parent[meetingCell]; id != -1; id = backward.parent[id]) {
+            Node node = new Node(id / cols, id % cols);
+            node.setG(meetingG + meetingRest - backward.g[id]);
+            path.add(node);
+        }
+        for (int i = 1; i < path.size(); i++) {
+            path.get(i).setParent(path.get(i - 1));
+        }
+        return path;
+    }
+
+    @Override
+    public int getExpandedCount() {
+        return forward.expanded + backward.expanded;
+    }
+
+    public Heuristic getHeuristic() {
+        return heuristic;
+    }
+
+    public void setHeuristic(Heuristic heuristic) {
+        this.heuristic = heuristic;
+    }
+
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    /**
+     * Runs the backward frontier on the executor while the calling thread runs
+     * the forward one.
+     */
+    public void setConcurrent(boolean concurrent) {
+        this.concurrent = concurrent;
+    }
+
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    public GridMap getMap() {
+        return map;
+    }
+
+    /**
+     * One direction of the search. Cells use generation stamps like
+     * {@link SearchState}: stamp == generation means open, generation + 1
+     * closed. Stamps are published with release semantics so the other
+     * frontier, possibly on another thread, never pairs a current stamp with a
+     * g left over from an earlier query.
+     */
+    private final class Frontier {
+        final int[] g;
+        final int[] parent;
+        final int[] stamp;
+        final IndexedHeap openList;
+        Frontier other;
+        boolean reverse;
+        int source;
+        int target;
+        int expanded;
+
+        Frontier(int size) {
+            this.g = new int[size];
+            this.parent = new int[size];
+            this.stamp = new int[size];
+            this.openList = new IndexedHeap(size);
+        }
+
+        void begin(int source, int target, boolean reverse) {
+            this.source = source;
+            this.target = target;
+            this.reverse = reverse;
+            this.expanded = 0;
+            openList.clear();
+            g[source] = 0;
+            parent[source] = -1;
+            STAMPS.setRelease(stamp, source, generation);
+            openList.add(source, heuristic.estimate(source, Heuristic.NO_DIRECTION, target), 0);
+        }
+
+        void resetStamps() {
+            Arrays.fill(stamp, 0);
+        }
+
+        /**
+         * Loop of one frontier in concurrent mode; stops both frontiers once
+         * this one proves the best meeting optimal or runs out of cells.
+         */
+        void runAlone() {
+            while (!done) {
+                if (openList.isEmpty() || openList.peekKey() >= bestCost()) {
+                    done = true;
+                    return;
+                }
+                expandNext();
+            }
+        }
+
+        void expandNext() {
+            int current = openList.poll();
+            STAMPS.setRelease(stamp, current, generation + 1);
+            expanded++;
+            if (current == target) {
+                // the other frontier's source; paths never continue through it
+                return;
+            }
+            int row = current / cols;
+            int col = current - row * cols;
+            for (int dr = -1; dr <= 1; dr++) {
+                int nextRow = row + dr;
+                if (nextRow < 0 || nextRow >= rows) {
+                    continue;
+                }
+                for (int dc = -1; dc <= 1; dc++) {
+                    int nextCol = col + dc;
+                    if ((dr == 0 && dc == 0) || nextCol < 0 || nextCol >= cols) {
+                        continue;
+                    }
+                    relax(current, nextRow * cols + nextCol, dr != 0 && dc != 0 ? diagonalCost : hvCost);
+                }
+            }
+        }
+
+        private void relax(int current, int next, int cost) {
+            // backwards, the edge next -> current is only taken if next can be left,
+            // which holds for the start even when it is blocked
+            if (map.isBlocked(next) && !(reverse && next == target)) {
+                return;
+            }
+            int nextStamp = stamp[next];
+            if (nextStamp == generation + 1) {
+                return;
+            }
+            int gCost = g[current] + cost;
+            if (nextStamp == generation && gCost >= g[next]) {
+                return;
+            }
+            g[next] = gCost;
+            parent[next] = current;
+            int f = gCost + heuristic.estimate(next, Heuristic.NO_DIRECTION, target);
+            if (nextStamp == generation) {
+                openList.decreaseKey(next, f, gCost);
+            } else {
+                STAMPS.setRelease(stamp, next, generation);
+                openList.add(next, f, gCost);
+            }
+            int otherG = other.seenG(next);
+            if (otherG != UNSEEN) {
+                offer(gCost + otherG, next);
+            }
+        }
+
+        int seenG(int id) {
+            int s = (int) STAMPS.getAcquire(stamp, id);
+            return s == generation || s == generation + 1 ? g[id] : UNSEEN;
+        }
+    }
+}
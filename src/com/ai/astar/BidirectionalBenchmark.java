@@ -0,0 +1,62 @@
+package com.ai.astar;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Compares {@link BidirectionalAStar}, on one thread and on two, with
+ * {@link AStar} on the same seeded maps: checks that every path has the same
+ * cost and reports nodes expanded and latency.
+ *
+ * Usage: BidirectionalBenchmark [sizes, e.g. 64,256,1024] [queries per case] [seconds per case]
+ */
+public class BidirectionalBenchmark {
+
+    private static final long SEED = 20200926L;
+
+    public static void main(String[] args) {
+        String[] sizes = (args.length > 0 ? args[0] : "64,256,1024").split(",");
+        int queryCount = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        double seconds = args.length > 2 ? Double.parseDouble(args[2]) : 1.0;
+        int mismatches = 0;
+
+        System.out.printf(Locale.ROOT, "%-7s %6s %12s %12s %12s %12s %12s%n",
+                "map", "size", "AStar exp", "Bidir exp", "AStar us", "Bidir us", "Bidir x2 us");
+        for (String sizeArg : sizes) {
+            int size = Integer.parseInt(sizeArg.trim());
+            for (MapGenerator.Type type : MapGenerator.Type.values()) {
+                GridMap map = MapGenerator.generate(type, size, size, 0.2, SEED).readOnlyCopy();
+                PathQuery[] queries = MapGenerator.queries(map, queryCount, size / 4, 2 * size, SEED);
+                PathFinder aStar = PathService.diagonalFinder(map);
+                BidirectionalAStar bidirectional = new BidirectionalAStar(map);
+                BidirectionalAStar concurrent = new BidirectionalAStar(map);
+                concurrent.setConcurrent(true);
+                for (PathQuery query : queries) {
+                    int expected = cost(aStar.findPath(query.getInitialNode(), query.getFinalNode()));
+                    int actual = cost(bidirectional.findPath(query.getInitialNode(), query.getFinalNode()));
+                    int actualConcurrent = cost(concurrent.findPath(query.getInitialNode(), query.getFinalNode()));
+                    if (expected != actual || expected != actualConcurrent) {
+                        mismatches++;
+                        System.out.println("COST MISMATCH " + type + " " + size + " " + query
+                                + ": AStar=" + expected + " bidirectional=" + actual + " concurrent=" + actualConcurrent);
+                    }
+                }
+                EngineBenchmark.Result aStarResult = EngineBenchmark.measure(aStar, queries, seconds);
+                EngineBenchmark.Result bidirectionalResult = EngineBenchmark.measure(bidirectional, queries, seconds);
+                EngineBenchmark.Result concurrentResult = EngineBenchmark.measure(concurrent, queries, seconds);
+                System.out.printf(Locale.ROOT, "%-7s %6d %12.0f %12.0f %12.1f %12.1f %12.1f%n", type, size,
+                        aStarResult.expandedPerOp(), bidirectionalResult.expandedPerOp(),
+                        aStarResult.microsPerOp(), bidirectionalResult.microsPerOp(), concurrentResult.microsPerOp());
+            }
+        }
+        System.out.println(mismatches == 0 ? "OK: all path costs match" : "FAILED: " + mismatches + " cost mismatches");
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static int cost(Optional<List<Node>> path) {
+        return path.map(nodes -> nodes.get(nodes.size() - 1).getG()).orElse(-1);
+    }
+}
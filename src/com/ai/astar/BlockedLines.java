@@ -0,0 +1,165 @@
+package com.ai.astar;
+
+import java.util.Arrays;
+
+/**
+ * Blocked cells of a {@link GridMap} as bit lines for word-at-a-time scans:
+ * by row (id = row * cols + col, the map's own bitset) and by column
+ * (col * rows + row, a transpose), with the first and last blocked position of
+ * every row and column.
+ *
+ * There is one instance per map, from {@link GridMap#getBlockedLines()},
+ * shared by every {@link JumpPointSearch} over it. On an editable map it
+ * follows edits through its {@link MapEditListener}, updating one bit of the
+ * transpose and the extents of the cell's row and column, so it never copies
+ * the map again. The row bits of a memory-mapped map are copied onto the heap
+ * once, since such a map cannot be edited.
+ */
+final class BlockedLines implements MapEditListener {
+    private final int rows;
+    private final int cols;
+    private final long[] byRow;
+    private final long[] byCol;
+    private final int[] rowFirst;
+    private final int[] rowLast;
+    private final int[] colFirst;
+    private final int[] colLast;
+
+    BlockedLines(GridMap map) {
+        this.rows = map.getRows();
+        this.cols = map.getCols();
+        long[] words = map.getWords();
+        if (words == null) {
+            words = new long[(rows * cols + 63) >>> 6];
+            map.getBitset().get(0, words);
+        }
+        this.byRow = words;
+        this.byCol = new long[words.length];
+        this.rowFirst = new int[rows];
+        this.rowLast = new int[rows];
+        this.colFirst = new int[cols];
+        this.colLast = new int[cols];
+        Arrays.fill(rowFirst, cols);
+        Arrays.fill(rowLast, -1);
+        Arrays.fill(colFirst, rows);
+        Arrays.fill(colLast, -1);
+        for (int index = 0; index < byRow.length; index++) {
+            for (long word = byRow[index]; word != 0; word &= word - 1) {
+                int id = index << 6 | Long.numberOfTrailingZeros(word);
+                if (id >= rows * cols) {
+                    break;
+                }
+                int row = id / cols;
+                block(row, id - row * cols);
+            }
+        }
+    }
+
+    /**
+     * Sets the transposed bit of the cell and widens the extents of its row and column.
+     */
+    private void block(int row, int col) {
+        int transposed = col * rows + row;
+        byCol[transposed >>> 6] |= 1L << transposed;
+        rowFirst[row] = Math.min(rowFirst[row], col);
+        rowLast[row] = Math.max(rowLast[row], col);
+        colFirst[col] = Math.min(colFirst[col], row);
+        colLast[col] = Math.max(colLast[col], row);
+    }
+
+    @Override
+    public void cellChanged(GridMap map, int cellId, boolean isBlock) {
+        int row = cellId / cols;
+        int col = cellId - row * cols;
+        if (isBlock) {
+            block(row, col);
+            return;
+        }
+        int transposed = col * rows + row;
+        byCol[transposed >>> 6] &= ~(1L << transposed);
+        // an unblocked end of a line moves the extent to the next blocked cell inward
+        if (rowFirst[row] == col || rowLast[row] == col) {
+            rowFirst[row] = firstBit(byRow, row * cols, cols);
+            rowLast[row] = lastBit(byRow, row * cols, cols);
+        }
+        if (colFirst[col] == row || colLast[col] == row) {
+            colFirst[col] = firstBit(byCol, col * rows, rows);
+            colLast[col] = lastBit(byCol, col * rows, rows);
+        }
+    }
+
+    /**
+     * Terrain costs do not change which cells are blocked.
+     */
+    @Override
+    public void costChanged(GridMap map, int cellId, int oldCost, int newCost) {
+    }
+
+    /**
+     * @return position of the first set bit of the line, or length if none
+     */
+    private static int firstBit(long[] bits, int base, int length) {
+        for (int pos = 0; pos < length; pos += Long.SIZE) {
+            long word = wordAt(bits, base + pos);
+            if (word != 0) {
+                return Math.min(pos + Long.numberOfTrailingZeros(word), length);
+            }
+        }
+        return length;
+    }
+
+    /**
+     * @return position of the last set bit of the line, or -1 if none
+     */
+    private static int lastBit(long[] bits, int base, int length) {
+        for (int end = length; end > 0; end -= Long.SIZE) {
+            int start = Math.max(0, end - Long.SIZE);
+            long word = wordAt(bits, base + start);
+            if (end - start < Long.SIZE) {
+                word &= (1L << (end - start)) - 1;
+            }
+            if (word != 0) {
+                return start + Long.SIZE - 1 - Long.numberOfLeadingZeros(word);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the 64 bits starting at bit id, those past the end set
+     */
+    static long wordAt(long[] bits, int id) {
+        int index = id >>> 6;
+        int shift = id & 63;
+        long low = bits[index] >>> shift;
+        if (shift == 0) {
+            return low;
+        }
+        long high = index + 1 < bits.length ? bits[index + 1] : -1L;
+        return low | high << (Long.SIZE - shift);
+    }
+
+    long[] getRowBits() {
+        return byRow;
+    }
+
+    long[] getColumnBits() {
+        return byCol;
+    }
+
+    int[] getRowFirst() {
+        return rowFirst;
+    }
+
+    int[] getRowLast() {
+        return rowLast;
+    }
+
+    int[] getColumnFirst() {
+        return colFirst;
+    }
+
+    int[] getColumnLast() {
+        return colLast;
+    }
+}
@@ -0,0 +1,15 @@
+package com.ai.astar;
+
+/**
+ * An engine that can stop a search on a {@link SearchLimits} bound and hand
+ * back a partial result, and whose heuristic can be swapped, which is what
+ * {@link AnytimePathFinder} needs.
+ */
+public interface BoundedPathFinder {
+
+    SearchResult findPath(Node initialNode, Node finalNode, SearchLimits limits);
+
+    Heuristic getHeuristic();
+
+    void setHeuristic(Heuristic heuristic);
+}
@@ -0,0 +1,189 @@
+package com.ai.astar;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks of bounded and anytime search.
+ *
+ * On random maps, searches under SearchLimits.NONE must cost the same as
+ * plain searches. Expansion budgets must be met exactly, and partial paths
+ * must be valid walks from the start that end no farther from the goal than
+ * it. Every path the anytime search reports must be cheaper than the last and
+ * within its bound of the optimum, and the last one must be optimal. Then, on
+ * a large map with a walled-in goal, it reports how long the unbounded search
+ * takes against a deadline and a cancellation from another thread.
+ *
+ * Usage: BoundedSearchTest [size]
+ */
+public class BoundedSearchTest {
+
+    private static final long SEED = 20200926L;
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1024;
+        int errors = check(new Random(SEED), 200);
+        System.out.println(errors == 0 ? "OK: bounded and anytime results are consistent" : "FAILED: " + errors);
+
+        GridMap map = MapGenerator.generate(MapGenerator.Type.ROOMS, size, size, 0.2, SEED);
+        Node start = MapGenerator.randomOpenCell(map, new Random(SEED));
+        Node goal = walledInCell(map, new Random(SEED + 1));
+        map = map.readOnlyCopy();
+        for (BoundedPathFinder engine : new BoundedPathFinder[] {new AStar(map), new AStarOrthogonal(map)}) {
+            String name = engine.getClass().getSimpleName();
+            // the first pass warms up every branch of the bounded search; the second is reported
+            for (int pass = 0; pass < 2; pass++) {
+                boolean print = pass == 1;
+                long begin = System.nanoTime();
+                SearchResult full = engine.findPath(start, goal, SearchLimits.NONE);
+                report(print, name, "unbounded", full, System.nanoTime() - begin);
+
+                begin = System.nanoTime();
+                SearchResult timed = engine.findPath(start, goal, SearchLimits.timeout(Duration.ofMillis(5)));
+                report(print, name, "deadline 5ms", timed, System.nanoTime() - begin);
+                if (timed.getStatus() != SearchResult.Status.DEADLINE) {
+                    errors++;
+                }
+
+                CancellationToken token = new CancellationToken();
+                CompletableFuture.runAsync(token::cancel, CompletableFuture.delayedExecutor(2, TimeUnit.MILLISECONDS));
+                begin = System.nanoTime();
+                SearchResult cancelled = engine.findPath(start, goal, SearchLimits.NONE.withCancellation(token));
+                report(print, name, "cancel at 2ms", cancelled, System.nanoTime() - begin);
+                if (cancelled.getStatus() != SearchResult.Status.CANCELLED) {
+                    errors++;
+                }
+            }
+        }
+        if (errors > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void report(boolean print, String engine, String limits, SearchResult result, long nanos) {
+        if (!print) {
+            return;
+        }
+        System.out.printf(Locale.ROOT, "%-16s %-14s %-16s %10.2f ms %10d expanded %6d path%n", engine, limits,
+                result.getStatus(), nanos / 1e6, result.getExpanded(), result.getPath().size());
+    }
+
+    /**
+     * Picks an open cell and blocks its eight neighbours.
+     */
+    private static Node walledInCell(GridMap map, Random random) {
+        Node cell = MapGenerator.randomOpenCell(map, random);
+        for (int dr = -1; dr <= 1; dr++) {
+            for (int dc = -1; dc <= 1; dc++) {
+                int row = cell.getRow() + dr;
+                int col = cell.getCol() + dc;
+                if ((dr != 0 || dc != 0) && row >= 0 && row < map.getRows() && col >= 0 && col < map.getCols()) {
+                    map.setBlocked(map.cellId(row, col), true);
+                }
+            }
+        }
+        return cell;
+    }
+
+    private static int check(Random random, int queries) {
+        int errors = 0;
+        GridMap map = MapGenerator.random(64, 64, 0.3, SEED);
+        AStar aStar = new AStar(map);
+        AStarOrthogonal orthogonal = new AStarOrthogonal(map);
+        for (int q = 0; q < queries; q++) {
+            Node start = MapGenerator.randomOpenCell(map, random);
+            Node goal = MapGenerator.randomOpenCell(map, random);
+            int optimal = cost(aStar.findPath(start, goal));
+            int optimalOrthogonal = cost(orthogonal.findPath(start, goal).orElse(List.of()));
+            errors += check("AStar", map, aStar, start, goal, optimal, random, true);
+            errors += check("AStarOrthogonal", map, orthogonal, start, goal, optimalOrthogonal, random, false);
+        }
+        return errors;
+    }
+
+    private static int check(String name, GridMap map, BoundedPathFinder engine, Node start, Node goal,
+            int optimal, Random random, boolean diagonal) {
+        int errors = 0;
+        SearchResult unbounded = engine.findPath(start, goal, SearchLimits.NONE);
+        if (unbounded.getCost() != optimal || (optimal == -1) != (unbounded.getStatus() == SearchResult.Status.NO_PATH)) {
+            errors++;
+            System.out.println(name + " unbounded " + start + " -> " + goal + ": " + unbounded + ", expected " + optimal);
+        }
+
+        int budget = 1 + random.nextInt(Math.max(1, unbounded.getExpanded()));
+        SearchResult bounded = engine.findPath(start, goal, SearchLimits.expansions(budget));
+        if (bounded.isPartial()) {
+            if (bounded.getExpanded() != budget || bounded.getStatus() != SearchResult.Status.EXPANSION_LIMIT
+                    || !validWalk(map, bounded.getPath(), start, diagonal)
+                    || estimate(engine, map, last(bounded.getPath()), goal, diagonal)
+                            > estimate(engine, map, start, goal, diagonal)) {
+                errors++;
+                System.out.println(name + " budget " + budget + " " + start + " -> " + goal + ": " + bounded);
+            }
+        } else if (bounded.getCost() != optimal || bounded.getExpanded() > budget) {
+            errors++;
+            System.out.println(name + " budget " + budget + " " + start + " -> " + goal + ": " + bounded);
+        }
+
+        List<SearchResult> improvements = new ArrayList<SearchResult>();
+        SearchResult anytime = new AnytimePathFinder(engine).findPath(start, goal, SearchLimits.NONE,
+                improvements::add);
+        int previous = Integer.MAX_VALUE;
+        for (SearchResult improvement : improvements) {
+            if (improvement.getCost() >= previous || improvement.getCost() > improvement.getBound() * optimal) {
+                errors++;
+                System.out.println(name + " anytime " + start + " -> " + goal + ": " + improvement);
+            }
+            previous = improvement.getCost();
+        }
+        if (anytime.getCost() != optimal || (optimal != -1 && anytime.getBound() != 1.0)) {
+            errors++;
+            System.out.println(name + " anytime " + start + " -> " + goal + ": " + anytime + ", expected " + optimal);
+        }
+        return errors;
+    }
+
+    private static boolean validWalk(GridMap map, List<Node> path, Node start, boolean diagonal) {
+        if (path.isEmpty() || !path.get(0).equals(start)) {
+            return false;
+        }
+        for (int i = 1; i < path.size(); i++) {
+            Node a = path.get(i - 1);
+            Node b = path.get(i);
+            int dr = Math.abs(a.getRow() - b.getRow());
+            int dc = Math.abs(a.getCol() - b.getCol());
+            if (map.isBlocked(b.getRow(), b.getCol()) || dr > 1 || dc > 1 || dr + dc == 0
+                    || (!diagonal && dr + dc != 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the engine's heuristic estimate, the lowest over incoming directions for AStarOrthogonal
+     */
+    private static int estimate(BoundedPathFinder engine, GridMap map, Node node, Node goal, boolean diagonal) {
+        int id = map.cellId(node.getRow(), node.getCol());
+        int goalId = map.cellId(goal.getRow(), goal.getCol());
+        Heuristic heuristic = engine.getHeuristic();
+        if (diagonal) {
+            return heuristic.estimate(id, Heuristic.NO_DIRECTION, goalId);
+        }
+        return Math.min(heuristic.estimate(id, Heuristic.HORIZONTAL, goalId),
+                heuristic.estimate(id, Heuristic.VERTICAL, goalId));
+    }
+
+    private static Node last(List<Node> path) {
+        return path.get(path.size() - 1);
+    }
+
+    private static int cost(List<Node> path) {
+        return path.isEmpty() ? -1 : path.get(path.size() - 1).getG();
+    }
+}
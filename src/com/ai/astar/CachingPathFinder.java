@@ -0,0 +1,54 @@
+package com.ai.astar;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Puts a shared {@link PathCache} in front of a single-threaded engine. Any
+ * number of CachingPathFinders (e.g. one per thread, or the pooled engines of
+ * a {@link PathService}) can share one cache as long as they search the map
+ * the cache was built for.
+ */
+public class CachingPathFinder implements PathFinder {
+    private final PathFinder finder;
+    private final PathCache cache;
+    private int expanded;
+
+    public CachingPathFinder(PathFinder finder, PathCache cache) {
+        this.finder = finder;
+        this.cache = cache;
+    }
+
+    @Override
+    public Optional<List<Node>> findPath(Node initialNode, Node finalNode) {
+        GridMap map = cache.getMap();
+        int start = map.cellId(initialNode);
+        int goal = map.cellId(finalNode);
+        PathCache.Lookup cached = cache.get(start, goal);
+        if (cached != null) {
+            expanded = 0;
+            if (!cached.isFound()) {
+                return Optional.empty();
+            }
+            return Optional.of(cached.getPath().toNodes());
+        }
+        long version = map.getVersion();
+        Optional<List<Node>> path = finder.findPath(initialNode, finalNode);
+        expanded = finder.getExpandedCount();
+        cache.put(version, start, goal, path.isPresent() ? CompactPath.encode(path.get(), map,
+                cache.getHvCost(), cache.getDiagonalCost(), cache.getTurnPenalty()) : null);
+        return path;
+    }
+
+    /**
+     * @return nodes expanded by the last call, 0 if it was answered from the cache
+     */
+    @Override
+    public int getExpandedCount() {
+        return expanded;
+    }
+
+    public PathCache getCache() {
+        return cache;
+    }
+}
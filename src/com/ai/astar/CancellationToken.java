@@ -0,0 +1,18 @@
+package com.ai.astar;
+
+/**
+ * Cooperative cancellation flag for bounded searches. Any thread may cancel;
+ * a search polls the token every few dozen expansions and returns its partial
+ * result once it sees it set. A token can be shared by any number of searches.
+ */
+public final class CancellationToken {
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
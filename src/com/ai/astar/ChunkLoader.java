@@ -0,0 +1,29 @@
+package com.ai.astar;
+
+/**
+ * Supplies the cells of a {@link ChunkedMap} one chunk at a time, from a world
+ * generator, a save file or a server. Called on the searching thread the first
+ * time a search (or a read) touches a chunk that is not cached.
+ */
+@FunctionalInterface
+public interface ChunkLoader {
+
+    /**
+     * Fills a freshly created chunk, whose cells start open with the
+     * map's minCost.
+     *
+     * @param chunkRow row of the chunk, {@code row >> chunkShift} of its cells
+     * @param chunkCol column of the chunk
+     */
+    void load(int chunkRow, int chunkCol, ChunkedMap.Chunk chunk);
+
+    /**
+     * Called when a chunk is evicted from the cache. Chunks edited through the
+     * map are only kept while cached, so a loader that must keep the edits
+     * saves them here.
+     *
+     * @param modified true if the chunk was edited since it was loaded
+     */
+    default void unload(int chunkRow, int chunkCol, ChunkedMap.Chunk chunk, boolean modified) {
+    }
+}
@@ -0,0 +1,246 @@
+package com.ai.astar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A* over a {@link ChunkedMap}, with the {@link AStar} cost model (10 per
+ * straight move, 14 per diagonal, any diagonal into an open cell, times the
+ * terrain cost of the entered cell) and an octile heuristic scaled by the
+ * map's minCost, so it finds paths of the same cost as AStar does.
+ *
+ * Nothing is sized by the world. A search numbers the cells it reaches as it
+ * discovers them, through a {@link LongIntHashMap} from packed coordinates to
+ * state numbers, and keeps g, parent and closed flags in arrays indexed by
+ * that number; those arrays and the open list grow with the search and are
+ * reused by the next one. Memory is therefore proportional to the cells the
+ * search touches, and the map only loads the chunks its frontier reaches.
+ *
+ * A goal walled off from the start makes A* explore everything the start can
+ * reach, which in an unbounded world never ends: searches of open worlds
+ * should pass {@link SearchLimits}. Cells on the edges of the int range are
+ * never expanded. Not thread safe; use one instance per thread.
+ */
+public class ChunkedAStar implements PathFinder {
+    private static final int DEFAULT_HV_COST = 10;
+    private static final int DEFAULT_DIAGONAL_COST = 14;
+    private static final int ABSENT = -1;
+    // heuristic cap, keeps f = g + h clear of overflow across the whole int range of coordinates
+    private static final long MAX_ESTIMATE = Integer.MAX_VALUE >> 2;
+
+    private final ChunkedMap map;
+    private final int hvCost;
+    private final int diagonalCost;
+    private final int[] stepCost = new int[8];
+    private final LongIntHashMap index = new LongIntHashMap(1024);
+    private final IndexedHeap openList = new IndexedHeap(1024);
+    private long[] cells = new long[1024];
+    private int[] g = new int[1024];
+    private int[] parent = new int[1024];
+    private boolean[] closed = new boolean[1024];
+    private int states;
+    private int expanded;
+    // why the last bounded search stopped early (null if it ran out), and its expanded state closest to the goal
+    private SearchResult.Status stopReason;
+    private int closest;
+
+    public ChunkedAStar(ChunkedMap map, int hvCost, int diagonalCost) {
+        this.map = map;
+        this.hvCost = hvCost;
+        this.diagonalCost = diagonalCost;
+        for (int d = 0; d < 8; d++) {
+            stepCost[d] = (d & 1) == 0 ? hvCost : diagonalCost;
+        }
+    }
+
+    public ChunkedAStar(ChunkedMap map) {
+        this(map, DEFAULT_HV_COST, DEFAULT_DIAGONAL_COST);
+    }
+
+    /**
+     * @return the path from initialNode to finalNode, or empty if there is none
+     */
+    @Override
+    public Optional<List<Node>> findPath(Node initialNode, Node finalNode) {
+        int goal = search(initialNode, finalNode, null);
+        return goal == ABSENT ? Optional.empty() : Optional.of(getPath(goal));
+    }
+
+    /**
+     * Same search as {@link #findPath(Node, Node)}, stopped as soon as one of
+     * the limits is reached. A stopped search returns the path to the
+     * expanded cell with the lowest heuristic estimate to the goal.
+     */
+    public SearchResult findPath(Node initialNode, Node finalNode, SearchLimits limits) {
+        int goal = search(initialNode, finalNode, limits);
+        if (goal != ABSENT) {
+            return new SearchResult(SearchResult.Status.FOUND, getPath(goal), expanded, 1.0);
+        }
+        if (stopReason == null) {
+            return SearchResult.noPath(expanded);
+        }
+        return new SearchResult(stopReason, getPath(closest), expanded, 1.0);
+    }
+
+    /**
+     * @param limits bounds of the search, or null for none
+     * @return the goal state once it is expanded, or ABSENT if it cannot be
+     *         reached or a limit stopped the search first (then stopReason is set)
+     */
+    private int search(Node initialNode, Node finalNode, SearchLimits limits) {
+        index.clear();
+        openList.clear();
+        states = 0;
+        expanded = 0;
+        stopReason = null;
+        int goalRow = finalNode.getRow();
+        int goalCol = finalNode.getCol();
+        long goal = LongIntHashMap.pack(goalRow, goalCol);
+        // a blocked goal is never entered; without this check an open world would be searched forever
+        if (map.isBlocked(goalRow, goalCol)) {
+            return ABSENT;
+        }
+        int minCost = map.getMinCost();
+        int start = newState(LongIntHashMap.pack(initialNode.getRow(), initialNode.getCol()));
+        g[start] = 0;
+        parent[start] = ABSENT;
+        int startH = heuristic(initialNode.getRow(), initialNode.getCol(), goalRow, goalCol, minCost);
+        openList.add(start, startH, 0);
+        closest = start;
+        int closestH = startH;
+        while (!openList.isEmpty()) {
+            if (limits != null && (stopReason = limits.check(expanded)) != null) {
+                return ABSENT;
+            }
+            int current = openList.poll();
+            closed[current] = true;
+            expanded++;
+            long cell = cells[current];
+            if (cell == goal) {
+                return current;
+            }
+            int row = LongIntHashMap.row(cell);
+            int col = LongIntHashMap.col(cell);
+            if (limits != null) {
+                int h = heuristic(row, col, goalRow, goalCol, minCost);
+                if (h < closestH) {
+                    closest = current;
+                    closestH = h;
+                }
+            }
+            if (row == Integer.MIN_VALUE || row == Integer.MAX_VALUE || col == Integer.MIN_VALUE
+                    || col == Integer.MAX_VALUE) {
+                continue;
+            }
+            int currentG = g[current];
+            for (int d = 0; d < 8; d++) {
+                int r = row + CompactPath.ROW_STEP[d];
+                int c = col + CompactPath.COL_STEP[d];
+                int cost = map.enterCost(r, c);
+                if (cost == 0) {
+                    continue;
+                }
+                long key = LongIntHashMap.pack(r, c);
+                int next = index.get(key, ABSENT);
+                if (next != ABSENT && closed[next]) {
+                    continue;
+                }
+                int gCost = currentG + stepCost[d] * cost;
+                if (next == ABSENT) {
+                    next = newState(key);
+                } else if (gCost >= g[next]) {
+                    continue;
+                }
+                g[next] = gCost;
+                parent[next] = current;
+                int f = gCost + heuristic(r, c, goalRow, goalCol, minCost);
+                if (openList.contains(next)) {
+                    openList.decreaseKey(next, f, gCost);
+                } else {
+                    openList.add(next, f, gCost);
+                }
+            }
+        }
+        return ABSENT;
+    }
+
+    private int newState(long cell) {
+        int id = states++;
+        if (id == cells.length) {
+            int length = 2 * cells.length;
+            cells = Arrays.copyOf(cells, length);
+            g = Arrays.copyOf(g, length);
+            parent = Arrays.copyOf(parent, length);
+            closed = Arrays.copyOf(closed, length);
+            openList.ensureCapacity(length);
+        }
+        cells[id] = cell;
+        g[id] = Integer.MAX_VALUE;
+        closed[id] = false;
+        index.put(cell, id, ABSENT);
+        return id;
+    }
+
+    private int heuristic(int row, int col, int goalRow, int goalCol, int minCost) {
+        long dRow = Math.abs((long) goalRow - row);
+        long dCol = Math.abs((long) goalCol - col);
+        long diagonal = Math.min(dRow, dCol);
+        long straight = Math.max(dRow, dCol) - diagonal;
+        long estimate = (diagonal * Math.min(diagonalCost, 2 * hvCost) + straight * hvCost) * minCost;
+        return (int) Math.min(estimate, MAX_ESTIMATE);
+    }
+
+    private List<Node> getPath(int state) {
+        List<Node> path = new ArrayList<Node>();
+        Node child = null;
+        for (int id = state; id != ABSENT; id = parent[id]) {
+            Node node = new Node(LongIntHashMap.row(cells[id]), LongIntHashMap.col(cells[id]));
+            node.setG(g[id]);
+            if (child != null) {
+                child.setParent(node);
+            }
+            path.add(node);
+            child = node;
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    public ChunkedMap getMap() {
+        return map;
+    }
+
+    /**
+     * @return number of nodes expanded by the last search
+     */
+    @Override
+    public int getExpandedCount() {
+        return expanded;
+    }
+
+    /**
+     * @return number of distinct cells the last search reached (opened or closed)
+     */
+    public int getTouchedCount() {
+        return states;
+    }
+
+    /**
+     * @return approximate heap footprint of the search memory in bytes; it
+     *         grows to fit the largest search run so far
+     */
+    public long getSearchBytes() {
+        return 12L * index.capacity() + 17L * cells.length + 16L * openList.capacity();
+    }
+
+    public int getHvCost() {
+        return hvCost;
+    }
+
+    public int getDiagonalCost() {
+        return diagonalCost;
+    }
+}
@@ -0,0 +1,326 @@
+package com.ai.astar;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Unbounded grid of blocked cells and terrain costs, split into square chunks
+ * that are loaded on demand through a {@link ChunkLoader} and kept in a least
+ * recently used cache.
+ *
+ * Cells are addressed by (row, col) anywhere in the int range, negative
+ * coordinates included. A chunk holds a bitset of its blocked cells, like
+ * {@link GridMap}, and a cost layer once one of its cells costs more than the
+ * map's minimum.
+ * Only the chunks a search frontier reaches are ever loaded, so
+ * {@link ChunkedAStar} can search worlds far too large to hold in memory;
+ * chunks evicted while a search runs are simply loaded again.
+ *
+ * Reads of the chunk last used skip the cache lookup, which is what makes the
+ * neighbour reads of a search cheap. Not thread safe.
+ */
+public class ChunkedMap {
+    private final int chunkShift;
+    private final int chunkSize;
+    private final int chunkMask;
+    private final int minCost;
+    private final ChunkLoader loader;
+    private final LinkedHashMap<Long, Chunk> chunks;
+    // last chunk read, checked before the cache
+    private long lastKey;
+    private Chunk lastChunk;
+    private long version;
+    private long loads;
+    private long evictions;
+
+    /**
+     * @param chunkShift log2 of the chunk side, from 3 (8x8) to 8 (256x256); 4 or 5 suit most worlds
+     * @param maxChunks number of chunks kept in memory
+     * @param minCost lowest terrain cost the loader gives any cell, the factor the heuristic scales by
+     */
+    public ChunkedMap(int chunkShift, int maxChunks, int minCost, ChunkLoader loader) {
+        if (chunkShift < 3 || chunkShift > 8) {
+            throw new IllegalArgumentException("chunkShift must be between 3 and 8: " + chunkShift);
+        }
+        if (maxChunks < 1) {
+            throw new IllegalArgumentException("maxChunks must be at least 1");
+        }
+        if (minCost < 1 || minCost > GridMap.MAX_COST) {
+            throw new IllegalArgumentException("minCost must be between 1 and " + GridMap.MAX_COST);
+        }
+        this.chunkShift = chunkShift;
+        this.chunkSize = 1 << chunkShift;
+        this.chunkMask = chunkSize - 1;
+        this.minCost = minCost;
+        this.loader = loader;
+        this.chunks = new LinkedHashMap<Long, Chunk>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Chunk> eldest) {
+                if (size() <= maxChunks) {
+                    return false;
+                }
+                Chunk chunk = eldest.getValue();
+                if (chunk == lastChunk) {
+                    lastChunk = null;
+                }
+                evictions++;
+                loader.unload(chunk.chunkRow, chunk.chunkCol, chunk, chunk.modified);
+                return true;
+            }
+        };
+    }
+
+    public ChunkedMap(int chunkShift, int maxChunks, ChunkLoader loader) {
+        this(chunkShift, maxChunks, 1, loader);
+    }
+
+    /**
+     * Chunked view of an existing {@link GridMap}, with every cell
+     * outside it blocked; mostly for checking the chunked engine against the
+     * dense ones.
+     */
+    public static ChunkedMap of(GridMap map, int chunkShift, int maxChunks) {
+        return new ChunkedMap(chunkShift, maxChunks, map.getMinCost(), (chunkRow, chunkCol, chunk) -> {
+            int size = chunk.getSize();
+            for (int r = 0; r < size; r++) {
+                for (int c = 0; c < size; c++) {
+                    int row = (chunkRow << chunkShift) + r;
+                    int col = (chunkCol << chunkShift) + c;
+                    if (!map.isWalkable(row, col)) {
+                        chunk.setBlocked(r, c, true);
+                    } else if (map.getCost(row, col) != map.getMinCost()) {
+                        chunk.setCost(r, c, map.getCost(row, col));
+                    }
+                }
+            }
+        });
+    }
+
+    public boolean isBlocked(int row, int col) {
+        Chunk chunk = chunk(row, col);
+        return chunk.isBlocked(chunk.index(row & chunkMask, col & chunkMask));
+    }
+
+    /**
+     * @return terrain cost multiplier of the cell, minCost unless the loader set one
+     */
+    public int getCost(int row, int col) {
+        Chunk chunk = chunk(row, col);
+        return chunk.getCost(chunk.index(row & chunkMask, col & chunkMask));
+    }
+
+    /**
+     * @return the cost of entering the cell, or 0 if it is blocked; one chunk lookup for both
+     */
+    int enterCost(int row, int col) {
+        Chunk chunk = chunk(row, col);
+        int index = chunk.index(row & chunkMask, col & chunkMask);
+        return chunk.isBlocked(index) ? 0 : chunk.getCost(index);
+    }
+
+    public void setBlocked(int row, int col, boolean isBlock) {
+        Chunk chunk = chunk(row, col);
+        int index = chunk.index(row & chunkMask, col & chunkMask);
+        if (chunk.isBlocked(index) != isBlock) {
+            chunk.setBlocked(index, isBlock);
+            chunk.modified = true;
+            version++;
+        }
+    }
+
+    public void setCost(int row, int col, int cost) {
+        Chunk chunk = chunk(row, col);
+        int index = chunk.index(row & chunkMask, col & chunkMask);
+        if (chunk.getCost(index) != cost) {
+            chunk.setCost(index, cost);
+            chunk.modified = true;
+            version++;
+        }
+    }
+
+    /**
+     * @return true if the chunk of the cell is in memory; does not load it
+     */
+    public boolean isLoaded(int row, int col) {
+        return chunks.containsKey(LongIntHashMap.pack(row >> chunkShift, col >> chunkShift));
+    }
+
+    private Chunk chunk(int row, int col) {
+        long key = LongIntHashMap.pack(row >> chunkShift, col >> chunkShift);
+        if (key == lastKey && lastChunk != null) {
+            return lastChunk;
+        }
+        Chunk chunk = chunks.get(key);
+        if (chunk == null) {
+            chunk = new Chunk(row >> chunkShift, col >> chunkShift, chunkShift, minCost);
+            loader.load(chunk.chunkRow, chunk.chunkCol, chunk);
+            chunk.modified = false;
+            loads++;
+            chunks.put(key, chunk);
+        }
+        lastKey = key;
+        lastChunk = chunk;
+        return chunk;
+    }
+
+    /**
+     * Drops every cached chunk, unloading each one.
+     */
+    public void clear() {
+        for (Chunk chunk : chunks.values()) {
+            loader.unload(chunk.chunkRow, chunk.chunkCol, chunk, chunk.modified);
+        }
+        chunks.clear();
+        lastChunk = null;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getChunkShift() {
+        return chunkShift;
+    }
+
+    public int getMinCost() {
+        return minCost;
+    }
+
+    /**
+     * @return a counter that changes on every edit made through this map
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int getLoadedChunks() {
+        return chunks.size();
+    }
+
+    /**
+     * @return number of chunks loaded, reloads after an eviction included
+     */
+    public long getLoads() {
+        return loads;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return approximate heap footprint of the cached chunks in bytes
+     */
+    public long getSizeBytes() {
+        long bytes = 0;
+        for (Chunk chunk : chunks.values()) {
+            bytes += chunk.getSizeBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * One square chunk of cells: a bitset of blocked cells and, once a cell
+     * costs more than the map's minCost, a one-byte-per-cell cost layer. Cells are addressed
+     * by their row and column inside the chunk.
+     */
+    public static final class Chunk {
+        private final int chunkRow;
+        private final int chunkCol;
+        private final int shift;
+        private final int minCost;
+        private final long[] blocked;
+        private byte[] costs;
+        private boolean modified;
+
+        Chunk(int chunkRow, int chunkCol, int shift, int minCost) {
+            this.chunkRow = chunkRow;
+            this.chunkCol = chunkCol;
+            this.shift = shift;
+            this.minCost = minCost;
+            this.blocked = new long[Math.max(1, (1 << (2 * shift)) >>> 6)];
+        }
+
+        public int getSize() {
+            return 1 << shift;
+        }
+
+        public int getChunkRow() {
+            return chunkRow;
+        }
+
+        public int getChunkCol() {
+            return chunkCol;
+        }
+
+        public boolean isBlocked(int row, int col) {
+            return isBlocked(index(row, col));
+        }
+
+        public void setBlocked(int row, int col, boolean isBlock) {
+            setBlocked(index(row, col), isBlock);
+        }
+
+        public int getCost(int row, int col) {
+            return getCost(index(row, col));
+        }
+
+        /**
+         * @param cost multiplier of the cost of entering the cell, from the map's minCost to {@link GridMap#MAX_COST}
+         */
+        public void setCost(int row, int col, int cost) {
+            setCost(index(row, col), cost);
+        }
+
+        /**
+         * @return true if the chunk was changed since it was loaded
+         */
+        public boolean isModified() {
+            return modified;
+        }
+
+        int index(int row, int col) {
+            return row << shift | col;
+        }
+
+        boolean isBlocked(int index) {
+            return (blocked[index >>> 6] & (1L << index)) != 0;
+        }
+
+        void setBlocked(int index, boolean isBlock) {
+            if (isBlock) {
+                blocked[index >>> 6] |= 1L << index;
+            } else {
+                blocked[index >>> 6] &= ~(1L << index);
+            }
+            modified = true;
+        }
+
+        int getCost(int index) {
+            return costs == null ? minCost : costs[index] & 0xFF;
+        }
+
+        void setCost(int index, int cost) {
+            if (cost < minCost || cost > GridMap.MAX_COST) {
+                throw new IllegalArgumentException(
+                        "Cost must be between " + minCost + " and " + GridMap.MAX_COST + ": " + cost);
+            }
+            if (costs == null) {
+                if (cost == minCost) {
+                    return;
+                }
+                costs = new byte[1 << (2 * shift)];
+                Arrays.fill(costs, (byte) minCost);
+            }
+            costs[index] = (byte) cost;
+            modified = true;
+        }
+
+        long getSizeBytes() {
+            return 48 + 16 + 8L * blocked.length + (costs == null ? 0 : 16 + costs.length);
+        }
+    }
+}
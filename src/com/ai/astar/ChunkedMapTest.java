@@ -0,0 +1,199 @@
+package com.ai.astar;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Checks of {@link ChunkedMap}, {@link ChunkedAStar} and {@link LongIntHashMap},
+ * and a benchmark of searches in a procedurally generated unbounded world.
+ *
+ * On random terrain maps served chunk by chunk through a cache too small for
+ * them (so chunks are evicted and reloaded during a search), every ChunkedAStar
+ * path must be a valid path of the same cost as the AStar one; the hash map is
+ * checked against a HashMap with keys around the sign bits. Then it searches a
+ * world of noise obstacles and terrain at growing distances, negative
+ * coordinates included, and reports time, cells touched, chunks loaded and
+ * memory against what a dense map and search state of the same rectangle
+ * would take.
+ *
+ * Usage: ChunkedMapTest [max distance] [chunk shift]
+ */
+public class ChunkedMapTest {
+
+    private static final long SEED = 20200926L;
+
+    public static void main(String[] args) {
+        int maxDistance = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+        int chunkShift = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Random random = new Random(SEED);
+        int errors = checkHashMap(random) + checkAgainstAStar(random, 80);
+        System.out.println(errors == 0 ? "OK: chunked paths match AStar" : "FAILED: " + errors);
+
+        ChunkedMap world = new ChunkedMap(chunkShift, 4096, 1, ChunkedMapTest::generate);
+        ChunkedAStar engine = new ChunkedAStar(world);
+        for (int i = 0; i < 5; i++) {
+            world.clear();
+            engine.findPath(open(world, 0, 0), open(world, 500, -1000), SearchLimits.NONE);
+        }
+        System.out.printf(Locale.ROOT, "%dx%d chunks, noise world%n", world.getChunkSize(), world.getChunkSize());
+        System.out.printf(Locale.ROOT, "%-10s %10s %10s %10s %8s %10s %10s %12s%n", "distance", "ms", "expanded",
+                "touched", "chunks", "chunk MB", "search MB", "dense MB");
+        for (int distance = 1000; distance <= maxDistance; distance *= 2) {
+            world.clear();
+            Node start = open(world, -distance / 3, distance / 5);
+            Node goal = open(world, start.getRow() + distance / 2, start.getCol() - distance);
+            long loadsBefore = world.getLoads();
+            long begin = System.nanoTime();
+            SearchResult result = engine.findPath(start, goal, SearchLimits.NONE);
+            double ms = (System.nanoTime() - begin) / 1e6;
+            long rows = Math.abs(goal.getRow() - start.getRow()) + 1;
+            long cols = Math.abs(goal.getCol() - start.getCol()) + 1;
+            // bitset plus SearchState (g, parent, stamp) and IndexedHeap (heap, keys, ties, index) per cell
+            double denseMb = rows * cols * (1.0 / 8 + 28) / 1e6;
+            System.out.printf(Locale.ROOT, "%-10d %10.1f %10d %10d %8d %10.1f %10.1f %12.1f  %s%n", distance, ms,
+                    result.getExpanded(), engine.getTouchedCount(), world.getLoads() - loadsBefore,
+                    world.getSizeBytes() / 1e6, engine.getSearchBytes() / 1e6, denseMb, result.getStatus());
+        }
+
+        // a goal in a walled-off pocket: the search would never end without a budget
+        world.clear();
+        for (int row = 99; row <= 101; row++) {
+            for (int col = 99; col <= 101; col++) {
+                world.setBlocked(row, col, row != 100 || col != 100);
+            }
+        }
+        long begin = System.nanoTime();
+        SearchResult walled = engine.findPath(new Node(0, 0), new Node(100, 100), SearchLimits.expansions(200000));
+        System.out.printf(Locale.ROOT, "walled-off goal: %s after %d expansions, %.1f ms, %d chunks cached%n",
+                walled.getStatus(), walled.getExpanded(), (System.nanoTime() - begin) / 1e6,
+                world.getLoadedChunks());
+        if (errors > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Noise world: about one cell in four blocked, in small clumps, with a few
+     * mud (3) and swamp (6) patches; a pure function of the coordinates, so
+     * evicted chunks reload identically.
+     */
+    private static void generate(int chunkRow, int chunkCol, ChunkedMap.Chunk chunk) {
+        int size = chunk.getSize();
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                int row = chunkRow * size + r;
+                int col = chunkCol * size + c;
+                long cell = mix(LongIntHashMap.pack(row, col));
+                long clump = mix(LongIntHashMap.pack(row >> 2, col >> 2) ^ SEED);
+                if ((cell & 7) < 1 || ((clump & 3) == 0 && (cell & 3) != 0)) {
+                    chunk.setBlocked(r, c, true);
+                } else {
+                    long patch = mix(LongIntHashMap.pack(row >> 4, col >> 4) + SEED);
+                    chunk.setCost(r, c, (patch & 15) == 0 ? 6 : (patch & 15) == 1 ? 3 : 1);
+                }
+            }
+        }
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        return key ^ (key >>> 33);
+    }
+
+    private static Node open(ChunkedMap world, int row, int col) {
+        while (world.isBlocked(row, col)) {
+            col++;
+        }
+        return new Node(row, col);
+    }
+
+    private static int checkHashMap(Random random) {
+        LongIntHashMap map = new LongIntHashMap();
+        Map<Long, Integer> expected = new HashMap<Long, Integer>();
+        long[] special = {0, -1, Long.MIN_VALUE, Long.MAX_VALUE, LongIntHashMap.pack(-1, 0), LongIntHashMap.pack(0, -1)};
+        for (int round = 0; round < 4; round++) {
+            for (int i = 0; i < 50000; i++) {
+                long key = i < special.length ? special[i]
+                        : LongIntHashMap.pack(random.nextInt(400) - 200, random.nextInt(400) - 200);
+                int value = random.nextInt();
+                Integer previous = expected.put(key, value);
+                if (map.put(key, value, -7) != (previous == null ? -7 : previous)) {
+                    System.out.println("LongIntHashMap put " + key + " returned a wrong previous value");
+                    return 1;
+                }
+            }
+            for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+                if (map.get(entry.getKey(), -7) != entry.getValue()) {
+                    System.out.println("LongIntHashMap get " + entry.getKey() + " differs");
+                    return 1;
+                }
+            }
+            if (map.size() != expected.size() || map.containsKey(LongIntHashMap.pack(500, 500))) {
+                System.out.println("LongIntHashMap size or membership differs");
+                return 1;
+            }
+            map.clear();
+            expected.clear();
+            if (!map.isEmpty() || map.containsKey(0) || map.get(special[4], -7) != -7) {
+                System.out.println("LongIntHashMap clear left keys behind");
+                return 1;
+            }
+        }
+        return 0;
+    }
+
+    private static int checkAgainstAStar(Random random, int maps) {
+        int errors = 0;
+        for (int m = 0; m < maps; m++) {
+            GridMap map = MapGenerator.random(8 + random.nextInt(80), 8 + random.nextInt(80), 0.3, SEED + m);
+            if (m % 2 == 0) {
+                TerrainBenchmark.paintTerrain(map, random, 1 + random.nextInt(3));
+            }
+            ChunkedMap chunked = ChunkedMap.of(map, 3 + m % 3, 2);
+            ChunkedAStar engine = new ChunkedAStar(chunked);
+            AStar aStar = new AStar(map);
+            for (int q = 0; q < 20; q++) {
+                Node start = MapGenerator.randomOpenCell(map, random);
+                Node goal = q % 5 == 0 ? new Node(random.nextInt(map.getRows()), random.nextInt(map.getCols()))
+                        : MapGenerator.randomOpenCell(map, random);
+                List<Node> expected = aStar.findPath(start, goal);
+                Optional<List<Node>> path = engine.findPath(start, goal);
+                int expectedCost = expected.isEmpty() ? -1 : expected.get(expected.size() - 1).getG();
+                int cost = path.isPresent() ? path.get().get(path.get().size() - 1).getG() : -1;
+                if (cost != expectedCost || (path.isPresent() && !valid(map, path.get(), start, goal))) {
+                    System.out.println("Chunked " + start + " -> " + goal + ": " + cost + ", AStar " + expectedCost);
+                    errors++;
+                }
+            }
+        }
+        return errors;
+    }
+
+    private static boolean valid(GridMap map, List<Node> path, Node start, Node goal) {
+        if (!path.get(0).equals(start) || !path.get(path.size() - 1).equals(goal)) {
+            return false;
+        }
+        int g = 0;
+        for (int i = 1; i < path.size(); i++) {
+            Node from = path.get(i - 1);
+            Node to = path.get(i);
+            int dRow = Math.abs(to.getRow() - from.getRow());
+            int dCol = Math.abs(to.getCol() - from.getCol());
+            if (dRow > 1 || dCol > 1 || dRow + dCol == 0 || !map.isWalkable(to.getRow(), to.getCol())) {
+                return false;
+            }
+            g += (dRow + dCol == 2 ? 14 : 10) * map.getCost(to.getRow(), to.getCol());
+            if (to.getG() != g) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
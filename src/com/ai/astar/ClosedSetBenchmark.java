@@ -0,0 +1,355 @@
+package com.ai.astar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Check of node identity in the engines and benchmark of closed-set
+ * structures.
+ *
+ * First it checks the {@link Node} equals/hashCode contract (no
+ * ClassCastException on other types, equal cells hash alike, a HashSet finds
+ * a cell through any instance) and that every engine gives the same answer
+ * for caller-owned start and goal nodes as for fresh ones: nodes carrying
+ * stale costs, parents and directions, subclasses, nodes reused across
+ * queries and nodes taken from an earlier path, none of which may be
+ * modified. Nodes outside the map must be rejected instead of wrapping onto
+ * the next row.
+ *
+ * Then it replays the expansions of real AStar searches (close a cell, test
+ * its 8 neighbours) against the closed-set structures an engine could use: a
+ * HashSet of Nodes, the generation-stamped int[] of {@link SearchState}, a
+ * bitset cleared per query, and the {@link LongIntHashMap} of
+ * {@link ChunkedAStar} for sparse and unbounded maps.
+ *
+ * Usage: ClosedSetBenchmark [size] [queries]
+ */
+public class ClosedSetBenchmark {
+
+    private static final long SEED = 20200926L;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 512;
+        int queryCount = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+        int errors = checkNodeContract() + checkCallerNodes(new Random(SEED), 40);
+        System.out.println(errors == 0 ? "OK: caller nodes give the same paths and are left untouched"
+                : "FAILED: " + errors);
+
+        GridMap map = MapGenerator.generate(MapGenerator.Type.ROOMS, size, size, 0.2, SEED).readOnlyCopy();
+        int[][] traces = traces(map, MapGenerator.queries(map, queryCount, size / 4, 2 * size, SEED));
+        long expansions = 0;
+        for (int[] trace : traces) {
+            expansions += trace.length;
+        }
+        ClosedSet[] sets = {new NodeHashSet(map), new StampSet(map.size()), new BitSet(map.size()),
+                new LongHashSet()};
+        System.out.printf(Locale.ROOT, "%d queries, %d expansions on %dx%d rooms%n", traces.length, expansions,
+                size, size);
+        System.out.printf(Locale.ROOT, "%-22s %12s %16s%n", "closed set", "ns/expand", "alloc B/query");
+        for (ClosedSet set : sets) {
+            if (replay(set, map, traces) != replay(sets[0], map, traces)) {
+                System.out.println(set.name() + " disagrees with " + sets[0].name());
+                errors++;
+            }
+        }
+        for (ClosedSet set : sets) {
+            double best = Double.MAX_VALUE;
+            long allocated = 0;
+            for (int run = 0; run < 10; run++) {
+                long bytes = EngineBenchmark.allocatedBytes();
+                long begin = System.nanoTime();
+                replay(set, map, traces);
+                best = Math.min(best, (double) (System.nanoTime() - begin) / expansions);
+                allocated = EngineBenchmark.allocatedBytes() - bytes;
+            }
+            System.out.printf(Locale.ROOT, "%-22s %12.1f %16d%n", set.name(), best, allocated / traces.length);
+        }
+        if (errors > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static int checkNodeContract() {
+        int errors = 0;
+        Node node = new Node(3, 7);
+        Node same = new Node(3, 7);
+        same.setG(99);
+        same.setDirection(Orthogonal.VERTICAL);
+        Node subclass = new Node(3, 7) {
+        };
+        Object other = "Node [row=3, col=7]";
+        if (node.equals(null) || node.equals(other) || !node.equals(same) || !same.equals(node)
+                || !node.equals(subclass) || node.hashCode() != same.hashCode() || node.equals(new Node(7, 3))) {
+            System.out.println("Node equals/hashCode contract broken");
+            errors++;
+        }
+        Set<Node> set = new HashSet<Node>();
+        for (int row = 0; row < 64; row++) {
+            for (int col = 0; col < 64; col++) {
+                set.add(new Node(row, col));
+            }
+        }
+        for (int row = 0; row < 64; row++) {
+            for (int col = 0; col < 64; col++) {
+                if (!set.contains(new Node(row, col)) || set.contains(new Node(row + 64, col))) {
+                    System.out.println("HashSet<Node> lookup failed at " + row + "," + col);
+                    return errors + 1;
+                }
+            }
+        }
+        return errors;
+    }
+
+    private static int checkCallerNodes(Random random, int maps) {
+        List<String> names = Arrays.asList("AStar", "AStarOrthogonal", "JumpPointSearch", "BidirectionalAStar",
+                "ChunkedAStar");
+        List<Function<GridMap, PathFinder>> engines = new ArrayList<>();
+        engines.add(PathService::diagonalFinder);
+        engines.add(AStarOrthogonal::new);
+        engines.add(JumpPointSearch::new);
+        engines.add(BidirectionalAStar::new);
+        engines.add(map -> new ChunkedAStar(ChunkedMap.of(map, 4, 16)));
+        int errors = 0;
+        for (int m = 0; m < maps; m++) {
+            GridMap map = MapGenerator.random(8 + random.nextInt(40), 8 + random.nextInt(40), 0.25, SEED + m);
+            for (int e = 0; e < engines.size(); e++) {
+                PathFinder engine = engines.get(e).apply(map);
+                Node reusedStart = new Node(0, 0);
+                Node reusedGoal = new Node(0, 0);
+                List<Node> previous = null;
+                for (int q = 0; q < 10; q++) {
+                    Node start = MapGenerator.randomOpenCell(map, random);
+                    Node goal = MapGenerator.randomOpenCell(map, random);
+                    int expected = cost(engine.findPath(new Node(start.getRow(), start.getCol()),
+                            new Node(goal.getRow(), goal.getCol())));
+                    Node[][] variants = {
+                            {stale(start, random), stale(goal, random)},
+                            {new Node(start.getRow(), start.getCol()) {
+                            }, new Node(goal.getRow(), goal.getCol()) {
+                            }},
+                            {move(reusedStart, start), move(reusedGoal, goal)},
+                            {previous == null ? start : move(previous.get(previous.size() - 1), start), goal}};
+                    for (Node[] variant : variants) {
+                        String before = describe(variant[0]) + describe(variant[1]);
+                        Optional<List<Node>> path = engine.findPath(variant[0], variant[1]);
+                        if (cost(path) != expected || !before.equals(describe(variant[0]) + describe(variant[1]))) {
+                            System.out.println(names.get(e) + " " + start + " -> " + goal + ": " + cost(path)
+                                    + ", expected " + expected + (before.equals(describe(variant[0])
+                                            + describe(variant[1])) ? "" : ", caller nodes modified"));
+                            errors++;
+                        }
+                    }
+                    Optional<List<Node>> path = engine.findPath(start, goal);
+                    previous = path.isPresent() ? new ArrayList<Node>(path.get()) : previous;
+                }
+                if (!(engine instanceof ChunkedAStar) && !rejects(engine, new Node(0, map.getCols()))) {
+                    System.out.println(names.get(e) + " accepted a node outside the map");
+                    errors++;
+                }
+            }
+        }
+        return errors;
+    }
+
+    private static Node stale(Node node, Random random) {
+        Node stale = new Node(node.getRow(), node.getCol());
+        stale.setG(random.nextInt(1000));
+        stale.setH(random.nextInt(1000));
+        stale.setF(-1);
+        stale.setBlock(true);
+        stale.setDirection(random.nextBoolean() ? Orthogonal.HORIZONTAL : Orthogonal.VERTICAL);
+        stale.setParent(new Node(node.getRow() + 1, node.getCol()));
+        return stale;
+    }
+
+    private static Node move(Node node, Node to) {
+        node.setRow(to.getRow());
+        node.setCol(to.getCol());
+        return node;
+    }
+
+    private static String describe(Node node) {
+        return node + " g=" + node.getG() + " h=" + node.getH() + " f=" + node.getF() + " block=" + node.isBlock()
+                + " dir=" + node.getDirection() + " parent=" + node.getParent() + ";";
+    }
+
+    private static boolean rejects(PathFinder engine, Node outside) {
+        try {
+            engine.findPath(new Node(0, 0), outside);
+            return false;
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    private static int cost(Optional<List<Node>> path) {
+        return path.isPresent() ? path.get().get(path.get().size() - 1).getG() : -1;
+    }
+
+    /**
+     * @return the cells each query expanded, in order
+     */
+    private static int[][] traces(GridMap map, PathQuery[] queries) {
+        AStar aStar = new AStar(map);
+        int[][] traces = new int[queries.length][];
+        int[] trace = new int[map.size()];
+        int[] count = new int[1];
+        aStar.setListener(new SearchListener() {
+            @Override
+            public void onExpand(int row, int col) {
+                trace[count[0]++] = map.cellId(row, col);
+            }
+
+            @Override
+            public void onSearchEnd(SearchStats stats) {
+            }
+        });
+        for (int i = 0; i < queries.length; i++) {
+            count[0] = 0;
+            aStar.findPath(queries[i].getInitialNode(), queries[i].getFinalNode());
+            traces[i] = Arrays.copyOf(trace, count[0]);
+        }
+        return traces;
+    }
+
+    /**
+     * @return number of neighbour tests that found a closed cell
+     */
+    private static int replay(ClosedSet set, GridMap map, int[][] traces) {
+        int cols = map.getCols();
+        int found = 0;
+        for (int[] trace : traces) {
+            set.clear();
+            for (int cell : trace) {
+                set.close(cell);
+                int row = cell / cols;
+                int col = cell - row * cols;
+                for (int d = 0; d < 8; d++) {
+                    int r = row + CompactPath.ROW_STEP[d];
+                    int c = col + CompactPath.COL_STEP[d];
+                    if (map.inBounds(r, c) && set.isClosed(r * cols + c)) {
+                        found++;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private interface ClosedSet {
+        String name();
+
+        void clear();
+
+        void close(int cell);
+
+        boolean isClosed(int cell);
+    }
+
+    /**
+     * The original engines' closed set: a HashSet of the Nodes of a Node[][] grid.
+     */
+    private static final class NodeHashSet implements ClosedSet {
+        private final Node[] nodes;
+        private final Set<Node> closed = new HashSet<Node>();
+
+        NodeHashSet(GridMap map) {
+            nodes = new Node[map.size()];
+            for (int id = 0; id < nodes.length; id++) {
+                nodes[id] = new Node(map.row(id), map.col(id));
+            }
+        }
+
+        public String name() {
+            return "HashSet<Node>";
+        }
+
+        public void clear() {
+            closed.clear();
+        }
+
+        public void close(int cell) {
+            closed.add(nodes[cell]);
+        }
+
+        public boolean isClosed(int cell) {
+            return closed.contains(nodes[cell]);
+        }
+    }
+
+    private static final class StampSet implements ClosedSet {
+        private final int[] stamp;
+        private int generation;
+
+        StampSet(int size) {
+            stamp = new int[size];
+        }
+
+        public String name() {
+            return "generation int[]";
+        }
+
+        public void clear() {
+            generation++;
+        }
+
+        public void close(int cell) {
+            stamp[cell] = generation;
+        }
+
+        public boolean isClosed(int cell) {
+            return stamp[cell] == generation;
+        }
+    }
+
+    private static final class BitSet implements ClosedSet {
+        private final long[] words;
+
+        BitSet(int size) {
+            words = new long[(size + 63) >>> 6];
+        }
+
+        public String name() {
+            return "bitset";
+        }
+
+        public void clear() {
+            Arrays.fill(words, 0);
+        }
+
+        public void close(int cell) {
+            words[cell >>> 6] |= 1L << cell;
+        }
+
+        public boolean isClosed(int cell) {
+            return (words[cell >>> 6] & (1L << cell)) != 0;
+        }
+    }
+
+    private static final class LongHashSet implements ClosedSet {
+        private final LongIntHashMap closed = new LongIntHashMap();
+
+        public String name() {
+            return "LongIntHashMap";
+        }
+
+        public void clear() {
+            closed.clear();
+        }
+
+        public void close(int cell) {
+            closed.put(cell, 1, 0);
+        }
+
+        public boolean isClosed(int cell) {
+            return closed.containsKey(cell);
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.ai.astar;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * A path stored as its start cell plus direction run-lengths instead of one
+ * Node per cell.
+ *
+ * Each run is one byte: the move direction (0..7, clockwise from north) in the
+ * top 3 bits and the run length minus one in the low 5 bits, so a straight
+ * corridor of up to 32 cells costs a single byte. A typical path takes a few
+ * dozen bytes, against roughly 50 bytes per cell for a List of Nodes, and
+ * holds no references to search data.
+ *
+ * The path remembers the cost model it was found with, including the map's
+ * terrain layer (shared, not copied), so {@link #toNodes()} can rebuild the
+ * Node list with G for code that expects one. Cells can be walked without
+ * allocating through a reusable {@link Cursor}, and {@link #getWaypoints()}
+ * keeps only the cells where the direction changes.
+ */
+public final class CompactPath {
+    static final int[] ROW_STEP = {-1, -1, 0, 1, 1, 1, 0, -1};
+    static final int[] COL_STEP = {0, 1, 1, 1, 0, -1, -1, -1};
+    private static final int MAX_RUN = 32;
+
+    private final int cols;
+    private final int startCell;
+    private final int length;
+    private final int cost;
+    private final int hvCost;
+    private final int diagonalCost;
+    private final int turnPenalty;
+    private final ByteBuffer terrain;
+    private final byte[] runs;
+
+    private CompactPath(int cols, int startCell, int length, int cost, int hvCost, int diagonalCost, int turnPenalty,
+            ByteBuffer terrain, byte[] runs) {
+        this.cols = cols;
+        this.startCell = startCell;
+        this.length = length;
+        this.cost = cost;
+        this.hvCost = hvCost;
+        this.diagonalCost = diagonalCost;
+        this.turnPenalty = turnPenalty;
+        this.terrain = terrain;
+        this.runs = runs;
+    }
+
+    /**
+     * @param path consecutive cells, each adjacent (8-connected) to the previous one
+     * @param map the map the path was found on
+     * @param turnPenalty extra cost of changing axis (0 for the AStar model)
+     */
+    public static CompactPath encode(List<Node> path, GridMap map, int hvCost, int diagonalCost, int turnPenalty) {
+        if (path.isEmpty()) {
+            throw new IllegalArgumentException("Empty path");
+        }
+        int cols = map.getCols();
+        int[] cells = new int[path.size()];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = path.get(i).getRow() * cols + path.get(i).getCol();
+        }
+        return fromCells(cells, cells.length, map, path.get(path.size() - 1).getG(), hvCost, diagonalCost,
+                turnPenalty);
+    }
+
+    /**
+     * Builds the path straight from an engine's parent chain, without creating
+     * Nodes.
+     *
+     * @param stateShift 0 if state ids are cell ids, 1 for (cell, direction) states
+     */
+    static CompactPath fromParents(SearchState state, int goalState, int stateShift, GridMap map, int hvCost,
+            int diagonalCost, int turnPenalty) {
+        int count = 0;
+        for (int id = goalState; id != -1; id = state.getParent(id)) {
+            count++;
+        }
+        int[] cells = new int[count];
+        int i = count;
+        for (int id = goalState; id != -1; id = state.getParent(id)) {
+            cells[--i] = id >>> stateShift;
+        }
+        return fromCells(cells, count, map, state.getG(goalState), hvCost, diagonalCost, turnPenalty);
+    }
+
+    private static CompactPath fromCells(int[] cells, int count, GridMap map, int cost, int hvCost, int diagonalCost,
+            int turnPenalty) {
+        int cols = map.getCols();
+        byte[] runs = new byte[Math.max(1, count - 1)];
+        int runCount = 0;
+        int direction = -1;
+        int runLength = 0;
+        for (int i = 1; i < count; i++) {
+            int next = direction(cells[i - 1], cells[i], cols);
+            if (next == direction && runLength < MAX_RUN) {
+                runLength++;
+                continue;
+            }
+            if (direction != -1) {
+                runs[runCount++] = (byte) (direction << 5 | (runLength - 1));
+            }
+            direction = next;
+            runLength = 1;
+        }
+        if (direction != -1) {
+            runs[runCount++] = (byte) (direction << 5 | (runLength - 1));
+        }
+        return new CompactPath(cols, cells[0], count, cost, hvCost, diagonalCost, turnPenalty, map.getCostLayer(),
+                Arrays.copyOf(runs, runCount));
+    }
+
+    private static int direction(int from, int to, int cols) {
+        int dr = to / cols - from / cols;
+        int dc = to % cols - from % cols;
+        for (int d = 0; d < 8; d++) {
+            if (ROW_STEP[d] == dr && COL_STEP[d] == dc) {
+                return d;
+            }
+        }
+        throw new IllegalArgumentException("Path cells are not adjacent");
+    }
+
+    private static int direction(byte run) {
+        return (run >> 5) & 7;
+    }
+
+    private static int runLength(byte run) {
+        return (run & 31) + 1;
+    }
+
+    /**
+     * @return true if any cell of the path, including both ends, is the given cell
+     */
+    public boolean passesThrough(int cellId) {
+        int cell = startCell;
+        if (cell == cellId) {
+            return true;
+        }
+        for (byte run : runs) {
+            int direction = direction(run);
+            int step = ROW_STEP[direction] * cols + COL_STEP[direction];
+            for (int n = runLength(run); n > 0; n--) {
+                cell += step;
+                if (cell == cellId) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Calls the action with every cell id of the path, in order.
+     */
+    public void forEachCell(IntConsumer action) {
+        int cell = startCell;
+        action.accept(cell);
+        for (byte run : runs) {
+            int direction = direction(run);
+            int step = ROW_STEP[direction] * cols + COL_STEP[direction];
+            for (int n = runLength(run); n > 0; n--) {
+                cell += step;
+                action.accept(cell);
+            }
+        }
+    }
+
+    public int[] toCellArray() {
+        int[] cells = new int[length];
+        int i = 0;
+        int cell = startCell;
+        cells[i++] = cell;
+        for (byte run : runs) {
+            int direction = direction(run);
+            int step = ROW_STEP[direction] * cols + COL_STEP[direction];
+            for (int n = runLength(run); n > 0; n--) {
+                cell += step;
+                cells[i++] = cell;
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * @return the start, every cell where the direction changes, and the goal
+     */
+    public int[] getWaypoints() {
+        int[] waypoints = new int[runs.length + 1];
+        int count = 0;
+        int cell = startCell;
+        waypoints[count++] = cell;
+        for (int i = 0; i < runs.length; i++) {
+            int direction = direction(runs[i]);
+            cell += runLength(runs[i]) * (ROW_STEP[direction] * cols + COL_STEP[direction]);
+            // runs longer than MAX_RUN are split in several bytes of the same direction
+            if (i + 1 == runs.length || direction(runs[i + 1]) != direction) {
+                waypoints[count++] = cell;
+            }
+        }
+        return Arrays.copyOf(waypoints, count);
+    }
+
+    /**
+     * Rebuilds the Node list, recomputing each node's G with the path's cost
+     * model. With a turn penalty (the {@link AStarOrthogonal} model) straight
+     * moves also get their {@link Orthogonal} direction, as that engine sets it.
+     * Every node's parent is the previous node of the path.
+     */
+    public List<Node> toNodes() {
+        List<Node> path = new ArrayList<Node>(length);
+        int row = startCell / cols;
+        int col = startCell - row * cols;
+        Node node = new Node(row, col);
+        path.add(node);
+        int g = 0;
+        int previousAxis = -1;
+        for (byte run : runs) {
+            int direction = direction(run);
+            int axis = ROW_STEP[direction] == 0 ? 0 : COL_STEP[direction] == 0 ? 1 : 2;
+            for (int n = runLength(run); n > 0; n--) {
+                row += ROW_STEP[direction];
+                col += COL_STEP[direction];
+                int stepCost = axis == 2 ? diagonalCost : hvCost;
+                g += terrain == null ? stepCost : stepCost * (terrain.get(row * cols + col) & 0xFF);
+                if (previousAxis != -1 && previousAxis != axis) {
+                    g += turnPenalty;
+                }
+                previousAxis = axis;
+                Node next = new Node(row, col);
+                next.setG(g);
+                next.setParent(node);
+                if (turnPenalty > 0 && axis != 2) {
+                    next.setDirection(axis == 0 ? Orthogonal.HORIZONTAL : Orthogonal.VERTICAL);
+                }
+                path.add(next);
+                node = next;
+            }
+        }
+        return path;
+    }
+
+    public Cursor cursor() {
+        return new Cursor().reset(this);
+    }
+
+    public int getStartCell() {
+        return startCell;
+    }
+
+    public int getGoalCell() {
+        int cell = startCell;
+        for (byte run : runs) {
+            int direction = direction(run);
+            cell += runLength(run) * (ROW_STEP[direction] * cols + COL_STEP[direction]);
+        }
+        return cell;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * @return number of cells on the path, including both ends
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return cost of the path, as reported by the engine that found it
+     */
+    public int getCost() {
+        return cost;
+    }
+
+    public int getRunCount() {
+        return runs.length;
+    }
+
+    /**
+     * @return approximate heap footprint of this path in bytes
+     */
+    public int getEncodedBytes() {
+        return 48 + 16 + runs.length;
+    }
+
+    /**
+     * Walks the cells of a path without allocating. A cursor can be reset and
+     * reused for any number of paths:
+     * <pre>
+     * for (cursor.reset(path); cursor.next();) {
+     *     use(cursor.getRow(), cursor.getCol());
+     * }
+     * </pre>
+     */
+    public static final class Cursor {
+        private CompactPath path;
+        private int run;
+        private int remaining;
+        private int step;
+        private int cell;
+
+        public Cursor reset(CompactPath path) {
+            this.path = path;
+            this.run = -1;
+            this.remaining = 0;
+            this.cell = -1;
+            return this;
+        }
+
+        /**
+         * Moves to the next cell, the start on the first call.
+         *
+         * @return false once the path is exhausted
+         */
+        public boolean next() {
+            if (cell == -1) {
+                cell = path.startCell;
+                return true;
+            }
+            if (remaining == 0) {
+                if (++run >= path.runs.length) {
+                    return false;
+                }
+                int direction = direction(path.runs[run]);
+                step = ROW_STEP[direction] * path.cols + COL_STEP[direction];
+                remaining = runLength(path.runs[run]);
+            }
+            remaining--;
+            cell += step;
+            return true;
+        }
+
+        public int getCell() {
+            return cell;
+        }
+
+        public int getRow() {
+            return cell / path.cols;
+        }
+
+        public int getCol() {
+            return cell % path.cols;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.ai.astar;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Compares {@link AStarOrthogonal#findPath} (List of Nodes) with
+ * {@link AStarOrthogonal#findCompactPath} on the same queries: checks that
+ * both give the same cells and cost, that the cursor, cell array, Node adapter
+ * and waypoints agree, then reports the bytes allocated per query and the
+ * size of the kept result.
+ *
+ * Usage: CompactPathBenchmark [size] [queries] [seconds per case]
+ */
+public class CompactPathBenchmark {
+
+    private static final long SEED = 20200926L;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 512;
+        int queryCount = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        double seconds = args.length > 2 ? Double.parseDouble(args[2]) : 2.0;
+        GridMap map = MapGenerator.generate(MapGenerator.Type.ROOMS, size, size, 0.2, SEED).readOnlyCopy();
+        PathQuery[] queries = MapGenerator.queries(map, queryCount, size / 4, 2 * size, SEED);
+        AStarOrthogonal aStar = new AStarOrthogonal(map);
+
+        int errors = 0;
+        long cells = 0;
+        long runs = 0;
+        long waypoints = 0;
+        long compactBytes = 0;
+        CompactPath.Cursor cursor = new CompactPath.Cursor();
+        for (PathQuery query : queries) {
+            Optional<List<Node>> list = aStar.findPath(query.getInitialNode(), query.getFinalNode());
+            Optional<CompactPath> compact = aStar.findCompactPath(query.getInitialNode(), query.getFinalNode());
+            if (list.isPresent() != compact.isPresent()) {
+                errors++;
+                continue;
+            }
+            if (!list.isPresent()) {
+                continue;
+            }
+            String error = compare(list.get(), compact.get(), cursor, size);
+            if (error != null) {
+                errors++;
+                System.out.println("MISMATCH " + query + ": " + error);
+            }
+            cells += list.get().size();
+            runs += compact.get().getRunCount();
+            waypoints += compact.get().getWaypoints().length;
+            compactBytes += compact.get().getEncodedBytes();
+        }
+
+        long listBytes = measureAllocation(aStar, queries, seconds, false);
+        long compactAllocation = measureAllocation(aStar, queries, seconds, true);
+        System.out.printf(Locale.ROOT, "avg path: %.0f cells, %.0f runs, %.0f waypoints, %.0f bytes kept as CompactPath%n",
+                (double) cells / queryCount, (double) runs / queryCount, (double) waypoints / queryCount,
+                (double) compactBytes / queryCount);
+        System.out.printf(Locale.ROOT, "allocated per query: List<Node> %d B, CompactPath %d B%n", listBytes,
+                compactAllocation);
+        System.out.println(errors == 0 ? "OK: compact paths match" : "FAILED: " + errors + " mismatches");
+        if (errors > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static String compare(List<Node> nodes, CompactPath path, CompactPath.Cursor cursor, int cols) {
+        if (path.getCost() != nodes.get(nodes.size() - 1).getG() || path.getLength() != nodes.size()) {
+            return "cost or length differs";
+        }
+        int[] cells = path.toCellArray();
+        List<Node> adapted = path.toNodes();
+        int i = 0;
+        for (cursor.reset(path); cursor.next(); i++) {
+            Node node = nodes.get(i);
+            if (cursor.getRow() != node.getRow() || cursor.getCol() != node.getCol()
+                    || cells[i] != node.getRow() * cols + node.getCol()) {
+                return "cell " + i + " differs";
+            }
+            if (!adapted.get(i).equals(node) || adapted.get(i).getG() != node.getG()
+                    || adapted.get(i).getDirection() != node.getDirection()) {
+                return "adapted node " + i + " differs";
+            }
+        }
+        if (i != nodes.size()) {
+            return "cursor stopped after " + i + " cells";
+        }
+        int[] waypoints = path.getWaypoints();
+        int turns = 0;
+        for (int n = 2; n < nodes.size(); n++) {
+            if (nodes.get(n).getDirection() != nodes.get(n - 1).getDirection()) {
+                turns++;
+            }
+        }
+        if (waypoints.length != turns + 2 || waypoints[0] != cells[0] || waypoints[waypoints.length - 1] != cells[cells.length - 1]) {
+            return "waypoints " + waypoints.length + " for " + turns + " turns";
+        }
+        return null;
+    }
+
+    private static long measureAllocation(AStarOrthogonal aStar, PathQuery[] queries, double seconds, boolean compact) {
+        long budget = (long) (seconds * 1e9);
+        long before = EngineBenchmark.allocatedBytes();
+        long start = System.nanoTime();
+        long ops = 0;
+        while (System.nanoTime() - start < budget) {
+            PathQuery query = queries[(int) (ops % queries.length)];
+            if (compact) {
+                aStar.findCompactPath(query.getInitialNode(), query.getFinalNode());
+            } else {
+                aStar.findPath(query.getInitialNode(), query.getFinalNode());
+            }
+            ops++;
+        }
+        return (EngineBenchmark.allocatedBytes() - before) / ops;
+    }
+}
@@ -0,0 +1,386 @@
+package com.ai.astar;
+
+import java.util.Arrays;
+
+/**
+ * Connected components of the open cells of a {@link GridMap}, so a query
+ * between two components can be answered "no path" in O(1) instead of
+ * flooding the start's whole component.
+ *
+ * Components follow the move model of the engine: 8-connected for
+ * {@link AStar} (any diagonal into an open cell) or 4-connected for
+ * {@link AStarOrthogonal}. They are labelled with a flood fill when the index
+ * is built; after that the index listens to the map's edits:
+ * <ul>
+ * <li>Unblocking a cell joins it and its open neighbours' components with a
+ * union-find over component ids, in near O(1).</li>
+ * <li>Blocking a cell only removes it when its open neighbours stay connected
+ * to each other, through the ring of cells around it or a search of at most
+ * {@value #LOCAL_SEARCH} cells, which is the usual case. Otherwise its component
+ * may have split and is marked dirty; the next query that touches a dirty
+ * component floods just the piece it needs from the query cell and gives it
+ * a fresh id, so edits never force a full relabel.</li>
+ * </ul>
+ * Terrain costs do not affect connectivity and are ignored. Thread safe.
+ */
+public class ComponentIndex implements MapEditListener {
+    private static final int BLOCKED = -1;
+    // ring of the 8 neighbours, clockwise from north
+    private static final int[] RING_ROW = {-1, -1, 0, 1, 1, 1, 0, -1};
+    private static final int[] RING_COL = {0, 1, 1, 1, 0, -1, -1, -1};
+    // cells visited by the local search that rules out a split before marking a component dirty
+    private static final int LOCAL_SEARCH = 1024;
+
+    private final GridMap map;
+    private final int rows;
+    private final int cols;
+    private final boolean diagonal;
+    // component id per cell (resolved through parent), BLOCKED for blocked cells
+    private final int[] label;
+    private final int[] queue;
+    private final int[] visited;
+    private final int[] ringCells = new int[8];
+    private int visitGeneration;
+    // union-find over component ids, and whether a component may have split
+    private int[] parent;
+    private boolean[] dirty;
+    private int componentCount;
+    private int relabelled;
+
+    /**
+     * @param diagonal true for 8-connected components (AStar), false for 4-connected (AStarOrthogonal)
+     */
+    public ComponentIndex(GridMap map, boolean diagonal) {
+        this.map = map;
+        this.rows = map.getRows();
+        this.cols = map.getCols();
+        this.diagonal = diagonal;
+        this.label = new int[map.size()];
+        this.queue = new int[map.size()];
+        this.visited = new int[map.size()];
+        build();
+        if (!map.isReadOnly()) {
+            map.addEditListener(this);
+        }
+    }
+
+    /**
+     * Index for {@link AStar} and {@link JumpPointSearch}.
+     */
+    public static ComponentIndex diagonal(GridMap map) {
+        return new ComponentIndex(map, true);
+    }
+
+    /**
+     * Index for {@link AStarOrthogonal}.
+     */
+    public static ComponentIndex orthogonal(GridMap map) {
+        return new ComponentIndex(map, false);
+    }
+
+    private void build() {
+        Arrays.fill(label, BLOCKED);
+        parent = new int[64];
+        dirty = new boolean[64];
+        componentCount = 0;
+        for (int id = 0; id < label.length; id++) {
+            if (label[id] == BLOCKED && !map.isBlocked(id)) {
+                flood(id, BLOCKED, newComponent());
+            }
+        }
+    }
+
+    /**
+     * @return false if the engines cannot find a path from start to goal: the
+     *         goal is blocked, or the start (or, if the start is blocked, every
+     *         open neighbour it could step to) lies in another component
+     */
+    public synchronized boolean isReachable(int start, int goal) {
+        if (start == goal) {
+            return true;
+        }
+        if (map.isBlocked(goal)) {
+            return false;
+        }
+        int goalComponent = component(goal);
+        if (!map.isBlocked(start)) {
+            return component(start) == goalComponent;
+        }
+        // the engines let a blocked start step onto any open neighbour
+        int row = start / cols;
+        int col = start - row * cols;
+        for (int d = 0; d < 8; d++) {
+            if ((d & 1) == 1 && !diagonal) {
+                continue;
+            }
+            int r = row + RING_ROW[d];
+            int c = col + RING_COL[d];
+            if (r >= 0 && r < rows && c >= 0 && c < cols && !map.isBlocked(r * cols + c)
+                    && component(r * cols + c) == goalComponent) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isReachable(int startRow, int startCol, int goalRow, int goalCol) {
+        return isReachable(startRow * cols + startCol, goalRow * cols + goalCol);
+    }
+
+    /**
+     * @return id of the open cell's component, equal for two cells exactly when
+     *         one can reach the other; valid until the next edit
+     */
+    public synchronized int getComponent(int cellId) {
+        if (map.isBlocked(cellId)) {
+            throw new IllegalArgumentException("Cell " + cellId + " is blocked");
+        }
+        return component(cellId);
+    }
+
+    /**
+     * Resolves the cell's component, first splitting off the cell's piece if
+     * its component is dirty.
+     */
+    private int component(int cellId) {
+        int root = find(label[cellId]);
+        if (!dirty[root]) {
+            return root;
+        }
+        if (componentCount > label.length + 64) {
+            // ids are never reused between rebuilds; this keeps the arrays bounded
+            build();
+            return find(label[cellId]);
+        }
+        int piece = newComponent();
+        relabelled += flood(cellId, root, piece);
+        return piece;
+    }
+
+    /**
+     * Labels every open cell connected to the seed whose current component is
+     * {@code from} (BLOCKED for unlabelled cells).
+     *
+     * @return number of cells labelled
+     */
+    private int flood(int seed, int from, int to) {
+        int head = 0;
+        int tail = 0;
+        label[seed] = to;
+        queue[tail++] = seed;
+        while (head < tail) {
+            int cell = queue[head++];
+            int row = cell / cols;
+            int col = cell - row * cols;
+            for (int d = 0; d < 8; d++) {
+                if ((d & 1) == 1 && !diagonal) {
+                    continue;
+                }
+                int r = row + RING_ROW[d];
+                int c = col + RING_COL[d];
+                if (r < 0 || r >= rows || c < 0 || c >= cols) {
+                    continue;
+                }
+                int next = r * cols + c;
+                if (map.isBlocked(next) || label[next] == to) {
+                    continue;
+                }
+                int current = label[next];
+                if (from == BLOCKED ? current == BLOCKED : current != BLOCKED && find(current) == from) {
+                    label[next] = to;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return tail;
+    }
+
+    @Override
+    public synchronized void cellChanged(GridMap map, int cellId, boolean isBlock) {
+        if (isBlock) {
+            int root = find(label[cellId]);
+            label[cellId] = BLOCKED;
+            if (mayDisconnect(cellId)) {
+                dirty[root] = true;
+            }
+            return;
+        }
+        int row = cellId / cols;
+        int col = cellId - row * cols;
+        int root = -1;
+        for (int d = 0; d < 8; d++) {
+            if ((d & 1) == 1 && !diagonal) {
+                continue;
+            }
+            int r = row + RING_ROW[d];
+            int c = col + RING_COL[d];
+            if (r < 0 || r >= rows || c < 0 || c >= cols || map.isBlocked(r * cols + c)) {
+                continue;
+            }
+            int neighbour = find(label[r * cols + c]);
+            root = root == -1 ? neighbour : union(root, neighbour);
+        }
+        label[cellId] = root == -1 ? newComponent() : root;
+    }
+
+    @Override
+    public void costChanged(GridMap map, int cellId, int oldCost, int newCost) {
+    }
+
+    /**
+     * Local test for a split: blocking the cell cannot disconnect anything if
+     * its open neighbours are still connected to each other through the ring
+     * of cells around it, or failing that through a small search around it.
+     */
+    private boolean mayDisconnect(int cellId) {
+        int groups = ringGroups(cellId);
+        return groups > 1 && !reconnect(groups);
+    }
+
+    /**
+     * Groups the open neighbours of the cell that are connected through the
+     * ring around it, and stores one cell of each group in ringCells.
+     *
+     * @return number of groups
+     */
+    private int ringGroups(int cellId) {
+        int row = cellId / cols;
+        int col = cellId - row * cols;
+        boolean[] open = new boolean[8];
+        int[] group = new int[8];
+        for (int d = 0; d < 8; d++) {
+            int r = row + RING_ROW[d];
+            int c = col + RING_COL[d];
+            open[d] = r >= 0 && r < rows && c >= 0 && c < cols && !map.isBlocked(r * cols + c);
+            group[d] = d;
+        }
+        // consecutive ring cells share an edge; in the 8-connected model two
+        // edge neighbours around a corner also touch diagonally
+        for (int d = 0; d < 8; d++) {
+            if (open[d] && open[(d + 1) & 7]) {
+                group[ringRoot(group, d)] = ringRoot(group, (d + 1) & 7);
+            }
+            if (diagonal && (d & 1) == 0 && open[d] && open[(d + 2) & 7]) {
+                group[ringRoot(group, d)] = ringRoot(group, (d + 2) & 7);
+            }
+        }
+        int count = 0;
+        int seen = 0;
+        for (int d = 0; d < 8; d++) {
+            // corners are only neighbours in the 8-connected model
+            if (open[d] && (diagonal || (d & 1) == 0)) {
+                int root = ringRoot(group, d);
+                if ((seen & (1 << root)) == 0) {
+                    seen |= 1 << root;
+                    ringCells[count++] = (row + RING_ROW[d]) * cols + col + RING_COL[d];
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Breadth-first search from the first ring group, visiting at most
+     * {@link #LOCAL_SEARCH} cells.
+     *
+     * @return true if it reached every other group, i.e. the edit split nothing
+     */
+    private boolean reconnect(int groups) {
+        if (++visitGeneration == Integer.MAX_VALUE) {
+            Arrays.fill(visited, 0);
+            visitGeneration = 1;
+        }
+        int missing = groups - 1;
+        int head = 0;
+        int tail = 0;
+        visited[ringCells[0]] = visitGeneration;
+        queue[tail++] = ringCells[0];
+        while (head < tail && tail < LOCAL_SEARCH) {
+            int cell = queue[head++];
+            int row = cell / cols;
+            int col = cell - row * cols;
+            for (int d = 0; d < 8; d++) {
+                if ((d & 1) == 1 && !diagonal) {
+                    continue;
+                }
+                int r = row + RING_ROW[d];
+                int c = col + RING_COL[d];
+                if (r < 0 || r >= rows || c < 0 || c >= cols) {
+                    continue;
+                }
+                int next = r * cols + c;
+                if (visited[next] == visitGeneration || map.isBlocked(next)) {
+                    continue;
+                }
+                visited[next] = visitGeneration;
+                queue[tail++] = next;
+                for (int g = 1; g < groups; g++) {
+                    if (ringCells[g] == next && --missing == 0) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int ringRoot(int[] group, int d) {
+        while (group[d] != d) {
+            d = group[d];
+        }
+        return d;
+    }
+
+    private int newComponent() {
+        if (componentCount == parent.length) {
+            parent = Arrays.copyOf(parent, 2 * parent.length);
+            dirty = Arrays.copyOf(dirty, parent.length);
+        }
+        int id = componentCount++;
+        parent[id] = id;
+        dirty[id] = false;
+        return id;
+    }
+
+    private int find(int id) {
+        while (parent[id] != id) {
+            parent[id] = parent[parent[id]];
+            id = parent[id];
+        }
+        return id;
+    }
+
+    private int union(int a, int b) {
+        if (a == b) {
+            return a;
+        }
+        // the older id survives; the merged component may have split if either had
+        int root = Math.min(a, b);
+        int other = Math.max(a, b);
+        parent[other] = root;
+        dirty[root] |= dirty[other];
+        return root;
+    }
+
+    /**
+     * @return cells labelled by lazy splits since the index was built
+     */
+    public synchronized int getRelabelledCells() {
+        return relabelled;
+    }
+
+    public boolean isDiagonal() {
+        return diagonal;
+    }
+
+    public GridMap getMap() {
+        return map;
+    }
+
+    /**
+     * Stops listening to the map's edits.
+     */
+    public void close() {
+        map.removeEditListener(this);
+    }
+}
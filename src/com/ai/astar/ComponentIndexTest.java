@@ -0,0 +1,174 @@
+package com.ai.astar;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Checks of {@link ComponentIndex} and benchmark of unreachable queries.
+ *
+ * On small random maps edited at random between queries, every answer of an
+ * 8-connected and a 4-connected index must match a breadth-first search with
+ * the engines' move rules, and AStar and AStarOrthogonal with an index must
+ * return the same costs as without. Then, on a large rooms map where a share
+ * of the goals are walled in, it times queries with and without the index
+ * and the index's edit cost.
+ *
+ * Usage: ComponentIndexTest [size] [queries]
+ */
+public class ComponentIndexTest {
+
+    private static final long SEED = 20200926L;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1024;
+        int queryCount = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+        int errors = check(new Random(SEED), 200);
+        System.out.println(errors == 0 ? "OK: component answers match searches" : "FAILED: " + errors);
+
+        Random random = new Random(SEED);
+        GridMap map = MapGenerator.generate(MapGenerator.Type.ROOMS, size, size, 0.2, SEED);
+        Node[] starts = new Node[queryCount];
+        Node[] goals = new Node[queryCount];
+        for (int q = 0; q < queryCount; q++) {
+            starts[q] = MapGenerator.randomOpenCell(map, random);
+            goals[q] = MapGenerator.randomOpenCell(map, random);
+            if (q % 4 == 0) {
+                wallIn(map, goals[q]);
+            }
+        }
+        long begin = System.nanoTime();
+        ComponentIndex diagonalIndex = ComponentIndex.diagonal(map);
+        ComponentIndex orthogonalIndex = ComponentIndex.orthogonal(map);
+        System.out.printf(Locale.ROOT, "build both indexes: %.1f ms%n", (System.nanoTime() - begin) / 1e6);
+
+        AStar aStar = new AStar(map);
+        AStar indexedAStar = new AStar(map);
+        indexedAStar.setComponentIndex(diagonalIndex);
+        AStarOrthogonal orthogonal = new AStarOrthogonal(map);
+        AStarOrthogonal indexedOrthogonal = new AStarOrthogonal(map);
+        indexedOrthogonal.setComponentIndex(orthogonalIndex);
+        System.out.printf(Locale.ROOT, "%-16s %-10s %14s %14s%n", "engine", "index", "ms/query", "expanded/query");
+        BoundedPathFinder[] engines = {aStar, indexedAStar, orthogonal, indexedOrthogonal};
+        String[] names = {"AStar", "AStar", "AStarOrthogonal", "AStarOrthogonal"};
+        for (int e = 0; e < engines.length; e++) {
+            long expanded = 0;
+            begin = System.nanoTime();
+            for (int q = 0; q < queryCount; q++) {
+                expanded += engines[e].findPath(starts[q], goals[q], SearchLimits.NONE).getExpanded();
+            }
+            System.out.printf(Locale.ROOT, "%-16s %-10s %14.3f %14d%n", names[e], e % 2 == 1 ? "yes" : "no",
+                    (System.nanoTime() - begin) / 1e6 / queryCount, expanded / queryCount);
+        }
+
+        int edits = 20000;
+        begin = System.nanoTime();
+        for (int i = 0; i < edits; i++) {
+            int id = random.nextInt(map.size());
+            map.setBlocked(id, !map.isBlocked(id));
+            if (i % 100 == 0) {
+                Node start = MapGenerator.randomOpenCell(map, random);
+                Node goal = MapGenerator.randomOpenCell(map, random);
+                diagonalIndex.isReachable(start.getRow(), start.getCol(), goal.getRow(), goal.getCol());
+                orthogonalIndex.isReachable(start.getRow(), start.getCol(), goal.getRow(), goal.getCol());
+            }
+        }
+        System.out.printf(Locale.ROOT, "%d edits with a query every 100: %.2f us/edit, %d + %d cells relabelled%n",
+                edits, (System.nanoTime() - begin) / 1e3 / edits, diagonalIndex.getRelabelledCells(),
+                orthogonalIndex.getRelabelledCells());
+        if (errors > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void wallIn(GridMap map, Node cell) {
+        for (int dr = -1; dr <= 1; dr++) {
+            for (int dc = -1; dc <= 1; dc++) {
+                int row = cell.getRow() + dr;
+                int col = cell.getCol() + dc;
+                if ((dr != 0 || dc != 0) && row >= 0 && row < map.getRows() && col >= 0 && col < map.getCols()) {
+                    map.setBlocked(map.cellId(row, col), true);
+                }
+            }
+        }
+    }
+
+    private static int check(Random random, int maps) {
+        int errors = 0;
+        for (int m = 0; m < maps; m++) {
+            int rows = 2 + random.nextInt(20);
+            int cols = 2 + random.nextInt(20);
+            GridMap map = MapGenerator.random(rows, cols, 0.2 + 0.3 * random.nextDouble(), SEED + m);
+            ComponentIndex diagonalIndex = ComponentIndex.diagonal(map);
+            ComponentIndex orthogonalIndex = ComponentIndex.orthogonal(map);
+            AStar aStar = new AStar(map);
+            AStar indexedAStar = new AStar(map);
+            indexedAStar.setComponentIndex(diagonalIndex);
+            AStarOrthogonal orthogonal = new AStarOrthogonal(map);
+            AStarOrthogonal indexedOrthogonal = new AStarOrthogonal(map);
+            indexedOrthogonal.setComponentIndex(orthogonalIndex);
+            for (int q = 0; q < 60; q++) {
+                for (int edit = random.nextInt(4); edit > 0; edit--) {
+                    int id = random.nextInt(map.size());
+                    map.setBlocked(id, !map.isBlocked(id));
+                }
+                int start = random.nextInt(map.size());
+                int goal = random.nextInt(map.size());
+                Node startNode = new Node(start / cols, start % cols);
+                Node goalNode = new Node(goal / cols, goal % cols);
+                if (diagonalIndex.isReachable(start, goal) != reachable(map, start, goal, true)
+                        || orthogonalIndex.isReachable(start, goal) != reachable(map, start, goal, false)) {
+                    errors++;
+                    System.out.println("map " + m + " " + startNode + " -> " + goalNode + ": index disagrees");
+                }
+                if (cost(aStar.findPath(startNode, goalNode)) != cost(indexedAStar.findPath(startNode, goalNode))
+                        || cost(orthogonal.findPath(startNode, goalNode).orElse(List.of()))
+                                != cost(indexedOrthogonal.findPath(startNode, goalNode).orElse(List.of()))) {
+                    errors++;
+                    System.out.println("map " + m + " " + startNode + " -> " + goalNode + ": costs differ");
+                }
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Breadth-first search with the engines' rules: the start may be blocked,
+     * every other cell on the way must be open.
+     */
+    private static boolean reachable(GridMap map, int start, int goal, boolean diagonal) {
+        int rows = map.getRows();
+        int cols = map.getCols();
+        boolean[] seen = new boolean[map.size()];
+        ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+        seen[start] = true;
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            int cell = queue.poll();
+            if (cell == goal) {
+                return true;
+            }
+            for (int dr = -1; dr <= 1; dr++) {
+                for (int dc = -1; dc <= 1; dc++) {
+                    int row = cell / cols + dr;
+                    int col = cell % cols + dc;
+                    if ((dr == 0 && dc == 0) || (!diagonal && dr != 0 && dc != 0) || row < 0 || row >= rows
+                            || col < 0 || col >= cols) {
+                        continue;
+                    }
+                    int next = row * cols + col;
+                    if (!seen[next] && !map.isBlocked(next)) {
+                        seen[next] = true;
+                        queue.add(next);
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int cost(List<Node> path) {
+        return path.isEmpty() ? -1 : path.get(path.size() - 1).getG();
+    }
+}
@@ -0,0 +1,595 @@
+package com.ai.astar;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cost to one goal from every cell of a {@link GridMap}, for many agents
+ * heading to the same place: one backwards sweep from the goal replaces a
+ * search per agent, and every agent then reads its next step in O(1) with
+ * {@link #nextStep}.
+ *
+ * Both engine cost models are supported. The {@link AStar} model keeps one
+ * value per cell (8-connected, 10/14 times the terrain cost of the entered
+ * cell). The {@link AStarOrthogonal} model keeps one per (cell, incoming
+ * axis) state, like that engine, so following the field also pays the turn
+ * penalty correctly. Costs equal those of the engines' optimal paths.
+ *
+ * The sweep is a bucketed Dijkstra (delta-stepping with delta the cheapest
+ * move): all states of a bucket are final when it is reached and form a
+ * wavefront whose neighbours can be relaxed in any order, so large wavefronts
+ * are relaxed in parallel on a {@link ForkJoinPool} when one is given.
+ *
+ * A field can be repaired in place after an edit of the map instead of being
+ * rebuilt; {@link DistanceFieldCache} does that for the fields it holds.
+ * Repairs write the field, so reads must not overlap with edits.
+ */
+public final class DistanceField {
+    /**
+     * distance of cells from which the goal cannot be reached
+     */
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private static final int HV_COST = 10;
+    private static final int DIAGONAL_COST = 14;
+    private static final int ORTHOGONAL_COST = 10;
+    private static final int DIRECTION_CHANGE_PENALTY = 10;
+    private static final int HORIZONTAL = Heuristic.HORIZONTAL;
+    private static final int VERTICAL = Heuristic.VERTICAL;
+    // wavefronts smaller than this are relaxed on the calling thread
+    private static final int PARALLEL_THRESHOLD = 4096;
+    private static final int TASK_SIZE = 1024;
+    private static final VarHandle DIST = MethodHandles.arrayElementVarHandle(int[].class);
+    // successor states and costs for the per-agent lookups, so a step allocates nothing
+    private static final ThreadLocal<int[][]> SCRATCH = ThreadLocal.withInitial(() -> new int[2][8]);
+
+    private final GridMap map;
+    private final int rows;
+    private final int cols;
+    private final int goal;
+    private final boolean diagonal;
+    private final int[] dist;
+
+    private DistanceField(GridMap map, int goal, boolean diagonal) {
+        this.map = map;
+        this.rows = map.getRows();
+        this.cols = map.getCols();
+        this.goal = goal;
+        this.diagonal = diagonal;
+        this.dist = new int[diagonal ? map.size() : 2 * map.size()];
+    }
+
+    /**
+     * Field with the {@link AStar} cost model.
+     *
+     * @param pool runs large wavefronts in parallel, or null to build on the calling thread
+     */
+    public static DistanceField diagonal(GridMap map, int goalCell, ForkJoinPool pool) {
+        DistanceField field = new DistanceField(map, goalCell, true);
+        field.build(pool);
+        return field;
+    }
+
+    public static DistanceField diagonal(GridMap map, int goalCell) {
+        return diagonal(map, goalCell, null);
+    }
+
+    /**
+     * Field with the {@link AStarOrthogonal} cost model.
+     *
+     * @param pool runs large wavefronts in parallel, or null to build on the calling thread
+     */
+    public static DistanceField orthogonal(GridMap map, int goalCell, ForkJoinPool pool) {
+        DistanceField field = new DistanceField(map, goalCell, false);
+        field.build(pool);
+        return field;
+    }
+
+    public static DistanceField orthogonal(GridMap map, int goalCell) {
+        return orthogonal(map, goalCell, null);
+    }
+
+    private void build(ForkJoinPool pool) {
+        Arrays.fill(dist, UNREACHABLE);
+        if (map.isBlocked(goal)) {
+            return;
+        }
+        int delta = (diagonal ? HV_COST : ORTHOGONAL_COST) * map.getMinCost();
+        int maxMove = diagonal ? DIAGONAL_COST * GridMap.MAX_COST : ORTHOGONAL_COST * GridMap.MAX_COST
+                + DIRECTION_CHANGE_PENALTY;
+        // a move lands at most maxMove / delta buckets ahead, so the buckets can be reused cyclically
+        IntList[] buckets = new IntList[maxMove / delta + 2];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new IntList();
+        }
+        boolean[] settled = new boolean[dist.length];
+        int pending = 0;
+        for (int state : statesOf(goal)) {
+            dist[state] = 0;
+            buckets[0].add(state);
+            pending++;
+        }
+        IntList frontier = new IntList();
+        int[] improved = new int[0];
+        for (int bucket = 0; pending > 0; bucket++) {
+            IntList entries = buckets[bucket % buckets.length];
+            pending -= entries.size;
+            frontier.size = 0;
+            for (int i = 0; i < entries.size; i++) {
+                int state = entries.values[i];
+                // entries left behind by a later improvement or already handled are skipped
+                if (!settled[state] && dist[state] / delta == bucket) {
+                    settled[state] = true;
+                    frontier.add(state);
+                }
+            }
+            entries.size = 0;
+            if (frontier.size == 0) {
+                continue;
+            }
+            if (improved.length < 8 * frontier.size) {
+                improved = new int[8 * frontier.size];
+            }
+            int count;
+            if (pool != null && frontier.size >= PARALLEL_THRESHOLD) {
+                AtomicInteger next = new AtomicInteger();
+                pool.invoke(new RelaxTask(frontier.values, 0, frontier.size, improved, next));
+                count = next.get();
+            } else {
+                count = relax(frontier.values, 0, frontier.size, improved);
+            }
+            for (int i = 0; i < count; i++) {
+                int state = improved[i];
+                buckets[(dist[state] / delta) % buckets.length].add(state);
+                pending++;
+            }
+        }
+    }
+
+    /**
+     * Relaxes the predecessors of a slice of a wavefront on the calling thread.
+     *
+     * @return number of improved states written to improved
+     */
+    private int relax(int[] frontier, int from, int to, int[] improved) {
+        int[] states = new int[8];
+        int[] costs = new int[8];
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            int state = frontier[i];
+            int n = predecessors(state, states, costs);
+            for (int k = 0; k < n; k++) {
+                int d = dist[state] + costs[k];
+                if (d < dist[states[k]]) {
+                    dist[states[k]] = d;
+                    improved[count++] = states[k];
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Parallel relaxation of a wavefront: distances are lowered with
+     * compare-and-set, and every successful write is recorded once.
+     */
+    private final class RelaxTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] frontier;
+        private final int from;
+        private final int to;
+        private final int[] improved;
+        private final AtomicInteger next;
+
+        RelaxTask(int[] frontier, int from, int to, int[] improved, AtomicInteger next) {
+            this.frontier = frontier;
+            this.from = from;
+            this.to = to;
+            this.improved = improved;
+            this.next = next;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > TASK_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RelaxTask(frontier, from, middle, improved, next),
+                        new RelaxTask(frontier, middle, to, improved, next));
+                return;
+            }
+            int[] states = new int[8];
+            int[] costs = new int[8];
+            for (int i = from; i < to; i++) {
+                int state = frontier[i];
+                // wavefront states are final, so this plain read is stable
+                int base = dist[state];
+                int n = predecessors(state, states, costs);
+                for (int k = 0; k < n; k++) {
+                    int d = base + costs[k];
+                    int current;
+                    while (d < (current = (int) DIST.getVolatile(dist, states[k]))) {
+                        if (DIST.compareAndSet(dist, states[k], current, d)) {
+                            improved[next.getAndIncrement()] = states[k];
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Repairs the field after the cell was blocked or made more expensive to
+     * enter. Only the states whose best path used the cell are reset, then
+     * recomputed from their unaffected neighbours.
+     *
+     * @param oldCost terrain cost of the cell before the edit
+     */
+    void increase(int cell, int oldCost, Scratch scratch) {
+        boolean blocked = map.isBlocked(cell);
+        if (blocked && cell == goal) {
+            Arrays.fill(dist, UNREACHABLE);
+            return;
+        }
+        int[] states = scratch.states;
+        int[] costs = scratch.costs;
+        int[] region = scratch.queue;
+        int mark = scratch.nextGeneration();
+        int size = 0;
+        // states whose best move entered the cell, at its old cost
+        for (int target : statesOf(cell)) {
+            if (dist[target] == UNREACHABLE) {
+                continue;
+            }
+            int n = predecessors(target, oldCost, states, costs);
+            for (int k = 0; k < n; k++) {
+                int p = states[k];
+                if (scratch.stamp[p] != mark && dist[p] != UNREACHABLE && dist[p] == dist[target] + costs[k]) {
+                    scratch.stamp[p] = mark;
+                    region[size++] = p;
+                }
+            }
+        }
+        // and, transitively, every state whose best move leads into the region
+        for (int head = 0; head < size; head++) {
+            int r = region[head];
+            int n = predecessors(r, states, costs);
+            for (int k = 0; k < n; k++) {
+                int p = states[k];
+                if (scratch.stamp[p] != mark && dist[p] != UNREACHABLE && dist[p] == dist[r] + costs[k]) {
+                    scratch.stamp[p] = mark;
+                    region[size++] = p;
+                }
+            }
+        }
+        if (blocked) {
+            for (int target : statesOf(cell)) {
+                dist[target] = UNREACHABLE;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            dist[region[i]] = UNREACHABLE;
+        }
+        IndexedHeap heap = scratch.heap;
+        for (int i = 0; i < size; i++) {
+            int r = region[i];
+            if (map.isBlocked(cellOf(r))) {
+                continue;
+            }
+            int best = bestMove(cellOf(r), diagonal ? Heuristic.NO_DIRECTION : r & 1, states, costs);
+            if (best != UNREACHABLE) {
+                dist[r] = best;
+                heap.add(r, best);
+            }
+        }
+        while (!heap.isEmpty()) {
+            int s = heap.poll();
+            int n = predecessors(s, states, costs);
+            for (int k = 0; k < n; k++) {
+                int p = states[k];
+                int d = dist[s] + costs[k];
+                if (scratch.stamp[p] == mark && d < dist[p]) {
+                    dist[p] = d;
+                    heap.update(p, d, 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Repairs the field after the cell was unblocked or made cheaper to enter:
+     * improvements spread backwards from the cell.
+     */
+    void decrease(int cell, Scratch scratch) {
+        if (map.isBlocked(cell)) {
+            return;
+        }
+        if (cell == goal && dist[statesOf(goal)[0]] != 0) {
+            // the goal was blocked: nothing to keep
+            build(null);
+            return;
+        }
+        int[] states = scratch.states;
+        int[] costs = scratch.costs;
+        IndexedHeap heap = scratch.heap;
+        for (int target : statesOf(cell)) {
+            if (dist[target] == UNREACHABLE) {
+                dist[target] = bestMove(cell, diagonal ? Heuristic.NO_DIRECTION : target & 1, states, costs);
+            }
+            if (dist[target] != UNREACHABLE) {
+                heap.update(target, dist[target], 0);
+            }
+        }
+        while (!heap.isEmpty()) {
+            int s = heap.poll();
+            int n = predecessors(s, states, costs);
+            for (int k = 0; k < n; k++) {
+                int p = states[k];
+                int d = dist[s] + costs[k];
+                if (d < dist[p]) {
+                    dist[p] = d;
+                    heap.update(p, d, 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * States that can move into the given state, with the cost of that move.
+     * Only open cells are returned.
+     *
+     * @return number of predecessors written
+     */
+    private int predecessors(int state, int[] states, int[] costs) {
+        return predecessors(state, map.getCost(cellOf(state)), states, costs);
+    }
+
+    /**
+     * @param enter terrain cost of the state's cell to use for the moves
+     */
+    private int predecessors(int state, int enter, int[] states, int[] costs) {
+        int cell = cellOf(state);
+        int row = cell / cols;
+        int col = cell - row * cols;
+        int count = 0;
+        if (diagonal) {
+            for (int d = 0; d < 8; d++) {
+                int r = row - CompactPath.ROW_STEP[d];
+                int c = col - CompactPath.COL_STEP[d];
+                if (r < 0 || r >= rows || c < 0 || c >= cols || map.isBlocked(r * cols + c)) {
+                    continue;
+                }
+                states[count] = r * cols + c;
+                costs[count++] = ((d & 1) == 1 ? DIAGONAL_COST : HV_COST) * enter;
+            }
+            return count;
+        }
+        int axis = state & 1;
+        int step = axis == HORIZONTAL ? 1 : cols;
+        boolean hasBefore = axis == HORIZONTAL ? col > 0 : row > 0;
+        boolean hasAfter = axis == HORIZONTAL ? col + 1 < cols : row + 1 < rows;
+        for (int side = 0; side < 2; side++) {
+            int neighbour = side == 0 ? cell - step : cell + step;
+            if (!(side == 0 ? hasBefore : hasAfter) || map.isBlocked(neighbour)) {
+                continue;
+            }
+            for (int direction = HORIZONTAL; direction <= VERTICAL; direction++) {
+                states[count] = stateId(neighbour, direction);
+                costs[count++] = ORTHOGONAL_COST * enter + (direction != axis ? DIRECTION_CHANGE_PENALTY : 0);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param direction axis the cell was entered along, or NO_DIRECTION
+     * @return min over moves out of the cell of move cost + distance of the
+     *         state it leads to; the scratch arrays are overwritten
+     */
+    private int bestMove(int cell, int direction, int[] states, int[] costs) {
+        int n = successors(cell, direction, states, costs);
+        int best = UNREACHABLE;
+        for (int k = 0; k < n; k++) {
+            if (dist[states[k]] != UNREACHABLE) {
+                best = Math.min(best, costs[k] + dist[states[k]]);
+            }
+        }
+        return best;
+    }
+
+    private int successors(int cell, int direction, int[] states, int[] costs) {
+        int row = cell / cols;
+        int col = cell - row * cols;
+        int count = 0;
+        for (int d = 0; d < 8; d++) {
+            if (!diagonal && (d & 1) == 1) {
+                continue;
+            }
+            int r = row + CompactPath.ROW_STEP[d];
+            int c = col + CompactPath.COL_STEP[d];
+            if (r < 0 || r >= rows || c < 0 || c >= cols || map.isBlocked(r * cols + c)) {
+                continue;
+            }
+            int next = r * cols + c;
+            if (diagonal) {
+                states[count] = next;
+                costs[count++] = ((d & 1) == 1 ? DIAGONAL_COST : HV_COST) * map.getCost(next);
+            } else {
+                int axis = CompactPath.ROW_STEP[d] == 0 ? HORIZONTAL : VERTICAL;
+                states[count] = stateId(next, axis);
+                costs[count++] = ORTHOGONAL_COST * map.getCost(next)
+                        + (direction != Heuristic.NO_DIRECTION && direction != axis ? DIRECTION_CHANGE_PENALTY : 0);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return cost of the cheapest path from the cell to the goal, as the
+     *         engine of this field's cost model would find it (a blocked
+     *         start may still step out), or {@link #UNREACHABLE}
+     */
+    public int getDistance(int cellId) {
+        if (cellId == goal) {
+            return map.isBlocked(goal) ? UNREACHABLE : 0;
+        }
+        int[][] scratch = SCRATCH.get();
+        return bestMove(cellId, Heuristic.NO_DIRECTION, scratch[0], scratch[1]);
+    }
+
+    public int getDistance(int row, int col) {
+        return getDistance(row * cols + col);
+    }
+
+    /**
+     * @return the next cell on a cheapest path from the cell, or -1 at the goal or if it is unreachable
+     */
+    public int nextStep(int cellId) {
+        return nextStep(cellId, Heuristic.NO_DIRECTION);
+    }
+
+    /**
+     * Next step of an agent that entered the cell along the given axis, which
+     * matters for the turn penalty of the {@link AStarOrthogonal} model.
+     *
+     * @param direction {@link Heuristic#HORIZONTAL}, {@link Heuristic#VERTICAL} or NO_DIRECTION
+     */
+    public int nextStep(int cellId, int direction) {
+        if (cellId == goal) {
+            return -1;
+        }
+        int[][] scratch = SCRATCH.get();
+        int[] states = scratch[0];
+        int[] costs = scratch[1];
+        int n = successors(cellId, diagonal ? Heuristic.NO_DIRECTION : direction, states, costs);
+        int best = UNREACHABLE;
+        int bestCell = -1;
+        for (int k = 0; k < n; k++) {
+            if (dist[states[k]] != UNREACHABLE && costs[k] + dist[states[k]] < best) {
+                best = costs[k] + dist[states[k]];
+                bestCell = cellOf(states[k]);
+            }
+        }
+        return bestCell;
+    }
+
+    /**
+     * Follows the field from the start, with G and, for the orthogonal
+     * model, directions set as the matching engine sets them.
+     */
+    public Optional<List<Node>> getPath(Node start) {
+        int cell = map.cellId(start);
+        if (getDistance(cell) == UNREACHABLE) {
+            return Optional.empty();
+        }
+        List<Node> path = new ArrayList<Node>();
+        Node node = new Node(start.getRow(), start.getCol());
+        path.add(node);
+        int direction = Heuristic.NO_DIRECTION;
+        int g = 0;
+        while (cell != goal) {
+            int next = nextStep(cell, direction);
+            int axis = next / cols == cell / cols ? HORIZONTAL : VERTICAL;
+            boolean straight = next / cols == cell / cols || next % cols == cell % cols;
+            if (diagonal) {
+                g += (straight ? HV_COST : DIAGONAL_COST) * map.getCost(next);
+            } else {
+                g += ORTHOGONAL_COST * map.getCost(next)
+                        + (direction != Heuristic.NO_DIRECTION && direction != axis ? DIRECTION_CHANGE_PENALTY : 0);
+            }
+            Node child = new Node(next / cols, next % cols);
+            child.setG(g);
+            child.setParent(node);
+            if (!diagonal) {
+                child.setDirection(axis == HORIZONTAL ? Orthogonal.HORIZONTAL : Orthogonal.VERTICAL);
+                direction = axis;
+            }
+            path.add(child);
+            node = child;
+            cell = next;
+        }
+        return Optional.of(path);
+    }
+
+    public int getGoal() {
+        return goal;
+    }
+
+    /**
+     * @return true for the {@link AStar} cost model, false for {@link AStarOrthogonal}
+     */
+    public boolean isDiagonal() {
+        return diagonal;
+    }
+
+    public GridMap getMap() {
+        return map;
+    }
+
+    /**
+     * @return approximate heap footprint of the field in bytes
+     */
+    public long getSizeBytes() {
+        return 16L + 4L * dist.length;
+    }
+
+    private int[] statesOf(int cell) {
+        return diagonal ? new int[] {cell} : new int[] {stateId(cell, HORIZONTAL), stateId(cell, VERTICAL)};
+    }
+
+    private int cellOf(int state) {
+        return diagonal ? state : state >>> 1;
+    }
+
+    private static int stateId(int cellId, int direction) {
+        return (cellId << 1) | direction;
+    }
+
+    /**
+     * Working memory for repairs, shared by all fields of one map and cost
+     * model. Not thread safe.
+     */
+    static final class Scratch {
+        final IndexedHeap heap;
+        final int[] stamp;
+        final int[] queue;
+        final int[] states = new int[8];
+        final int[] costs = new int[8];
+        private int generation;
+
+        Scratch(GridMap map, boolean diagonal) {
+            int size = diagonal ? map.size() : 2 * map.size();
+            this.heap = new IndexedHeap(size);
+            this.stamp = new int[size];
+            this.queue = new int[size];
+        }
+
+        int nextGeneration() {
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(stamp, 0);
+                generation = 1;
+            }
+            return generation;
+        }
+    }
+
+    private static final class IntList {
+        int[] values = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, 2 * size);
+            }
+            values[size++] = value;
+        }
+    }
+}
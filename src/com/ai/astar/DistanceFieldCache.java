@@ -0,0 +1,160 @@
+package com.ai.astar;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Least recently used {@link DistanceField}s of one map and cost model, one
+ * per goal, for many agents sharing a few goals.
+ *
+ * The cache registers itself as a {@link MapEditListener} and repairs every
+ * field it holds in place on each edit, touching only the cells whose
+ * distance changes, so a field stays valid for as long as it is cached.
+ * Lookups and repairs are synchronized; a field handed out is read without
+ * locks, so agents must not read fields while the map is being edited (edit
+ * between ticks).
+ */
+public class DistanceFieldCache implements MapEditListener {
+    private final GridMap map;
+    private final boolean diagonal;
+    private final ForkJoinPool pool;
+    private final LinkedHashMap<Integer, DistanceField> fields;
+    private final DistanceField.Scratch scratch;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long repairs;
+
+    /**
+     * @param diagonal true for the {@link AStar} cost model, false for {@link AStarOrthogonal}
+     * @param maxFields number of goals kept; each field takes 4 (8 orthogonal) bytes per cell
+     * @param pool builds large fields in parallel, or null to build on the calling thread
+     */
+    public DistanceFieldCache(GridMap map, boolean diagonal, int maxFields, ForkJoinPool pool) {
+        if (maxFields < 1) {
+            throw new IllegalArgumentException("maxFields must be at least 1");
+        }
+        this.map = map;
+        this.diagonal = diagonal;
+        this.pool = pool;
+        this.fields = new LinkedHashMap<Integer, DistanceField>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, DistanceField> eldest) {
+                if (size() > maxFields) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.scratch = map.isReadOnly() ? null : new DistanceField.Scratch(map, diagonal);
+        if (!map.isReadOnly()) {
+            map.addEditListener(this);
+        }
+    }
+
+    /**
+     * Cache for the {@link AStar} cost model.
+     */
+    public static DistanceFieldCache diagonal(GridMap map, int maxFields) {
+        return new DistanceFieldCache(map, true, maxFields, null);
+    }
+
+    /**
+     * Cache for the {@link AStarOrthogonal} cost model.
+     */
+    public static DistanceFieldCache orthogonal(GridMap map, int maxFields) {
+        return new DistanceFieldCache(map, false, maxFields, null);
+    }
+
+    /**
+     * @return the field of the goal, built on a miss
+     */
+    public synchronized DistanceField get(int goalCell) {
+        DistanceField field = fields.get(goalCell);
+        if (field != null) {
+            hits++;
+            return field;
+        }
+        misses++;
+        field = diagonal ? DistanceField.diagonal(map, goalCell, pool) : DistanceField.orthogonal(map, goalCell, pool);
+        fields.put(goalCell, field);
+        return field;
+    }
+
+    public DistanceField get(Node goal) {
+        return get(map.cellId(goal));
+    }
+
+    @Override
+    public synchronized void cellChanged(GridMap map, int cellId, boolean isBlock) {
+        for (DistanceField field : fields.values()) {
+            if (isBlock) {
+                field.increase(cellId, map.getCost(cellId), scratch);
+            } else {
+                field.decrease(cellId, scratch);
+            }
+            repairs++;
+        }
+    }
+
+    @Override
+    public synchronized void costChanged(GridMap map, int cellId, int oldCost, int newCost) {
+        if (map.isBlocked(cellId)) {
+            return;
+        }
+        for (DistanceField field : fields.values()) {
+            if (newCost > oldCost) {
+                field.increase(cellId, oldCost, scratch);
+            } else {
+                field.decrease(cellId, scratch);
+            }
+            repairs++;
+        }
+    }
+
+    /**
+     * Stops listening to the map's edits.
+     */
+    public void close() {
+        map.removeEditListener(this);
+    }
+
+    public synchronized void clear() {
+        fields.clear();
+    }
+
+    public GridMap getMap() {
+        return map;
+    }
+
+    public boolean isDiagonal() {
+        return diagonal;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return number of field repairs done for map edits
+     */
+    public synchronized long getRepairs() {
+        return repairs;
+    }
+
+    public synchronized int size() {
+        return fields.size();
+    }
+}
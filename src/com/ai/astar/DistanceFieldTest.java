@@ -0,0 +1,210 @@
+package com.ai.astar;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Checks of {@link DistanceField} and {@link DistanceFieldCache}, and a
+ * benchmark of many agents sharing one goal.
+ *
+ * On small random terrain maps, field distances and followed paths must cost
+ * what AStar and AStarOrthogonal find, parallel builds must equal sequential
+ * ones, and cached fields repaired through random blocks, unblocks and cost
+ * changes must equal fields built from scratch. Then, on a large rooms map,
+ * it compares one search per agent with one field per goal, sequential and
+ * parallel, and times a repair against a rebuild.
+ *
+ * Usage: DistanceFieldTest [size] [agents]
+ */
+public class DistanceFieldTest {
+
+    private static final long SEED = 20200926L;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1024;
+        int agents = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        Random random = new Random(SEED);
+        int errors = checkAgainstEngines(random, 60) + checkParallel(random) + checkRepairs(random, 40);
+        System.out.println(errors == 0 ? "OK: fields match engines, parallel builds and rebuilds" : "FAILED: " + errors);
+
+        GridMap map = MapGenerator.generate(MapGenerator.Type.ROOMS, size, size, 0.2, SEED);
+        Node goal = MapGenerator.randomOpenCell(map, random);
+        int goalCell = map.cellId(goal.getRow(), goal.getCol());
+        Node[] starts = new Node[agents];
+        for (int i = 0; i < agents; i++) {
+            starts[i] = MapGenerator.randomOpenCell(map, random);
+        }
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        System.out.printf(Locale.ROOT, "%d agents, one goal, %dx%d rooms, %d threads%n", agents, size, size,
+                pool.getParallelism());
+        System.out.printf(Locale.ROOT, "%-16s %14s %14s %14s %14s%n", "model", "search/agent", "field seq",
+                "field par", "all first steps");
+        for (boolean diagonal : new boolean[] {true, false}) {
+            BoundedPathFinder engine = diagonal ? new AStar(map) : new AStarOrthogonal(map);
+            for (int i = 0; i < Math.min(agents, 50); i++) {
+                engine.findPath(starts[i], goal, SearchLimits.NONE);
+            }
+            long begin = System.nanoTime();
+            for (Node start : starts) {
+                engine.findPath(start, goal, SearchLimits.NONE);
+            }
+            double searchMs = (System.nanoTime() - begin) / 1e6;
+            double sequentialMs = time(() -> build(map, goalCell, diagonal, null));
+            double parallelMs = time(() -> build(map, goalCell, diagonal, pool));
+            DistanceField field = build(map, goalCell, diagonal, pool);
+            begin = System.nanoTime();
+            int moved = 0;
+            for (Node start : starts) {
+                moved += field.nextStep(map.cellId(start.getRow(), start.getCol())) >= 0 ? 1 : 0;
+            }
+            double stepMs = (System.nanoTime() - begin) / 1e6;
+            System.out.printf(Locale.ROOT, "%-16s %11.1f ms %11.1f ms %11.1f ms %11.3f ms (%d moved)%n",
+                    diagonal ? "AStar" : "AStarOrthogonal", searchMs, sequentialMs, parallelMs, stepMs, moved);
+        }
+
+        DistanceFieldCache cache = DistanceFieldCache.diagonal(map, 4);
+        cache.get(goalCell);
+        int edits = 200;
+        long begin = System.nanoTime();
+        for (int i = 0; i < edits; i++) {
+            int id = random.nextInt(map.size());
+            if (id != goalCell) {
+                map.setBlocked(id, !map.isBlocked(id));
+            }
+        }
+        double repairUs = (System.nanoTime() - begin) / 1e3 / edits;
+        double rebuildUs = time(() -> build(map, goalCell, true, null)) * 1e3;
+        System.out.printf(Locale.ROOT, "edit repair %.1f us, full rebuild %.1f us%n", repairUs, rebuildUs);
+        if (errors > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static DistanceField build(GridMap map, int goal, boolean diagonal, ForkJoinPool pool) {
+        return diagonal ? DistanceField.diagonal(map, goal, pool) : DistanceField.orthogonal(map, goal, pool);
+    }
+
+    /**
+     * @return best of five runs in milliseconds
+     */
+    private static double time(Runnable action) {
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long begin = System.nanoTime();
+            action.run();
+            best = Math.min(best, (System.nanoTime() - begin) / 1e6);
+        }
+        return best;
+    }
+
+    private static int checkAgainstEngines(Random random, int maps) {
+        int errors = 0;
+        for (int m = 0; m < maps; m++) {
+            GridMap map = MapGenerator.random(4 + random.nextInt(30), 4 + random.nextInt(30), 0.3, SEED + m);
+            if (m % 2 == 0) {
+                TerrainBenchmark.paintTerrain(map, random, 1 + random.nextInt(3));
+            }
+            AStar aStar = new AStar(map);
+            AStarOrthogonal orthogonal = new AStarOrthogonal(map);
+            Node goal = MapGenerator.randomOpenCell(map, random);
+            int goalCell = map.cellId(goal.getRow(), goal.getCol());
+            DistanceField diagonalField = DistanceField.diagonal(map, goalCell);
+            DistanceField orthogonalField = DistanceField.orthogonal(map, goalCell);
+            for (int q = 0; q < 20; q++) {
+                int start = random.nextInt(map.size());
+                Node startNode = new Node(start / map.getCols(), start % map.getCols());
+                errors += compare("AStar", diagonalField, startNode, aStar.findPath(startNode, goal));
+                errors += compare("AStarOrthogonal", orthogonalField, startNode,
+                        orthogonal.findPath(startNode, goal).orElse(List.of()));
+            }
+        }
+        return errors;
+    }
+
+    private static int compare(String model, DistanceField field, Node start, List<Node> searched) {
+        int expected = searched.isEmpty() ? DistanceField.UNREACHABLE : searched.get(searched.size() - 1).getG();
+        int cell = start.getRow() * field.getMap().getCols() + start.getCol();
+        Optional<List<Node>> followed = field.getPath(start);
+        int followedCost = followed.isPresent() ? followed.get().get(followed.get().size() - 1).getG()
+                : DistanceField.UNREACHABLE;
+        if (field.getDistance(cell) != expected || followedCost != expected) {
+            System.out.println(model + " " + start + ": field " + field.getDistance(cell) + ", path " + followedCost
+                    + ", search " + expected);
+            return 1;
+        }
+        return 0;
+    }
+
+    private static int checkParallel(Random random) {
+        GridMap map = MapGenerator.generate(MapGenerator.Type.OPEN, 400, 400, 0.2, SEED);
+        TerrainBenchmark.paintTerrain(map, random, 1);
+        int goal = map.cellId(200, 200);
+        int errors = 0;
+        for (boolean diagonal : new boolean[] {true, false}) {
+            DistanceField sequential = build(map, goal, diagonal, null);
+            DistanceField parallel = build(map, goal, diagonal, ForkJoinPool.commonPool());
+            errors += differences(sequential, parallel, "parallel");
+        }
+        return errors;
+    }
+
+    private static int checkRepairs(Random random, int maps) {
+        int errors = 0;
+        for (int m = 0; m < maps; m++) {
+            GridMap map = MapGenerator.random(4 + random.nextInt(24), 4 + random.nextInt(24), 0.25, SEED + m);
+            if (m % 2 == 0) {
+                TerrainBenchmark.paintTerrain(map, random, 1);
+            }
+            DistanceFieldCache diagonalCache = DistanceFieldCache.diagonal(map, 2);
+            DistanceFieldCache orthogonalCache = DistanceFieldCache.orthogonal(map, 2);
+            int[] goals = {random.nextInt(map.size()), random.nextInt(map.size())};
+            for (int round = 0; round < 30; round++) {
+                for (int goal : goals) {
+                    diagonalCache.get(goal);
+                    orthogonalCache.get(goal);
+                }
+                int id = random.nextInt(map.size());
+                switch (random.nextInt(3)) {
+                    case 0:
+                        map.setBlocked(id, !map.isBlocked(id));
+                        break;
+                    case 1:
+                        map.setCost(id, 1 + random.nextInt(9));
+                        break;
+                    default:
+                        map.setBlocked(id, false);
+                        map.setCost(id, 1);
+                }
+                for (int goal : goals) {
+                    errors += differences(DistanceField.diagonal(map, goal), diagonalCache.get(goal), "repaired");
+                    errors += differences(DistanceField.orthogonal(map, goal), orthogonalCache.get(goal), "repaired");
+                }
+            }
+            diagonalCache.close();
+            orthogonalCache.close();
+        }
+        return errors;
+    }
+
+    private static int differences(DistanceField expected, DistanceField actual, String what) {
+        int cols = expected.getMap().getCols();
+        for (int id = 0; id < expected.getMap().size(); id++) {
+            if (expected.getDistance(id) != actual.getDistance(id)) {
+                System.out.println((expected.isDiagonal() ? "AStar " : "AStarOrthogonal ") + what + " field at "
+                        + id / cols + "," + id % cols + ": " + actual.getDistance(id) + ", expected "
+                        + expected.getDistance(id));
+                return 1;
+            }
+            for (int direction = Heuristic.HORIZONTAL; direction <= Heuristic.VERTICAL; direction++) {
+                if (expected.nextStep(id, direction) == -1 != (actual.nextStep(id, direction) == -1)) {
+                    System.out.println(what + " next step differs at " + id / cols + "," + id % cols);
+                    return 1;
+                }
+            }
+        }
+        return 0;
+    }
+}
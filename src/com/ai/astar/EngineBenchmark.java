@@ -0,0 +1,137 @@
+package com.ai.astar;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Benchmark of the path engines over seeded maps of several types, sizes and
+ * query lengths. For every combination it reports throughput, latency,
+ * bytes allocated per query (from the thread allocation counter) and nodes
+ * expanded per query, so changes to the engines can be compared against a
+ * baseline run.
+ *
+ * Usage: EngineBenchmark [sizes, e.g. 64,256,1024,4096] [queries per case] [seconds per case]
+ * Large maps need a big heap, e.g. -Xmx4g for 4096x4096.
+ */
+public class EngineBenchmark {
+
+    private static final long SEED = 20200926L;
+    private static final double DENSITY = 0.2;
+
+    public static void main(String[] args) {
+        String[] sizes = (args.length > 0 ? args[0] : "64,256,1024").split(",");
+        int queryCount = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        double seconds = args.length > 2 ? Double.parseDouble(args[2]) : 1.0;
+
+        List<String> engineNames = new ArrayList<>();
+        List<Function<GridMap, PathFinder>> engines = new ArrayList<>();
+        engineNames.add("AStar");
+        engines.add(PathService::diagonalFinder);
+        engineNames.add("AStar+ALT(8)");
+        engines.add(map -> {
+            AStar aStar = new AStar(map);
+            aStar.setHeuristic(new LandmarkHeuristic(LandmarkTable.build(map, 8), aStar.getHeuristic()));
+            return PathService.diagonalFinder(aStar);
+        });
+        engineNames.add("HPA*(16)");
+        engines.add(map -> new HierarchicalPathFinder(map, 16));
+        engineNames.add("JumpPointSearch");
+        engines.add(JumpPointSearch::new);
+        engineNames.add("AStarOrthogonal");
+        engines.add(AStarOrthogonal::new);
+        run(engineNames, engines, sizes, queryCount, seconds);
+    }
+
+    static void run(List<String> engineNames, List<Function<GridMap, PathFinder>> engines,
+            String[] sizes, int queryCount, double seconds) {
+        System.out.printf(Locale.ROOT, "%-18s %-7s %6s %-6s %12s %12s %14s %14s%n",
+                "engine", "map", "size", "query", "ops/s", "us/op", "alloc B/op", "expanded/op");
+        for (String sizeArg : sizes) {
+            int size = Integer.parseInt(sizeArg.trim());
+            for (MapGenerator.Type type : MapGenerator.Type.values()) {
+                GridMap map = MapGenerator.generate(type, size, size, DENSITY, SEED).readOnlyCopy();
+                PathQuery[][] querySets = {
+                        MapGenerator.queries(map, queryCount, 1, 16, SEED),
+                        MapGenerator.queries(map, queryCount, size / 4, size / 2, SEED + 1),
+                        MapGenerator.queries(map, queryCount, size, 2 * size, SEED + 2)
+                };
+                String[] queryNames = {"short", "medium", "cross"};
+                for (int e = 0; e < engines.size(); e++) {
+                    PathFinder finder = engines.get(e).apply(map);
+                    for (int q = 0; q < querySets.length; q++) {
+                        Result result = measure(finder, querySets[q], seconds);
+                        System.out.printf(Locale.ROOT, "%-18s %-7s %6d %-6s %12.1f %12.1f %14.0f %14.0f%n",
+                                engineNames.get(e), type, size, queryNames[q], result.opsPerSecond(),
+                                result.microsPerOp(), result.bytesPerOp(), result.expandedPerOp());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the queries round-robin: one untimed warm-up pass, then for at
+     * least the given time.
+     */
+    static Result measure(PathFinder finder, PathQuery[] queries, double seconds) {
+        for (PathQuery query : queries) {
+            finder.findPath(query.getInitialNode(), query.getFinalNode());
+        }
+        long budget = (long) (seconds * 1e9);
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long elapsed = 0;
+        long ops = 0;
+        long expanded = 0;
+        while (elapsed < budget) {
+            PathQuery query = queries[(int) (ops % queries.length)];
+            finder.findPath(query.getInitialNode(), query.getFinalNode());
+            expanded += finder.getExpandedCount();
+            ops++;
+            elapsed = System.nanoTime() - start;
+        }
+        return new Result(ops, elapsed, allocatedBytes() - allocatedBefore, expanded);
+    }
+
+    static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    static class Result {
+        private final long ops;
+        private final long nanos;
+        private final long bytes;
+        private final long expanded;
+
+        Result(long ops, long nanos, long bytes, long expanded) {
+            this.ops = ops;
+            this.nanos = nanos;
+            this.bytes = bytes;
+            this.expanded = expanded;
+        }
+
+        double opsPerSecond() {
+            return ops / (nanos / 1e9);
+        }
+
+        double microsPerOp() {
+            return nanos / 1e3 / ops;
+        }
+
+        double bytesPerOp() {
+            return (double) bytes / ops;
+        }
+
+        double expandedPerOp() {
+            return (double) expanded / ops;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.ai.astar;
+
+import java.io.PrintStream;
+
+/**
+ * Debug {@link SearchListener} that writes every expansion, in order, so a
+ * search can be replayed or drawn offline. One CSV line per event:
+ * <pre>
+ * expand,row,col
+ * end,startRow,startCol,goalRow,goalCol,pathCost,expanded,openListPeak,decreaseKeys,nanos
+ * </pre>
+ * Meant for single queries and small maps; it slows the search down a lot.
+ */
+public class ExpansionTrace implements SearchListener {
+    private final PrintStream out;
+
+    public ExpansionTrace(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void onExpand(int row, int col) {
+        out.println("expand," + row + "," + col);
+    }
+
+    @Override
+    public void onSearchEnd(SearchStats stats) {
+        Node start = stats.getInitialNode();
+        Node goal = stats.getFinalNode();
+        out.println("end," + start.getRow() + "," + start.getCol() + "," + goal.getRow() + "," + goal.getCol() + ","
+                + stats.getPathCost() + "," + stats.getExpanded() + "," + stats.getOpenListPeak() + ","
+                + stats.getDecreaseKeys() + "," + stats.getElapsedNanos());
+    }
+}
@@ -0,0 +1,99 @@
+package com.ai.astar;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Answers path queries on a small, fixed map by walking its
+ * {@link FirstMoveTable}: from the start, look up the first move toward the
+ * goal, take it, and repeat. There is no open list and nothing is expanded;
+ * a query costs one binary search per cell of the path. Paths have the cost
+ * {@link AStar} finds.
+ *
+ * The table describes the map as it was when it was built, so edits make the
+ * finder throw until a new table is built. Unlike AStar, a blocked start has
+ * no table row and gets no path. Thread safe if the map is not edited.
+ */
+public class FirstMovePathFinder implements PathFinder {
+    private final GridMap map;
+    private final FirstMoveTable table;
+    private final long mapVersion;
+    private final int cols;
+    private final ThreadLocal<int[]> lookups = ThreadLocal.withInitial(() -> new int[1]);
+
+    /**
+     * @throws IllegalArgumentException if the table was built for another map
+     */
+    public FirstMovePathFinder(GridMap map, FirstMoveTable table) {
+        if (!table.matches(map)) {
+            throw new IllegalArgumentException("Table was built for another map");
+        }
+        this.map = map;
+        this.table = table;
+        this.mapVersion = map.getVersion();
+        this.cols = map.getCols();
+    }
+
+    /**
+     * Builds the table of the map on the common pool.
+     */
+    public static FirstMovePathFinder of(GridMap map) {
+        return new FirstMovePathFinder(map, FirstMoveTable.build(map));
+    }
+
+    @Override
+    public Optional<List<Node>> findPath(Node initialNode, Node finalNode) {
+        if (map.getVersion() != mapVersion) {
+            throw new IllegalStateException("Map was edited after its first-move table was built");
+        }
+        int start = map.cellId(initialNode);
+        int goal = map.cellId(finalNode);
+        int[] count = lookups.get();
+        count[0] = 0;
+        if (map.isBlocked(start) || map.isBlocked(goal)) {
+            return Optional.empty();
+        }
+        ByteBuffer terrain = map.getCostLayer();
+        List<Node> path = new ArrayList<Node>();
+        Node node = new Node(start / cols, start % cols);
+        path.add(node);
+        int g = 0;
+        for (int cell = start; cell != goal;) {
+            int move = table.firstMove(cell, goal);
+            count[0]++;
+            if (move == FirstMoveTable.NONE) {
+                return Optional.empty();
+            }
+            if (path.size() > map.size()) {
+                throw new IllegalStateException("First-move table loops between " + start + " and " + goal);
+            }
+            cell += CompactPath.ROW_STEP[move] * cols + CompactPath.COL_STEP[move];
+            int step = (move & 1) == 0 ? table.getHvCost() : table.getDiagonalCost();
+            g += terrain == null ? step : step * (terrain.get(cell) & 0xFF);
+            Node next = new Node(cell / cols, cell % cols);
+            next.setG(g);
+            next.setParent(node);
+            path.add(next);
+            node = next;
+        }
+        return Optional.of(path);
+    }
+
+    /**
+     * @return number of table lookups of the calling thread's last query; nothing is expanded
+     */
+    @Override
+    public int getExpandedCount() {
+        return lookups.get()[0];
+    }
+
+    public FirstMoveTable getTable() {
+        return table;
+    }
+
+    public GridMap getMap() {
+        return map;
+    }
+}
@@ -0,0 +1,530 @@
+package com.ai.astar;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Compressed path database of a small map: for every pair of open cells, the
+ * first move of a shortest path from the source to the target, with the
+ * {@link AStar} cost model (10/14, any diagonal into an open cell, terrain
+ * costs included). {@link FirstMovePathFinder} answers queries by following
+ * first moves, without any search.
+ *
+ * Each source runs one Dijkstra search (a bucket queue on maps without
+ * terrain) that carries, for every cell, the set of first moves of all its
+ * shortest paths. Its row of first moves is then run-length encoded greedily
+ * along a fixed order of the target cells: one int per run,
+ * {@code position << 4 | move}, and a run goes on as long as one move is
+ * optimal for all its targets. The order is a depth-first traversal of the
+ * open cells rather than row by row, so neighbouring targets stay together;
+ * with the free choice among tied moves this takes 2 to 16 times fewer runs.
+ * A lookup is a binary search among the runs of the source. Sources are
+ * independent and are built in parallel on a ForkJoinPool.
+ *
+ * The table grows with the square of the open cells; it is meant for arenas
+ * of up to about 128x128 open cells. Like {@link LandmarkTable} it can be
+ * saved and memory-mapped back.
+ *
+ * File layout (big endian):
+ * <pre>
+ * int  magic 'FMT1'
+ * int  format version
+ * int  rows, cols, hvCost, diagonalCost
+ * long fingerprint of the map (blocked cells and costs)
+ * int  run count R
+ * int  rows * cols positions of the cells in the target order, -1 if blocked
+ * int  rows * cols + 1 offsets of each source's first run
+ * int  R runs
+ * </pre>
+ */
+public class FirstMoveTable {
+    /**
+     * first move to a target that cannot be reached (or from a blocked source)
+     */
+    public static final int NONE = -1;
+    /**
+     * most cells of a map the table can be built for
+     */
+    public static final int MAX_CELLS = 1 << 27;
+
+    private static final int MAGIC = 0x464d5431; // "FMT1"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 36;
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+    // run move of unreachable targets; moves 0..7 are the CompactPath directions
+    private static final int NO_MOVE = 8;
+    // sources per fork/join leaf
+    private static final int TASK_SIZE = 16;
+
+    private final int rows;
+    private final int cols;
+    private final int hvCost;
+    private final int diagonalCost;
+    private final long mapFingerprint;
+    // position of every cell in the target order, -1 for blocked cells
+    private final IntBuffer rank;
+    private final IntBuffer offsets;
+    private final IntBuffer runs;
+
+    private FirstMoveTable(int rows, int cols, int hvCost, int diagonalCost, long mapFingerprint, IntBuffer rank,
+            IntBuffer offsets, IntBuffer runs) {
+        this.rows = rows;
+        this.cols = cols;
+        this.hvCost = hvCost;
+        this.diagonalCost = diagonalCost;
+        this.mapFingerprint = mapFingerprint;
+        this.rank = rank;
+        this.offsets = offsets;
+        this.runs = runs;
+    }
+
+    /**
+     * @param pool runs the sources in parallel, or null to build on the calling thread
+     */
+    public static FirstMoveTable build(GridMap map, int hvCost, int diagonalCost, ForkJoinPool pool) {
+        if (map.size() > MAX_CELLS) {
+            throw new IllegalArgumentException("Map of " + map.size() + " cells is too large for a first-move table");
+        }
+        int[] order = depthFirstOrder(map);
+        int[] rank = new int[map.size()];
+        Arrays.fill(rank, -1);
+        for (int i = 0; i < order.length; i++) {
+            rank[order[i]] = i;
+        }
+        int[][] encoded = new int[map.size()][];
+        BuildTask task = new BuildTask(map, hvCost, diagonalCost, order, 0, order.length, encoded);
+        if (pool == null) {
+            task.compute();
+        } else {
+            pool.invoke(task);
+        }
+        int[] offsets = new int[map.size() + 1];
+        int total = 0;
+        for (int id = 0; id < map.size(); id++) {
+            offsets[id] = total;
+            total += encoded[id] == null ? 0 : encoded[id].length;
+        }
+        offsets[map.size()] = total;
+        int[] runs = new int[total];
+        for (int id = 0; id < map.size(); id++) {
+            if (encoded[id] != null) {
+                System.arraycopy(encoded[id], 0, runs, offsets[id], encoded[id].length);
+            }
+        }
+        return new FirstMoveTable(map.getRows(), map.getCols(), hvCost, diagonalCost, fingerprint(map),
+                IntBuffer.wrap(rank), IntBuffer.wrap(offsets), IntBuffer.wrap(runs));
+    }
+
+    /**
+     * Orders the open cells by a depth-first traversal of the 8-connected
+     * grid, so cells close in the order are close on the map and tend to
+     * share first moves.
+     */
+    static int[] depthFirstOrder(GridMap map) {
+        int rows = map.getRows();
+        int cols = map.getCols();
+        int[] order = new int[map.size()];
+        boolean[] visited = new boolean[map.size()];
+        int[] stack = new int[8 * map.size() + 1];
+        int count = 0;
+        for (int seed = 0; seed < map.size(); seed++) {
+            if (visited[seed] || map.isBlocked(seed)) {
+                continue;
+            }
+            int top = 0;
+            stack[top++] = seed;
+            while (top > 0) {
+                int id = stack[--top];
+                if (visited[id]) {
+                    continue;
+                }
+                visited[id] = true;
+                order[count++] = id;
+                int row = id / cols;
+                int col = id - row * cols;
+                // pushed in reverse, so the traversal tries north first, then clockwise
+                for (int d = 7; d >= 0; d--) {
+                    int r = row + CompactPath.ROW_STEP[d];
+                    int c = col + CompactPath.COL_STEP[d];
+                    if (r >= 0 && r < rows && c >= 0 && c < cols && !visited[r * cols + c]
+                            && !map.isBlocked(r * cols + c)) {
+                        stack[top++] = r * cols + c;
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(order, count);
+    }
+
+    /**
+     * Builds the table with the default 10/14 costs on the common pool.
+     */
+    public static FirstMoveTable build(GridMap map) {
+        return build(map, 10, 14, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @return a hash of the map's blocked cells and terrain costs
+     */
+    static long fingerprint(GridMap map) {
+        long hash = map.fingerprint();
+        ByteBuffer costs = map.getCostLayer();
+        if (costs != null) {
+            for (int id = 0; id < map.size(); id++) {
+                hash = (hash ^ (costs.get(id) & 0xFF)) * 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * @return the move (0..7 clockwise from north, as in {@link CompactPath})
+     *         of a shortest path from source to target, or {@link #NONE} if
+     *         the target is blocked or cannot be reached; undefined for
+     *         source == target
+     */
+    public int firstMove(int source, int target) {
+        int low = offsets.get(source);
+        int high = offsets.get(source + 1) - 1;
+        int position = rank.get(target);
+        if (high < low || position < 0) {
+            return NONE;
+        }
+        // last run starting at or before the target; the first run of a source starts at 0
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (runs.get(middle) >>> 4 <= position) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        int move = runs.get(low) & 15;
+        return move == NO_MOVE ? NONE : move;
+    }
+
+    /**
+     * @return the cell after source on a shortest path to target, or -1 if there is none
+     */
+    public int nextStep(int source, int target) {
+        int move = firstMove(source, target);
+        return move == NONE ? -1 : source + CompactPath.ROW_STEP[move] * cols + CompactPath.COL_STEP[move];
+    }
+
+    /**
+     * Writes the table to a file that can be memory-mapped with {@link #load}.
+     */
+    public void save(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(rows).putInt(cols).putInt(hvCost)
+                    .putInt(diagonalCost).putLong(mapFingerprint).putInt(runs.limit());
+            for (IntBuffer values : new IntBuffer[] {rank, offsets, runs}) {
+                for (int i = 0; i < values.limit(); i++) {
+                    if (!buffer.hasRemaining()) {
+                        buffer.flip();
+                        writeFully(channel, buffer);
+                        buffer.clear();
+                    }
+                    buffer.putInt(values.get(i));
+                }
+            }
+            buffer.flip();
+            writeFully(channel, buffer);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Memory-maps a table file written by {@link #save}; runs are read from
+     * the mapping on demand.
+     */
+    public static FirstMoveTable load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            if (channel.size() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a first-move table: " + file);
+            }
+            int formatVersion = buffer.getInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException("Unsupported first-move table version " + formatVersion);
+            }
+            int rows = buffer.getInt();
+            int cols = buffer.getInt();
+            int hvCost = buffer.getInt();
+            int diagonalCost = buffer.getInt();
+            long mapFingerprint = buffer.getLong();
+            int runCount = buffer.getInt();
+            long cells = (long) rows * cols;
+            if (channel.size() != HEADER_SIZE + 4 * (2 * cells + 1 + runCount)) {
+                throw new IOException("Truncated first-move table: " + file);
+            }
+            IntBuffer values = buffer.slice().asIntBuffer();
+            IntBuffer rank = values.duplicate().limit((int) cells).slice();
+            IntBuffer offsets = values.duplicate().position((int) cells).limit((int) (2 * cells + 1)).slice();
+            IntBuffer runs = values.duplicate().position((int) (2 * cells + 1)).slice();
+            return new FirstMoveTable(rows, cols, hvCost, diagonalCost, mapFingerprint, rank, offsets, runs);
+        }
+    }
+
+    /**
+     * @return true if the table was built for a map with these exact blocked cells and costs
+     */
+    public boolean matches(GridMap map) {
+        return map.getRows() == rows && map.getCols() == cols && fingerprint(map) == mapFingerprint;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getHvCost() {
+        return hvCost;
+    }
+
+    public int getDiagonalCost() {
+        return diagonalCost;
+    }
+
+    public int getRunCount() {
+        return runs.limit();
+    }
+
+    /**
+     * @return bytes used by the target order, offsets and runs
+     */
+    public long getTableBytes() {
+        return 4L * (rank.limit() + offsets.limit() + runs.limit());
+    }
+
+    /**
+     * Fork/join task over a range of sources. Every worker thread keeps one
+     * set of search arrays for all the sources it runs.
+     */
+    private static final class BuildTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final GridMap map;
+        private final int hvCost;
+        private final int diagonalCost;
+        private final int[] sources;
+        private final int from;
+        private final int to;
+        private final int[][] encoded;
+        private final ThreadLocal<Scratch> scratch;
+
+        BuildTask(GridMap map, int hvCost, int diagonalCost, int[] sources, int from, int to, int[][] encoded) {
+            this(map, hvCost, diagonalCost, sources, from, to, encoded,
+                    ThreadLocal.withInitial(() -> new Scratch(map.size())));
+        }
+
+        private BuildTask(GridMap map, int hvCost, int diagonalCost, int[] sources, int from, int to,
+                int[][] encoded, ThreadLocal<Scratch> scratch) {
+            this.map = map;
+            this.hvCost = hvCost;
+            this.diagonalCost = diagonalCost;
+            this.sources = sources;
+            this.from = from;
+            this.to = to;
+            this.encoded = encoded;
+            this.scratch = scratch;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > TASK_SIZE && getPool() != null) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BuildTask(map, hvCost, diagonalCost, sources, from, middle, encoded, scratch),
+                        new BuildTask(map, hvCost, diagonalCost, sources, middle, to, encoded, scratch));
+                return;
+            }
+            Scratch memory = scratch.get();
+            for (int i = from; i < to; i++) {
+                memory.search(map, sources[i], hvCost, diagonalCost);
+                encoded[sources[i]] = memory.encode(sources, sources[i]);
+            }
+        }
+    }
+
+    /**
+     * Dijkstra search memory of one thread.
+     */
+    private static final class Scratch {
+        private final int[] dist;
+        // every first move of a shortest path to the cell, one bit per direction
+        private final byte[] moves;
+        private final boolean[] settled;
+        private final IndexedHeap open;
+        // bucket queue of the uniform-cost search, indexed by distance modulo its length
+        private int[][] buckets;
+        private int[] bucketSizes;
+        private int[] runs = new int[64];
+
+        Scratch(int size) {
+            this.dist = new int[size];
+            this.moves = new byte[size];
+            this.settled = new boolean[size];
+            this.open = new IndexedHeap(size);
+        }
+
+        /**
+         * Dijkstra search from the source that gives every reached cell the
+         * set of first moves of its shortest paths.
+         */
+        void search(GridMap map, int source, int hvCost, int diagonalCost) {
+            Arrays.fill(dist, UNREACHABLE);
+            Arrays.fill(settled, false);
+            dist[source] = 0;
+            if (map.getCostLayer() == null) {
+                searchUniform(map, source, hvCost, diagonalCost);
+                return;
+            }
+            open.add(source, 0);
+            while (!open.isEmpty()) {
+                int id = open.poll();
+                settled[id] = true;
+                relax(map, source, id, hvCost, diagonalCost);
+            }
+        }
+
+        /**
+         * Same search with a bucket queue (Dial's algorithm), since without
+         * terrain there are only two step costs: every bucket holds cells of
+         * one distance, and a step never lands further than the bucket count.
+         */
+        private void searchUniform(GridMap map, int source, int hvCost, int diagonalCost) {
+            int count = Math.max(hvCost, diagonalCost) + 1;
+            if (buckets == null || buckets.length != count) {
+                buckets = new int[count][16];
+                bucketSizes = new int[count];
+            }
+            push(0, source);
+            int pending = 1;
+            for (int d = 0; pending > 0; d++) {
+                int b = d % count;
+                // relaxing never adds to the bucket being scanned: steps are shorter than the ring
+                for (int i = 0; i < bucketSizes[b]; i++) {
+                    int id = buckets[b][i];
+                    pending--;
+                    if (settled[id] || dist[id] != d) {
+                        continue;
+                    }
+                    settled[id] = true;
+                    pending += relax(map, source, id, hvCost, diagonalCost);
+                }
+                bucketSizes[b] = 0;
+            }
+        }
+
+        private void push(int distance, int id) {
+            int b = distance % buckets.length;
+            if (bucketSizes[b] == buckets[b].length) {
+                buckets[b] = Arrays.copyOf(buckets[b], 2 * bucketSizes[b]);
+            }
+            buckets[b][bucketSizes[b]++] = id;
+        }
+
+        /**
+         * Relaxes the neighbours of a settled cell.
+         *
+         * @return number of bucket entries added (uniform search only)
+         */
+        private int relax(GridMap map, int source, int id, int hvCost, int diagonalCost) {
+            int rows = map.getRows();
+            int cols = map.getCols();
+            ByteBuffer terrain = map.getCostLayer();
+            int row = id / cols;
+            int col = id - row * cols;
+            int added = 0;
+            for (int d = 0; d < 8; d++) {
+                int r = row + CompactPath.ROW_STEP[d];
+                int c = col + CompactPath.COL_STEP[d];
+                if (r < 0 || r >= rows || c < 0 || c >= cols) {
+                    continue;
+                }
+                int next = r * cols + c;
+                if (settled[next] || map.isBlocked(next)) {
+                    continue;
+                }
+                int step = (d & 1) == 0 ? hvCost : diagonalCost;
+                int cost = dist[id] + (terrain == null ? step : step * (terrain.get(next) & 0xFF));
+                byte via = id == source ? (byte) (1 << d) : moves[id];
+                if (cost == dist[next]) {
+                    moves[next] |= via;
+                } else if (cost < dist[next]) {
+                    moves[next] = via;
+                    if (terrain != null) {
+                        open.update(next, cost, 0);
+                    } else {
+                        push(cost, next);
+                        added++;
+                    }
+                    dist[next] = cost;
+                }
+            }
+            return added;
+        }
+
+        /**
+         * Greedy run-length encoding of the source's first moves in target
+         * order: a run goes on while some move is a shortest first move of
+         * all its targets.
+         *
+         * @return the runs
+         */
+        int[] encode(int[] order, int source) {
+            int count = 0;
+            int start = 0;
+            // moves shared by every target of the current run, 0 before the first target
+            int shared = 0;
+            for (int i = 0; i < order.length; i++) {
+                int target = order[i];
+                if (target == source) {
+                    continue;
+                }
+                int mask = dist[target] == UNREACHABLE ? 1 << NO_MOVE : moves[target] & 0xFF;
+                if ((shared & mask) != 0) {
+                    shared &= mask;
+                    continue;
+                }
+                if (shared != 0) {
+                    count = emit(count, start, shared);
+                    start = i;
+                }
+                shared = mask;
+            }
+            return shared == 0 ? new int[] {NO_MOVE} : Arrays.copyOf(runs, emit(count, start, shared));
+        }
+
+        /**
+         * @return the run count after adding a run of the lowest of the shared moves
+         */
+        private int emit(int count, int start, int shared) {
+            if (count == runs.length) {
+                runs = Arrays.copyOf(runs, 2 * count);
+            }
+            runs[count] = start << 4 | Integer.numberOfTrailingZeros(shared);
+            return count + 1;
+        }
+    }
+}
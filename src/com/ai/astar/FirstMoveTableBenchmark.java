@@ -0,0 +1,147 @@
+package com.ai.astar;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Check and benchmark of {@link FirstMoveTable} and {@link FirstMovePathFinder}.
+ *
+ * On small random maps, with and without terrain, every table walk must cost
+ * what AStar finds (including no path), a table built on the pool must equal
+ * one built on the calling thread, and a saved and memory-mapped table must
+ * give the same moves. Then, on an arena, it reports the build time on one
+ * thread and on the common pool, the table size against 4 bits per pair, the
+ * latency of one first-move lookup, and whole queries against AStar.
+ *
+ * Usage: FirstMoveTableBenchmark [size] [queries]
+ */
+public class FirstMoveTableBenchmark {
+
+    private static final long SEED = 20200926L;
+
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 128;
+        int queryCount = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        Random random = new Random(SEED);
+        int errors = check(random, 40);
+        System.out.println(errors == 0 ? "OK: table walks match AStar, parallel and mapped tables" : "FAILED: " + errors);
+
+        GridMap map = MapGenerator.generate(MapGenerator.Type.ROOMS, size, size, 0.2, SEED).readOnlyCopy();
+        int open = 0;
+        for (int id = 0; id < map.size(); id++) {
+            open += map.isBlocked(id) ? 0 : 1;
+        }
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        FirstMoveTable.build(map, 10, 14, pool);
+        long begin = System.nanoTime();
+        FirstMoveTable sequential = FirstMoveTable.build(map, 10, 14, null);
+        double sequentialMs = (System.nanoTime() - begin) / 1e6;
+        begin = System.nanoTime();
+        FirstMoveTable table = FirstMoveTable.build(map, 10, 14, pool);
+        double parallelMs = (System.nanoTime() - begin) / 1e6;
+        System.out.printf(Locale.ROOT, "%dx%d rooms, %d open cells, %d threads%n", size, size, open,
+                pool.getParallelism());
+        System.out.printf(Locale.ROOT, "build: %.0f ms on one thread, %.0f ms on the pool%n", sequentialMs,
+                parallelMs);
+        System.out.printf(Locale.ROOT, "size: %.2f MB, %.1f runs per source, uncompressed %.2f MB (%.1fx)%n",
+                table.getTableBytes() / 1e6, (double) table.getRunCount() / open, (double) open * open / 2 / 1e6,
+                (double) open * open / 2 / table.getTableBytes());
+        if (sequential.getRunCount() != table.getRunCount()) {
+            System.out.println("FAILED: sequential and parallel builds differ");
+            errors++;
+        }
+
+        PathQuery[] queries = MapGenerator.queries(map, queryCount, 1, 2 * size, SEED);
+        int[] starts = new int[queries.length];
+        int[] goals = new int[queries.length];
+        for (int i = 0; i < queries.length; i++) {
+            starts[i] = map.cellId(queries[i].getInitialNode());
+            goals[i] = map.cellId(queries[i].getFinalNode());
+        }
+        int sink = 0;
+        double lookupNs = Double.MAX_VALUE;
+        for (int run = 0; run < 20; run++) {
+            begin = System.nanoTime();
+            for (int i = 0; i < starts.length; i++) {
+                sink += table.firstMove(starts[i], goals[i]);
+            }
+            lookupNs = Math.min(lookupNs, (double) (System.nanoTime() - begin) / starts.length);
+        }
+        FirstMovePathFinder finder = new FirstMovePathFinder(map, table);
+        AStar aStar = new AStar(map);
+        double walkUs = Double.MAX_VALUE;
+        double searchUs = Double.MAX_VALUE;
+        for (int run = 0; run < 10; run++) {
+            begin = System.nanoTime();
+            for (PathQuery query : queries) {
+                sink += finder.findPath(query.getInitialNode(), query.getFinalNode()).map(List::size).orElse(0);
+            }
+            walkUs = Math.min(walkUs, (System.nanoTime() - begin) / 1e3 / queries.length);
+            begin = System.nanoTime();
+            for (PathQuery query : queries) {
+                sink += aStar.findPath(query.getInitialNode(), query.getFinalNode()).size();
+            }
+            searchUs = Math.min(searchUs, (System.nanoTime() - begin) / 1e3 / queries.length);
+        }
+        System.out.printf(Locale.ROOT, "lookup: %.1f ns per first move%n", lookupNs);
+        System.out.printf(Locale.ROOT, "query: %.2f us table walk, %.2f us AStar (%d)%n", walkUs, searchUs,
+                sink & 1);
+        if (errors > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static int check(Random random, int maps) throws IOException {
+        int errors = 0;
+        Path file = Files.createTempFile("first-move", ".fmt");
+        try {
+            for (int m = 0; m < maps; m++) {
+                GridMap map = MapGenerator.random(4 + random.nextInt(28), 4 + random.nextInt(28), 0.3, SEED + m);
+                if (m % 2 == 0) {
+                    TerrainBenchmark.paintTerrain(map, random, 1 + random.nextInt(3));
+                }
+                FirstMoveTable table = FirstMoveTable.build(map, 10, 14, ForkJoinPool.commonPool());
+                FirstMoveTable sequential = FirstMoveTable.build(map, 10, 14, null);
+                table.save(file);
+                FirstMoveTable mapped = FirstMoveTable.load(file);
+                for (int source = 0; source < map.size(); source++) {
+                    for (int target = 0; target < map.size(); target++) {
+                        if (map.isBlocked(target) || target == source) {
+                            continue;
+                        }
+                        int move = table.firstMove(source, target);
+                        if (sequential.firstMove(source, target) != move || mapped.firstMove(source, target) != move) {
+                            System.out.println("Tables differ from " + source + " to " + target);
+                            return errors + 1;
+                        }
+                    }
+                }
+                FirstMovePathFinder finder = new FirstMovePathFinder(map, mapped);
+                AStar aStar = new AStar(map);
+                for (int q = 0; q < 50; q++) {
+                    Node start = MapGenerator.randomOpenCell(map, random);
+                    Node goal = q % 5 == 0 ? new Node(random.nextInt(map.getRows()), random.nextInt(map.getCols()))
+                            : MapGenerator.randomOpenCell(map, random);
+                    List<Node> expected = aStar.findPath(start, goal);
+                    Optional<List<Node>> path = finder.findPath(start, goal);
+                    int expectedCost = expected.isEmpty() ? -1 : expected.get(expected.size() - 1).getG();
+                    int cost = path.isPresent() ? path.get().get(path.get().size() - 1).getG() : -1;
+                    if (cost != expectedCost) {
+                        System.out.println("Table walk " + start + " -> " + goal + ": " + cost + ", AStar "
+                                + expectedCost);
+                        errors++;
+                    }
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        return errors;
+    }
+}
@@ -0,0 +1,383 @@
+package com.ai.astar;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * Grid of walkable/blocked cells packed into a bitset of longs.
+ *
+ * Cells are addressed by a single int id, {@code row * cols + col}, so the
+ * neighbours of a cell are plain arithmetic on the id (up is {@code id - cols},
+ * left is {@code id - 1}, ...). A 2048x2048 map takes 512KB instead of one
+ * Node object per cell.
+ *
+ * Every edit bumps {@link #getVersion()}, which caches and indexes use to detect
+ * a stale map, and is reported to the registered {@link MapEditListener}s so
+ * they can update incrementally. A {@link #readOnlyCopy()} can be shared by any
+ * number of threads.
+ *
+ * An optional terrain cost layer gives every cell a cost multiplier from 1 to
+ * {@link #MAX_COST}, one byte per cell; it is only allocated once a cell gets
+ * a cost other than 1. {@link AStar} and {@link AStarOrthogonal} multiply the
+ * cost of entering a cell by it, and their heuristics scale with
+ * {@link #getMinCost()} so they stay admissible; {@link DistanceField} and
+ * {@link FirstMoveTable} also price moves with it. {@link JumpPointSearch},
+ * {@link BidirectionalAStar}, {@link IncrementalPathFinder} and
+ * {@link HierarchicalPathFinder} need uniform costs and throw
+ * IllegalStateException on a map with a cost layer; {@link LandmarkTable}
+ * ignores the layer.
+ *
+ * Both layers are held in buffers: heap arrays for maps built in memory, or a
+ * memory-mapped file for maps opened with {@link MapFile#map}, which the
+ * engines then search in place without copying it onto the heap.
+ */
+public class GridMap {
+    private static final MapEditListener[] NO_LISTENERS = new MapEditListener[0];
+
+    /**
+     * highest terrain cost of a cell
+     */
+    public static final int MAX_COST = 255;
+
+    private final int rows;
+    private final int cols;
+    private final LongBuffer blocked;
+    // backing array of blocked for heap maps, read directly in isBlocked; null when mapped
+    private final long[] words;
+    private volatile long version;
+    private boolean readOnly;
+    private volatile MapEditListener[] listeners = NO_LISTENERS;
+    // bit lines for JumpPointSearch, built on first use and kept in step with edits
+    private BlockedLines blockedLines;
+    // terrain cost per cell and number of cells per cost, null while all costs are 1
+    private ByteBuffer costs;
+    private int[] costCounts;
+    private int minCost = 1;
+
+    public GridMap(int rows, int cols) {
+        if (rows <= 0 || cols <= 0 || (long) rows * cols > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid map size " + rows + "x" + cols);
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.words = new long[(rows * cols + 63) >>> 6];
+        this.blocked = LongBuffer.wrap(words);
+    }
+
+    protected GridMap(int rows, int cols, long[] blocked) {
+        this.rows = rows;
+        this.cols = cols;
+        this.words = blocked;
+        this.blocked = LongBuffer.wrap(blocked);
+    }
+
+    /**
+     * Read-only map over existing buffers, e.g. a mapped {@link MapFile}.
+     *
+     * @param costs terrain layer, or null if all costs are 1
+     * @param minCost lowest cost in the layer
+     */
+    GridMap(int rows, int cols, LongBuffer blocked, ByteBuffer costs, int minCost) {
+        this.rows = rows;
+        this.cols = cols;
+        this.blocked = blocked;
+        this.words = null;
+        this.costs = costs;
+        this.minCost = minCost;
+        this.readOnly = true;
+    }
+
+    /**
+     * Builds a map from a matrix where true = blocked, false = open.
+     */
+    public static GridMap fromMatrix(boolean[][] blocksMatrix) {
+        GridMap map = new GridMap(blocksMatrix.length, blocksMatrix[0].length);
+        map.setBlocks(blocksMatrix);
+        return map;
+    }
+
+    /**
+     * Builds a map from a list of blocked [row, col] pairs.
+     */
+    public static GridMap fromBlocks(int rows, int cols, int[][] blocksArray) {
+        GridMap map = new GridMap(rows, cols);
+        map.setBlocks(blocksArray);
+        return map;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * @return the number of cells in the map
+     */
+    public int size() {
+        return rows * cols;
+    }
+
+    public int cellId(int row, int col) {
+        return row * cols + col;
+    }
+
+    /**
+     * @return the cell id of the node, checked against the map bounds: a node
+     *         one column past the edge would otherwise wrap onto the next row
+     * @throws IllegalArgumentException if the node lies outside the map
+     */
+    public int cellId(Node node) {
+        if (!inBounds(node.getRow(), node.getCol())) {
+            throw new IllegalArgumentException(node + " is outside the " + rows + "x" + cols + " map");
+        }
+        return node.getRow() * cols + node.getCol();
+    }
+
+    public int row(int id) {
+        return id / cols;
+    }
+
+    public int col(int id) {
+        return id - (id / cols) * cols;
+    }
+
+    public boolean inBounds(int row, int col) {
+        return row >= 0 && col >= 0 && row < rows && col < cols;
+    }
+
+    public boolean isBlocked(int id) {
+        long word = words != null ? words[id >>> 6] : blocked.get(id >>> 6);
+        return (word & (1L << id)) != 0;
+    }
+
+    public boolean isBlocked(int row, int col) {
+        return isBlocked(cellId(row, col));
+    }
+
+    /**
+     * @return true if the cell is inside the map and not blocked
+     */
+    public boolean isWalkable(int row, int col) {
+        return inBounds(row, col) && !isBlocked(cellId(row, col));
+    }
+
+    public void setBlocked(int id, boolean isBlock) {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Map is read-only");
+        }
+        if (isBlocked(id) == isBlock) {
+            return;
+        }
+        if (isBlock) {
+            words[id >>> 6] |= 1L << id;
+        } else {
+            words[id >>> 6] &= ~(1L << id);
+        }
+        version++;
+        for (MapEditListener listener : listeners) {
+            listener.cellChanged(this, id, isBlock);
+        }
+    }
+
+    public void setBlock(int row, int col, boolean isBlock) {
+        setBlocked(cellId(row, col), isBlock);
+    }
+
+    /**
+     * Takes an input array describing which cells are blocked ex [5, 10] is blocked
+     */
+    public void setBlocks(int[][] blocksArray) {
+        for (int i = 0; i < blocksArray.length; i++) {
+            setBlock(blocksArray[i][0], blocksArray[i][1], true);
+        }
+    }
+
+    /**
+     * Takes an input array describing the entire map where true = blocked, false = open
+     */
+    public void setBlocks(boolean[][] blocksMatrix) {
+        for (int row = 0; row < blocksMatrix.length; row++) {
+            for (int col = 0; col < blocksMatrix[0].length; col++) {
+                if (blocksMatrix[row][col]) {
+                    setBlock(row, col, true);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return terrain cost multiplier of the cell, 1 unless set
+     */
+    public int getCost(int id) {
+        return costs == null ? 1 : costs.get(id) & 0xFF;
+    }
+
+    public int getCost(int row, int col) {
+        return getCost(cellId(row, col));
+    }
+
+    /**
+     * @param cost multiplier of the cost of entering the cell, from 1 to {@link #MAX_COST}
+     */
+    public void setCost(int id, int cost) {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Map is read-only");
+        }
+        if (cost < 1 || cost > MAX_COST) {
+            throw new IllegalArgumentException("Cost must be between 1 and " + MAX_COST + ": " + cost);
+        }
+        int oldCost = getCost(id);
+        if (oldCost == cost) {
+            return;
+        }
+        if (costs == null) {
+            byte[] layer = new byte[size()];
+            Arrays.fill(layer, (byte) 1);
+            costs = ByteBuffer.wrap(layer);
+            costCounts = new int[MAX_COST + 1];
+            costCounts[1] = size();
+        }
+        costs.put(id, (byte) cost);
+        costCounts[oldCost]--;
+        costCounts[cost]++;
+        minCost = 1;
+        while (costCounts[minCost] == 0) {
+            minCost++;
+        }
+        version++;
+        for (MapEditListener listener : listeners) {
+            listener.costChanged(this, id, oldCost, cost);
+        }
+    }
+
+    public void setCost(int row, int col, int cost) {
+        setCost(cellId(row, col), cost);
+    }
+
+    /**
+     * Raw terrain layer for the engines' inner loops (read as {@code costs.get(id) & 0xFF}).
+     * Only absolute gets are thread safe; must not be modified.
+     *
+     * @return the cost of every cell, or null if all costs are 1
+     */
+    public ByteBuffer getCostLayer() {
+        return costs;
+    }
+
+    /**
+     * @return the lowest terrain cost of any cell, the factor heuristics scale by
+     */
+    public int getMinCost() {
+        return minCost;
+    }
+
+    public synchronized void addEditListener(MapEditListener listener) {
+        MapEditListener[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+        updated[listeners.length] = listener;
+        listeners = updated;
+    }
+
+    public synchronized void removeEditListener(MapEditListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                MapEditListener[] updated = new MapEditListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, updated, 0, i);
+                System.arraycopy(listeners, i + 1, updated, i, updated.length - i);
+                listeners = updated;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return a counter that changes on every edit of the map
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return a hash of the map size and blocked cells, stable across runs, used to
+     *         check that precomputed data on disk belongs to this map
+     */
+    public long fingerprint() {
+        long hash = 0xcbf29ce484222325L ^ ((long) rows << 32 | cols);
+        for (int i = 0; i < blocked.limit(); i++) {
+            long word = blocked.get(i);
+            hash = (hash ^ word) * 0x100000001b3L;
+            hash ^= hash >>> 29;
+        }
+        return hash;
+    }
+
+    /**
+     * Raw walkability bitset, bit {@code id & 63} of word {@code id >>> 6}; for {@link MapFile}.
+     */
+    LongBuffer getBitset() {
+        return blocked.duplicate();
+    }
+
+    /**
+     * Backing array of the bitset for {@link BlockedLines}; written only by the edit methods.
+     *
+     * @return the words of a heap map, or null for a mapped one
+     */
+    long[] getWords() {
+        return words;
+    }
+
+    /**
+     * @return the blocked cells by row and by column, shared by every engine over this map
+     */
+    synchronized BlockedLines getBlockedLines() {
+        if (blockedLines == null) {
+            blockedLines = new BlockedLines(this);
+            if (!readOnly) {
+                addEditListener(blockedLines);
+            }
+        }
+        return blockedLines;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * @return a copy of this map that rejects edits, safe to share between threads,
+     *         or this map if it is already read-only
+     */
+    public GridMap readOnlyCopy() {
+        if (readOnly) {
+            return this;
+        }
+        GridMap copy = copy();
+        copy.readOnly = true;
+        return copy;
+    }
+
+    /**
+     * @return an independent, editable copy of this map with the same version and no listeners
+     */
+    public GridMap copy() {
+        long[] bits = new long[blocked.limit()];
+        blocked.get(0, bits);
+        GridMap copy = new GridMap(rows, cols, bits);
+        copy.version = version;
+        if (costs != null) {
+            byte[] layer = new byte[size()];
+            costs.get(0, layer);
+            copy.costs = ByteBuffer.wrap(layer);
+            copy.costCounts = new int[MAX_COST + 1];
+            for (byte cost : layer) {
+                copy.costCounts[cost & 0xFF]++;
+            }
+            copy.minCost = minCost;
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,55 @@
+package com.ai.astar;
+
+import java.util.Arrays;
+
+/**
+ * {@link SearchState} in int arrays on the Java heap with an
+ * {@link IndexedHeap} open list; the default for the grid engines.
+ */
+public class HeapSearchState extends SearchState {
+    private final int[] g;
+    private final int[] parent;
+    private final int[] stamp;
+
+    public HeapSearchState(int size) {
+        super(size, new IndexedHeap(size));
+        this.g = new int[size];
+        this.parent = new int[size];
+        this.stamp = new int[size];
+    }
+
+    @Override
+    int stamp(int id) {
+        return stamp[id];
+    }
+
+    @Override
+    void setStamp(int id, int value) {
+        stamp[id] = value;
+    }
+
+    @Override
+    void clearStamps() {
+        Arrays.fill(stamp, 0);
+    }
+
+    @Override
+    int cost(int id) {
+        return g[id];
+    }
+
+    @Override
+    void setCost(int id, int value) {
+        g[id] = value;
+    }
+
+    @Override
+    public int getParent(int id) {
+        return parent[id];
+    }
+
+    @Override
+    void setParent(int id, int parentId) {
+        parent[id] = parentId;
+    }
+}
@@ -0,0 +1,27 @@
+package com.ai.astar;
+
+/**
+ * Estimate of the remaining cost from a cell to the goal, evaluated lazily by
+ * the engines the first time a cell (or state) is reached.
+ *
+ * Implementations must be admissible (never overestimate the true cost) for the
+ * engine's cost model to keep paths optimal, and should be consistent so that
+ * closed cells never need to be reopened. Estimates are in the same units as
+ * the engine's step costs (10/14 by default), not in cells.
+ */
+public interface Heuristic {
+    /*
+     * incoming direction passed by AStarOrthogonal; the 8-connected engines pass NO_DIRECTION
+     */
+    int NO_DIRECTION = -1;
+    int HORIZONTAL = 0;
+    int VERTICAL = 1;
+
+    /**
+     * @param cellId    cell being evaluated
+     * @param direction direction the cell was entered with, or NO_DIRECTION
+     * @param goalId    goal cell
+     * @return a lower bound of the cost from cellId to goalId
+     */
+    int estimate(int cellId, int direction, int goalId);
+}
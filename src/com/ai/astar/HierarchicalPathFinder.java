@@ -0,0 +1,610 @@
+package com.ai.astar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Hierarchical path finding (HPA*) for very large 8-connected maps.
+ *
+ * The map is split into square clusters. Where two neighbouring clusters share
+ * a run of open cells along their border, one or two entrance transitions are
+ * created, and the cost between every pair of entrance cells inside a cluster
+ * is precomputed with a search bounded to that cluster. A query connects start
+ * and goal to the entrances of their clusters, searches the small abstract
+ * graph, and refines only the clusters on the chosen corridor back into
+ * cells. Paths are valid but may be slightly longer than AStar's, since
+ * they must cross borders at entrances.
+ *
+ * Borders can also be crossed diagonally, as AStar moves: a diagonal squeeze
+ * between two open cells whose shared orthogonal neighbours are both blocked,
+ * along a border or at the corner where four clusters meet, gets a transition
+ * of its own. Every other diagonal crossing can be replaced by two straight
+ * moves through a straight entrance, so the finder never reports a goal that
+ * AStar reaches as unreachable.
+ *
+ * All scratch memory is sized by the cluster and the abstract graph, not by
+ * the map. The finder listens to the map's edits: an edit only marks its
+ * cluster dirty, and its borders and the entrance costs of it and its
+ * neighbours are rebuilt before the next query.
+ *
+ * Needs a map without terrain costs: a query on a map with a cost layer throws
+ * IllegalStateException instead of returning a path priced with unit costs.
+ *
+ * Not thread safe.
+ */
+public class HierarchicalPathFinder implements PathFinder, MapEditListener {
+    private static int DEFAULT_HV_COST = 10;
+    private static int DEFAULT_DIAGONAL_COST = 14;
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+    private static final int[] NO_TRANSITIONS = new int[0];
+    /*
+     * border runs at least this long get an entrance at each end instead of one in the middle
+     */
+    private static final int LONG_ENTRANCE = 6;
+
+    private final GridMap map;
+    private final int rows;
+    private final int cols;
+    private final int clusterSize;
+    private final int clusterRows;
+    private final int clusterCols;
+    private final int hvCost;
+    private final int diagonalCost;
+
+    /*
+     * transitions across the east border of each cluster: pairs of (west cell, east cell)
+     */
+    private final int[][] eastTransitions;
+    /*
+     * transitions across the south border of each cluster: pairs of (north cell, south cell)
+     */
+    private final int[][] southTransitions;
+    /*
+     * diagonal transitions across the south-east corner of each cluster, pairs of cells
+     */
+    private final int[][] cornerTransitions;
+    /*
+     * entrance cells inside each cluster and the k * k cost matrix between them
+     */
+    private final int[][] clusterCells;
+    private final int[][] clusterCosts;
+    private final boolean[] dirty;
+    private boolean anyDirty;
+
+    /*
+     * abstract graph: node ids are numbered cluster by cluster from clusterBase,
+     * followed by the start and goal of the current query
+     */
+    private final int[] clusterBase;
+    private int[] nodeCells = NO_TRANSITIONS;
+    private SearchState abstractState = new HeapSearchState(2);
+
+    /*
+     * scratch for searches bounded to one cluster, indexed by local cell id
+     */
+    private final SearchState localState;
+    private int expanded;
+
+    public HierarchicalPathFinder(GridMap map, int clusterSize, int hvCost, int diagonalCost) {
+        this.map = map;
+        this.rows = map.getRows();
+        this.cols = map.getCols();
+        this.clusterSize = clusterSize;
+        this.clusterRows = (rows + clusterSize - 1) / clusterSize;
+        this.clusterCols = (cols + clusterSize - 1) / clusterSize;
+        this.hvCost = hvCost;
+        this.diagonalCost = diagonalCost;
+        int clusters = clusterRows * clusterCols;
+        this.eastTransitions = new int[clusters][];
+        this.southTransitions = new int[clusters][];
+        this.cornerTransitions = new int[clusters][];
+        this.clusterCells = new int[clusters][];
+        this.clusterCosts = new int[clusters][];
+        this.clusterBase = new int[clusters + 1];
+        this.dirty = new boolean[clusters];
+        this.localState = new HeapSearchState(clusterSize * clusterSize);
+        Arrays.fill(dirty, true);
+        this.anyDirty = true;
+        if (!map.isReadOnly()) {
+            map.addEditListener(this);
+        }
+    }
+
+    public HierarchicalPathFinder(GridMap map, int clusterSize) {
+        this(map, clusterSize, DEFAULT_HV_COST, DEFAULT_DIAGONAL_COST);
+    }
+
+    /**
+     * Marks the cluster of an edited cell for a rebuild.
+     */
+    @Override
+    public void cellChanged(GridMap map, int cellId, boolean isBlock) {
+        dirty[clusterOf(cellId)] = true;
+        anyDirty = true;
+    }
+
+    /**
+     * Builds the abstract graph for every dirty cluster. Called automatically by
+     * findPath; call it up front to keep the cost out of the first query.
+     */
+    public void rebuild() {
+        if (!anyDirty) {
+            return;
+        }
+        int clusters = clusterRows * clusterCols;
+        boolean[] refresh = new boolean[clusters];
+        for (int k = 0; k < clusters; k++) {
+            if (!dirty[k]) {
+                continue;
+            }
+            int clusterRow = k / clusterCols;
+            int clusterCol = k % clusterCols;
+            // every border and corner with a cell in this cluster, and the clusters on their far side
+            for (int row = Math.max(0, clusterRow - 1); row <= Math.min(clusterRows - 1, clusterRow + 1); row++) {
+                for (int col = Math.max(0, clusterCol - 1); col <= Math.min(clusterCols - 1, clusterCol + 1); col++) {
+                    int neighbour = row * clusterCols + col;
+                    refresh[neighbour] = true;
+                    if (row <= clusterRow && col <= clusterCol) {
+                        buildCorner(neighbour);
+                        if (row == clusterRow) {
+                            buildEastBorder(neighbour);
+                        }
+                        if (col == clusterCol) {
+                            buildSouthBorder(neighbour);
+                        }
+                    }
+                }
+            }
+        }
+        for (int k = 0; k < clusters; k++) {
+            if (refresh[k]) {
+                buildCluster(k);
+            }
+            dirty[k] = false;
+        }
+        int nodes = 0;
+        for (int k = 0; k < clusters; k++) {
+            clusterBase[k] = nodes;
+            nodes += clusterCells[k].length;
+        }
+        clusterBase[clusters] = nodes;
+        nodeCells = new int[nodes + 2];
+        for (int k = 0; k < clusters; k++) {
+            System.arraycopy(clusterCells[k], 0, nodeCells, clusterBase[k], clusterCells[k].length);
+        }
+        if (abstractState.size() < nodes + 2) {
+            abstractState = new HeapSearchState(nodes + 2);
+        }
+        anyDirty = false;
+    }
+
+    private void buildEastBorder(int k) {
+        int clusterCol = k % clusterCols;
+        if (clusterCol + 1 >= clusterCols) {
+            eastTransitions[k] = NO_TRANSITIONS;
+            return;
+        }
+        int top = (k / clusterCols) * clusterSize;
+        int bottom = Math.min(rows, top + clusterSize);
+        int westCol = (clusterCol + 1) * clusterSize - 1;
+        List<Integer> pairs = new ArrayList<>();
+        int runStart = -1;
+        for (int row = top; row <= bottom; row++) {
+            boolean open = row < bottom && !map.isBlocked(row, westCol) && !map.isBlocked(row, westCol + 1);
+            if (open && runStart == -1) {
+                runStart = row;
+            } else if (!open && runStart != -1) {
+                for (int entrance : entrances(runStart, row - 1)) {
+                    pairs.add(map.cellId(entrance, westCol));
+                    pairs.add(map.cellId(entrance, westCol + 1));
+                }
+                runStart = -1;
+            }
+        }
+        for (int row = top; row + 1 < bottom; row++) {
+            addSqueeze(pairs, map.cellId(row, westCol), map.cellId(row + 1, westCol + 1),
+                    map.cellId(row, westCol + 1), map.cellId(row + 1, westCol));
+            addSqueeze(pairs, map.cellId(row + 1, westCol), map.cellId(row, westCol + 1),
+                    map.cellId(row, westCol), map.cellId(row + 1, westCol + 1));
+        }
+        eastTransitions[k] = toArray(pairs);
+    }
+
+    private void buildSouthBorder(int k) {
+        int clusterRow = k / clusterCols;
+        if (clusterRow + 1 >= clusterRows) {
+            southTransitions[k] = NO_TRANSITIONS;
+            return;
+        }
+        int left = (k % clusterCols) * clusterSize;
+        int right = Math.min(cols, left + clusterSize);
+        int northRow = (clusterRow + 1) * clusterSize - 1;
+        List<Integer> pairs = new ArrayList<>();
+        int runStart = -1;
+        for (int col = left; col <= right; col++) {
+            boolean open = col < right && !map.isBlocked(northRow, col) && !map.isBlocked(northRow + 1, col);
+            if (open && runStart == -1) {
+                runStart = col;
+            } else if (!open && runStart != -1) {
+                for (int entrance : entrances(runStart, col - 1)) {
+                    pairs.add(map.cellId(northRow, entrance));
+                    pairs.add(map.cellId(northRow + 1, entrance));
+                }
+                runStart = -1;
+            }
+        }
+        for (int col = left; col + 1 < right; col++) {
+            addSqueeze(pairs, map.cellId(northRow, col), map.cellId(northRow + 1, col + 1),
+                    map.cellId(northRow, col + 1), map.cellId(northRow + 1, col));
+            addSqueeze(pairs, map.cellId(northRow, col + 1), map.cellId(northRow + 1, col),
+                    map.cellId(northRow, col), map.cellId(northRow + 1, col + 1));
+        }
+        southTransitions[k] = toArray(pairs);
+    }
+
+    /**
+     * Diagonal transitions between the cluster and the one south-east or
+     * south-west of its corner, which share no border.
+     */
+    private void buildCorner(int k) {
+        int clusterRow = k / clusterCols;
+        int clusterCol = k % clusterCols;
+        if (clusterRow + 1 >= clusterRows || clusterCol + 1 >= clusterCols) {
+            cornerTransitions[k] = NO_TRANSITIONS;
+            return;
+        }
+        int row = (clusterRow + 1) * clusterSize;
+        int col = (clusterCol + 1) * clusterSize;
+        List<Integer> pairs = new ArrayList<>();
+        addSqueeze(pairs, map.cellId(row - 1, col - 1), map.cellId(row, col), map.cellId(row - 1, col),
+                map.cellId(row, col - 1));
+        addSqueeze(pairs, map.cellId(row - 1, col), map.cellId(row, col - 1), map.cellId(row - 1, col - 1),
+                map.cellId(row, col));
+        cornerTransitions[k] = toArray(pairs);
+    }
+
+    /**
+     * Adds the diagonal step between from and to when it is the only way
+     * between them: both sides open and both cells they squeeze past blocked.
+     * Otherwise one of the side cells gives two straight crossings instead.
+     */
+    private void addSqueeze(List<Integer> pairs, int from, int to, int side, int otherSide) {
+        if (!map.isBlocked(from) && !map.isBlocked(to) && map.isBlocked(side) && map.isBlocked(otherSide)) {
+            pairs.add(from);
+            pairs.add(to);
+        }
+    }
+
+    private static int[] entrances(int first, int last) {
+        if (last - first + 1 >= LONG_ENTRANCE) {
+            return new int[]{first, last};
+        }
+        return new int[]{(first + last) / 2};
+    }
+
+    /**
+     * Collects the entrance cells of a cluster from its borders and corners
+     * and computes the cost matrix between them.
+     */
+    private void buildCluster(int k) {
+        List<Integer> cells = new ArrayList<>();
+        for (int[] pairs : transitionsOf(k)) {
+            for (int cell : pairs) {
+                if (clusterOf(cell) == k && !cells.contains(cell)) {
+                    cells.add(cell);
+                }
+            }
+        }
+        int[] entranceCells = toArray(cells);
+        int count = entranceCells.length;
+        int[] costs = new int[count * count];
+        for (int i = 0; i < count; i++) {
+            searchCluster(entranceCells[i], -1, k);
+            for (int j = 0; j < count; j++) {
+                costs[i * count + j] = localCost(entranceCells[j], k);
+            }
+        }
+        clusterCells[k] = entranceCells;
+        clusterCosts[k] = costs;
+    }
+
+    /**
+     * @return the transition lists of the four borders and four corners of the cluster
+     */
+    private List<int[]> transitionsOf(int k) {
+        int clusterRow = k / clusterCols;
+        int clusterCol = k % clusterCols;
+        List<int[]> lists = new ArrayList<>(8);
+        lists.add(eastTransitions[k]);
+        lists.add(southTransitions[k]);
+        lists.add(cornerTransitions[k]);
+        if (clusterCol > 0) {
+            lists.add(eastTransitions[k - 1]);
+            lists.add(cornerTransitions[k - 1]);
+        }
+        if (clusterRow > 0) {
+            lists.add(southTransitions[k - clusterCols]);
+            lists.add(cornerTransitions[k - clusterCols]);
+            if (clusterCol > 0) {
+                lists.add(cornerTransitions[k - clusterCols - 1]);
+            }
+        }
+        return lists;
+    }
+
+    @Override
+    public Optional<List<Node>> findPath(Node initialNode, Node finalNode) {
+        if (map.getCostLayer() != null) {
+            throw new IllegalStateException(
+                    "Hierarchical path finding needs uniform costs; the map has a terrain layer");
+        }
+        rebuild();
+        expanded = 0;
+        int start = map.cellId(initialNode);
+        int goal = map.cellId(finalNode);
+        if (map.isBlocked(start) || map.isBlocked(goal)) {
+            return Optional.empty();
+        }
+        int startCluster = clusterOf(start);
+        int goalCluster = clusterOf(goal);
+        if (startCluster == goalCluster) {
+            searchCluster(start, goal, startCluster);
+            if (localCost(goal, startCluster) != UNREACHABLE) {
+                return Optional.of(toNodes(localPath(goal, startCluster, new ArrayList<Integer>())));
+            }
+        }
+
+        // connect start and goal to the entrances of their clusters
+        int[] startCells = clusterCells[startCluster];
+        int[] startCosts = new int[startCells.length];
+        searchCluster(start, -1, startCluster);
+        for (int i = 0; i < startCells.length; i++) {
+            startCosts[i] = localCost(startCells[i], startCluster);
+        }
+        int[] goalCells = clusterCells[goalCluster];
+        int[] goalCosts = new int[goalCells.length];
+        searchCluster(goal, -1, goalCluster);
+        for (int i = 0; i < goalCells.length; i++) {
+            goalCosts[i] = localCost(goalCells[i], goalCluster);
+        }
+
+        List<Integer> corridor = abstractSearch(start, goal, startCosts, goalCosts);
+        if (corridor == null) {
+            return Optional.empty();
+        }
+        return Optional.of(toNodes(refine(corridor)));
+    }
+
+    /**
+     * A* over entrance cells. Returns the sequence of abstract cells from start
+     * to goal, or null if the goal cannot be reached.
+     */
+    private List<Integer> abstractSearch(int start, int goal, int[] startCosts, int[] goalCosts) {
+        int startNode = clusterBase[clusterBase.length - 1];
+        int goalNode = startNode + 1;
+        int startCluster = clusterOf(start);
+        int goalCluster = clusterOf(goal);
+        nodeCells[startNode] = start;
+        nodeCells[goalNode] = goal;
+        SearchState state = abstractState;
+        state.begin();
+        state.open(startNode, 0, octile(start, goal), -1);
+        while (state.hasOpen()) {
+            int node = state.closeNext();
+            expanded++;
+            if (node == goalNode) {
+                List<Integer> corridor = new ArrayList<>();
+                for (int n = goalNode; n != -1; n = state.getParent(n)) {
+                    corridor.add(nodeCells[n]);
+                }
+                Collections.reverse(corridor);
+                return corridor;
+            }
+            if (node == startNode) {
+                int base = clusterBase[startCluster];
+                for (int i = 0; i < startCosts.length; i++) {
+                    relax(node, base + i, startCosts[i], goal);
+                }
+                continue;
+            }
+            int cell = nodeCells[node];
+            int k = clusterOf(cell);
+            int base = clusterBase[k];
+            int index = node - base;
+            int count = clusterCells[k].length;
+            for (int j = 0; j < count; j++) {
+                relax(node, base + j, clusterCosts[k][index * count + j], goal);
+            }
+            for (int[] pairs : transitionsOf(k)) {
+                for (int i = 0; i < pairs.length; i += 2) {
+                    if (pairs[i] == cell) {
+                        relax(node, nodeOf(pairs[i + 1]), stepCost(cell, pairs[i + 1]), goal);
+                    } else if (pairs[i + 1] == cell) {
+                        relax(node, nodeOf(pairs[i]), stepCost(cell, pairs[i]), goal);
+                    }
+                }
+            }
+            if (k == goalCluster) {
+                relax(node, goalNode, goalCosts[index], goal);
+            }
+        }
+        return null;
+    }
+
+    private void relax(int from, int to, int cost, int goal) {
+        SearchState state = abstractState;
+        if (cost == UNREACHABLE || state.isClosed(to)) {
+            return;
+        }
+        int gCost = state.getG(from) + cost;
+        if (gCost < state.getG(to)) {
+            state.open(to, gCost, gCost + octile(nodeCells[to], goal), from);
+        }
+    }
+
+    private int nodeOf(int cell) {
+        int k = clusterOf(cell);
+        int[] cells = clusterCells[k];
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i] == cell) {
+                return clusterBase[k] + i;
+            }
+        }
+        throw new IllegalStateException("Cell " + cell + " is not an entrance of cluster " + k);
+    }
+
+    private int stepCost(int from, int to) {
+        boolean diagonal = map.row(from) != map.row(to) && map.col(from) != map.col(to);
+        return diagonal ? diagonalCost : hvCost;
+    }
+
+    /**
+     * Expands the abstract corridor into cells: steps across borders are taken
+     * directly, hops inside a cluster are refined with a search bounded to it.
+     */
+    private List<Integer> refine(List<Integer> corridor) {
+        List<Integer> cells = new ArrayList<>();
+        cells.add(corridor.get(0));
+        for (int i = 1; i < corridor.size(); i++) {
+            int from = corridor.get(i - 1);
+            int to = corridor.get(i);
+            int k = clusterOf(from);
+            if (k != clusterOf(to)) {
+                cells.add(to);
+                continue;
+            }
+            searchCluster(from, to, k);
+            List<Integer> segment = localPath(to, k, new ArrayList<Integer>());
+            cells.addAll(segment.subList(1, segment.size()));
+        }
+        return cells;
+    }
+
+    /**
+     * A* (or Dijkstra when target is -1) from source, never leaving cluster k.
+     */
+    private void searchCluster(int source, int target, int k) {
+        int top = (k / clusterCols) * clusterSize;
+        int left = (k % clusterCols) * clusterSize;
+        int bottom = Math.min(rows, top + clusterSize);
+        int right = Math.min(cols, left + clusterSize);
+        SearchState state = localState;
+        state.begin();
+        int localSource = localId(source, top, left);
+        state.open(localSource, 0, target == -1 ? 0 : octile(source, target), -1);
+        while (state.hasOpen()) {
+            int current = state.closeNext();
+            expanded++;
+            int row = top + current / clusterSize;
+            int col = left + current % clusterSize;
+            if (target != -1 && map.cellId(row, col) == target) {
+                return;
+            }
+            for (int dr = -1; dr <= 1; dr++) {
+                for (int dc = -1; dc <= 1; dc++) {
+                    int nextRow = row + dr;
+                    int nextCol = col + dc;
+                    if ((dr == 0 && dc == 0) || nextRow < top || nextCol < left || nextRow >= bottom || nextCol >= right) {
+                        continue;
+                    }
+                    int next = map.cellId(nextRow, nextCol);
+                    int localNext = localId(next, top, left);
+                    if (map.isBlocked(next) || state.isClosed(localNext)) {
+                        continue;
+                    }
+                    int gCost = state.getG(current) + (dr != 0 && dc != 0 ? diagonalCost : hvCost);
+                    if (gCost < state.getG(localNext)) {
+                        state.open(localNext, gCost, gCost + (target == -1 ? 0 : octile(next, target)), current);
+                    }
+                }
+            }
+        }
+    }
+
+    private int localCost(int cell, int k) {
+        int local = localId(cell, (k / clusterCols) * clusterSize, (k % clusterCols) * clusterSize);
+        return localState.getG(local);
+    }
+
+    private List<Integer> localPath(int target, int k, List<Integer> path) {
+        int top = (k / clusterCols) * clusterSize;
+        int left = (k % clusterCols) * clusterSize;
+        for (int local = localId(target, top, left); local != -1; local = localState.getParent(local)) {
+            path.add(map.cellId(top + local / clusterSize, left + local % clusterSize));
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    private List<Node> toNodes(List<Integer> cells) {
+        List<Node> path = new ArrayList<Node>(cells.size());
+        int g = 0;
+        Node previous = null;
+        for (int cell : cells) {
+            Node node = new Node(map.row(cell), map.col(cell));
+            if (previous != null) {
+                boolean diagonal = previous.getRow() != node.getRow() && previous.getCol() != node.getCol();
+                g += diagonal ? diagonalCost : hvCost;
+                node.setParent(previous);
+            }
+            node.setG(g);
+            path.add(node);
+            previous = node;
+        }
+        return path;
+    }
+
+    private int localId(int cell, int top, int left) {
+        return (map.row(cell) - top) * clusterSize + (map.col(cell) - left);
+    }
+
+    private int clusterOf(int cell) {
+        return (map.row(cell) / clusterSize) * clusterCols + map.col(cell) / clusterSize;
+    }
+
+    private int octile(int from, int to) {
+        int dRow = Math.abs(map.row(from) - map.row(to));
+        int dCol = Math.abs(map.col(from) - map.col(to));
+        int diagonal = Math.min(dRow, dCol);
+        return diagonal * Math.min(diagonalCost, 2 * hvCost) + (Math.max(dRow, dCol) - diagonal) * hvCost;
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    @Override
+    public int getExpandedCount() {
+        return expanded;
+    }
+
+    /**
+     * @return number of entrance cells in the abstract graph
+     */
+    public int getAbstractNodeCount() {
+        rebuild();
+        return clusterBase[clusterBase.length - 1];
+    }
+
+    public GridMap getMap() {
+        return map;
+    }
+
+    public int getClusterSize() {
+        return clusterSize;
+    }
+
+    /**
+     * Stops listening to the map's edits.
+     */
+    public void close() {
+        map.removeEditListener(this);
+    }
+}
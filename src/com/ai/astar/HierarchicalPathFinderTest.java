@@ -0,0 +1,162 @@
+package com.ai.astar;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Checks of {@link HierarchicalPathFinder} against {@link AStar}.
+ *
+ * On random, maze and rooms maps of several cluster sizes, every query must be
+ * reachable for HPA* exactly when it is for AStar, and a found path must be a
+ * valid sequence of AStar moves whose cost is at least AStar's. Cells are then
+ * edited directly on the map between queries, so the finder has to follow the
+ * map through its edit listener. Two hand-built maps whose only way across a
+ * cluster border, or a cluster corner, is a diagonal squeeze check the diagonal
+ * transitions. Reports the mean and worst cost ratio to AStar.
+ *
+ * Usage: HierarchicalPathFinderTest [queries per map]
+ */
+public class HierarchicalPathFinderTest {
+
+    private static final long SEED = 20201017L;
+
+    private static int queries;
+    private static int unreachable;
+    private static double ratioSum;
+    private static double worstRatio = 1;
+
+    public static void main(String[] args) {
+        int queryCount = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        Random random = new Random(SEED);
+        int errors = checkSqueezes();
+        MapGenerator.Type[] types = {MapGenerator.Type.RANDOM, MapGenerator.Type.MAZE, MapGenerator.Type.ROOMS};
+        for (MapGenerator.Type type : types) {
+            for (int clusterSize : new int[] {4, 7, 16}) {
+                GridMap map = MapGenerator.generate(type, 61 + random.nextInt(20), 61 + random.nextInt(20), 0.3,
+                        random.nextLong());
+                errors += check(type + "/" + clusterSize, map, clusterSize, queryCount, 0, random);
+                errors += check(type + "/" + clusterSize + " edited", map, clusterSize, queryCount, 3, random);
+            }
+        }
+        System.out.printf(Locale.ROOT, "%d queries, cost / AStar cost: mean %.3f, worst %.3f%n", queries,
+                ratioSum / Math.max(1, queries - unreachable), worstRatio);
+        System.out.println(errors == 0 ? "OK: HPA* reaches what AStar reaches with valid paths" : "FAILED: " + errors);
+        if (errors > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @param edits cells flipped directly on the map before each query
+     */
+    private static int check(String name, GridMap map, int clusterSize, int queryCount, int edits, Random random) {
+        HierarchicalPathFinder hierarchical = new HierarchicalPathFinder(map, clusterSize);
+        AStar aStar = new AStar(map);
+        int errors = 0;
+        for (int q = 0; q < queryCount; q++) {
+            for (int e = 0; e < edits; e++) {
+                int row = random.nextInt(map.getRows());
+                int col = random.nextInt(map.getCols());
+                map.setBlock(row, col, !map.isBlocked(row, col));
+            }
+            Node start = MapGenerator.randomOpenCell(map, random);
+            Node goal = MapGenerator.randomOpenCell(map, random);
+            errors += compare(name, map, aStar, hierarchical, start, goal);
+        }
+        hierarchical.close();
+        return errors;
+    }
+
+    private static int compare(String name, GridMap map, AStar aStar, HierarchicalPathFinder hierarchical,
+            Node start, Node goal) {
+        queries++;
+        List<Node> expected = aStar.findPath(start, goal);
+        Optional<List<Node>> actual = hierarchical.findPath(start, goal);
+        if (expected.isEmpty() != !actual.isPresent()) {
+            System.out.println(name + ": " + start + " -> " + goal + " AStar " + (expected.isEmpty() ? "unreachable"
+                    : "reachable") + ", HPA* " + (actual.isPresent() ? "reachable" : "unreachable"));
+            return 1;
+        }
+        if (expected.isEmpty()) {
+            unreachable++;
+            return 0;
+        }
+        List<Node> path = actual.get();
+        String invalid = validate(map, path, start, goal);
+        int expectedCost = expected.get(expected.size() - 1).getG();
+        int cost = path.get(path.size() - 1).getG();
+        if (invalid == null && cost < expectedCost) {
+            invalid = "cost " + cost + " below the optimal " + expectedCost;
+        }
+        if (invalid != null) {
+            System.out.println(name + ": " + start + " -> " + goal + " " + invalid);
+            return 1;
+        }
+        double ratio = expectedCost == 0 ? 1 : (double) cost / expectedCost;
+        ratioSum += ratio;
+        worstRatio = Math.max(worstRatio, ratio);
+        return 0;
+    }
+
+    /**
+     * @return why the path is not a valid AStar path from start to goal with its g costs, or null
+     */
+    private static String validate(GridMap map, List<Node> path, Node start, Node goal) {
+        if (!path.get(0).equals(start) || !path.get(path.size() - 1).equals(goal)) {
+            return "does not join start and goal";
+        }
+        int g = 0;
+        for (int i = 0; i < path.size(); i++) {
+            Node node = path.get(i);
+            if (!map.isWalkable(node.getRow(), node.getCol())) {
+                return "enters blocked " + node;
+            }
+            if (i > 0) {
+                Node previous = path.get(i - 1);
+                int dRow = Math.abs(node.getRow() - previous.getRow());
+                int dCol = Math.abs(node.getCol() - previous.getCol());
+                if (dRow > 1 || dCol > 1 || dRow + dCol == 0) {
+                    return "jumps from " + previous + " to " + node;
+                }
+                g += dRow + dCol == 2 ? 14 : 10;
+            }
+            if (node.getG() != g) {
+                return "wrong g at " + node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Walls along a cluster border and around a cluster corner, each with a
+     * single diagonal gap.
+     */
+    private static int checkSqueezes() {
+        int errors = 0;
+        // wall on both sides of the border between columns 7 and 8, open only from (3, 7) to (4, 8)
+        GridMap border = new GridMap(16, 16);
+        for (int row = 0; row < 16; row++) {
+            if (row != 3) {
+                border.setBlock(row, 7, true);
+            }
+            if (row != 4) {
+                border.setBlock(row, 8, true);
+            }
+        }
+        errors += compare("border squeeze", border, new AStar(border), new HierarchicalPathFinder(border, 8),
+                new Node(10, 2), new Node(12, 13));
+        // four walled quadrants meeting at the corner (8, 8), open only from (7, 7) to (8, 8)
+        GridMap corner = new GridMap(16, 16);
+        for (int i = 0; i < 16; i++) {
+            corner.setBlock(7, i, i != 7);
+            corner.setBlock(8, i, i != 8);
+            corner.setBlock(i, 7, i != 7);
+            corner.setBlock(i, 8, i != 8);
+        }
+        errors += compare("corner squeeze", corner, new AStar(corner), new HierarchicalPathFinder(corner, 8),
+                new Node(2, 2), new Node(13, 13));
+        return errors;
+    }
+}
@@ -0,0 +1,340 @@
+package com.ai.astar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Incremental replanning (D* Lite) with the {@link AStarOrthogonal} cost model
+ * on maps without terrain costs.
+ *
+ * The search runs backwards from the goal over the same (cell, incoming
+ * direction) states as AStarOrthogonal and keeps its g/rhs values between
+ * calls. While the goal stays the same, blocking or unblocking a cell, through
+ * {@link #setBlock} or directly on the map (the planner listens to its edits),
+ * only re-opens the states next to the edited cell, and the next
+ * {@link #findPath} repairs just the values the edit affected. The
+ * start may move between calls; the key modifier km keeps the queue valid
+ * without re-sorting it. A new goal resets the search in O(1) via generation
+ * stamps.
+ *
+ * A query on a map with a terrain cost layer throws IllegalStateException
+ * instead of returning a path priced with unit costs.
+ *
+ * Not thread safe; edits of the map must come from the thread that queries.
+ * Call {@link #close} when the planner is no longer used.
+ */
+public class IncrementalPathFinder implements PathFinder, MapEditListener {
+    private static final int ORTHOGONAL_COST = AStarOrthogonal.ORTHOGONAL_COST;
+    private static final int DIRECTION_CHANGE_PENALTY = AStarOrthogonal.DIRECTION_CHANGE_PENALTY;
+    private static final int INFINITY = Integer.MAX_VALUE / 4;
+    private static final int HORIZONTAL = Heuristic.HORIZONTAL;
+    private static final int VERTICAL = Heuristic.VERTICAL;
+
+    private final GridMap map;
+    private final int rows;
+    private final int cols;
+    private final int[] g;
+    private final int[] rhs;
+    private final int[] stamp;
+    private final IndexedHeap openList;
+    private int generation;
+
+    private int goal = -1;
+    private int lastStart = -1;
+    private int km;
+    private int expanded;
+
+    public IncrementalPathFinder(GridMap map) {
+        this.map = map;
+        this.rows = map.getRows();
+        this.cols = map.getCols();
+        int states = 2 * map.size();
+        this.g = new int[states];
+        this.rhs = new int[states];
+        this.stamp = new int[states];
+        this.openList = new IndexedHeap(states);
+        if (!map.isReadOnly()) {
+            map.addEditListener(this);
+        }
+    }
+
+    @Override
+    public Optional<List<Node>> findPath(Node initialNode, Node finalNode) {
+        if (map.getCostLayer() != null) {
+            throw new IllegalStateException("Incremental replanning needs uniform costs; the map has a terrain layer");
+        }
+        int start = map.cellId(initialNode);
+        int goalCell = map.cellId(finalNode);
+        expanded = 0;
+        if (goalCell != goal) {
+            reset(goalCell, start);
+        } else if (start != lastStart) {
+            km += heuristic(lastStart, start);
+            lastStart = start;
+        }
+        if (start == goal) {
+            List<Node> path = new ArrayList<Node>();
+            path.add(new Node(initialNode.getRow(), initialNode.getCol()));
+            return Optional.of(path);
+        }
+        computeShortestPath(start);
+        return extractPath(start);
+    }
+
+    /**
+     * Blocks or unblocks a cell of the map; the same as editing the map directly.
+     */
+    public void setBlock(int row, int col, boolean isBlock) {
+        map.setBlock(row, col, isBlock);
+    }
+
+    /**
+     * Marks the states next to an edited cell for repair.
+     */
+    @Override
+    public void cellChanged(GridMap map, int cellId, boolean isBlock) {
+        if (goal == -1) {
+            return;
+        }
+        // only edges entering the cell change cost: update every state that can step into it
+        updatePredecessors(stateId(cellId, HORIZONTAL));
+        updatePredecessors(stateId(cellId, VERTICAL));
+    }
+
+    private void reset(int goalCell, int start) {
+        generation++;
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            generation = 1;
+        }
+        openList.clear();
+        goal = goalCell;
+        lastStart = start;
+        km = 0;
+        for (int direction = HORIZONTAL; direction <= VERTICAL; direction++) {
+            int state = stateId(goalCell, direction);
+            touch(state);
+            rhs[state] = 0;
+            openList.add(state, heuristic(start, goalCell), 0);
+        }
+    }
+
+    private void computeShortestPath(int start) {
+        while (!openList.isEmpty()) {
+            int startRhs = startRhs(start);
+            int topKey = openList.peekKey();
+            int topTie = -openList.peekTie();
+            // stop once the virtual start state would be at the top of the queue
+            if (topKey > startRhs + km || (topKey == startRhs + km && topTie >= startRhs)) {
+                return;
+            }
+            int u = openList.peek();
+            expanded++;
+            int newKey = key(u, start);
+            int newTie = Math.min(getG(u), getRhs(u));
+            if (topKey < newKey || (topKey == newKey && topTie < newTie)) {
+                openList.update(u, newKey, -newTie);
+            } else if (getG(u) > getRhs(u)) {
+                g[u] = rhs[u];
+                openList.remove(u);
+                updatePredecessors(u);
+            } else {
+                g[u] = INFINITY;
+                updateVertex(u, start);
+                updatePredecessors(u);
+            }
+        }
+    }
+
+    private void updateVertex(int u, int start) {
+        touch(u);
+        int cell = cellOf(u);
+        if (cell != goal) {
+            rhs[u] = bestSuccessorCost(cell, u & 1);
+        }
+        if (openList.contains(u)) {
+            openList.remove(u);
+        }
+        if (g[u] != rhs[u]) {
+            int min = Math.min(g[u], rhs[u]);
+            openList.add(u, min + heuristic(start, cell) + km, -min);
+        }
+    }
+
+    /**
+     * Updates the states that can step into state v: the two neighbours along
+     * v's axis, each entered in either direction.
+     */
+    private void updatePredecessors(int v) {
+        int cell = cellOf(v);
+        int row = cell / cols;
+        int col = cell - row * cols;
+        int start = lastStart;
+        if ((v & 1) == HORIZONTAL) {
+            if (col > 0) {
+                updateVertex(stateId(cell - 1, HORIZONTAL), start);
+                updateVertex(stateId(cell - 1, VERTICAL), start);
+            }
+            if (col + 1 < cols) {
+                updateVertex(stateId(cell + 1, HORIZONTAL), start);
+                updateVertex(stateId(cell + 1, VERTICAL), start);
+            }
+        } else {
+            if (row > 0) {
+                updateVertex(stateId(cell - cols, HORIZONTAL), start);
+                updateVertex(stateId(cell - cols, VERTICAL), start);
+            }
+            if (row + 1 < rows) {
+                updateVertex(stateId(cell + cols, HORIZONTAL), start);
+                updateVertex(stateId(cell + cols, VERTICAL), start);
+            }
+        }
+    }
+
+    /**
+     * @param direction direction the cell was entered with, or -1 for the start
+     * @return min over moves of (move cost + g of the state the move leads to)
+     */
+    private int bestSuccessorCost(int cell, int direction) {
+        int row = cell / cols;
+        int col = cell - row * cols;
+        int best = INFINITY;
+        if (col > 0) {
+            best = Math.min(best, moveCost(cell - 1, direction, HORIZONTAL));
+        }
+        if (col + 1 < cols) {
+            best = Math.min(best, moveCost(cell + 1, direction, HORIZONTAL));
+        }
+        if (row > 0) {
+            best = Math.min(best, moveCost(cell - cols, direction, VERTICAL));
+        }
+        if (row + 1 < rows) {
+            best = Math.min(best, moveCost(cell + cols, direction, VERTICAL));
+        }
+        return best;
+    }
+
+    private int moveCost(int nextCell, int direction, int moveDirection) {
+        if (map.isBlocked(nextCell)) {
+            return INFINITY;
+        }
+        int gNext = getG(stateId(nextCell, moveDirection));
+        if (gNext >= INFINITY) {
+            return INFINITY;
+        }
+        int cost = ORTHOGONAL_COST;
+        if (direction != -1 && direction != moveDirection) {
+            cost += DIRECTION_CHANGE_PENALTY;
+        }
+        return cost + gNext;
+    }
+
+    /**
+     * The start has no incoming direction, so it is a virtual state outside
+     * the graph whose value is computed from its neighbours on demand.
+     */
+    private int startRhs(int start) {
+        return bestSuccessorCost(start, -1);
+    }
+
+    private Optional<List<Node>> extractPath(int start) {
+        int total = startRhs(start);
+        if (total >= INFINITY) {
+            return Optional.empty();
+        }
+        List<Node> path = new ArrayList<Node>();
+        Node node = new Node(start / cols, start % cols);
+        path.add(node);
+        int cell = start;
+        int direction = -1;
+        int gCost = 0;
+        int maxSteps = 2 * map.size();
+        while (cell != goal) {
+            if (--maxSteps < 0) {
+                return Optional.empty();
+            }
+            int bestCell = -1;
+            int bestDirection = -1;
+            int best = INFINITY;
+            int row = cell / cols;
+            int col = cell - row * cols;
+            int[] nextCells = {col > 0 ? cell - 1 : -1, col + 1 < cols ? cell + 1 : -1,
+                    row > 0 ? cell - cols : -1, row + 1 < rows ? cell + cols : -1};
+            for (int i = 0; i < nextCells.length; i++) {
+                if (nextCells[i] == -1) {
+                    continue;
+                }
+                int moveDirection = i < 2 ? HORIZONTAL : VERTICAL;
+                int cost = moveCost(nextCells[i], direction, moveDirection);
+                if (cost < best) {
+                    best = cost;
+                    bestCell = nextCells[i];
+                    bestDirection = moveDirection;
+                }
+            }
+            if (bestCell == -1) {
+                return Optional.empty();
+            }
+            gCost += best - getG(stateId(bestCell, bestDirection));
+            Node next = new Node(bestCell / cols, bestCell % cols);
+            next.setDirection(bestDirection == HORIZONTAL ? Orthogonal.HORIZONTAL : Orthogonal.VERTICAL);
+            next.setG(gCost);
+            next.setParent(node);
+            path.add(next);
+            node = next;
+            cell = bestCell;
+            direction = bestDirection;
+        }
+        return Optional.of(path);
+    }
+
+    private int key(int u, int start) {
+        return Math.min(getG(u), getRhs(u)) + heuristic(start, cellOf(u)) + km;
+    }
+
+    private int heuristic(int fromCell, int toCell) {
+        return ORTHOGONAL_COST * (Math.abs(fromCell / cols - toCell / cols) + Math.abs(fromCell % cols - toCell % cols));
+    }
+
+    private void touch(int state) {
+        if (stamp[state] != generation) {
+            stamp[state] = generation;
+            g[state] = INFINITY;
+            rhs[state] = INFINITY;
+        }
+    }
+
+    private int getG(int state) {
+        return stamp[state] == generation ? g[state] : INFINITY;
+    }
+
+    private int getRhs(int state) {
+        return stamp[state] == generation ? rhs[state] : INFINITY;
+    }
+
+    private static int stateId(int cellId, int direction) {
+        return (cellId << 1) | direction;
+    }
+
+    private static int cellOf(int stateId) {
+        return stateId >>> 1;
+    }
+
+    @Override
+    public int getExpandedCount() {
+        return expanded;
+    }
+
+    public GridMap getMap() {
+        return map;
+    }
+
+    /**
+     * Stops listening to the map's edits.
+     */
+    public void close() {
+        map.removeEditListener(this);
+    }
+}
@@ -0,0 +1,80 @@
+package com.ai.astar;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Equivalence check for {@link IncrementalPathFinder}: an agent walks towards
+ * a fixed goal while random cells are blocked and unblocked between steps.
+ * Edits go through the planner, directly to the shared map, or through the
+ * other engine's setBlocks, so the planner has to follow the map through its
+ * edit listener. After every edit the replanned path must be valid and cost
+ * exactly what a fresh {@link AStarOrthogonal} search on the same map finds. Also prints the
+ * states expanded by the repairs against the fresh searches.
+ *
+ * Usage: IncrementalReplanningTest [maps] [size]
+ */
+public class IncrementalReplanningTest {
+
+    public static void main(String[] args) {
+        int maps = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+        Random random = new Random(2012L);
+        int checked = 0;
+        int failures = 0;
+        long incrementalExpanded = 0;
+        long freshExpanded = 0;
+        for (int m = 0; m < maps; m++) {
+            int rows = m % 2 == 0 ? 2 + random.nextInt(11) : size;
+            int cols = m % 2 == 0 ? 2 + random.nextInt(11) : size;
+            GridMap map = MapGenerator.random(rows, cols, random.nextDouble() * 0.35, m);
+            IncrementalPathFinder planner = new IncrementalPathFinder(map);
+            AStarOrthogonal fresh = new AStarOrthogonal(map);
+            Node start = MapGenerator.randomOpenCell(map, random);
+            Node goal = MapGenerator.randomOpenCell(map, random);
+            for (int step = 0; step < 30; step++) {
+                Optional<List<Node>> path = planner.findPath(start, goal);
+                incrementalExpanded += planner.getExpandedCount();
+                Optional<List<Node>> expected = fresh.findPath(start, goal);
+                freshExpanded += fresh.getExpandedCount();
+                int expectedCost = expected.isPresent() ? expected.get().get(expected.get().size() - 1).getG() : -1;
+                String error = OrthogonalRegressionTest.check(map, start, goal, path, expectedCost);
+                checked++;
+                if (error != null) {
+                    failures++;
+                    System.out.println("FAIL map " + m + " step " + step + " " + start + " -> " + goal + ": " + error);
+                    break;
+                }
+                // move one step along the current path, then edit a few cells
+                if (path.isPresent() && path.get().size() > 1) {
+                    start = new Node(path.get().get(1).getRow(), path.get().get(1).getCol());
+                }
+                int edits = 1 + random.nextInt(3);
+                for (int e = 0; e < edits; e++) {
+                    int row = random.nextInt(rows);
+                    int col = random.nextInt(cols);
+                    if (start.equals(new Node(row, col)) || goal.equals(new Node(row, col))) {
+                        continue;
+                    }
+                    boolean block = !map.isBlocked(row, col);
+                    int route = random.nextInt(3);
+                    if (route == 0) {
+                        planner.setBlock(row, col, block);
+                    } else if (route == 1 || !block) {
+                        map.setBlock(row, col, block);
+                    } else {
+                        fresh.setBlocks(new int[][] {{row, col}});
+                    }
+                }
+            }
+            planner.close();
+        }
+        System.out.println("expanded: incremental " + incrementalExpanded + ", fresh searches " + freshExpanded);
+        System.out.println(failures == 0 ? "OK: " + checked + " replans match fresh searches"
+                : "FAILED: " + failures + " of " + checked + " replans");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+}
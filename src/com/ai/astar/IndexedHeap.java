@@ -0,0 +1,92 @@
+package com.ai.astar;
+
+import java.util.Arrays;
+
+/**
+ * Indexed binary min-heap of cell ids, used as the open list by the engines.
+ *
+ * Every cell id keeps its current position in the heap, so membership is O(1)
+ * and a key can be decreased in O(log n) without the linear scans that
+ * {@code PriorityQueue.contains/remove} need.
+ *
+ * Ties on the key are broken in favour of the entry with the larger tie value
+ * (the engines pass g), which keeps expansions pointed at the goal.
+ */
+public class IndexedHeap extends AbstractIndexedHeap {
+    private int[] index;
+
+    /**
+     * @param capacity number of distinct ids (cells or states) that can be stored
+     */
+    public IndexedHeap(int capacity) {
+        super(capacity);
+        this.index = new int[Math.max(capacity, 1)];
+        Arrays.fill(index, ABSENT);
+    }
+
+    @Override
+    int position(int id) {
+        return index[id];
+    }
+
+    @Override
+    void setPosition(int id, int pos) {
+        index[id] = pos;
+    }
+
+    public boolean contains(int id) {
+        return index[id] != ABSENT;
+    }
+
+    public void add(int id, int key) {
+        add(id, key, 0);
+    }
+
+    /**
+     * Lowers the key of an id already in the heap.
+     */
+    public void decreaseKey(int id, int key) {
+        decreaseKey(id, key, 0);
+    }
+
+    /**
+     * Inserts the id, or moves it to its new key in either direction.
+     */
+    @Override
+    public void update(int id, int key, int tie) {
+        if (index[id] == ABSENT) {
+            add(id, key, tie);
+            return;
+        }
+        super.update(id, key, tie);
+    }
+
+    /**
+     * Removes the id if it is in the heap.
+     */
+    @Override
+    public void remove(int id) {
+        if (index[id] != ABSENT) {
+            super.remove(id);
+        }
+    }
+
+    public int capacity() {
+        return index.length;
+    }
+
+    /**
+     * Grows the heap so it can hold ids up to capacity - 1, for searches whose
+     * states are numbered as they are discovered.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity <= index.length) {
+            return;
+        }
+        int length = Math.max(capacity, 2 * index.length);
+        int old = index.length;
+        grow(length);
+        index = Arrays.copyOf(index, length);
+        Arrays.fill(index, old, length, ABSENT);
+    }
+}
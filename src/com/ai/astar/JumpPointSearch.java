@@ -0,0 +1,320 @@
+package com.ai.astar;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Jump Point Search for uniform-cost 8-connected grids.
+ *
+ * Uses the same movement model as {@link AStar}: a cell can be entered
+ * horizontally, vertically or diagonally whenever it is not blocked. Instead of
+ * pushing all 8 neighbours of every node, the search prunes symmetric moves and
+ * "jumps" along straight and diagonal lines until it reaches a cell with a
+ * forced neighbour, so only jump points enter the open list. Path costs are the
+ * same as AStar's; the returned path is expanded back to one Node per cell.
+ *
+ * Straight jumps, including the two a diagonal jump starts at every step, test
+ * 64 cells at a time on the map's blocked bitset (and its transpose for
+ * vertical jumps) with {@link Long#numberOfTrailingZeros}, instead of one
+ * bounds-checked cell at a time, and are skipped outright when the adjacent
+ * lines have no blocked cell ahead. The transpose and the line extents are the
+ * map's {@link BlockedLines}, shared by every engine over the map and updated
+ * cell by cell as the map is edited.
+ *
+ * Requires hvCost <= diagonalCost <= 2 * hvCost, which holds for the default
+ * 10/14 costs, and a map without terrain costs.
+ */
+public class JumpPointSearch implements PathFinder {
+    private static int DEFAULT_HV_COST = 10;
+    private static int DEFAULT_DIAGONAL_COST = 14;
+    // cells a straight scan advances per window of 64: the last two bits are rechecked by the next window
+    private static final int SCAN_STEP = 62;
+    private static final long SCAN_MASK = ~1L & ~(1L << 63);
+
+    private final GridMap map;
+    private final int rows;
+    private final int cols;
+    private final int hvCost;
+    private final int diagonalCost;
+    private final SearchState searchState;
+    private Heuristic heuristic;
+    // the blocked bitset (id = row * cols + col) and its transpose (col * rows + row), for word scans
+    private final long[] byRow;
+    private final long[] byCol;
+    // first and last blocked position of every row and column, to skip scans that cannot find a jump point
+    private final int[] rowFirst;
+    private final int[] rowLast;
+    private final int[] colFirst;
+    private final int[] colLast;
+
+    public JumpPointSearch(GridMap map, int hvCost, int diagonalCost) {
+        if (diagonalCost < hvCost || diagonalCost > 2 * hvCost) {
+            throw new IllegalArgumentException("Jump point search needs hvCost <= diagonalCost <= 2 * hvCost");
+        }
+        this.map = map;
+        this.rows = map.getRows();
+        this.cols = map.getCols();
+        this.hvCost = hvCost;
+        this.diagonalCost = diagonalCost;
+        this.searchState = new HeapSearchState(map.size());
+        this.heuristic = new OctileHeuristic(map, hvCost, diagonalCost);
+        BlockedLines lines = map.getBlockedLines();
+        this.byRow = lines.getRowBits();
+        this.byCol = lines.getColumnBits();
+        this.rowFirst = lines.getRowFirst();
+        this.rowLast = lines.getRowLast();
+        this.colFirst = lines.getColumnFirst();
+        this.colLast = lines.getColumnLast();
+    }
+
+    public JumpPointSearch(GridMap map) {
+        this(map, DEFAULT_HV_COST, DEFAULT_DIAGONAL_COST);
+    }
+
+    @Override
+    public Optional<List<Node>> findPath(Node initialNode, Node finalNode) {
+        if (map.getCostLayer() != null) {
+            throw new IllegalStateException("Jump point search needs uniform costs; the map has a terrain layer");
+        }
+        SearchState state = searchState;
+        state.begin();
+        int start = map.cellId(initialNode);
+        int goal = map.cellId(finalNode);
+        state.open(start, 0, heuristic(start, goal), -1);
+        while (state.hasOpen()) {
+            int current = state.closeNext();
+            if (current == goal) {
+                return Optional.of(getPath(current));
+            }
+            identifySuccessors(current, goal);
+        }
+        return Optional.empty();
+    }
+
+    private void identifySuccessors(int currentId, int goal) {
+        int row = currentId / cols;
+        int col = currentId - row * cols;
+        int parentId = searchState.getParent(currentId);
+        if (parentId == -1) {
+            for (int dr = -1; dr <= 1; dr++) {
+                for (int dc = -1; dc <= 1; dc++) {
+                    if (dr != 0 || dc != 0) {
+                        checkJump(currentId, row, col, dr, dc, goal);
+                    }
+                }
+            }
+            return;
+        }
+        int parentRow = parentId / cols;
+        int dr = Integer.signum(row - parentRow);
+        int dc = Integer.signum(col - (parentId - parentRow * cols));
+        if (dr != 0 && dc != 0) {
+            // diagonal: natural neighbours, then forced ones around blocked orthogonals
+            checkJump(currentId, row, col, dr, 0, goal);
+            checkJump(currentId, row, col, 0, dc, goal);
+            checkJump(currentId, row, col, dr, dc, goal);
+            if (!isWalkable(row, col - dc)) {
+                checkJump(currentId, row, col, dr, -dc, goal);
+            }
+            if (!isWalkable(row - dr, col)) {
+                checkJump(currentId, row, col, -dr, dc, goal);
+            }
+        } else if (dr == 0) {
+            checkJump(currentId, row, col, 0, dc, goal);
+            if (!isWalkable(row - 1, col)) {
+                checkJump(currentId, row, col, -1, dc, goal);
+            }
+            if (!isWalkable(row + 1, col)) {
+                checkJump(currentId, row, col, 1, dc, goal);
+            }
+        } else {
+            checkJump(currentId, row, col, dr, 0, goal);
+            if (!isWalkable(row, col - 1)) {
+                checkJump(currentId, row, col, dr, -1, goal);
+            }
+            if (!isWalkable(row, col + 1)) {
+                checkJump(currentId, row, col, dr, 1, goal);
+            }
+        }
+    }
+
+    private void checkJump(int currentId, int row, int col, int dr, int dc, int goal) {
+        int jumpId = jump(row, col, dr, dc, goal);
+        if (jumpId == -1 || searchState.isClosed(jumpId)) {
+            return;
+        }
+        int jumpRow = jumpId / cols;
+        int steps = Math.max(Math.abs(jumpRow - row), Math.abs(jumpId - jumpRow * cols - col));
+        int gCost = searchState.getG(currentId) + steps * (dr != 0 && dc != 0 ? diagonalCost : hvCost);
+        if (gCost < searchState.getG(jumpId)) {
+            searchState.open(jumpId, gCost, gCost + heuristic(jumpId, goal), currentId);
+        }
+    }
+
+    /**
+     * Walks from (row, col) in direction (dr, dc) and returns the first jump
+     * point, or -1 if the walk runs into a block or the map edge.
+     */
+    private int jump(int row, int col, int dr, int dc, int goal) {
+        if (dr == 0) {
+            int jumpCol = scan(byRow, rowFirst, rowLast, rows, cols, row, col, dc, goal / cols, goal % cols);
+            return jumpCol == -1 ? -1 : row * cols + jumpCol;
+        }
+        if (dc == 0) {
+            int jumpRow = scan(byCol, colFirst, colLast, cols, rows, col, row, dr, goal % cols, goal / cols);
+            return jumpRow == -1 ? -1 : jumpRow * cols + col;
+        }
+        while (true) {
+            row += dr;
+            col += dc;
+            if (!isWalkable(row, col)) {
+                return -1;
+            }
+            int id = row * cols + col;
+            if (id == goal) {
+                return id;
+            }
+            if ((!isWalkable(row, col - dc) && isWalkable(row + dr, col - dc))
+                    || (!isWalkable(row - dr, col) && isWalkable(row - dr, col + dc))) {
+                return id;
+            }
+            if (jump(row, col, dr, 0, goal) != -1 || jump(row, col, 0, dc, goal) != -1) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Straight jump along a line of a bitset (a row of byRow, or a column of
+     * byCol), 62 cells per step: a jump point is the first cell whose
+     * neighbour on an adjacent line is blocked while the next one is open, or
+     * the goal, provided no blocked cell comes first.
+     *
+     * @param first position of the first blocked cell of each line, length if none
+     * @param last position of the last blocked cell of each line, -1 if none
+     * @return the position of the jump point on the line, or -1
+     */
+    private static int scan(long[] bits, int[] first, int[] last, int lines, int length, int line, int pos,
+            int step, int goalLine, int goalPos) {
+        // no blocked cell ahead on either adjacent line and no goal ahead: the scan can only end at a wall
+        if ((line != goalLine || (goalPos - pos) * step <= 0) && !blockedAhead(first, last, line - 1, pos, step)
+                && !blockedAhead(first, last, line + 1, pos, step)) {
+            return -1;
+        }
+        while (true) {
+            long self = lineBits(bits, lines, length, line, pos, step);
+            long before = lineBits(bits, lines, length, line - 1, pos, step);
+            long after = lineBits(bits, lines, length, line + 1, pos, step);
+            // bit i: blocked at i and open at i + 1; bit 0 is the start, bit 63 has no next bit here
+            long forced = ((before & ~(before >>> 1)) | (after & ~(after >>> 1))) & SCAN_MASK;
+            int stop = Long.numberOfTrailingZeros(self & ~1L);
+            int jump = Long.numberOfTrailingZeros(forced);
+            if (line == goalLine) {
+                int toGoal = (goalPos - pos) * step;
+                if (toGoal > 0 && toGoal < jump) {
+                    jump = toGoal;
+                }
+            }
+            if (jump < stop) {
+                return pos + jump * step;
+            }
+            if (stop < Long.SIZE) {
+                return -1;
+            }
+            pos += SCAN_STEP * step;
+        }
+    }
+
+    private static boolean blockedAhead(int[] first, int[] last, int line, int pos, int step) {
+        if (line < 0 || line >= first.length) {
+            return false;
+        }
+        return step > 0 ? last[line] > pos : first[line] < pos;
+    }
+
+    /**
+     * @return blocked bits of 64 cells of a line, bit i for position pos + i * step,
+     *         cells off the map reading as blocked
+     */
+    private static long lineBits(long[] bits, int lines, int length, int line, int pos, int step) {
+        if (line < 0 || line >= lines) {
+            return -1L;
+        }
+        int base = line * length;
+        if (step > 0) {
+            long word = BlockedLines.wordAt(bits, base + pos);
+            int available = length - pos;
+            return available < Long.SIZE ? word | (-1L << available) : word;
+        }
+        int start = pos - (Long.SIZE - 1);
+        if (start >= 0) {
+            return Long.reverse(BlockedLines.wordAt(bits, base + start));
+        }
+        // the line starts less than 64 cells back: shift its first cells up, the off-map ones read as blocked
+        return Long.reverse(BlockedLines.wordAt(bits, base) << -start | ((1L << -start) - 1));
+    }
+
+    /**
+     * Expands the chain of jump points into one Node per cell.
+     */
+    private List<Node> getPath(int goalId) {
+        List<Node> path = new ArrayList<Node>();
+        int id = goalId;
+        int parentId;
+        while ((parentId = searchState.getParent(id)) != -1) {
+            int row = id / cols;
+            int col = id - row * cols;
+            int parentRow = parentId / cols;
+            int parentCol = parentId - parentRow * cols;
+            int dr = Integer.signum(parentRow - row);
+            int dc = Integer.signum(parentCol - col);
+            while (row != parentRow || col != parentCol) {
+                path.add(new Node(row, col));
+                row += dr;
+                col += dc;
+            }
+            id = parentId;
+        }
+        path.add(new Node(id / cols, id % cols));
+        Collections.reverse(path);
+        int g = 0;
+        for (int i = 0; i < path.size(); i++) {
+            Node node = path.get(i);
+            if (i > 0) {
+                Node previous = path.get(i - 1);
+                boolean diagonal = previous.getRow() != node.getRow() && previous.getCol() != node.getCol();
+                g += diagonal ? diagonalCost : hvCost;
+                node.setParent(previous);
+            }
+            node.setG(g);
+        }
+        return path;
+    }
+
+    private int heuristic(int id, int goal) {
+        return heuristic.estimate(id, Heuristic.NO_DIRECTION, goal);
+    }
+
+    private boolean isWalkable(int row, int col) {
+        return row >= 0 && col >= 0 && row < rows && col < cols && !map.isBlocked(row * cols + col);
+    }
+
+    @Override
+    public int getExpandedCount() {
+        return searchState.getExpanded();
+    }
+
+    public Heuristic getHeuristic() {
+        return heuristic;
+    }
+
+    public void setHeuristic(Heuristic heuristic) {
+        this.heuristic = heuristic;
+    }
+
+    public GridMap getMap() {
+        return map;
+    }
+}
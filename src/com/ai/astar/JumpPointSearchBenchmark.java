@@ -0,0 +1,107 @@
+package com.ai.astar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Compares {@link JumpPointSearch} with {@link AStar} on the same seeded maps:
+ * checks that every path has the same cost, also while an editable map
+ * changes between queries, and reports nodes expanded and latency for both.
+ *
+ * Usage: JumpPointSearchBenchmark [sizes, e.g. 64,256,1024] [queries per case] [seconds per case]
+ */
+public class JumpPointSearchBenchmark {
+
+    private static final long SEED = 20200926L;
+
+    public static void main(String[] args) {
+        String[] sizes = (args.length > 0 ? args[0] : "64,256,1024").split(",");
+        int queryCount = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        double seconds = args.length > 2 ? Double.parseDouble(args[2]) : 1.0;
+        int mismatches = 0;
+
+        System.out.printf(Locale.ROOT, "%-7s %6s %14s %14s %12s %12s%n",
+                "map", "size", "AStar exp/op", "JPS exp/op", "AStar us/op", "JPS us/op");
+        for (String sizeArg : sizes) {
+            int size = Integer.parseInt(sizeArg.trim());
+            for (MapGenerator.Type type : MapGenerator.Type.values()) {
+                GridMap map = MapGenerator.generate(type, size, size, 0.2, SEED).readOnlyCopy();
+                PathQuery[] queries = MapGenerator.queries(map, queryCount, size / 4, 2 * size, SEED);
+                PathFinder aStar = PathService.diagonalFinder(map);
+                PathFinder jps = new JumpPointSearch(map);
+                for (PathQuery query : queries) {
+                    int expected = cost(aStar.findPath(query.getInitialNode(), query.getFinalNode()));
+                    int actual = cost(jps.findPath(query.getInitialNode(), query.getFinalNode()));
+                    if (expected != actual) {
+                        mismatches++;
+                        System.out.println("COST MISMATCH " + type + " " + size + " " + query
+                                + ": AStar=" + expected + " JPS=" + actual);
+                    }
+                }
+                EngineBenchmark.Result aStarResult = EngineBenchmark.measure(aStar, queries, seconds);
+                EngineBenchmark.Result jpsResult = EngineBenchmark.measure(jps, queries, seconds);
+                System.out.printf(Locale.ROOT, "%-7s %6d %14.0f %14.0f %12.1f %12.1f%n", type, size,
+                        aStarResult.expandedPerOp(), jpsResult.expandedPerOp(),
+                        aStarResult.microsPerOp(), jpsResult.microsPerOp());
+            }
+        }
+        mismatches += checkEdits(new Random(SEED), 2000);
+        System.out.println(mismatches == 0 ? "OK: all path costs match" : "FAILED: " + mismatches + " cost mismatches");
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Edits cells between queries, so the map's shared {@link BlockedLines} must
+     * follow every edit: they are compared with lines built from scratch, and a
+     * second engine joins halfway through.
+     */
+    private static int checkEdits(Random random, int rounds) {
+        GridMap map = MapGenerator.random(70, 130, 0.2, SEED);
+        AStar aStar = new AStar(map);
+        List<JumpPointSearch> engines = new ArrayList<JumpPointSearch>();
+        engines.add(new JumpPointSearch(map));
+        int mismatches = 0;
+        for (int i = 0; i < rounds; i++) {
+            for (int edit = random.nextInt(4); edit > 0; edit--) {
+                map.setBlock(random.nextInt(map.getRows()), random.nextInt(map.getCols()), random.nextInt(4) == 0);
+            }
+            if (i == rounds / 2) {
+                engines.add(new JumpPointSearch(map));
+            }
+            if (!sameLines(map.getBlockedLines(), new BlockedLines(map))) {
+                mismatches++;
+                System.out.println("LINES MISMATCH after edits in round " + i);
+            }
+            Node start = MapGenerator.randomOpenCell(map, random);
+            Node goal = MapGenerator.randomOpenCell(map, random);
+            List<Node> path = aStar.findPath(start, goal);
+            int expected = path.isEmpty() ? -1 : path.get(path.size() - 1).getG();
+            for (JumpPointSearch jps : engines) {
+                int actual = cost(jps.findPath(start, goal));
+                if (expected != actual) {
+                    mismatches++;
+                    System.out.println("COST MISMATCH after edits " + start + " -> " + goal + ": AStar=" + expected
+                            + " JPS=" + actual);
+                }
+            }
+        }
+        return mismatches;
+    }
+
+    private static boolean sameLines(BlockedLines a, BlockedLines b) {
+        return Arrays.equals(a.getRowBits(), b.getRowBits()) && Arrays.equals(a.getColumnBits(), b.getColumnBits())
+                && Arrays.equals(a.getRowFirst(), b.getRowFirst()) && Arrays.equals(a.getRowLast(), b.getRowLast())
+                && Arrays.equals(a.getColumnFirst(), b.getColumnFirst())
+                && Arrays.equals(a.getColumnLast(), b.getColumnLast());
+    }
+
+    private static int cost(Optional<List<Node>> path) {
+        return path.map(nodes -> nodes.get(nodes.size() - 1).getG()).orElse(-1);
+    }
+}
@@ -0,0 +1,56 @@
+package com.ai.astar;
+
+/**
+ * ALT heuristic: for every landmark L the triangle inequality gives
+ * |d(L, goal) - d(L, cell)| <= d(cell, goal), and the largest of these bounds
+ * (or the fallback heuristic, if larger) is used. Unlike plain octile distance
+ * this accounts for walls, so long queries expand far fewer nodes behind
+ * obstacles. Admissible and consistent for the cost model the table was built
+ * with; tables ignore terrain costs, so on a terrain map the bounds stay
+ * admissible but are weak.
+ *
+ * The goal's landmark distances are cached between calls, so an instance must
+ * not be shared between threads; use one per engine.
+ */
+public class LandmarkHeuristic implements Heuristic {
+    private final LandmarkTable table;
+    private final Heuristic fallback;
+    private final int[] goalDistances;
+    private int cachedGoal = -1;
+
+    /**
+     * @param fallback admissible heuristic used when it beats the landmarks, e.g. octile
+     */
+    public LandmarkHeuristic(LandmarkTable table, Heuristic fallback) {
+        this.table = table;
+        this.fallback = fallback;
+        this.goalDistances = new int[table.getLandmarkCount()];
+    }
+
+    @Override
+    public int estimate(int cellId, int direction, int goalId) {
+        if (goalId != cachedGoal) {
+            for (int i = 0; i < goalDistances.length; i++) {
+                goalDistances[i] = table.distance(i, goalId);
+            }
+            cachedGoal = goalId;
+        }
+        int best = fallback.estimate(cellId, direction, goalId);
+        for (int i = 0; i < goalDistances.length; i++) {
+            int toGoal = goalDistances[i];
+            int toCell = table.distance(i, cellId);
+            if (toGoal == LandmarkTable.UNREACHABLE || toCell == LandmarkTable.UNREACHABLE) {
+                continue;
+            }
+            int bound = Math.abs(toGoal - toCell);
+            if (bound > best) {
+                best = bound;
+            }
+        }
+        return best;
+    }
+
+    public LandmarkTable getTable() {
+        return table;
+    }
+}
@@ -0,0 +1,397 @@
+package com.ai.astar;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Landmark distance tables for the ALT heuristic ({@link LandmarkHeuristic}).
+ *
+ * For each of K landmarks the table stores the exact 8-connected path cost
+ * (same move model and costs as {@link AStar}) from the landmark to every cell.
+ * Distances are stored as unsigned 16-bit values when they all fit, otherwise
+ * as 32-bit ints.
+ *
+ * Distances ignore the map's terrain costs: they are costs of the uniform
+ * grid. Since a terrain cost only multiplies a move by 1 or more, the bounds
+ * stay admissible on a terrain map, but they are weak there.
+ *
+ * Tables can be saved to a file and later memory-mapped with {@link #load},
+ * so a restarted service reads them straight from the page cache instead of
+ * recomputing K full Dijkstra searches. Each table is mapped on its own, so
+ * the file may exceed 2GB; a single table is limited to
+ * {@link #MAX_TABLE_BYTES}.
+ *
+ * File layout (big endian):
+ * <pre>
+ * int  magic 'ALT1'
+ * int  format version
+ * int  rows, cols, hvCost, diagonalCost
+ * int  landmark count K, element width (2 or 4 bytes)
+ * long fingerprint of the map the table was built from
+ * int  K landmark cell ids
+ * ...  K tables of rows * cols elements, each starting on an 8 byte boundary
+ * </pre>
+ */
+public class LandmarkTable {
+    /**
+     * distance of cells that cannot reach a landmark
+     */
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    /**
+     * largest table for one landmark, the capacity of one buffer
+     */
+    public static final long MAX_TABLE_BYTES = Integer.MAX_VALUE - 7;
+
+    private static final int MAGIC = 0x414c5431; // "ALT1"
+    private static final int FORMAT_VERSION = 1;
+    private static final int SHORT_UNREACHABLE = 0xFFFF;
+    private static final int WRITE_BUFFER_BYTES = 1 << 16;
+
+    private final int rows;
+    private final int cols;
+    private final int hvCost;
+    private final int diagonalCost;
+    private final long mapFingerprint;
+    private final int[] landmarks;
+    private final int elementWidth;
+    private final IntBuffer[] wideTables;
+    private final CharBuffer[] narrowTables;
+
+    private LandmarkTable(int rows, int cols, int hvCost, int diagonalCost, long mapFingerprint, int[] landmarks,
+            int elementWidth, ByteBuffer[] tables) {
+        this.rows = rows;
+        this.cols = cols;
+        this.hvCost = hvCost;
+        this.diagonalCost = diagonalCost;
+        this.mapFingerprint = mapFingerprint;
+        this.landmarks = landmarks;
+        this.elementWidth = elementWidth;
+        this.wideTables = new IntBuffer[landmarks.length];
+        this.narrowTables = new CharBuffer[landmarks.length];
+        for (int i = 0; i < landmarks.length; i++) {
+            if (elementWidth == 4) {
+                wideTables[i] = tables[i].asIntBuffer();
+            } else {
+                narrowTables[i] = tables[i].asCharBuffer();
+            }
+        }
+    }
+
+    /**
+     * Picks landmarkCount landmarks by farthest-point selection and runs a full
+     * Dijkstra search from each.
+     *
+     * @throws IllegalArgumentException if the map is too large for one table per landmark
+     */
+    public static LandmarkTable build(GridMap map, int landmarkCount, int hvCost, int diagonalCost) {
+        int size = map.size();
+        tableBytes(size, 2);
+        int[] landmarks = new int[landmarkCount];
+        int[][] distances = new int[landmarkCount][];
+        // min distance to any chosen landmark, used to pick the next one
+        int[] nearest = new int[size];
+        Arrays.fill(nearest, UNREACHABLE);
+
+        int seed = firstOpenCell(map);
+        if (seed == -1) {
+            throw new IllegalArgumentException("Map has no open cells");
+        }
+        int[] fromSeed = dijkstra(map, seed, hvCost, diagonalCost);
+        int next = farthest(fromSeed, null);
+        int count = 0;
+        while (count < landmarkCount && next != -1) {
+            landmarks[count] = next;
+            distances[count] = dijkstra(map, next, hvCost, diagonalCost);
+            for (int id = 0; id < size; id++) {
+                nearest[id] = Math.min(nearest[id], distances[count][id]);
+            }
+            count++;
+            next = farthest(nearest, fromSeed);
+        }
+        landmarks = Arrays.copyOf(landmarks, count);
+
+        int max = 0;
+        for (int i = 0; i < count; i++) {
+            for (int d : distances[i]) {
+                if (d != UNREACHABLE) {
+                    max = Math.max(max, d);
+                }
+            }
+        }
+        int elementWidth = max < SHORT_UNREACHABLE ? 2 : 4;
+        ByteBuffer[] tables = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            ByteBuffer table = ByteBuffer.allocate((int) tableBytes(size, elementWidth));
+            for (int d : distances[i]) {
+                if (elementWidth == 4) {
+                    table.putInt(d);
+                } else {
+                    table.putChar((char) (d == UNREACHABLE ? SHORT_UNREACHABLE : d));
+                }
+            }
+            table.flip();
+            tables[i] = table;
+        }
+        return new LandmarkTable(map.getRows(), map.getCols(), hvCost, diagonalCost, map.fingerprint(),
+                landmarks, elementWidth, tables);
+    }
+
+    public static LandmarkTable build(GridMap map, int landmarkCount) {
+        return build(map, landmarkCount, 10, 14);
+    }
+
+    /**
+     * Exact costs from source to every cell, using AStar's 8-connected move model.
+     */
+    static int[] dijkstra(GridMap map, int source, int hvCost, int diagonalCost) {
+        int rows = map.getRows();
+        int cols = map.getCols();
+        int[] dist = new int[map.size()];
+        Arrays.fill(dist, UNREACHABLE);
+        IndexedHeap open = new IndexedHeap(map.size());
+        dist[source] = 0;
+        open.add(source, 0);
+        while (!open.isEmpty()) {
+            int id = open.poll();
+            int row = id / cols;
+            int col = id - row * cols;
+            for (int dr = -1; dr <= 1; dr++) {
+                for (int dc = -1; dc <= 1; dc++) {
+                    int nextRow = row + dr;
+                    int nextCol = col + dc;
+                    if ((dr == 0 && dc == 0) || nextRow < 0 || nextCol < 0 || nextRow >= rows || nextCol >= cols) {
+                        continue;
+                    }
+                    int next = nextRow * cols + nextCol;
+                    if (map.isBlocked(next)) {
+                        continue;
+                    }
+                    int d = dist[id] + (dr != 0 && dc != 0 ? diagonalCost : hvCost);
+                    if (d < dist[next]) {
+                        if (dist[next] == UNREACHABLE) {
+                            open.add(next, d);
+                        } else {
+                            open.decreaseKey(next, d);
+                        }
+                        dist[next] = d;
+                    }
+                }
+            }
+        }
+        return dist;
+    }
+
+    private static int firstOpenCell(GridMap map) {
+        for (int id = 0; id < map.size(); id++) {
+            if (!map.isBlocked(id)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param reachable if not null, only cells reachable in this table are considered
+     * @return the cell with the largest finite distance, or -1 if every candidate is 0
+     */
+    private static int farthest(int[] distances, int[] reachable) {
+        int best = -1;
+        int bestDistance = 0;
+        for (int id = 0; id < distances.length; id++) {
+            int d = distances[id];
+            if (reachable != null && reachable[id] == UNREACHABLE) {
+                continue;
+            }
+            if (d != UNREACHABLE && d > bestDistance) {
+                best = id;
+                bestDistance = d;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Writes the tables to a file that can be memory-mapped with {@link #load}.
+     */
+    public void save(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate((int) headerSize(landmarks.length));
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(rows).putInt(cols).putInt(hvCost).putInt(diagonalCost)
+                    .putInt(landmarks.length).putInt(elementWidth).putLong(mapFingerprint);
+            for (int landmark : landmarks) {
+                header.putInt(landmark);
+            }
+            header.position(header.capacity());
+            header.flip();
+            writeFully(channel, header);
+            long bytes = (long) rows * cols * elementWidth;
+            int padding = (int) (align(bytes) - bytes);
+            ByteBuffer chunk = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+            for (int i = 0; i < landmarks.length; i++) {
+                for (int id = 0; id < rows * cols; id++) {
+                    if (chunk.remaining() < elementWidth) {
+                        chunk.flip();
+                        writeFully(channel, chunk);
+                        chunk.clear();
+                    }
+                    if (elementWidth == 4) {
+                        chunk.putInt(wideTables[i].get(id));
+                    } else {
+                        chunk.putChar(narrowTables[i].get(id));
+                    }
+                }
+                if (chunk.remaining() < padding) {
+                    chunk.flip();
+                    writeFully(channel, chunk);
+                    chunk.clear();
+                }
+                for (int p = 0; p < padding; p++) {
+                    chunk.put((byte) 0);
+                }
+                chunk.flip();
+                writeFully(channel, chunk);
+                chunk.clear();
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Memory-maps a table file written by {@link #save}. Nothing is copied onto
+     * the heap; distances are read from the mapping on demand.
+     */
+    public static LandmarkTable load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer fixed = readHeader(channel, 0, 40);
+            if (fixed.getInt() != MAGIC) {
+                throw new IOException("Not a landmark table: " + file);
+            }
+            int formatVersion = fixed.getInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException("Unsupported landmark table version " + formatVersion);
+            }
+            int rows = fixed.getInt();
+            int cols = fixed.getInt();
+            int hvCost = fixed.getInt();
+            int diagonalCost = fixed.getInt();
+            int count = fixed.getInt();
+            int elementWidth = fixed.getInt();
+            long mapFingerprint = fixed.getLong();
+            if (rows <= 0 || cols <= 0 || count < 0 || (elementWidth != 2 && elementWidth != 4)
+                    || (long) rows * cols * elementWidth > MAX_TABLE_BYTES) {
+                throw new IOException("Corrupt landmark table header: " + file);
+            }
+            ByteBuffer ids = readHeader(channel, 40, 4 * count);
+            int[] landmarks = new int[count];
+            for (int i = 0; i < count; i++) {
+                landmarks[i] = ids.getInt();
+            }
+            long bytes = (long) rows * cols * elementWidth;
+            long tableSize = align(bytes);
+            long expected = headerSize(count) + count * tableSize;
+            if (channel.size() < expected) {
+                throw new IOException("Truncated landmark table: " + file);
+            }
+            // one mapping per table: a single mapping is limited to 2GB, the whole file is not
+            ByteBuffer[] tables = new ByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                MappedByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, headerSize(count) + i * tableSize,
+                        bytes);
+                tables[i] = table.order(ByteOrder.BIG_ENDIAN);
+            }
+            return new LandmarkTable(rows, cols, hvCost, diagonalCost, mapFingerprint, landmarks, elementWidth, tables);
+        }
+    }
+
+    private static ByteBuffer readHeader(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Truncated landmark table header");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static long headerSize(int count) {
+        return align(40L + 4L * count);
+    }
+
+    /**
+     * @return bytes of one table of the given number of cells
+     * @throws IllegalArgumentException if it exceeds {@link #MAX_TABLE_BYTES}
+     */
+    private static long tableBytes(long cells, int elementWidth) {
+        long bytes = cells * elementWidth;
+        if (bytes > MAX_TABLE_BYTES) {
+            throw new IllegalArgumentException("Landmark table of " + cells + " cells needs " + bytes
+                    + " bytes per landmark, more than " + MAX_TABLE_BYTES);
+        }
+        return bytes;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    /**
+     * @return cost from landmark index to the cell, or {@link #UNREACHABLE}
+     */
+    public int distance(int landmark, int cellId) {
+        if (elementWidth == 4) {
+            return wideTables[landmark].get(cellId);
+        }
+        int d = narrowTables[landmark].get(cellId);
+        return d == SHORT_UNREACHABLE ? UNREACHABLE : d;
+    }
+
+    /**
+     * @return true if the table was built for a map with these exact blocked cells
+     */
+    public boolean matches(GridMap map) {
+        return map.getRows() == rows && map.getCols() == cols && map.fingerprint() == mapFingerprint;
+    }
+
+    public int getLandmarkCount() {
+        return landmarks.length;
+    }
+
+    public int[] getLandmarks() {
+        return landmarks.clone();
+    }
+
+    public int getHvCost() {
+        return hvCost;
+    }
+
+    public int getDiagonalCost() {
+        return diagonalCost;
+    }
+
+    public long getMapFingerprint() {
+        return mapFingerprint;
+    }
+
+    /**
+     * @return bytes used by the distance tables
+     */
+    public long getTableBytes() {
+        return (long) landmarks.length * rows * cols * elementWidth;
+    }
+}
@@ -0,0 +1,95 @@
+package com.ai.astar;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Round trip of {@link LandmarkTable} through {@link LandmarkTable#save} and
+ * {@link LandmarkTable#load}.
+ *
+ * Builds tables with 16-bit and with 32-bit distances (a long corridor with
+ * large move costs) and an odd cell count, so the tables need padding, saves
+ * and memory-maps them, and checks that the loaded table has the same header
+ * fields, landmarks and distances, and that {@link LandmarkHeuristic} gives
+ * identical estimates from both for random cell and goal pairs. Also checks
+ * that a truncated file is rejected.
+ *
+ * Usage: LandmarkTableTest
+ */
+public class LandmarkTableTest {
+
+    private static final long SEED = 20201017L;
+
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(SEED);
+        int errors = 0;
+        errors += roundTrip("rooms", MapGenerator.rooms(129, 97, SEED), 8, 10, 14, random);
+        errors += roundTrip("random", MapGenerator.random(33, 51, 0.3, SEED), 5, 10, 14, random);
+        errors += roundTrip("wide corridor", MapGenerator.random(3, 1001, 0.05, SEED), 4, 100, 141, random);
+        System.out.println(errors == 0 ? "OK: loaded tables match built tables" : "FAILED: " + errors);
+        if (errors > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static int roundTrip(String name, GridMap map, int landmarkCount, int hvCost, int diagonalCost,
+            Random random) throws IOException {
+        LandmarkTable built = LandmarkTable.build(map, landmarkCount, hvCost, diagonalCost);
+        Path file = Files.createTempFile("landmarks", ".alt");
+        int errors = 0;
+        try {
+            built.save(file);
+            LandmarkTable loaded = LandmarkTable.load(file);
+            if (loaded.getLandmarkCount() != built.getLandmarkCount() || loaded.getHvCost() != hvCost
+                    || loaded.getDiagonalCost() != diagonalCost || !loaded.matches(map)
+                    || loaded.getTableBytes() != built.getTableBytes()
+                    || !Arrays.equals(loaded.getLandmarks(), built.getLandmarks())) {
+                System.out.println(name + ": header differs after loading");
+                errors++;
+            }
+            for (int i = 0; i < built.getLandmarkCount(); i++) {
+                for (int id = 0; id < map.size(); id++) {
+                    if (loaded.distance(i, id) != built.distance(i, id)) {
+                        System.out.println(name + ": landmark " + i + " cell " + id + " distance "
+                                + loaded.distance(i, id) + " instead of " + built.distance(i, id));
+                        errors++;
+                        break;
+                    }
+                }
+            }
+            Heuristic octile = new OctileHeuristic(map, hvCost, diagonalCost);
+            LandmarkHeuristic fromBuilt = new LandmarkHeuristic(built, octile);
+            LandmarkHeuristic fromLoaded = new LandmarkHeuristic(loaded, octile);
+            for (int q = 0; q < 2000; q++) {
+                int cell = random.nextInt(map.size());
+                int goal = random.nextInt(map.size());
+                int expected = fromBuilt.estimate(cell, Heuristic.NO_DIRECTION, goal);
+                int actual = fromLoaded.estimate(cell, Heuristic.NO_DIRECTION, goal);
+                if (expected != actual) {
+                    System.out.println(name + ": estimate " + cell + " -> " + goal + " is " + actual + " instead of "
+                            + expected);
+                    errors++;
+                }
+            }
+
+            Files.write(file, Arrays.copyOf(Files.readAllBytes(file), (int) Files.size(file) - 8));
+            try {
+                LandmarkTable.load(file);
+                System.out.println(name + ": truncated file accepted");
+                errors++;
+            } catch (IOException expected) {
+                // rejected
+            }
+            System.out.printf(Locale.ROOT, "%-14s %d landmarks, %d bytes per distance, %d table bytes%n", name,
+                    built.getLandmarkCount(), built.getTableBytes() / built.getLandmarkCount() / map.size(),
+                    built.getTableBytes());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        return errors;
+    }
+}
@@ -0,0 +1,186 @@
+package com.ai.astar;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressed hash map from long keys to int values, without boxing.
+ *
+ * Used as the sparse state index of searches over maps that are too large
+ * (or unbounded) for arrays indexed by cell id: the key is a packed
+ * coordinate, see {@link #pack(int, int)}, and the value a state number.
+ * Keys are probed linearly in a power-of-two table that stays at most half
+ * full. One key value is reserved as the empty-slot marker and is stored
+ * aside, so every long is a valid key.
+ *
+ * Not thread safe.
+ */
+public class LongIntHashMap {
+    private static final long FREE = 0;
+    private static final int MIN_CAPACITY = 16;
+    // tables up to this many slots are cleared in place, never shrunk
+    private static final int SHRINK_ABOVE = 1 << 16;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private boolean hasFreeKey;
+    private int freeValue;
+
+    public LongIntHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expected number of keys the map holds without growing
+     */
+    public LongIntHashMap(int expected) {
+        allocate(tableSize(expected));
+    }
+
+    /**
+     * @return row and col packed in one key, row in the high half
+     */
+    public static long pack(int row, int col) {
+        return (long) row << 32 | (col & 0xFFFFFFFFL);
+    }
+
+    public static int row(long key) {
+        return (int) (key >> 32);
+    }
+
+    public static int col(long key) {
+        return (int) key;
+    }
+
+    /**
+     * @return the value of the key, or missing if it is absent
+     */
+    public int get(long key, int missing) {
+        if (key == FREE) {
+            return hasFreeKey ? freeValue : missing;
+        }
+        int slot = slot(key);
+        for (long k; (k = keys[slot]) != FREE; slot = (slot + 1) & mask) {
+            if (k == key) {
+                return values[slot];
+            }
+        }
+        return missing;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == FREE) {
+            return hasFreeKey;
+        }
+        int slot = slot(key);
+        for (long k; (k = keys[slot]) != FREE; slot = (slot + 1) & mask) {
+            if (k == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the previous value of the key, or missing if it was absent
+     */
+    public int put(long key, int value, int missing) {
+        if (key == FREE) {
+            int previous = hasFreeKey ? freeValue : missing;
+            if (!hasFreeKey) {
+                hasFreeKey = true;
+                size++;
+            }
+            freeValue = value;
+            return previous;
+        }
+        int slot = slot(key);
+        for (long k; (k = keys[slot]) != FREE; slot = (slot + 1) & mask) {
+            if (k == key) {
+                int previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > (mask + 1) >>> 1) {
+            rehash(2 * (mask + 1));
+        }
+        return missing;
+    }
+
+    /**
+     * Removes every key. A large table that grew far beyond its last use is
+     * shrunk, so one huge query does not slow down the clears of later ones.
+     */
+    public void clear() {
+        int used = size;
+        size = 0;
+        hasFreeKey = false;
+        int wanted = tableSize(used);
+        if (keys.length > SHRINK_ABOVE && keys.length > 4 * wanted) {
+            allocate(wanted);
+        } else {
+            Arrays.fill(keys, FREE);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return number of slots of the table, for memory accounting (12 bytes each)
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    private int slot(long key) {
+        // fmix64 of MurmurHash3: packed coordinates differ in a few low bits of each half
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != FREE) {
+                int slot = slot(key);
+                while (keys[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int tableSize(int expected) {
+        int capacity = MIN_CAPACITY;
+        while (capacity >>> 1 < expected) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
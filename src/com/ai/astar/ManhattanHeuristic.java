@@ -0,0 +1,23 @@
+package com.ai.astar;
+
+/**
+ * Manhattan distance scaled by the step cost and the map's lowest terrain
+ * cost. Admissible for 4-connected movement; it overestimates on 8-connected
+ * grids, so use {@link OctileHeuristic} there.
+ */
+public class ManhattanHeuristic implements Heuristic {
+    private final GridMap map;
+    private final int cols;
+    private final int cost;
+
+    public ManhattanHeuristic(GridMap map, int cost) {
+        this.map = map;
+        this.cols = map.getCols();
+        this.cost = cost;
+    }
+
+    @Override
+    public int estimate(int cellId, int direction, int goalId) {
+        return cost * map.getMinCost() * (Math.abs(goalId / cols - cellId / cols) + Math.abs(goalId % cols - cellId % cols));
+    }
+}
@@ -0,0 +1,19 @@
+package com.ai.astar;
+
+/**
+ * Receives every edit of a {@link GridMap}, after the cell has been changed
+ * and the map version bumped. Called on the editing thread.
+ */
+public interface MapEditListener {
+
+    void cellChanged(GridMap map, int cellId, boolean isBlock);
+
+    /**
+     * Called when the terrain cost of a cell changes. By default a higher cost
+     * is handled like blocking the cell and a lower one like unblocking it,
+     * which is enough for listeners that only drop stale results.
+     */
+    default void costChanged(GridMap map, int cellId, int oldCost, int newCost) {
+        cellChanged(map, cellId, newCost > oldCost);
+    }
+}
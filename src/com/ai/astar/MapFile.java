@@ -0,0 +1,134 @@
+package com.ai.astar;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary map format that can be searched without loading it.
+ *
+ * {@link #map} memory-maps the file and returns a read-only {@link GridMap}
+ * whose bitset and cost layer are views of the mapping, so opening a map costs
+ * a header read whatever its size, pages are only read as the engines touch
+ * them, and several processes opening the same file share one copy in the
+ * page cache. Text maps are converted with importers such as
+ * {@link MovingAiMap}.
+ *
+ * File layout (big endian):
+ * <pre>
+ * int  magic 'GMAP'
+ * int  format version
+ * int  rows, cols
+ * int  flags (bit 0: cost layer present)
+ * int  lowest terrain cost
+ * long (rows * cols + 63) / 64 bitset words, bit id &amp; 63 of word id / 64 set if blocked
+ * byte rows * cols terrain costs, if present
+ * </pre>
+ */
+public final class MapFile {
+    private static final int MAGIC = 0x474D4150;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final int FLAG_COSTS = 1;
+    private static final int CHUNK = 1 << 16;
+
+    private MapFile() {
+    }
+
+    /**
+     * Writes the map's cells and terrain layer; listeners and version are not
+     * stored.
+     */
+    public static void write(GridMap map, Path file) throws IOException {
+        ByteBuffer costs = map.getCostLayer();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNK);
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(map.getRows()).putInt(map.getCols())
+                    .putInt(costs != null ? FLAG_COSTS : 0).putInt(map.getMinCost());
+            LongBuffer bitset = map.getBitset();
+            for (int i = 0; i < bitset.limit(); i++) {
+                if (buffer.remaining() < Long.BYTES) {
+                    flush(channel, buffer);
+                }
+                buffer.putLong(bitset.get(i));
+            }
+            if (costs != null) {
+                for (int id = 0; id < map.size(); id++) {
+                    if (!buffer.hasRemaining()) {
+                        flush(channel, buffer);
+                    }
+                    buffer.put(costs.get(id));
+                }
+            }
+            flush(channel, buffer);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Memory-maps a file written by {@link #write}. The returned map is read
+     * only and stays valid after the file is closed; nothing but the header is
+     * read until the map is searched.
+     */
+    public static GridMap map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a map file: " + file);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                channel.read(header, header.position());
+            }
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a map file: " + file);
+            }
+            int formatVersion = header.getInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException("Unsupported map file version " + formatVersion);
+            }
+            int rows = header.getInt();
+            int cols = header.getInt();
+            int flags = header.getInt();
+            int minCost = header.getInt();
+            if (rows <= 0 || cols <= 0 || (long) rows * cols > Integer.MAX_VALUE || minCost < 1
+                    || minCost > GridMap.MAX_COST) {
+                throw new IOException("Corrupt map file header: " + file);
+            }
+            int cells = rows * cols;
+            long bitsetSize = 8L * ((cells + 63L) >>> 6);
+            boolean hasCosts = (flags & FLAG_COSTS) != 0;
+            if (channel.size() < HEADER_SIZE + bitsetSize + (hasCosts ? cells : 0)) {
+                throw new IOException("Truncated map file: " + file);
+            }
+            // mapped separately so neither region hits the 2GB limit of a single mapping
+            MappedByteBuffer bits = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, bitsetSize);
+            LongBuffer bitset = bits.order(ByteOrder.BIG_ENDIAN).asLongBuffer();
+            ByteBuffer costs = hasCosts
+                    ? channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + bitsetSize, cells)
+                    : null;
+            return new GridMap(rows, cols, bitset, costs, hasCosts ? minCost : 1);
+        }
+    }
+
+    /**
+     * @return size in bytes of the file {@link #write} produces for the map
+     */
+    public static long fileSize(GridMap map) {
+        long cells = map.size();
+        return HEADER_SIZE + 8L * ((cells + 63) >>> 6) + (map.getCostLayer() != null ? cells : 0);
+    }
+}
@@ -0,0 +1,157 @@
+package com.ai.astar;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Map file check and benchmark.
+ *
+ * First, maps with and without terrain are written with {@link MapFile},
+ * mapped back and compared cell by cell, and {@link AStar} and
+ * {@link AStarOrthogonal} must find paths of the same cost on the mapped map
+ * as on the heap map. A {@link MovingAiMap} text round trip must keep every
+ * blocked cell. Then it compares the time to open a large map from Moving AI
+ * text and from a map file, and times both engines searching the heap map
+ * and the mapped one.
+ *
+ * Usage: MapFileBenchmark [size] [queries] [seconds per case]
+ */
+public class MapFileBenchmark {
+
+    private static final long SEED = 20200926L;
+
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 2048;
+        int queryCount = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        double seconds = args.length > 2 ? Double.parseDouble(args[2]) : 1.0;
+
+        Path dir = Files.createTempDirectory("mapfile");
+        try {
+            int errors = check(dir);
+            System.out.println(errors == 0 ? "OK: mapped maps match" : "FAILED: " + errors + " mismatches");
+
+            GridMap heap = MapGenerator.generate(MapGenerator.Type.ROOMS, size, size, 0.2, SEED);
+            TerrainBenchmark.paintTerrain(heap, new Random(SEED), 1);
+            heap = heap.readOnlyCopy();
+            Path text = dir.resolve("rooms.map");
+            Path binary = dir.resolve("rooms.gmap");
+            MovingAiMap.write(heap, text);
+            MapFile.write(heap, binary);
+            System.out.printf(Locale.ROOT, "%dx%d: text %d KB, map file %d KB%n", size, size, Files.size(text) >> 10,
+                    Files.size(binary) >> 10);
+
+            long start = System.nanoTime();
+            MovingAiMap.read(text, 8);
+            long parseNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            GridMap mapped = MapFile.map(binary);
+            long mapNanos = System.nanoTime() - start;
+            System.out.printf(Locale.ROOT, "open: parse text %.1f ms, map file %.3f ms%n", parseNanos / 1e6,
+                    mapNanos / 1e6);
+
+            PathQuery[] queries = MapGenerator.queries(heap, queryCount, size / 4, size / 2, SEED);
+            System.out.printf(Locale.ROOT, "%-16s %-8s %12s %14s%n", "engine", "map", "us/op", "expanded/op");
+            report("AStar", "heap", EngineBenchmark.measure(PathService.diagonalFinder(heap), queries, seconds));
+            report("AStar", "mapped", EngineBenchmark.measure(PathService.diagonalFinder(mapped), queries, seconds));
+            report("AStarOrthogonal", "heap", EngineBenchmark.measure(new AStarOrthogonal(heap), queries, seconds));
+            report("AStarOrthogonal", "mapped", EngineBenchmark.measure(new AStarOrthogonal(mapped), queries,
+                    seconds));
+            if (errors > 0) {
+                System.exit(1);
+            }
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    private static void report(String engine, String map, EngineBenchmark.Result result) {
+        System.out.printf(Locale.ROOT, "%-16s %-8s %12.1f %14.0f%n", engine, map, result.microsPerOp(),
+                result.expandedPerOp());
+    }
+
+    private static int check(Path dir) throws IOException {
+        Random random = new Random(SEED);
+        GridMap plain = MapGenerator.random(61, 77, 0.25, SEED);
+        GridMap terrain = MapGenerator.rooms(64, 64, SEED);
+        TerrainBenchmark.paintTerrain(terrain, random, 2);
+        int errors = 0;
+        for (GridMap map : new GridMap[] {plain, terrain}) {
+            Path file = dir.resolve("check.gmap");
+            MapFile.write(map, file);
+            if (Files.size(file) != MapFile.fileSize(map)) {
+                errors++;
+                System.out.println("file size " + Files.size(file) + ", expected " + MapFile.fileSize(map));
+            }
+            GridMap mapped = MapFile.map(file);
+            errors += compareCells(map, mapped, true);
+            errors += comparePaths(map, mapped, random, 200);
+
+            Path text = dir.resolve("check.map");
+            MovingAiMap.write(map, text);
+            errors += compareCells(map, MovingAiMap.read(text), false);
+        }
+        return errors;
+    }
+
+    private static int compareCells(GridMap expected, GridMap actual, boolean costs) {
+        if (expected.getRows() != actual.getRows() || expected.getCols() != actual.getCols()) {
+            System.out.println("size " + actual.getRows() + "x" + actual.getCols());
+            return 1;
+        }
+        int errors = 0;
+        for (int id = 0; id < expected.size(); id++) {
+            if (expected.isBlocked(id) != actual.isBlocked(id)
+                    || (costs && expected.getCost(id) != actual.getCost(id))) {
+                errors++;
+            }
+        }
+        if (expected.fingerprint() != actual.fingerprint()
+                || (costs && expected.getMinCost() != actual.getMinCost())) {
+            errors++;
+        }
+        if (errors > 0) {
+            System.out.println(errors + " cells differ on " + expected.getRows() + "x" + expected.getCols());
+        }
+        return errors;
+    }
+
+    private static int comparePaths(GridMap heap, GridMap mapped, Random random, int queries) {
+        AStar heapAStar = new AStar(heap);
+        AStar mappedAStar = new AStar(mapped);
+        AStarOrthogonal heapOrthogonal = new AStarOrthogonal(heap);
+        AStarOrthogonal mappedOrthogonal = new AStarOrthogonal(mapped);
+        int errors = 0;
+        for (int q = 0; q < queries; q++) {
+            Node start = MapGenerator.randomOpenCell(heap, random);
+            Node goal = MapGenerator.randomOpenCell(heap, random);
+            if (cost(heapAStar.findPath(start, goal)) != cost(mappedAStar.findPath(start, goal))) {
+                errors++;
+                System.out.println("AStar " + start + " -> " + goal);
+            }
+            if (cost(heapOrthogonal.findPath(start, goal)) != cost(mappedOrthogonal.findPath(start, goal))) {
+                errors++;
+                System.out.println("AStarOrthogonal " + start + " -> " + goal);
+            }
+        }
+        return errors;
+    }
+
+    private static int cost(List<Node> path) {
+        return path.isEmpty() ? -1 : path.get(path.size() - 1).getG();
+    }
+
+    private static int cost(Optional<List<Node>> path) {
+        return cost(path.orElse(List.of()));
+    }
+}
@@ -0,0 +1,198 @@
+package com.ai.astar;
+
+import java.util.Random;
+
+/**
+ * Reproducible map generators for benchmarks and checks. The same type, size
+ * and seed always produce the same map.
+ */
+public class MapGenerator {
+
+    public enum Type {
+        OPEN,
+        RANDOM,
+        MAZE,
+        ROOMS;
+    }
+
+    private MapGenerator() {
+    }
+
+    /**
+     * @param density fraction of blocked cells, only used by {@link Type#RANDOM}
+     */
+    public static GridMap generate(Type type, int rows, int cols, double density, long seed) {
+        switch (type) {
+            case OPEN:
+                return new GridMap(rows, cols);
+            case RANDOM:
+                return random(rows, cols, density, seed);
+            case MAZE:
+                return maze(rows, cols, seed);
+            case ROOMS:
+                return rooms(rows, cols, seed);
+            default:
+                throw new IllegalArgumentException("Unknown map type " + type);
+        }
+    }
+
+    /**
+     * Blocks every cell independently with the given probability.
+     */
+    public static GridMap random(int rows, int cols, double density, long seed) {
+        Random random = new Random(seed);
+        GridMap map = new GridMap(rows, cols);
+        for (int id = 0; id < map.size(); id++) {
+            if (random.nextDouble() < density) {
+                map.setBlocked(id, true);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Perfect maze carved by a randomized depth-first search; corridors and
+     * walls are one cell wide, so every open cell is reachable.
+     */
+    public static GridMap maze(int rows, int cols, long seed) {
+        Random random = new Random(seed);
+        GridMap map = new GridMap(rows, cols);
+        for (int id = 0; id < map.size(); id++) {
+            map.setBlocked(id, true);
+        }
+        int cellRows = (rows + 1) / 2;
+        int cellCols = (cols + 1) / 2;
+        boolean[] visited = new boolean[cellRows * cellCols];
+        int[] stack = new int[cellRows * cellCols];
+        int[] order = {0, 1, 2, 3};
+        int top = 0;
+        stack[top++] = 0;
+        visited[0] = true;
+        map.setBlock(0, 0, false);
+        while (top > 0) {
+            int cell = stack[top - 1];
+            int cellRow = cell / cellCols;
+            int cellCol = cell % cellCols;
+            shuffle(order, random);
+            boolean moved = false;
+            for (int direction : order) {
+                int nextRow = cellRow + (direction == 0 ? -1 : direction == 1 ? 1 : 0);
+                int nextCol = cellCol + (direction == 2 ? -1 : direction == 3 ? 1 : 0);
+                if (nextRow < 0 || nextCol < 0 || nextRow >= cellRows || nextCol >= cellCols) {
+                    continue;
+                }
+                int next = nextRow * cellCols + nextCol;
+                if (visited[next]) {
+                    continue;
+                }
+                visited[next] = true;
+                map.setBlock(cellRow + nextRow, cellCol + nextCol, false); // wall between the two cells
+                map.setBlock(2 * nextRow, 2 * nextCol, false);
+                stack[top++] = next;
+                moved = true;
+                break;
+            }
+            if (!moved) {
+                top--;
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Rectangular rooms joined in sequence by L-shaped corridors.
+     */
+    public static GridMap rooms(int rows, int cols, long seed) {
+        Random random = new Random(seed);
+        GridMap map = new GridMap(rows, cols);
+        for (int id = 0; id < map.size(); id++) {
+            map.setBlocked(id, true);
+        }
+        int roomCount = Math.max(2, rows * cols / 400);
+        int maxSide = Math.max(3, Math.min(rows, cols) / 8);
+        int previousRow = -1;
+        int previousCol = -1;
+        for (int i = 0; i < roomCount; i++) {
+            int height = 3 + random.nextInt(maxSide);
+            int width = 3 + random.nextInt(maxSide);
+            int top = random.nextInt(Math.max(1, rows - height));
+            int left = random.nextInt(Math.max(1, cols - width));
+            for (int row = top; row < Math.min(rows, top + height); row++) {
+                for (int col = left; col < Math.min(cols, left + width); col++) {
+                    map.setBlock(row, col, false);
+                }
+            }
+            int centerRow = Math.min(rows - 1, top + height / 2);
+            int centerCol = Math.min(cols - 1, left + width / 2);
+            if (previousRow >= 0) {
+                carveCorridor(map, previousRow, previousCol, centerRow, centerCol);
+            }
+            previousRow = centerRow;
+            previousCol = centerCol;
+        }
+        return map;
+    }
+
+    private static void carveCorridor(GridMap map, int fromRow, int fromCol, int toRow, int toCol) {
+        int stepCol = Integer.signum(toCol - fromCol);
+        for (int col = fromCol; col != toCol; col += stepCol) {
+            map.setBlock(fromRow, col, false);
+        }
+        int stepRow = Integer.signum(toRow - fromRow);
+        for (int row = fromRow; row != toRow; row += stepRow) {
+            map.setBlock(row, toCol, false);
+        }
+        map.setBlock(toRow, toCol, false);
+    }
+
+    private static void shuffle(int[] values, Random random) {
+        for (int i = values.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = values[i];
+            values[i] = values[j];
+            values[j] = tmp;
+        }
+    }
+
+    /**
+     * @return a random open cell
+     */
+    public static Node randomOpenCell(GridMap map, Random random) {
+        while (true) {
+            int row = random.nextInt(map.getRows());
+            int col = random.nextInt(map.getCols());
+            if (!map.isBlocked(row, col)) {
+                return new Node(row, col);
+            }
+        }
+    }
+
+    /**
+     * Picks start/goal pairs of open cells whose Manhattan distance lies in
+     * [minDistance, maxDistance]. Falls back to the last candidate after many
+     * misses so that dense maps still produce queries.
+     */
+    public static PathQuery[] queries(GridMap map, int count, int minDistance, int maxDistance, long seed) {
+        Random random = new Random(seed);
+        PathQuery[] queries = new PathQuery[count];
+        int reach = Math.min(maxDistance, map.getRows() + map.getCols());
+        for (int i = 0; i < count; i++) {
+            Node start = randomOpenCell(map, random);
+            Node goal = start;
+            for (int attempt = 0; attempt < 10000; attempt++) {
+                int row = start.getRow() + random.nextInt(2 * reach + 1) - reach;
+                int col = start.getCol() + random.nextInt(2 * reach + 1) - reach;
+                if (!map.isWalkable(row, col)) {
+                    continue;
+                }
+                goal = new Node(row, col);
+                int distance = Math.abs(start.getRow() - row) + Math.abs(start.getCol() - col);
+                if (distance >= minDistance && distance <= maxDistance) {
+                    break;
+                }
+            }
+            queries[i] = new PathQuery(start, goal);
+        }
+        return queries;
+    }
+}
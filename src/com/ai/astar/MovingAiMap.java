@@ -0,0 +1,118 @@
+package com.ai.astar;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Importer for the Moving AI Lab grid benchmark format ({@code .map}):
+ * <pre>
+ * type octile
+ * height 4
+ * width 6
+ * map
+ * ..@@..
+ * ...
+ * </pre>
+ * '.' and 'G' are ground, 'S' is swamp (walkable, with an optional terrain
+ * cost), and '@', 'O', 'T' (trees) and 'W' (water) are blocked. Water can only
+ * be entered from water in the original benchmark; with a single walkable
+ * layer it is treated as blocked.
+ */
+public final class MovingAiMap {
+
+    private MovingAiMap() {
+    }
+
+    public static GridMap read(Path file) throws IOException {
+        return read(file, 1);
+    }
+
+    /**
+     * @param swampCost terrain cost given to 'S' cells; 1 leaves the map without a cost layer
+     */
+    public static GridMap read(Path file, int swampCost) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+            return read(reader, swampCost, file.toString());
+        }
+    }
+
+    static GridMap read(BufferedReader reader, int swampCost, String name) throws IOException {
+        int rows = -1;
+        int cols = -1;
+        String line;
+        while ((line = reader.readLine()) != null && !line.trim().equals("map")) {
+            String[] field = line.trim().split("\\s+");
+            if (field.length != 2) {
+                continue;
+            }
+            if (field[0].equals("height")) {
+                rows = Integer.parseInt(field[1]);
+            } else if (field[0].equals("width")) {
+                cols = Integer.parseInt(field[1]);
+            } else if (field[0].equals("type") && !field[1].equals("octile")) {
+                throw new IOException("Unsupported map type " + field[1] + ": " + name);
+            }
+        }
+        if (line == null || rows <= 0 || cols <= 0) {
+            throw new IOException("Missing map header: " + name);
+        }
+        GridMap map = new GridMap(rows, cols);
+        for (int row = 0; row < rows; row++) {
+            line = reader.readLine();
+            if (line == null || line.length() < cols) {
+                throw new IOException("Truncated map at row " + row + ": " + name);
+            }
+            for (int col = 0; col < cols; col++) {
+                switch (line.charAt(col)) {
+                    case '.':
+                    case 'G':
+                        break;
+                    case 'S':
+                        if (swampCost != 1) {
+                            map.setCost(row, col, swampCost);
+                        }
+                        break;
+                    case '@':
+                    case 'O':
+                    case 'T':
+                    case 'W':
+                        map.setBlocked(map.cellId(row, col), true);
+                        break;
+                    default:
+                        throw new IOException("Unknown terrain '" + line.charAt(col) + "' at " + row + "," + col
+                                + ": " + name);
+                }
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Converts a {@code .map} file to a {@link MapFile}.
+     */
+    public static void convert(Path in, Path out, int swampCost) throws IOException {
+        MapFile.write(read(in, swampCost), out);
+    }
+
+    /**
+     * Writes the map in the same format: blocked cells as '@', cells with a
+     * terrain cost above the map's lowest as 'S', the rest as '.'.
+     */
+    public static void write(GridMap map, Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            writer.write("type octile\nheight " + map.getRows() + "\nwidth " + map.getCols() + "\nmap\n");
+            char[] line = new char[map.getCols()];
+            for (int row = 0; row < map.getRows(); row++) {
+                for (int col = 0; col < map.getCols(); col++) {
+                    line[col] = map.isBlocked(row, col) ? '@' : map.getCost(row, col) > map.getMinCost() ? 'S' : '.';
+                }
+                writer.write(line);
+                writer.write('\n');
+            }
+        }
+    }
+}
@@ -49,12 +49,31 @@ public class Node {
         setF(finalCost);
     }
 
+    /**
+     * Two nodes are equal when they stand for the same cell, whatever their
+     * costs, parent or direction.
+     */
     @Override
     public boolean equals(Object arg0) {
+        if (this == arg0) {
+            return true;
+        }
+        if (!(arg0 instanceof Node)) {
+            return false;
+        }
         Node other = (Node) arg0;
         return this.getRow() == other.getRow() && this.getCol() == other.getCol();
     }
 
+    /**
+     * Consistent with equals; changes if the row or column is changed, so a
+     * node must not be moved while it is a key of a hash set or map.
+     */
+    @Override
+    public int hashCode() {
+        return 31 * row + col;
+    }
+
     @Override
     public String toString() {
         return "Node [row=" + row + ", col=" + col + "]";
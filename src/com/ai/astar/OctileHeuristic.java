@@ -0,0 +1,29 @@
+package com.ai.astar;
+
+/**
+ * Octile distance for 8-connected grids: the exact cost on an empty map, so it
+ * is admissible and consistent for {@link AStar} and {@link JumpPointSearch}.
+ * Scaled by the map's lowest terrain cost.
+ */
+public class OctileHeuristic implements Heuristic {
+    private final GridMap map;
+    private final int cols;
+    private final int hvCost;
+    private final int diagonalCost;
+
+    public OctileHeuristic(GridMap map, int hvCost, int diagonalCost) {
+        this.map = map;
+        this.cols = map.getCols();
+        this.hvCost = hvCost;
+        // two straight moves are never worse than one diagonal for the search
+        this.diagonalCost = Math.min(diagonalCost, 2 * hvCost);
+    }
+
+    @Override
+    public int estimate(int cellId, int direction, int goalId) {
+        int dRow = Math.abs(goalId / cols - cellId / cols);
+        int dCol = Math.abs(goalId % cols - cellId % cols);
+        int diagonal = Math.min(dRow, dCol);
+        return (diagonal * diagonalCost + (Math.max(dRow, dCol) - diagonal) * hvCost) * map.getMinCost();
+    }
+}
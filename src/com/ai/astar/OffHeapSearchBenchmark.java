@@ -0,0 +1,211 @@
+package com.ai.astar;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * Checks of {@link OffHeapSearchState} and a comparison of garbage collection
+ * with the search state on and off the heap.
+ *
+ * On small random maps, AStar and AStarOrthogonal must return exactly the same
+ * paths with an off-heap state as with the default one. Then, on one large
+ * random map, each kind of state runs the same queries while a stream of
+ * short-lived garbage (standing in for the rest of a server) keeps the
+ * collector busy, and it reports the heap and direct memory held by the
+ * engine, the collections and their longest pause during the run, the time of
+ * a full collection with the engine live, and the query time.
+ *
+ * The map bitset stays on the heap in both cases (1 bit per cell); load it
+ * with {@link MapFile#map} to move it out as well. Large sizes need
+ * -XX:MaxDirectMemorySize (by default the maximum heap size) and, for the
+ * on-heap run, -Xmx above 28 bytes per cell. Run with -Xms equal to -Xmx:
+ * otherwise a full collection that frees the on-heap state shrinks the heap,
+ * and the next run pays for a small young generation instead of its own state.
+ *
+ * Usage: OffHeapSearchBenchmark [map size] [queries] [orthogonal]
+ */
+public class OffHeapSearchBenchmark {
+
+    private static final long SEED = 20201011L;
+    // live garbage kept by the churn, so collections have something to trace
+    private static final int CHURN_SLOTS = 1 << 16;
+
+    private static final AtomicLong pauses = new AtomicLong();
+    private static final AtomicLong pauseNanos = new AtomicLong();
+    private static final AtomicLong maxPauseNanos = new AtomicLong();
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+        int queryCount = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        boolean orthogonal = args.length > 2 && Boolean.parseBoolean(args[2]);
+        Random random = new Random(SEED);
+        int errors = checkPaths(random, 60);
+        errors += checkStateSize();
+        System.out.println(errors == 0 ? "OK: off-heap paths match on-heap paths" : "FAILED: " + errors);
+
+        listenToCollections();
+        GridMap map = MapGenerator.random(size, size, 0.25, SEED);
+        PathQuery[] queries = MapGenerator.queries(map, queryCount, size / 8, size / 4, SEED);
+        System.out.printf(Locale.ROOT, "%dx%d random map, %d queries, %s%n", size, size, queryCount,
+                orthogonal ? "AStarOrthogonal" : "AStar");
+        System.out.printf(Locale.ROOT, "%-10s %10s %10s %8s %10s %12s %12s %10s%n", "state", "heap MB", "direct MB",
+                "GCs", "GC ms", "max pause", "full GC ms", "ms/query");
+        for (boolean offHeap : new boolean[] { false, true, false, true }) {
+            run(map, queries, orthogonal, offHeap);
+        }
+        if (errors > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void run(GridMap map, PathQuery[] queries, boolean orthogonal, boolean offHeap) {
+        collect();
+        long heapBefore = usedHeap();
+        long directBefore = usedDirect();
+        int states = orthogonal ? 2 * map.size() : map.size();
+        SearchState state = offHeap ? new OffHeapSearchState(states) : new HeapSearchState(states);
+        BoundedPathFinder engine = orthogonal ? new AStarOrthogonal(map, state) : new AStar(map, state);
+        // one query to grow the off-heap open list to its working size
+        engine.findPath(queries[0].getInitialNode(), queries[0].getFinalNode(), SearchLimits.NONE);
+        collect();
+        long heap = usedHeap() - heapBefore;
+        long direct = usedDirect() - directBefore;
+
+        Object[] churn = new Object[CHURN_SLOTS];
+        Random random = new Random(SEED);
+        long pausesBefore = pauses.get();
+        long pauseNanosBefore = pauseNanos.get();
+        maxPauseNanos.set(0);
+        long begin = System.nanoTime();
+        for (PathQuery query : queries) {
+            SearchResult result = engine.findPath(query.getInitialNode(), query.getFinalNode(), SearchLimits.NONE);
+            for (int i = 0; i < 32768; i++) {
+                churn[random.nextInt(CHURN_SLOTS)] = new int[16 + random.nextInt(64)];
+            }
+            churn[random.nextInt(CHURN_SLOTS)] = result.getPath();
+        }
+        double msPerQuery = (System.nanoTime() - begin) / 1e6 / queries.length;
+        long gcs = pauses.get() - pausesBefore;
+        double gcMs = (pauseNanos.get() - pauseNanosBefore) / 1e6;
+        double maxPauseMs = maxPauseNanos.get() / 1e6;
+
+        // full collection with the engine and churn still reachable
+        long fullBegin = System.nanoTime();
+        System.gc();
+        double fullMs = (System.nanoTime() - fullBegin) / 1e6;
+        System.out.printf(Locale.ROOT, "%-10s %10.1f %10.1f %8d %10.1f %12.2f %12.1f %10.2f%n",
+                offHeap ? "off-heap" : "on-heap", heap / 1e6, direct / 1e6, gcs, gcMs, maxPauseMs, fullMs,
+                msPerQuery);
+        Reference.reachabilityFence(engine);
+        Reference.reachabilityFence(churn);
+    }
+
+    private static int checkPaths(Random random, int maps) {
+        int errors = 0;
+        for (int i = 0; i < maps; i++) {
+            int rows = 8 + random.nextInt(40);
+            int cols = 8 + random.nextInt(40);
+            GridMap map = MapGenerator.random(rows, cols, 0.1 + 0.3 * random.nextDouble(), random.nextLong());
+            if (random.nextBoolean()) {
+                for (int cell = 0; cell < 3 * map.size() / 10; cell++) {
+                    map.setCost(random.nextInt(rows), random.nextInt(cols), 1 + random.nextInt(8));
+                }
+            }
+            AStar heap = new AStar(map);
+            AStar offHeap = new AStar(map, new OffHeapSearchState(map.size()));
+            AStarOrthogonal heapOrthogonal = new AStarOrthogonal(map);
+            AStarOrthogonal offHeapOrthogonal = new AStarOrthogonal(map, new OffHeapSearchState(2 * map.size()));
+            // several queries per engine, so generation reuse is exercised too
+            for (int q = 0; q < 10; q++) {
+                Node start = MapGenerator.randomOpenCell(map, random);
+                Node goal = MapGenerator.randomOpenCell(map, random);
+                List<Node> expected = heap.findPath(start, goal);
+                List<Node> actual = offHeap.findPath(start, goal);
+                if (!expected.equals(actual) || heap.getExpandedCount() != offHeap.getExpandedCount()) {
+                    System.out.println("AStar mismatch " + start + " -> " + goal + ": " + expected + " vs " + actual);
+                    errors++;
+                }
+                Optional<List<Node>> expectedOrthogonal = heapOrthogonal.findPath(start, goal);
+                Optional<List<Node>> actualOrthogonal = offHeapOrthogonal.findPath(start, goal);
+                if (!expectedOrthogonal.equals(actualOrthogonal)) {
+                    System.out.println("AStarOrthogonal mismatch " + start + " -> " + goal + ": "
+                            + expectedOrthogonal + " vs " + actualOrthogonal);
+                    errors++;
+                }
+            }
+        }
+        return errors;
+    }
+
+    private static int checkStateSize() {
+        GridMap map = new GridMap(10, 10);
+        try {
+            new AStarOrthogonal(map, new OffHeapSearchState(map.size()));
+            System.out.println("AStarOrthogonal accepted a state of one id per cell");
+            return 1;
+        } catch (IllegalArgumentException expected) {
+            return 0;
+        }
+    }
+
+    private static void listenToCollections() {
+        NotificationListener listener = (notification, handback) -> {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                return;
+            }
+            GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo
+                    .from((CompositeData) notification.getUserData());
+            long nanos = info.getGcInfo().getDuration() * 1000000L;
+            pauses.incrementAndGet();
+            pauseNanos.addAndGet(nanos);
+            maxPauseNanos.accumulateAndGet(nanos, Math::max);
+        };
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            // concurrent cycles of G1 and ZGC are not pauses
+            if (bean instanceof NotificationEmitter && !bean.getName().contains("Concurrent")
+                    && !bean.getName().contains("Cycles")) {
+                ((NotificationEmitter) bean).addNotificationListener(listener, null, null);
+            }
+        }
+    }
+
+    private static void collect() {
+        // direct buffers are freed by their cleaners after the collection that finds them unreachable
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static long usedHeap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long usedDirect() {
+        long used = 0;
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) {
+                used += pool.getMemoryUsed();
+            }
+        }
+        return used;
+    }
+}
@@ -0,0 +1,139 @@
+package com.ai.astar;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * {@link SearchState} whose per-state memory lives outside the Java heap, for
+ * maps of hundreds of millions of cells.
+ *
+ * The g cost, parent, generation stamp and open list position of every state
+ * are kept in direct buffers of native byte order, in pages of
+ * {@value #PAGE_SHIFT}-bit ids (1GB each) so a state count is not limited to
+ * what one buffer can address. Only the entries of the open list (ids, keys
+ * and ties of the open states, with the heap code shared with
+ * {@link IndexedHeap}) stay on the heap, so heap use follows the search
+ * frontier instead of the map size, and the collector never sees the per-cell
+ * memory. As with SearchState, the memory is allocated once and reused by
+ * every query through generation stamps.
+ *
+ * Direct memory counts against {@code -XX:MaxDirectMemorySize} (by default the
+ * maximum heap size) and is released when the state is garbage collected.
+ * Not thread safe; use one per thread.
+ */
+public class OffHeapSearchState extends SearchState {
+    private static final int PAGE_SHIFT = 28;
+    private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+
+    private final IntBuffer[] g;
+    private final IntBuffer[] parent;
+    private final IntBuffer[] stamp;
+    private final OpenList openList;
+
+    public OffHeapSearchState(int size) {
+        this(size, new OpenList(allocate(size)));
+    }
+
+    private OffHeapSearchState(int size, OpenList openList) {
+        super(size, openList);
+        this.g = allocate(size);
+        this.parent = allocate(size);
+        this.stamp = allocate(size);
+        this.openList = openList;
+    }
+
+    private static IntBuffer[] allocate(int size) {
+        IntBuffer[] pages = new IntBuffer[Math.max(1, (int) (((long) size + PAGE_MASK) >>> PAGE_SHIFT))];
+        for (int i = 0; i < pages.length; i++) {
+            int length = (int) Math.min(1L << PAGE_SHIFT, size - ((long) i << PAGE_SHIFT));
+            // allocateDirect zeroes the memory, so every stamp starts unseen
+            pages[i] = ByteBuffer.allocateDirect(4 * Math.max(length, 1)).order(ByteOrder.nativeOrder()).asIntBuffer();
+        }
+        return pages;
+    }
+
+    private static int get(IntBuffer[] pages, int id) {
+        return pages[id >>> PAGE_SHIFT].get(id & PAGE_MASK);
+    }
+
+    private static void set(IntBuffer[] pages, int id, int value) {
+        pages[id >>> PAGE_SHIFT].put(id & PAGE_MASK, value);
+    }
+
+    @Override
+    int stamp(int id) {
+        return get(stamp, id);
+    }
+
+    @Override
+    void setStamp(int id, int value) {
+        set(stamp, id, value);
+    }
+
+    @Override
+    void clearStamps() {
+        for (IntBuffer page : stamp) {
+            for (int i = 0; i < page.limit(); i++) {
+                page.put(i, 0);
+            }
+        }
+    }
+
+    @Override
+    int cost(int id) {
+        return get(g, id);
+    }
+
+    @Override
+    void setCost(int id, int value) {
+        set(g, id, value);
+    }
+
+    @Override
+    public int getParent(int id) {
+        return get(parent, id);
+    }
+
+    @Override
+    void setParent(int id, int parentId) {
+        set(parent, id, parentId);
+    }
+
+    /**
+     * @return bytes of direct memory held by the state
+     */
+    public long getOffHeapBytes() {
+        return 16L * size();
+    }
+
+    /**
+     * @return bytes of heap held by the open list, which grows to the largest frontier seen
+     */
+    public long getHeapBytes() {
+        return 12L * openList.length();
+    }
+
+    /**
+     * Open list whose positions live in direct buffers; its entries start
+     * small and grow with the frontier.
+     */
+    private static final class OpenList extends AbstractIndexedHeap {
+        private final IntBuffer[] position;
+
+        OpenList(IntBuffer[] position) {
+            super(1024);
+            this.position = position;
+        }
+
+        @Override
+        int position(int id) {
+            return get(position, id);
+        }
+
+        @Override
+        void setPosition(int id, int pos) {
+            set(position, id, pos);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.ai.astar;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Compares the old {@code PriorityQueue<Node>} open list (linear contains and
+ * remove + add for a better g) against {@link IndexedHeap} on the same
+ * 8-connected grid search.
+ *
+ * Usage: OpenListBenchmark [size] [obstacle density] [rounds]
+ */
+public class OpenListBenchmark {
+
+    private static final int HV_COST = 10;
+    private static final int DIAGONAL_COST = 14;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 128;
+        double density = args.length > 1 ? Double.parseDouble(args[1]) : 0.25;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        boolean[][] blocked = randomMap(size, density, 42L);
+
+        System.out.println("=== Open list benchmark " + size + "x" + size + ", density " + density + " ===");
+        // warm up both paths before timing
+        for (int i = 0; i < 2; i++) {
+            searchWithPriorityQueue(blocked);
+            searchWithIndexedHeap(blocked);
+        }
+        long pqTime = 0;
+        long heapTime = 0;
+        int pqCost = 0;
+        int heapCost = 0;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            pqCost = searchWithPriorityQueue(blocked);
+            pqTime += System.nanoTime() - start;
+            start = System.nanoTime();
+            heapCost = searchWithIndexedHeap(blocked);
+            heapTime += System.nanoTime() - start;
+        }
+        report("PriorityQueue", pqTime, rounds, pqCost);
+        report("IndexedHeap", heapTime, rounds, heapCost);
+        if (pqCost != heapCost) {
+            System.out.println("WARNING: path costs differ");
+        }
+    }
+
+    private static void report(String name, long nanos, int rounds, int cost) {
+        double ms = nanos / 1e6 / rounds;
+        System.out.printf("%-14s %10.2f ms/search %10.2f searches/s  cost=%d%n", name, ms, 1000.0 / ms, cost);
+    }
+
+    static boolean[][] randomMap(int size, double density, long seed) {
+        Random random = new Random(seed);
+        boolean[][] blocked = new boolean[size][size];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                blocked[row][col] = random.nextDouble() < density;
+            }
+        }
+        blocked[0][0] = false;
+        blocked[size - 1][size - 1] = false;
+        return blocked;
+    }
+
+    private static Node[][] nodes(boolean[][] blocked) {
+        int size = blocked.length;
+        Node goal = new Node(size - 1, size - 1);
+        Node[][] nodes = new Node[size][size];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                Node node = new Node(row, col);
+                node.calculateHeuristic(goal);
+                node.setBlock(blocked[row][col]);
+                nodes[row][col] = node;
+            }
+        }
+        return nodes;
+    }
+
+    private static int searchWithPriorityQueue(boolean[][] blocked) {
+        Node[][] nodes = nodes(blocked);
+        int size = nodes.length;
+        boolean[][] closed = new boolean[size][size];
+        PriorityQueue<Node> open = new PriorityQueue<Node>(new Comparator<Node>() {
+            @Override
+            public int compare(Node node0, Node node1) {
+                return Integer.compare(node0.getF(), node1.getF());
+            }
+        });
+        open.add(nodes[0][0]);
+        while (!open.isEmpty()) {
+            Node current = open.poll();
+            if (current.getRow() == size - 1 && current.getCol() == size - 1) {
+                return current.getG();
+            }
+            closed[current.getRow()][current.getCol()] = true;
+            for (int dr = -1; dr <= 1; dr++) {
+                for (int dc = -1; dc <= 1; dc++) {
+                    int row = current.getRow() + dr;
+                    int col = current.getCol() + dc;
+                    if ((dr == 0 && dc == 0) || row < 0 || col < 0 || row >= size || col >= size) {
+                        continue;
+                    }
+                    Node adjacent = nodes[row][col];
+                    if (adjacent.isBlock() || closed[row][col]) {
+                        continue;
+                    }
+                    int cost = dr != 0 && dc != 0 ? DIAGONAL_COST : HV_COST;
+                    if (!open.contains(adjacent)) {
+                        adjacent.setNodeData(current, cost);
+                        open.add(adjacent);
+                    } else if (adjacent.checkBetterPath(current, cost)) {
+                        open.remove(adjacent);
+                        open.add(adjacent);
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static int searchWithIndexedHeap(boolean[][] blocked) {
+        Node[][] nodes = nodes(blocked);
+        int size = nodes.length;
+        boolean[][] closed = new boolean[size][size];
+        IndexedHeap open = new IndexedHeap(size * size);
+        open.add(0, 0);
+        while (!open.isEmpty()) {
+            int id = open.poll();
+            Node current = nodes[id / size][id % size];
+            if (current.getRow() == size - 1 && current.getCol() == size - 1) {
+                return current.getG();
+            }
+            closed[current.getRow()][current.getCol()] = true;
+            for (int dr = -1; dr <= 1; dr++) {
+                for (int dc = -1; dc <= 1; dc++) {
+                    int row = current.getRow() + dr;
+                    int col = current.getCol() + dc;
+                    if ((dr == 0 && dc == 0) || row < 0 || col < 0 || row >= size || col >= size) {
+                        continue;
+                    }
+                    Node adjacent = nodes[row][col];
+                    if (adjacent.isBlock() || closed[row][col]) {
+                        continue;
+                    }
+                    int cost = dr != 0 && dc != 0 ? DIAGONAL_COST : HV_COST;
+                    int adjacentId = row * size + col;
+                    if (!open.contains(adjacentId)) {
+                        adjacent.setNodeData(current, cost);
+                        open.add(adjacentId, adjacent.getF(), adjacent.getG());
+                    } else if (adjacent.checkBetterPath(current, cost)) {
+                        open.decreaseKey(adjacentId, adjacent.getF(), adjacent.getG());
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,38 @@
+package com.ai.astar;
+
+/**
+ * Heuristic for {@link AStarOrthogonal}: scaled Manhattan distance plus a lower
+ * bound on the direction changes still needed. A cell entered horizontally
+ * needs at least one turn if the goal is on another row, a cell entered
+ * vertically needs one if the goal is in another column, and the start needs
+ * one if the goal differs in both. The bound is admissible and consistent.
+ * The move part is scaled by the map's lowest terrain cost; turn penalties are not.
+ */
+public class OrthogonalHeuristic implements Heuristic {
+    private final GridMap map;
+    private final int cols;
+    private final int cost;
+    private final int turnPenalty;
+
+    public OrthogonalHeuristic(GridMap map, int cost, int turnPenalty) {
+        this.map = map;
+        this.cols = map.getCols();
+        this.cost = cost;
+        this.turnPenalty = turnPenalty;
+    }
+
+    @Override
+    public int estimate(int cellId, int direction, int goalId) {
+        int dRow = Math.abs(goalId / cols - cellId / cols);
+        int dCol = Math.abs(goalId % cols - cellId % cols);
+        boolean turn;
+        if (direction == HORIZONTAL) {
+            turn = dRow != 0;
+        } else if (direction == VERTICAL) {
+            turn = dCol != 0;
+        } else {
+            turn = dRow != 0 && dCol != 0;
+        }
+        return cost * map.getMinCost() * (dRow + dCol) + (turn ? turnPenalty : 0);
+    }
+}
@@ -0,0 +1,136 @@
+package com.ai.astar;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Regression corpus for {@link AStarOrthogonal}: on many small seeded maps,
+ * every query is checked against a brute-force Dijkstra over
+ * (cell, incoming direction) states. A returned path must be valid (adjacent,
+ * unblocked cells from start to goal), its recomputed cost must equal its
+ * reported cost, and that cost must equal the brute-force optimum.
+ *
+ * Usage: OrthogonalRegressionTest [maps]
+ */
+public class OrthogonalRegressionTest {
+
+    private static final int ORTHOGONAL_COST = 10;
+    private static final int DIRECTION_CHANGE_PENALTY = 10;
+
+    public static void main(String[] args) {
+        int maps = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        Random random = new Random(2020L);
+        int checked = 0;
+        int failures = 0;
+        for (int m = 0; m < maps; m++) {
+            int rows = 2 + random.nextInt(11);
+            int cols = 2 + random.nextInt(11);
+            GridMap map = MapGenerator.random(rows, cols, random.nextDouble() * 0.45, m);
+            AStarOrthogonal aStar = new AStarOrthogonal(map);
+            for (int q = 0; q < 20; q++) {
+                Node start = MapGenerator.randomOpenCell(map, random);
+                Node goal = MapGenerator.randomOpenCell(map, random);
+                int expected = bruteForceCost(map, start, goal);
+                Optional<List<Node>> path = aStar.findPath(start, goal);
+                String error = check(map, start, goal, path, expected);
+                checked++;
+                if (error != null) {
+                    failures++;
+                    System.out.println("FAIL map " + m + " (" + rows + "x" + cols + ") " + start + " -> " + goal + ": " + error);
+                }
+            }
+        }
+        System.out.println(failures == 0 ? "OK: " + checked + " queries match brute force"
+                : "FAILED: " + failures + " of " + checked + " queries");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    static String check(GridMap map, Node start, Node goal, Optional<List<Node>> result, int expected) {
+        if (!result.isPresent()) {
+            return expected == -1 ? null : "no path, expected cost " + expected;
+        }
+        if (expected == -1) {
+            return "found a path where none exists";
+        }
+        List<Node> path = result.get();
+        if (!path.get(0).equals(start) || !path.get(path.size() - 1).equals(goal)) {
+            return "path does not join start and goal";
+        }
+        int cost = 0;
+        int previousDirection = -1;
+        for (int i = 1; i < path.size(); i++) {
+            Node from = path.get(i - 1);
+            Node to = path.get(i);
+            int dRow = Math.abs(to.getRow() - from.getRow());
+            int dCol = Math.abs(to.getCol() - from.getCol());
+            if (dRow + dCol != 1 || map.isBlocked(to.getRow(), to.getCol())) {
+                return "invalid step " + from + " -> " + to;
+            }
+            int direction = dRow == 0 ? 0 : 1;
+            cost += ORTHOGONAL_COST;
+            if (previousDirection != -1 && direction != previousDirection) {
+                cost += DIRECTION_CHANGE_PENALTY;
+            }
+            previousDirection = direction;
+        }
+        int reported = path.get(path.size() - 1).getG();
+        if (cost != reported) {
+            return "reported cost " + reported + " but path costs " + cost;
+        }
+        if (cost != expected) {
+            return "cost " + cost + ", optimum is " + expected;
+        }
+        return null;
+    }
+
+    /**
+     * O(states^2) Dijkstra without a priority queue. State = cell * 3 + incoming
+     * direction, where direction 2 means "no move yet" (the start).
+     *
+     * @return the optimal cost, or -1 if the goal is unreachable
+     */
+    private static int bruteForceCost(GridMap map, Node start, Node goal) {
+        int states = map.size() * 3;
+        int[] dist = new int[states];
+        boolean[] done = new boolean[states];
+        Arrays.fill(dist, Integer.MAX_VALUE);
+        dist[map.cellId(start.getRow(), start.getCol()) * 3 + 2] = 0;
+        int goalCell = map.cellId(goal.getRow(), goal.getCol());
+        int[][] moves = {{-1, 0, 1}, {1, 0, 1}, {0, -1, 0}, {0, 1, 0}};
+        while (true) {
+            int best = -1;
+            for (int s = 0; s < states; s++) {
+                if (!done[s] && dist[s] != Integer.MAX_VALUE && (best == -1 || dist[s] < dist[best])) {
+                    best = s;
+                }
+            }
+            if (best == -1) {
+                return -1;
+            }
+            if (best / 3 == goalCell) {
+                return dist[best];
+            }
+            done[best] = true;
+            int cell = best / 3;
+            int direction = best % 3;
+            int row = map.row(cell);
+            int col = map.col(cell);
+            for (int[] move : moves) {
+                int nextRow = row + move[0];
+                int nextCol = col + move[1];
+                if (!map.isWalkable(nextRow, nextCol)) {
+                    continue;
+                }
+                int cost = ORTHOGONAL_COST + (direction != 2 && direction != move[2] ? DIRECTION_CHANGE_PENALTY : 0);
+                int next = map.cellId(nextRow, nextCol) * 3 + move[2];
+                if (dist[best] + cost < dist[next]) {
+                    dist[next] = dist[best] + cost;
+                }
+            }
+        }
+    }
+}
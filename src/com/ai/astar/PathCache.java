@@ -0,0 +1,269 @@
+package com.ai.astar;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, thread-safe cache of path results for one {@link GridMap}, keyed by
+ * map version, start and goal.
+ *
+ * Paths are held as {@link CompactPath}s; "no path" answers are cached too.
+ * Entries live in 16 independently locked LRU segments, so concurrent lookups
+ * rarely contend and each segment evicts its least recently used entry when
+ * full.
+ *
+ * The cache registers itself as a {@link MapEditListener}: blocking a cell
+ * drops only the paths that pass through it, and unblocking a cell drops only
+ * the "no path" answers and the paths that a route through the opened cell
+ * could beat (lower bound start -> cell -> goal below the cached cost). All
+ * other entries stay valid for the new map version. A search started before
+ * an edit cannot store its result afterwards.
+ */
+public class PathCache implements MapEditListener {
+    private static final int SEGMENTS = 16;
+    private static final CompactPath NO_PATH = null;
+
+    private final GridMap map;
+    private final int cols;
+    private final int hvCost;
+    private final int diagonalCost;
+    private final int turnPenalty;
+    private final Segment[] segments;
+    private volatile long version;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * @param maxEntries total number of cached results
+     * @param turnPenalty extra cost of changing axis (0 for the AStar model)
+     */
+    public PathCache(GridMap map, int maxEntries, int hvCost, int diagonalCost, int turnPenalty) {
+        if (maxEntries < SEGMENTS) {
+            throw new IllegalArgumentException("maxEntries must be at least " + SEGMENTS);
+        }
+        this.map = map;
+        this.cols = map.getCols();
+        this.hvCost = hvCost;
+        this.diagonalCost = diagonalCost;
+        this.turnPenalty = turnPenalty;
+        this.segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(maxEntries / SEGMENTS);
+        }
+        this.version = map.getVersion();
+        if (!map.isReadOnly()) {
+            map.addEditListener(this);
+        }
+    }
+
+    /**
+     * Cache for {@link AStar} / {@link JumpPointSearch} results with the default costs.
+     */
+    public static PathCache diagonal(GridMap map, int maxEntries) {
+        return new PathCache(map, maxEntries, 10, 14, 0);
+    }
+
+    /**
+     * Cache for {@link AStarOrthogonal} results.
+     */
+    public static PathCache orthogonal(GridMap map, int maxEntries) {
+        return new PathCache(map, maxEntries, 10, 20, 10);
+    }
+
+    /**
+     * @return the cached result, or null on a miss
+     */
+    public Lookup get(int startCell, int goalCell) {
+        if (map.getVersion() == version) {
+            long key = key(startCell, goalCell);
+            Segment segment = segment(key);
+            synchronized (segment) {
+                if (segment.containsKey(key)) {
+                    hits.increment();
+                    return new Lookup(segment.get(key));
+                }
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Stores a result found on the map as it was at searchVersion. Ignored if
+     * the map has been edited since.
+     */
+    public void put(long searchVersion, int startCell, int goalCell, CompactPath path) {
+        long key = key(startCell, goalCell);
+        Segment segment = segment(key);
+        synchronized (segment) {
+            // checked under the lock: an edit bumps the map version before its
+            // listener scans the segments, so either the edit rejects this entry
+            // here or its scan sees it
+            if (searchVersion == version && map.getVersion() == version) {
+                segment.put(key, path);
+            }
+        }
+    }
+
+    @Override
+    public void cellChanged(GridMap map, int cellId, boolean isBlock) {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                Iterator<Map.Entry<Long, CompactPath>> entries = segment.entrySet().iterator();
+                while (entries.hasNext()) {
+                    Map.Entry<Long, CompactPath> entry = entries.next();
+                    if (isStale(entry.getKey(), entry.getValue(), cellId, isBlock)) {
+                        entries.remove();
+                        invalidations.increment();
+                    }
+                }
+            }
+        }
+        version = map.getVersion();
+    }
+
+    private boolean isStale(long key, CompactPath path, int cellId, boolean isBlock) {
+        if (path == NO_PATH) {
+            return !isBlock;
+        }
+        if (isBlock) {
+            return path.passesThrough(cellId);
+        }
+        int start = (int) (key >>> 32);
+        int goal = (int) key;
+        return lowerBound(start, cellId) + lowerBound(cellId, goal) < path.getCost();
+    }
+
+    /**
+     * Octile distance, a lower bound on the cost between two cells under both cost models.
+     */
+    private int lowerBound(int from, int to) {
+        int dr = Math.abs(from / cols - to / cols);
+        int dc = Math.abs(from % cols - to % cols);
+        int diagonal = Math.min(diagonalCost, 2 * hvCost);
+        return Math.min(dr, dc) * diagonal + Math.abs(dr - dc) * hvCost;
+    }
+
+    /**
+     * Stops listening to the map's edits.
+     */
+    public void close() {
+        map.removeEditListener(this);
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    private static long key(int startCell, int goalCell) {
+        return (long) startCell << 32 | (goalCell & 0xFFFFFFFFL);
+    }
+
+    private Segment segment(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return segments[(int) (hash >>> 60)];
+    }
+
+    public GridMap getMap() {
+        return map;
+    }
+
+    public int getHvCost() {
+        return hvCost;
+    }
+
+    public int getDiagonalCost() {
+        return diagonalCost;
+    }
+
+    public int getTurnPenalty() {
+        return turnPenalty;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getHitRate() {
+        long total = hits.sum() + misses.sum();
+        return total == 0 ? 0 : (double) hits.sum() / total;
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return number of entries dropped because of map edits
+     */
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * A cache hit: either a path or a cached "no path".
+     */
+    public static final class Lookup {
+        private final CompactPath path;
+
+        private Lookup(CompactPath path) {
+            this.path = path;
+        }
+
+        public boolean isFound() {
+            return path != NO_PATH;
+        }
+
+        /**
+         * @return the cached path, or null if the cache knows there is none
+         */
+        public CompactPath getPath() {
+            return path;
+        }
+    }
+
+    /**
+     * Access-ordered map that evicts its eldest entry once full. Guarded by its own monitor.
+     */
+    private final class Segment extends LinkedHashMap<Long, CompactPath> {
+        private static final long serialVersionUID = 1L;
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, CompactPath> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.ai.astar;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Checks {@link PathCache} invalidation and reports its hit rate: a fixed set
+ * of start/goal pairs is queried over and over through a
+ * {@link CachingPathFinder} while random cells are blocked and unblocked.
+ * Every answer, cached or not, must cost exactly what a fresh engine on the
+ * edited map finds.
+ *
+ * Usage: PathCacheTest [size] [rounds]
+ */
+public class PathCacheTest {
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+        int failures = 0;
+        failures += run("AStar", size, rounds, true);
+        failures += run("AStarOrthogonal", size, rounds, false);
+        if (failures > 0) {
+            System.out.println("FAILED: " + failures + " answers differ from fresh searches");
+            System.exit(1);
+        }
+        System.out.println("OK: cached answers match fresh searches");
+    }
+
+    private static int run(String name, int size, int rounds, boolean diagonal) {
+        Random random = new Random(2015L);
+        GridMap map = MapGenerator.generate(MapGenerator.Type.ROOMS, size, size, 0.2, 2015L);
+        PathCache cache = diagonal ? PathCache.diagonal(map, 1024) : PathCache.orthogonal(map, 1024);
+        PathFinder engine = diagonal ? PathService.diagonalFinder(map) : new AStarOrthogonal(map);
+        PathFinder fresh = diagonal ? PathService.diagonalFinder(map) : new AStarOrthogonal(map);
+        CachingPathFinder cached = new CachingPathFinder(engine, cache);
+        PathQuery[] queries = MapGenerator.queries(map, 40, size / 4, 2 * size, 2015L);
+        long compactBytes = 0;
+        long nodes = 0;
+        int failures = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (PathQuery query : queries) {
+                Optional<List<Node>> answer = cached.findPath(query.getInitialNode(), query.getFinalNode());
+                Optional<List<Node>> expected = fresh.findPath(query.getInitialNode(), query.getFinalNode());
+                if (cost(answer) != cost(expected)) {
+                    failures++;
+                    System.out.println("FAIL " + name + " round " + round + " " + query + ": cached="
+                            + cost(answer) + " fresh=" + cost(expected));
+                }
+                if (answer.isPresent() && round == 0) {
+                    compactBytes += CompactPath.encode(answer.get(), map, cache.getHvCost(), cache.getDiagonalCost(),
+                            cache.getTurnPenalty()).getEncodedBytes();
+                    nodes += answer.get().size();
+                }
+            }
+            // a couple of edits per round, a mix of blocking and reopening
+            for (int e = 0; e < 2; e++) {
+                int row = random.nextInt(size);
+                int col = random.nextInt(size);
+                map.setBlock(row, col, random.nextInt(3) > 0);
+            }
+        }
+        System.out.printf("%-16s hits %d, misses %d (hit rate %.1f%%), invalidated %d, %.0f bytes/path for %.0f cells%n",
+                name, cache.getHits(), cache.getMisses(), 100 * cache.getHitRate(), cache.getInvalidations(),
+                (double) compactBytes / queries.length, (double) nodes / queries.length);
+        cache.close();
+        return failures;
+    }
+
+    private static int cost(Optional<List<Node>> path) {
+        return path.map(nodes -> nodes.get(nodes.size() - 1).getG()).orElse(-1);
+    }
+}
@@ -0,0 +1,20 @@
+package com.ai.astar;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A reusable single-threaded path search over a fixed map.
+ */
+public interface PathFinder {
+
+    /**
+     * @return the path from initialNode to finalNode, or empty if there is none
+     */
+    Optional<List<Node>> findPath(Node initialNode, Node finalNode);
+
+    /**
+     * @return number of nodes expanded by the last call to findPath
+     */
+    int getExpandedCount();
+}
@@ -0,0 +1,27 @@
+package com.ai.astar;
+
+/**
+ * A start/goal pair submitted to a batch search.
+ */
+public class PathQuery {
+    private final Node initialNode;
+    private final Node finalNode;
+
+    public PathQuery(Node initialNode, Node finalNode) {
+        this.initialNode = initialNode;
+        this.finalNode = finalNode;
+    }
+
+    public Node getInitialNode() {
+        return initialNode;
+    }
+
+    public Node getFinalNode() {
+        return finalNode;
+    }
+
+    @Override
+    public String toString() {
+        return "PathQuery [" + initialNode + " -> " + finalNode + "]";
+    }
+}
@@ -0,0 +1,224 @@
+package com.ai.astar;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Thread-safe path finding over one shared, read-only map.
+ *
+ * The map is held once; every call leases a {@link PathFinder} (which owns only
+ * its scratch {@link SearchState}) from a lock-free pool and returns it when the
+ * search is done. Leasing never blocks or holds a monitor, so the service can be
+ * called from virtual threads without pinning their carrier, and the pool is
+ * not tied to thread identity, so a large number of short-lived threads does not
+ * leave one scratch buffer behind per thread.
+ */
+public class PathService {
+    /*
+     * queries sharing a goal are split into groups of at most this size, so a
+     * batch with a single goal still spreads across the pool
+     */
+    private static final int MAX_GROUP_SIZE = 32;
+
+    private final GridMap map;
+    private final Function<GridMap, PathFinder> finderFactory;
+    private final ConcurrentLinkedQueue<PathFinder> pool;
+    private final AtomicInteger pooled;
+    private final int maxPooled;
+
+    /**
+     * @param map           the map to search; a read-only snapshot of it is taken
+     * @param finderFactory creates a new search engine over the shared snapshot
+     * @param maxPooled     number of idle engines kept for reuse
+     */
+    public PathService(GridMap map, Function<GridMap, PathFinder> finderFactory, int maxPooled) {
+        this.map = map.isReadOnly() ? map : map.readOnlyCopy();
+        this.finderFactory = finderFactory;
+        this.pool = new ConcurrentLinkedQueue<>();
+        this.pooled = new AtomicInteger();
+        this.maxPooled = maxPooled;
+    }
+
+    public PathService(GridMap map, Function<GridMap, PathFinder> finderFactory) {
+        this(map, finderFactory, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @return a service using the orthogonal engine with direction change penalties
+     */
+    public static PathService orthogonal(GridMap map) {
+        return new PathService(map, AStarOrthogonal::new);
+    }
+
+    /**
+     * @return a service using the 8-connected engine
+     */
+    public static PathService diagonal(GridMap map) {
+        return new PathService(map, PathService::diagonalFinder);
+    }
+
+    /**
+     * @return a service using jump point search (8-connected, uniform costs)
+     */
+    public static PathService jumpPoint(GridMap map) {
+        return new PathService(map, JumpPointSearch::new);
+    }
+
+    static PathFinder diagonalFinder(GridMap map) {
+        return diagonalFinder(new AStar(map));
+    }
+
+    static PathFinder diagonalFinder(AStar aStar) {
+        return new DiagonalFinder(aStar);
+    }
+
+    /**
+     * AStar behind the PathFinder interface, still bounded so batch deadlines reach it.
+     */
+    private static final class DiagonalFinder implements PathFinder, BoundedPathFinder {
+        private final AStar aStar;
+
+        DiagonalFinder(AStar aStar) {
+            this.aStar = aStar;
+        }
+
+        @Override
+        public Optional<List<Node>> findPath(Node initialNode, Node finalNode) {
+            List<Node> path = aStar.findPath(initialNode, finalNode);
+            return path.isEmpty() ? Optional.empty() : Optional.of(path);
+        }
+
+        @Override
+        public SearchResult findPath(Node initialNode, Node finalNode, SearchLimits limits) {
+            return aStar.findPath(initialNode, finalNode, limits);
+        }
+
+        @Override
+        public int getExpandedCount() {
+            return aStar.getExpandedCount();
+        }
+
+        @Override
+        public Heuristic getHeuristic() {
+            return aStar.getHeuristic();
+        }
+
+        @Override
+        public void setHeuristic(Heuristic heuristic) {
+            aStar.setHeuristic(heuristic);
+        }
+    }
+
+    /**
+     * Finds a path; safe to call from any number of threads at once.
+     */
+    public Optional<List<Node>> findPath(Node initialNode, Node finalNode) {
+        PathFinder finder = lease();
+        try {
+            return finder.findPath(initialNode, finalNode);
+        } finally {
+            release(finder);
+        }
+    }
+
+    /**
+     * Solves a batch of queries in parallel on the common fork/join pool.
+     */
+    public BatchResult findPaths(List<PathQuery> queries) {
+        return findPaths(queries, ForkJoinPool.commonPool(), null);
+    }
+
+    /**
+     * Solves a batch of queries in parallel on the given pool.
+     *
+     * Queries that share a goal are grouped and solved one after the other on
+     * the same engine. Queries not finished when the timeout expires are
+     * reported as timed out: those not started yet, and those still running,
+     * which engines implementing {@link BoundedPathFinder} (AStar and
+     * AStarOrthogonal) stop at the deadline. Other engines finish a query they
+     * already started.
+     *
+     * @param timeout maximum time for the whole batch, or null for no limit
+     * @return results in input order with per-batch statistics
+     */
+    public BatchResult findPaths(List<PathQuery> queries, ForkJoinPool pool, Duration timeout) {
+        long start = System.nanoTime();
+        // 0 means no deadline; nudge a real deadline that happens to land on 0
+        long deadline = timeout == null ? 0 : (start + timeout.toNanos()) | 1;
+        // every task sets only its own indexes; pool.invoke publishes them to this thread
+        List<Optional<List<Node>>> paths = new ArrayList<>(
+                Collections.nCopies(queries.size(), Optional.<List<Node>>empty()));
+        BatchResult.Status[] statuses = new BatchResult.Status[queries.size()];
+        AtomicLong expanded = new AtomicLong();
+        int[][] groups = groupByGoal(queries);
+        if (groups.length > 0) {
+            pool.invoke(new BatchSearchTask(this, queries, groups, 0, groups.length, deadline, paths, statuses, expanded));
+        }
+        return new BatchResult(paths, statuses, expanded.get(), System.nanoTime() - start);
+    }
+
+    private int[][] groupByGoal(List<PathQuery> queries) {
+        Map<Integer, List<Integer>> byGoal = new LinkedHashMap<>();
+        for (int i = 0; i < queries.size(); i++) {
+            Node goal = queries.get(i).getFinalNode();
+            byGoal.computeIfAbsent(map.cellId(goal), k -> new ArrayList<>()).add(i);
+        }
+        List<int[]> groups = new ArrayList<>();
+        for (List<Integer> indexes : byGoal.values()) {
+            for (int from = 0; from < indexes.size(); from += MAX_GROUP_SIZE) {
+                int to = Math.min(from + MAX_GROUP_SIZE, indexes.size());
+                int[] group = new int[to - from];
+                for (int i = from; i < to; i++) {
+                    group[i - from] = indexes.get(i);
+                }
+                groups.add(group);
+            }
+        }
+        return groups.toArray(new int[0][]);
+    }
+
+    /**
+     * Takes an idle engine from the pool, or creates one if none is available.
+     * The caller must hand it back with {@link #release(PathFinder)}.
+     */
+    PathFinder lease() {
+        PathFinder finder = pool.poll();
+        if (finder == null) {
+            return finderFactory.apply(map);
+        }
+        pooled.decrementAndGet();
+        return finder;
+    }
+
+    void release(PathFinder finder) {
+        if (pooled.incrementAndGet() <= maxPooled) {
+            pool.offer(finder);
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return the read-only map shared by all searches
+     */
+    public GridMap getMap() {
+        return map;
+    }
+
+    /**
+     * @return number of idle engines currently pooled
+     */
+    public int getPooledCount() {
+        return pooled.get();
+    }
+}
@@ -0,0 +1,117 @@
+package com.ai.astar;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hammers a shared {@link PathService} from several threads and checks every
+ * result against a single-threaded {@link AStarOrthogonal} over the same map.
+ * Also prints throughput per thread count to show scaling, and runs the same
+ * queries once more through the batch API, and checks that a batch deadline
+ * stops queries that are already running.
+ *
+ * Usage: PathServiceStressTest [size] [queries]
+ */
+public class PathServiceStressTest {
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        GridMap map = MapGenerator.random(size, size, 0.25, 7L);
+
+        Random random = new Random(11L);
+        Node[][] pairs = new Node[queries][];
+        for (int i = 0; i < queries; i++) {
+            pairs[i] = new Node[]{MapGenerator.randomOpenCell(map, random), MapGenerator.randomOpenCell(map, random)};
+        }
+
+        System.out.println("=== PathService stress test " + size + "x" + size + ", " + queries + " queries ===");
+        AStarOrthogonal reference = new AStarOrthogonal(map.copy());
+        List<Optional<List<Node>>> expected = new ArrayList<>();
+        for (Node[] pair : pairs) {
+            expected.add(reference.findPath(pair[0], pair[1]));
+        }
+
+        PathService service = PathService.orthogonal(map);
+        int maxThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        int failures = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            long start = System.nanoTime();
+            List<Future<Optional<List<Node>>>> futures = new ArrayList<>();
+            for (Node[] pair : pairs) {
+                futures.add(executor.submit(() -> service.findPath(pair[0], pair[1])));
+            }
+            for (int i = 0; i < queries; i++) {
+                if (!futures.get(i).get().equals(expected.get(i))) {
+                    failures++;
+                    System.out.println("MISMATCH query " + i + ": " + pairs[i][0] + " -> " + pairs[i][1]);
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+            System.out.printf("threads=%-3d %10.1f queries/s%n", threads, queries / (elapsed / 1e9));
+        }
+
+        List<PathQuery> batch = new ArrayList<>();
+        for (Node[] pair : pairs) {
+            batch.add(new PathQuery(pair[0], pair[1]));
+        }
+        ForkJoinPool pool = new ForkJoinPool(maxThreads);
+        BatchResult result = service.findPaths(batch, pool, null);
+        pool.shutdown();
+        for (int i = 0; i < queries; i++) {
+            if (!result.getPath(i).equals(expected.get(i))) {
+                failures++;
+                System.out.println("BATCH MISMATCH query " + i + ": " + pairs[i][0] + " -> " + pairs[i][1]);
+            }
+        }
+        System.out.println("batch: " + result);
+        failures += checkDeadline();
+        System.out.println(failures == 0 ? "OK: all results match" : "FAILED: " + failures + " mismatches");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Goals walled in on a large open map: each search would flood the whole
+     * map, so the batch only ends near its deadline if running searches stop.
+     */
+    private static int checkDeadline() {
+        GridMap map = new GridMap(2048, 2048);
+        List<PathQuery> batch = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            int row = 100 + 400 * i;
+            for (int dr = -1; dr <= 1; dr++) {
+                for (int dc = -1; dc <= 1; dc++) {
+                    map.setBlock(row + dr, 1000 + dc, dr != 0 || dc != 0);
+                }
+            }
+            batch.add(new PathQuery(new Node(0, 0), new Node(row, 1000)));
+        }
+        PathService service = PathService.diagonal(map);
+        ForkJoinPool pool = new ForkJoinPool(1);
+        service.findPaths(batch.subList(0, 1), pool, Duration.ofMillis(1));
+        BatchResult result = service.findPaths(batch, pool, Duration.ofMillis(50));
+        pool.shutdown();
+        double ms = result.getElapsedNanos() / 1e6;
+        System.out.printf(Locale.ROOT, "deadline 50 ms: %d of %d timed out after %.1f ms%n", result.getTimedOut(),
+                batch.size(), ms);
+        if (result.getTimedOut() != batch.size() || ms > 500) {
+            System.out.println("FAILED: running queries did not stop at the batch deadline");
+            return 1;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,103 @@
+package com.ai.astar;
+
+import java.time.Duration;
+
+/**
+ * Bounds on a single search: a node-expansion budget, a deadline and a
+ * {@link CancellationToken}, any of which may be absent. Immutable; the
+ * {@code with...} methods return a copy.
+ *
+ * The expansion budget is exact. The deadline and the token are polled every
+ * {@value #POLL_INTERVAL} expansions, so a search overruns them by at most
+ * that many expansions.
+ */
+public final class SearchLimits {
+    /**
+     * expansions between two reads of the clock and the cancellation token
+     */
+    public static final int POLL_INTERVAL = 64;
+
+    public static final SearchLimits NONE = new SearchLimits(0, 0, null);
+
+    private final int maxExpansions;
+    // System.nanoTime() deadline, 0 for none
+    private final long deadline;
+    private final CancellationToken cancellation;
+
+    private SearchLimits(int maxExpansions, long deadline, CancellationToken cancellation) {
+        this.maxExpansions = maxExpansions;
+        this.deadline = deadline;
+        this.cancellation = cancellation;
+    }
+
+    public static SearchLimits expansions(int maxExpansions) {
+        return NONE.withMaxExpansions(maxExpansions);
+    }
+
+    public static SearchLimits timeout(Duration timeout) {
+        return NONE.withTimeout(timeout);
+    }
+
+    /**
+     * @param maxExpansions budget of expanded nodes, or 0 for no limit
+     */
+    public SearchLimits withMaxExpansions(int maxExpansions) {
+        if (maxExpansions < 0) {
+            throw new IllegalArgumentException("maxExpansions must be >= 0");
+        }
+        return new SearchLimits(maxExpansions, deadline, cancellation);
+    }
+
+    /**
+     * @param timeout time from now after which the search stops, or null for no limit
+     */
+    public SearchLimits withTimeout(Duration timeout) {
+        return withDeadline(timeout == null ? 0 : System.nanoTime() + timeout.toNanos());
+    }
+
+    /**
+     * @param deadline {@link System#nanoTime()} value after which the search stops, or 0 for no limit
+     */
+    public SearchLimits withDeadline(long deadline) {
+        // 0 means no deadline; nudge a real deadline that happens to land on 0
+        return new SearchLimits(maxExpansions, deadline == 0 ? 0 : deadline | 1, cancellation);
+    }
+
+    public SearchLimits withCancellation(CancellationToken cancellation) {
+        return new SearchLimits(maxExpansions, deadline, cancellation);
+    }
+
+    public int getMaxExpansions() {
+        return maxExpansions;
+    }
+
+    public long getDeadline() {
+        return deadline;
+    }
+
+    public CancellationToken getCancellation() {
+        return cancellation;
+    }
+
+    /**
+     * Called by the engines before every expansion.
+     *
+     * @param expanded nodes expanded so far in this search
+     * @return why the search must stop, or null to go on
+     */
+    SearchResult.Status check(int expanded) {
+        if (maxExpansions > 0 && expanded >= maxExpansions) {
+            return SearchResult.Status.EXPANSION_LIMIT;
+        }
+        if (expanded % POLL_INTERVAL != 0) {
+            return null;
+        }
+        if (cancellation != null && cancellation.isCancelled()) {
+            return SearchResult.Status.CANCELLED;
+        }
+        if (deadline != 0 && System.nanoTime() - deadline >= 0) {
+            return SearchResult.Status.DEADLINE;
+        }
+        return null;
+    }
+}
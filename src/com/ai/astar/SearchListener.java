@@ -0,0 +1,24 @@
+package com.ai.astar;
+
+/**
+ * Optional hook into a search engine ({@link AStar}, {@link AStarOrthogonal}).
+ *
+ * Engines keep the listener in a field that is null by default, so a search
+ * without a listener pays one null check per expansion and does not read the
+ * clock. Listeners are called on the searching thread; one shared by pooled
+ * engines (see {@link PathService}) must be thread safe.
+ */
+public interface SearchListener {
+
+    /**
+     * Called for every expanded cell, in expansion order. Most listeners only
+     * need {@link #onSearchEnd}; the default does nothing.
+     */
+    default void onExpand(int row, int col) {
+    }
+
+    /**
+     * Called once per query, after the path (or its absence) is known.
+     */
+    void onSearchEnd(SearchStats stats);
+}
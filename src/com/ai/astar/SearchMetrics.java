@@ -0,0 +1,125 @@
+package com.ai.astar;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Thread-safe {@link SearchListener} that aggregates per-query stats from any
+ * number of engines: query and no-path counts, expansions, open list peak,
+ * decrease-keys and a {@link LatencyHistogram} of search times. After
+ * {@link #register} the numbers can be read from any JMX client, e.g.
+ * jconsole, under {@code com.ai.astar:type=SearchMetrics}.
+ */
+public class SearchMetrics implements SearchListener, SearchMetricsMBean {
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder noPath = new LongAdder();
+    private final LongAdder expanded = new LongAdder();
+    private final LongAdder decreaseKeys = new LongAdder();
+    private final AtomicLong maxOpenListPeak = new AtomicLong();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    @Override
+    public void onSearchEnd(SearchStats stats) {
+        queries.increment();
+        if (!stats.isFound()) {
+            noPath.increment();
+        }
+        expanded.add(stats.getExpanded());
+        decreaseKeys.add(stats.getDecreaseKeys());
+        if (stats.getOpenListPeak() > maxOpenListPeak.get()) {
+            maxOpenListPeak.accumulateAndGet(stats.getOpenListPeak(), Math::max);
+        }
+        latency.record(stats.getElapsedNanos());
+    }
+
+    /**
+     * Registers this instance with the platform MBean server.
+     *
+     * @param name value of the name key, to tell several instances apart
+     */
+    public ObjectName register(String name) {
+        try {
+            ObjectName objectName = new ObjectName("com.ai.astar:type=SearchMetrics,name=" + ObjectName.quote(name));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register search metrics " + name, e);
+        }
+    }
+
+    public LatencyHistogram getLatencyHistogram() {
+        return latency;
+    }
+
+    @Override
+    public long getQueryCount() {
+        return queries.sum();
+    }
+
+    @Override
+    public long getNoPathCount() {
+        return noPath.sum();
+    }
+
+    @Override
+    public double getMeanExpanded() {
+        long count = queries.sum();
+        return count == 0 ? 0 : (double) expanded.sum() / count;
+    }
+
+    @Override
+    public long getMaxOpenListPeak() {
+        return maxOpenListPeak.get();
+    }
+
+    @Override
+    public long getDecreaseKeyCount() {
+        return decreaseKeys.sum();
+    }
+
+    @Override
+    public double getMeanLatencyMicros() {
+        return latency.getMean() / 1e3;
+    }
+
+    @Override
+    public double getLatencyP50Micros() {
+        return latency.getValueAtPercentile(50) / 1e3;
+    }
+
+    @Override
+    public double getLatencyP90Micros() {
+        return latency.getValueAtPercentile(90) / 1e3;
+    }
+
+    @Override
+    public double getLatencyP99Micros() {
+        return latency.getValueAtPercentile(99) / 1e3;
+    }
+
+    @Override
+    public double getLatencyP999Micros() {
+        return latency.getValueAtPercentile(99.9) / 1e3;
+    }
+
+    @Override
+    public double getMaxLatencyMicros() {
+        return latency.getMax() / 1e3;
+    }
+
+    @Override
+    public void reset() {
+        queries.reset();
+        noPath.reset();
+        expanded.reset();
+        decreaseKeys.reset();
+        maxOpenListPeak.set(0);
+        latency.reset();
+    }
+}
@@ -0,0 +1,49 @@
+package com.ai.astar;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Measures the cost of the {@link SearchListener} hook: the same queries run
+ * with no listener and with a {@link SearchMetrics} attached, then the
+ * aggregated numbers are read back through the platform MBean server the way
+ * a JMX client would.
+ *
+ * Usage: SearchMetricsBenchmark [size] [queries] [seconds per case]
+ */
+public class SearchMetricsBenchmark {
+
+    private static final long SEED = 20200926L;
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int queryCount = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        double seconds = args.length > 2 ? Double.parseDouble(args[2]) : 2.0;
+        GridMap map = MapGenerator.generate(MapGenerator.Type.ROOMS, size, size, 0.2, SEED).readOnlyCopy();
+        PathQuery[] queries = MapGenerator.queries(map, queryCount, size / 4, 2 * size, SEED);
+
+        SearchMetrics metrics = new SearchMetrics();
+        ObjectName name = metrics.register("benchmark");
+        AStarOrthogonal plain = new AStarOrthogonal(map);
+        AStarOrthogonal instrumented = new AStarOrthogonal(map);
+        instrumented.setListener(metrics);
+
+        // alternate the two cases so JIT and thermal effects hit both
+        for (int round = 0; round < 3; round++) {
+            EngineBenchmark.Result off = EngineBenchmark.measure(plain, queries, seconds);
+            EngineBenchmark.Result on = EngineBenchmark.measure(instrumented, queries, seconds);
+            System.out.printf(Locale.ROOT, "round %d: listener off %.1f us/op, metrics on %.1f us/op (%+.1f%%)%n",
+                    round, off.microsPerOp(), on.microsPerOp(), 100 * (on.microsPerOp() / off.microsPerOp() - 1));
+        }
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (String attribute : new String[] {"QueryCount", "NoPathCount", "MeanExpanded", "MaxOpenListPeak",
+                "DecreaseKeyCount", "MeanLatencyMicros", "LatencyP50Micros", "LatencyP90Micros", "LatencyP99Micros",
+                "LatencyP999Micros", "MaxLatencyMicros"}) {
+            System.out.println(name + " " + attribute + " = " + server.getAttribute(name, attribute));
+        }
+    }
+}
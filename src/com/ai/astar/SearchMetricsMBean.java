@@ -0,0 +1,31 @@
+package com.ai.astar;
+
+/**
+ * JMX view of {@link SearchMetrics}. Latencies are in microseconds.
+ */
+public interface SearchMetricsMBean {
+
+    long getQueryCount();
+
+    long getNoPathCount();
+
+    double getMeanExpanded();
+
+    long getMaxOpenListPeak();
+
+    long getDecreaseKeyCount();
+
+    double getMeanLatencyMicros();
+
+    double getLatencyP50Micros();
+
+    double getLatencyP90Micros();
+
+    double getLatencyP99Micros();
+
+    double getLatencyP999Micros();
+
+    double getMaxLatencyMicros();
+
+    void reset();
+}
@@ -0,0 +1,112 @@
+package com.ai.astar;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a search run with {@link SearchLimits}.
+ *
+ * When a limit stops the search before the goal is reached, the path is a
+ * partial one: the best known path from the start to the expanded node
+ * closest to the goal by the heuristic, so a caller can start moving while it
+ * searches again; it holds just the start if no expanded node got closer. A
+ * search that proves the goal unreachable returns an empty path.
+ */
+public final class SearchResult {
+
+    public enum Status {
+        /** the path reaches the goal */
+        FOUND,
+        /** the whole reachable region was searched without meeting the goal */
+        NO_PATH,
+        EXPANSION_LIMIT,
+        DEADLINE,
+        CANCELLED;
+    }
+
+    private final Status status;
+    private final List<Node> path;
+    private final int expanded;
+    private final double bound;
+
+    SearchResult(Status status, List<Node> path, int expanded, double bound) {
+        this.status = status;
+        this.path = path;
+        this.expanded = expanded;
+        this.bound = bound;
+    }
+
+    /**
+     * @return the bound of a search with the heuristic: 1 + epsilon for a
+     *         {@link WeightedHeuristic}, otherwise 1
+     */
+    static double boundOf(Heuristic heuristic) {
+        return heuristic instanceof WeightedHeuristic ? 1 + ((WeightedHeuristic) heuristic).getEpsilon() : 1.0;
+    }
+
+    static SearchResult noPath(int expanded) {
+        return new SearchResult(Status.NO_PATH, Collections.<Node>emptyList(), expanded, 1.0);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return true if the path reaches the goal
+     */
+    public boolean isComplete() {
+        return status == Status.FOUND;
+    }
+
+    /**
+     * @return true if a limit stopped the search; the path, if any, ends short of the goal
+     */
+    public boolean isPartial() {
+        return status != Status.FOUND && status != Status.NO_PATH;
+    }
+
+    /**
+     * @return the path from the start, to the goal if complete; empty if there is none
+     */
+    public List<Node> getPath() {
+        return path;
+    }
+
+    /**
+     * @return cost of the path, or -1 if it is empty
+     */
+    public int getCost() {
+        return path.isEmpty() ? -1 : path.get(path.size() - 1).getG();
+    }
+
+    /**
+     * @return nodes expanded to get this result, over all iterations for anytime searches
+     */
+    public int getExpanded() {
+        return expanded;
+    }
+
+    /**
+     * @return proven suboptimality factor of a complete path: its cost is at
+     *         most this times the optimum (1 for a plain A* search with an
+     *         admissible heuristic)
+     */
+    public double getBound() {
+        return bound;
+    }
+
+    SearchResult withExpanded(int expanded) {
+        return new SearchResult(status, path, expanded, bound);
+    }
+
+    SearchResult withBound(double bound) {
+        return new SearchResult(status, path, expanded, bound);
+    }
+
+    @Override
+    public String toString() {
+        return "SearchResult [status=" + status + ", cost=" + getCost() + ", length=" + path.size() + ", expanded="
+                + expanded + ", bound=" + bound + "]";
+    }
+}
@@ -0,0 +1,152 @@
+package com.ai.astar;
+
+/**
+ * Reusable per-query scratch memory for the grid engines.
+ *
+ * The g cost, parent and open/closed status of every search state live in flat
+ * primitive storage indexed by state id (a cell id, or a cell/direction pair):
+ * int arrays in {@link HeapSearchState}, direct buffers in
+ * {@link OffHeapSearchState}. This class holds what both share, the
+ * generations, the open list and the query counters.
+ *
+ * Instead of clearing the storage between queries, every query gets a new
+ * generation: a state whose stamp is older than the current generation reads as
+ * unvisited. Resetting is therefore O(1) and a query only touches the states it
+ * actually reaches.
+ *
+ * A SearchState is not thread safe; use one per thread.
+ *
+ * @author Marcelo Surriabre
+ */
+public abstract class SearchState {
+    /*
+     * stamp == generation     -> state seen (in the open list)
+     * stamp == generation + 1 -> state closed
+     */
+    private static final int GENERATION_STEP = 2;
+
+    private final int size;
+    private final AbstractIndexedHeap openList;
+    private int generation;
+    private int expanded;
+    private int openListPeak;
+    private int decreaseKeys;
+
+    SearchState(int size, AbstractIndexedHeap openList) {
+        this.size = size;
+        this.openList = openList;
+        this.generation = 0;
+    }
+
+    abstract int stamp(int id);
+
+    abstract void setStamp(int id, int value);
+
+    /**
+     * Sets every stamp back to 0.
+     */
+    abstract void clearStamps();
+
+    abstract int cost(int id);
+
+    abstract void setCost(int id, int value);
+
+    abstract void setParent(int id, int parentId);
+
+    /**
+     * Starts a new query, invalidating all state from the previous one.
+     */
+    public void begin() {
+        openList.clear();
+        expanded = 0;
+        openListPeak = 0;
+        decreaseKeys = 0;
+        generation += GENERATION_STEP;
+        if (generation >= Integer.MAX_VALUE - GENERATION_STEP) {
+            // Only happens once every ~10^9 queries
+            clearStamps();
+            generation = GENERATION_STEP;
+        }
+    }
+
+    public boolean isSeen(int id) {
+        return stamp(id) >= generation;
+    }
+
+    public boolean isClosed(int id) {
+        return stamp(id) == generation + 1;
+    }
+
+    public boolean isOpen(int id) {
+        return stamp(id) == generation;
+    }
+
+    /**
+     * @return the g cost of the state, or Integer.MAX_VALUE if it was not reached in this query
+     */
+    public int getG(int id) {
+        return isSeen(id) ? cost(id) : Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return the parent state id, or -1 for the start state
+     */
+    public abstract int getParent(int id);
+
+    /**
+     * Opens the state with the given cost, or improves it if it is already open.
+     *
+     * @param f priority of the state (g + h)
+     */
+    public void open(int id, int gCost, int f, int parentId) {
+        setCost(id, gCost);
+        setParent(id, parentId);
+        if (stamp(id) == generation) {
+            openList.decreaseKey(id, f, gCost);
+            decreaseKeys++;
+        } else {
+            setStamp(id, generation);
+            openList.add(id, f, gCost);
+            openListPeak = Math.max(openListPeak, openList.size());
+        }
+    }
+
+    /**
+     * Removes the best state from the open list and marks it closed.
+     */
+    public int closeNext() {
+        int id = openList.poll();
+        setStamp(id, generation + 1);
+        expanded++;
+        return id;
+    }
+
+    public boolean hasOpen() {
+        return !openList.isEmpty();
+    }
+
+    /**
+     * @return number of states closed in the current query
+     */
+    public int getExpanded() {
+        return expanded;
+    }
+
+    /**
+     * @return largest open list size reached in the current query
+     */
+    public int getOpenListPeak() {
+        return openListPeak;
+    }
+
+    /**
+     * @return number of open states whose key was lowered in the current query
+     */
+    public int getDecreaseKeys() {
+        return decreaseKeys;
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,71 @@
+package com.ai.astar;
+
+/**
+ * Counters of a single query, reported to a {@link SearchListener}.
+ */
+public class SearchStats {
+    private final Node initialNode;
+    private final Node finalNode;
+    private final int pathCost;
+    private final int expanded;
+    private final int openListPeak;
+    private final int decreaseKeys;
+    private final long elapsedNanos;
+
+    public SearchStats(Node initialNode, Node finalNode, int pathCost, int expanded, int openListPeak,
+            int decreaseKeys, long elapsedNanos) {
+        this.initialNode = initialNode;
+        this.finalNode = finalNode;
+        this.pathCost = pathCost;
+        this.expanded = expanded;
+        this.openListPeak = openListPeak;
+        this.decreaseKeys = decreaseKeys;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    static SearchStats of(Node initialNode, Node finalNode, int pathCost, SearchState state, long elapsedNanos) {
+        return new SearchStats(initialNode, finalNode, pathCost, state.getExpanded(), state.getOpenListPeak(),
+                state.getDecreaseKeys(), elapsedNanos);
+    }
+
+    public Node getInitialNode() {
+        return initialNode;
+    }
+
+    public Node getFinalNode() {
+        return finalNode;
+    }
+
+    public boolean isFound() {
+        return pathCost >= 0;
+    }
+
+    /**
+     * @return cost of the path found, or -1 if there is none
+     */
+    public int getPathCost() {
+        return pathCost;
+    }
+
+    public int getExpanded() {
+        return expanded;
+    }
+
+    public int getOpenListPeak() {
+        return openListPeak;
+    }
+
+    public int getDecreaseKeys() {
+        return decreaseKeys;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return initialNode + " -> " + finalNode + " cost=" + pathCost + " expanded=" + expanded
+                + " openListPeak=" + openListPeak + " decreaseKeys=" + decreaseKeys + " nanos=" + elapsedNanos;
+    }
+}
@@ -0,0 +1,169 @@
+package com.ai.astar;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Terrain cost layer check and benchmark.
+ *
+ * First, on random terrain, every {@link AStar} and {@link AStarOrthogonal}
+ * path must cost the same as a search with a zero heuristic (Dijkstra), which
+ * shows the min-cost scaled heuristics stay admissible, and the
+ * {@link CompactPath} of the same query must rebuild the same G values, and
+ * the engines that only support uniform costs must refuse a terrain map.
+ * Then it times both engines on the same map without a cost layer, with a
+ * layer of all 1s (same paths, only the lookup overhead) and with real
+ * terrain.
+ *
+ * Usage: TerrainBenchmark [size] [queries] [seconds per case]
+ */
+public class TerrainBenchmark {
+
+    private static final long SEED = 20200926L;
+    private static final Heuristic DIJKSTRA = (cellId, direction, goalId) -> 0;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int queryCount = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        double seconds = args.length > 2 ? Double.parseDouble(args[2]) : 1.0;
+
+        int errors = check(48, 300) + checkUniformOnly();
+        System.out.println(errors == 0 ? "OK: terrain paths are optimal, uniform-cost engines refuse terrain"
+                : "FAILED: " + errors);
+
+        GridMap uniform = MapGenerator.generate(MapGenerator.Type.ROOMS, size, size, 0.2, SEED);
+        GridMap ones = uniform.copy();
+        ones.setCost(0, 2);
+        ones.setCost(0, 1);
+        GridMap terrain = uniform.copy();
+        paintTerrain(terrain, new Random(SEED), 2);
+        PathQuery[] queries = MapGenerator.queries(uniform, queryCount, size / 4, 2 * size, SEED);
+
+        System.out.printf(Locale.ROOT, "%-16s %-10s %12s %14s%n", "engine", "map", "us/op", "expanded/op");
+        GridMap[] maps = {uniform.readOnlyCopy(), ones.readOnlyCopy(), terrain.readOnlyCopy()};
+        String[] names = {"uniform", "layer=1", "terrain"};
+        for (int m = 0; m < maps.length; m++) {
+            report("AStar", names[m], EngineBenchmark.measure(PathService.diagonalFinder(maps[m]), queries, seconds));
+        }
+        for (int m = 0; m < maps.length; m++) {
+            report("AStarOrthogonal", names[m], EngineBenchmark.measure(new AStarOrthogonal(maps[m]), queries, seconds));
+        }
+        if (errors > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return number of uniform-cost engines that answered on a terrain map
+     */
+    private static int checkUniformOnly() {
+        GridMap map = new GridMap(16, 16);
+        map.setCost(5, 5, 3);
+        PathFinder[] engines = {new JumpPointSearch(map), new BidirectionalAStar(map),
+                new IncrementalPathFinder(map), new HierarchicalPathFinder(map, 8)};
+        int errors = 0;
+        for (PathFinder engine : engines) {
+            try {
+                engine.findPath(new Node(0, 0), new Node(15, 15));
+                System.out.println(engine.getClass().getSimpleName() + " answered on a terrain map");
+                errors++;
+            } catch (IllegalStateException expected) {
+                // refused, as it must
+            }
+        }
+        return errors;
+    }
+
+    private static void report(String engine, String map, EngineBenchmark.Result result) {
+        System.out.printf(Locale.ROOT, "%-16s %-10s %12.1f %14.0f%n", engine, map, result.microsPerOp(),
+                result.expandedPerOp());
+    }
+
+    /**
+     * Random blobs of mud (3) and swamp (8) over plain ground (minCost + 1),
+     * with roads (minCost) along some rows and columns.
+     */
+    static void paintTerrain(GridMap map, Random random, int minCost) {
+        int rows = map.getRows();
+        int cols = map.getCols();
+        for (int id = 0; id < map.size(); id++) {
+            map.setCost(id, minCost + 1);
+        }
+        for (int blob = 0; blob < map.size() / 200 + 1; blob++) {
+            int centerRow = random.nextInt(rows);
+            int centerCol = random.nextInt(cols);
+            int radius = 1 + random.nextInt(6);
+            int cost = random.nextBoolean() ? 3 * minCost : 8 * minCost;
+            for (int row = Math.max(0, centerRow - radius); row <= Math.min(rows - 1, centerRow + radius); row++) {
+                for (int col = Math.max(0, centerCol - radius); col <= Math.min(cols - 1, centerCol + radius); col++) {
+                    map.setCost(row, col, Math.min(cost, GridMap.MAX_COST));
+                }
+            }
+        }
+        for (int row = random.nextInt(8); row < rows; row += 8 + random.nextInt(24)) {
+            for (int col = 0; col < cols; col++) {
+                map.setCost(row, col, minCost);
+            }
+        }
+        for (int col = random.nextInt(8); col < cols; col += 8 + random.nextInt(24)) {
+            for (int row = 0; row < rows; row++) {
+                map.setCost(row, col, minCost);
+            }
+        }
+    }
+
+    private static int check(int size, int queries) {
+        Random random = new Random(SEED);
+        GridMap map = MapGenerator.random(size, size, 0.2, SEED);
+        paintTerrain(map, random, 1 + random.nextInt(3));
+        AStar aStar = new AStar(map);
+        AStar aStarDijkstra = new AStar(map);
+        aStarDijkstra.setHeuristic(DIJKSTRA);
+        AStarOrthogonal orthogonal = new AStarOrthogonal(map);
+        AStarOrthogonal orthogonalDijkstra = new AStarOrthogonal(map);
+        orthogonalDijkstra.setHeuristic(DIJKSTRA);
+        int errors = 0;
+        for (int q = 0; q < queries; q++) {
+            Node start = MapGenerator.randomOpenCell(map, random);
+            Node goal = MapGenerator.randomOpenCell(map, random);
+            List<Node> path = aStar.findPath(start, goal);
+            List<Node> optimal = aStarDijkstra.findPath(start, goal);
+            Optional<CompactPath> compact = aStar.findCompactPath(start, goal);
+            if (cost(path) != cost(optimal) || !sameG(path, compact)) {
+                errors++;
+                System.out.println("AStar " + start + " -> " + goal + ": " + cost(path) + ", optimum " + cost(optimal));
+            }
+            Optional<List<Node>> orthogonalPath = orthogonal.findPath(start, goal);
+            Optional<List<Node>> orthogonalOptimal = orthogonalDijkstra.findPath(start, goal);
+            int found = cost(orthogonalPath.orElse(List.of()));
+            int expected = cost(orthogonalOptimal.orElse(List.of()));
+            if (found != expected || !sameG(orthogonalPath.orElse(List.of()), orthogonal.findCompactPath(start, goal))) {
+                errors++;
+                System.out.println("AStarOrthogonal " + start + " -> " + goal + ": " + found + ", optimum " + expected);
+            }
+        }
+        return errors;
+    }
+
+    private static boolean sameG(List<Node> path, Optional<CompactPath> compact) {
+        if (!compact.isPresent()) {
+            return path.isEmpty();
+        }
+        List<Node> rebuilt = compact.get().toNodes();
+        if (rebuilt.size() != path.size()) {
+            return false;
+        }
+        for (int i = 0; i < path.size(); i++) {
+            if (rebuilt.get(i).getG() != path.get(i).getG()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int cost(List<Node> path) {
+        return path.isEmpty() ? -1 : path.get(path.size() - 1).getG();
+    }
+}
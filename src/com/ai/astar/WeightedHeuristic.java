@@ -0,0 +1,34 @@
+package com.ai.astar;
+
+/**
+ * Weighted A*: inflates an admissible, consistent heuristic by (1 + epsilon).
+ * Searches expand far fewer nodes and the returned path costs at most
+ * (1 + epsilon) times the optimum.
+ */
+public class WeightedHeuristic implements Heuristic {
+    private final Heuristic heuristic;
+    private final double epsilon;
+    private final double weight;
+
+    public WeightedHeuristic(Heuristic heuristic, double epsilon) {
+        if (epsilon < 0) {
+            throw new IllegalArgumentException("epsilon must be >= 0");
+        }
+        this.heuristic = heuristic;
+        this.epsilon = epsilon;
+        this.weight = 1 + epsilon;
+    }
+
+    @Override
+    public int estimate(int cellId, int direction, int goalId) {
+        return (int) (weight * heuristic.estimate(cellId, direction, goalId));
+    }
+
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    public Heuristic getHeuristic() {
+        return heuristic;
+    }
+}